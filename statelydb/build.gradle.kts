@@ -34,7 +34,8 @@ dependencies {
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 
     // grpc/proto deps
-    runtimeOnly("io.grpc:grpc-netty-shaded:1.75.0")
+    // implementation rather than runtimeOnly so TransportConfig can tune the Netty transport.
+    implementation("io.grpc:grpc-netty-shaded:1.75.0")
     implementation("io.grpc:grpc-protobuf:1.75.0")
 
     implementation("javax.annotation:javax.annotation-api:1.3.2")
@@ -7,37 +7,53 @@ import cloud.stately.db.ContinueScanRequest;
 import cloud.stately.db.DatabaseServiceGrpc;
 import cloud.stately.db.DeleteItem;
 import cloud.stately.db.DeleteRequest;
+import cloud.stately.db.DeleteResult;
 import cloud.stately.db.GetItem;
 import cloud.stately.db.GetRequest;
+import cloud.stately.db.Item;
 import cloud.stately.db.ListToken;
 import cloud.stately.db.PutItem;
 import cloud.stately.db.SyncListRequest;
-import cloud.stately.statelydb.auth.AuthTokenCallCredentials;
-import cloud.stately.statelydb.auth.AuthTokenProvider;
 import cloud.stately.statelydb.auth.TokenProvider;
 import cloud.stately.statelydb.common.FutureUtils;
 import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.metrics.Operation;
 import cloud.stately.statelydb.schema.BaseTypeMapper;
+import cloud.stately.statelydb.schema.KeyPath;
 import cloud.stately.statelydb.schema.StatelyItem;
-import io.grpc.CallCredentials;
+import cloud.stately.statelydb.tracing.Span;
+import cloud.stately.statelydb.tracing.SpanAttributes;
+import cloud.stately.statelydb.tracing.Tracer;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.ClientInterceptor;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
 import io.grpc.Status;
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Collectors;
 
 /**
  * Client for interacting with the Stately Cloud API. Provides methods for performing CRUD
  * operations on items in a StatelyDB store.
+ *
+ * <p>A client built with {@link #builder} has its own channel and token provider. To work with
+ * many stores over one channel, create a {@link StatelyConnection} and get a client for each store
+ * from it.
  */
 public class Client implements AutoCloseable {
 
-  /** Default endpoint for the Stately Cloud API. */
-  private static final String DEFAULT_ENDPOINT_STRING = "https://api.stately.cloud:443";
+  /** Stately error code returned when a mustNotExist put finds an existing item. */
+  private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
+
+  /** The maximum number of single-item puts in flight when insertIfAbsent falls back to them. */
+  private static final int INSERT_FALLBACK_CONCURRENCY = 8;
 
   /* The StatelyDB store to use for all operations with this client. */
   private final long storeId;
@@ -60,6 +76,15 @@ public class Client implements AutoCloseable {
   /* The scheduler to use for scheduling tasks. */
   private ScheduledExecutorService scheduler;
 
+  /* The executor that completes the futures returned to the caller. */
+  private final Executor callbackExecutor;
+
+  /* The executor to unmarshal list and scan pages on in parallel, or null to decode serially. */
+  private final Executor parallelDecodeExecutor;
+
+  /* The number of items per parallel decoding task. */
+  private final int parallelDecodeChunkSize;
+
   /*
    * Whether to allow stale reads.
    * For now this is always false.
@@ -75,6 +100,24 @@ public class Client implements AutoCloseable {
   /* The gRPC stub used for streaming data API calls. */
   private final DatabaseServiceGrpc.DatabaseServiceStub observerStub;
 
+  /* The overall deadline for a transaction in milliseconds, or 0 for none. */
+  private final long transactionTimeoutMillis;
+
+  /* The maximum time a transaction stream may go without activity in milliseconds, or 0. */
+  private final long transactionIdleTimeoutMillis;
+
+  /* The metrics recorder for calls made by this client. */
+  private final ClientMetrics metrics;
+
+  /* The tracer that starts a span for each call made by this client. */
+  private final Tracer tracer;
+
+  /* Whether closing this client closes the channel and token provider. */
+  private final boolean ownsConnection;
+
+  /* The connection this client was created from, or null if it was constructed directly. */
+  private final StatelyConnection connection;
+
   /** Builder for creating Client instances. */
   public static class Builder {
     private long storeId;
@@ -84,6 +127,18 @@ public class Client implements AutoCloseable {
     private URI endpoint;
     private String region;
     private Boolean noAuth = false;
+    private Duration transactionTimeout = Duration.ZERO;
+    private Duration transactionIdleTimeout = Duration.ZERO;
+    private ClientMetrics metrics = ClientMetrics.NOOP;
+    private List<ClientInterceptor> interceptors = List.of();
+    private Tracer tracer = Tracer.NOOP;
+    private boolean shareTokenProvider = false;
+    private TransportConfig transport = TransportConfig.DEFAULT;
+    private CompressionConfig compression = CompressionConfig.NONE;
+    private Executor decodeExecutor = MoreExecutors.directExecutor();
+    private Executor callbackExecutor;
+    private Executor parallelDecodeExecutor;
+    private int parallelDecodeChunkSize = StatelyConnection.DEFAULT_PARALLEL_DECODE_CHUNK_SIZE;
 
     /**
      * Creates a new builder with the required parameters.
@@ -150,82 +205,210 @@ public class Client implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Sets the overall deadline for transactions. If a transaction, including its handler, has not
+     * finished by then, the transaction stream is cancelled and the transaction fails with
+     * DEADLINE_EXCEEDED. Defaults to no deadline.
+     *
+     * @param transactionTimeout the maximum duration of a transaction, or zero for no deadline;
+     *     must not be null or negative
+     * @return this builder instance
+     */
+    public Builder transactionTimeout(Duration transactionTimeout) {
+      this.transactionTimeout = transactionTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the idle timeout for transactions. If no message is sent or received on a transaction
+     * stream for this long, for example because the handler stalled or the server stopped
+     * responding, the stream is cancelled and the transaction fails with DEADLINE_EXCEEDED. The
+     * check runs on the client's scheduler. Defaults to no idle timeout.
+     *
+     * @param transactionIdleTimeout the maximum idle time of a transaction stream, or zero to
+     *     disable the check; must not be null or negative
+     * @return this builder instance
+     */
+    public Builder transactionIdleTimeout(Duration transactionIdleTimeout) {
+      this.transactionIdleTimeout = transactionIdleTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the metrics recorder for the client. It receives the latency, status code, item count
+     * and response size of every call, per-frame details of streaming calls, and token refresh
+     * timings from the default token provider. Defaults to {@link ClientMetrics#NOOP}.
+     *
+     * @param metrics the metrics recorder to use
+     * @return this builder instance
+     */
+    public Builder metrics(ClientMetrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Sets interceptors that every call made by the client passes through, for example for
+     * tracing, compression or load shedding. They apply uniformly to unary and streaming calls, and
+     * to calls to the auth service made by the default token provider. Interceptors run in the
+     * order given: the first one sees each call first. See {@link
+     * cloud.stately.statelydb.interceptors.TimingInterceptor} and {@link
+     * cloud.stately.statelydb.interceptors.TraceContextInterceptor} for built-in interceptors.
+     *
+     * @param interceptors the interceptors to apply
+     * @return this builder instance
+     */
+    public Builder interceptors(ClientInterceptor... interceptors) {
+      this.interceptors = List.of(interceptors);
+      return this;
+    }
+
+    /**
+     * Sets the tracer for the client. It starts a span for every call, including each page of a
+     * list or scan and each token refresh by the default token provider, and receives an event for
+     * every partial result and every transaction message with its item count and size. Defaults to
+     * {@link Tracer#NOOP}, which costs nothing. Use {@link Tracer#compose} to trace to more than
+     * one tracer, such as an application tracer and a {@link
+     * cloud.stately.statelydb.tracing.FlightRecorder}.
+     *
+     * @param tracer the tracer to use
+     * @return this builder instance
+     */
+    public Builder tracer(Tracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
+    /**
+     * Sets whether the default token provider is shared with other clients in the process. When
+     * enabled, all clients with the same access key, endpoint and scheduler use a single token
+     * provider and auth service channel, which is closed when the last of those clients is closed.
+     * This has no effect if a token provider is set explicitly or auth is disabled. Defaults to
+     * false.
+     *
+     * @param shareTokenProvider whether to share the default token provider
+     * @return this builder instance
+     */
+    public Builder shareTokenProvider(boolean shareTokenProvider) {
+      this.shareTokenProvider = shareTokenProvider;
+      return this;
+    }
+
+    /**
+     * Sets the transport settings for the client's channel: HTTP/2 flow control, keepalive,
+     * message size limits and the Netty event loop. Use {@link TransportConfig#bulkScans()} for
+     * clients that mostly scan or list large result sets and {@link TransportConfig#lowLatency()}
+     * for clients that mostly make point reads and writes. Defaults to {@link
+     * TransportConfig#DEFAULT}, which keeps the gRPC defaults.
+     *
+     * @param transport the transport settings to use
+     * @return this builder instance
+     */
+    public Builder transport(TransportConfig transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    /**
+     * Sets the per-operation message compression, for example gzip for scans and syncList but
+     * none for point gets. Use {@link CompressionConfig#largeReads()} to compress the operations
+     * that return many items. When a metrics recorder is set, it receives the wire and
+     * uncompressed size of each call. Defaults to {@link CompressionConfig#NONE}.
+     *
+     * @param compression the compression settings to use
+     * @return this builder instance
+     */
+    public Builder compression(CompressionConfig compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Sets the executor that gRPC delivers responses on, where they are parsed and their items
+     * unmarshalled. Defaults to the direct executor, which does this on the network event loop and
+     * saves a thread hop per response; no application code runs there, since results are handed to
+     * the {@link #callbackExecutor} before they reach the caller. Set an executor if decoding very
+     * large pages on the event loop would delay other responses.
+     *
+     * @param decodeExecutor the executor to decode responses on
+     * @return this builder instance
+     */
+    public Builder decodeExecutor(Executor decodeExecutor) {
+      this.decodeExecutor = decodeExecutor;
+      return this;
+    }
+
+    /**
+     * Sets the executor that completes the futures returned by the client, and so runs any stage
+     * chained to them without an explicit executor, including transaction handlers. Keeping this
+     * apart from the scheduler means a slow application task can't delay timers such as token
+     * refreshes and transaction timeouts. Defaults to a virtual thread per task on Java 21 and
+     * later, and to the scheduler on older runtimes. The scheduler passed to {@link
+     * Client#builder} is still used for all timers.
+     *
+     * @param callbackExecutor the executor to complete futures on
+     * @return this builder instance
+     */
+    public Builder callbackExecutor(Executor callbackExecutor) {
+      this.callbackExecutor = callbackExecutor;
+      return this;
+    }
+
+    /**
+     * Unmarshals the items of list and scan pages in parallel on the given executor, in chunks of
+     * {@value StatelyConnection#DEFAULT_PARALLEL_DECODE_CHUNK_SIZE} items. Items are still returned
+     * in the order the server sent them. This helps when a single list or scan is limited by the
+     * CPU time spent unmarshalling large items; {@link
+     * java.util.concurrent.ForkJoinPool#commonPool} is a reasonable choice. By default pages are
+     * unmarshalled serially on the decode executor.
+     *
+     * @param executor the executor to unmarshal chunks on, or null to decode serially
+     * @return this builder instance
+     */
+    public Builder parallelDecode(Executor executor) {
+      return parallelDecode(executor, StatelyConnection.DEFAULT_PARALLEL_DECODE_CHUNK_SIZE);
+    }
+
+    /**
+     * Unmarshals the items of list and scan pages in parallel on the given executor, in chunks of
+     * {@code chunkSize} items. See {@link #parallelDecode(Executor)}.
+     *
+     * @param executor the executor to unmarshal chunks on, or null to decode serially
+     * @param chunkSize the number of items per task; smaller pages are decoded without a hand-off
+     * @return this builder instance
+     */
+    public Builder parallelDecode(Executor executor, int chunkSize) {
+      this.parallelDecodeExecutor = executor;
+      this.parallelDecodeChunkSize = chunkSize;
+      return this;
+    }
+
     /**
      * Builds and returns a new Client instance.
      *
      * @return a new Client instance
-     * @throws StatelyException if required parameters are missing
+     * @throws StatelyException if required parameters are missing or a setting is out of range
      */
     public Client build() {
-      URI resolvedEndpoint = makeEndpoint(endpoint, region);
-
-      ManagedChannelBuilder<?> channelBuilder =
-          ManagedChannelBuilder.forAddress(resolvedEndpoint.getHost(), resolvedEndpoint.getPort())
-              .executor(scheduler)
-              .maxInboundMetadataSize(
-                  Integer.MAX_VALUE); // disabled so that large error details don't cause issues
-      if (resolvedEndpoint.getScheme().equals("http")) {
-        channelBuilder.usePlaintext();
-      }
-      ManagedChannel channel = channelBuilder.build();
-
-      // create the gRPC stubs.
-      DatabaseServiceGrpc.DatabaseServiceFutureStub futureStub =
-          DatabaseServiceGrpc.newFutureStub(channel);
-      DatabaseServiceGrpc.DatabaseServiceStub observerStub = DatabaseServiceGrpc.newStub(channel);
-
-      TokenProvider resolvedTokenProvider = null;
-      if (!noAuth) {
-        if (tokenProvider == null) {
-          // if no token provider is provided, create a default one
-          resolvedTokenProvider = AuthTokenProvider.builder(scheduler).build();
-        } else {
-          resolvedTokenProvider = tokenProvider;
-        }
-        resolvedTokenProvider.start(resolvedEndpoint);
-        // overwrite the stubs with the authenticated stubs
-        CallCredentials callCreds = new AuthTokenCallCredentials(resolvedTokenProvider);
-        futureStub = futureStub.withCallCredentials(callCreds);
-        observerStub = observerStub.withCallCredentials(callCreds);
-      }
-
-      return new Client(
-          storeId,
-          typeMapper,
-          resolvedTokenProvider,
-          resolvedEndpoint,
-          noAuth,
-          false, // allowStale is always false when the client is constructed
-          scheduler,
-          channel,
-          futureStub,
-          observerStub);
-    }
-
-    private static URI makeEndpoint(URI endpoint, String region) {
-      if (endpoint != null) {
-        return endpoint;
-      }
-      if (region == null) {
-        try {
-          return new URI(DEFAULT_ENDPOINT_STRING);
-        } catch (java.net.URISyntaxException e) {
-          throw new StatelyException(
-              "Invalid default endpoint: " + DEFAULT_ENDPOINT_STRING + ". Please contact support.",
-              Status.Code.INTERNAL,
-              "Internal");
-        }
-      }
-      if (region.startsWith("aws-")) {
-        region = region.substring(4); // Remove "aws-" prefix
-      }
-
-      try {
-        return new URI("https://" + region + ".api.stately.cloud:443");
-      } catch (java.net.URISyntaxException e) {
-        throw new StatelyException(
-            "Invalid region: " + region, Status.Code.INVALID_ARGUMENT, "InvalidArgument");
-      }
+      StatelyConnection connection =
+          StatelyConnection.builder(scheduler)
+              .tokenProvider(tokenProvider)
+              .endpoint(endpoint)
+              .region(region)
+              .noAuth(noAuth)
+              .transactionTimeout(transactionTimeout)
+              .transactionIdleTimeout(transactionIdleTimeout)
+              .metrics(metrics)
+              .interceptors(interceptors.toArray(new ClientInterceptor[0]))
+              .tracer(tracer)
+              .shareTokenProvider(shareTokenProvider)
+              .transport(transport)
+              .compression(compression)
+              .decodeExecutor(decodeExecutor)
+              .callbackExecutor(callbackExecutor)
+              .parallelDecode(parallelDecodeExecutor, parallelDecodeChunkSize)
+              .build();
+      return connection.newClient(storeId, typeMapper, true);
     }
   }
 
@@ -267,6 +450,48 @@ public class Client implements AutoCloseable {
       ManagedChannel channel,
       DatabaseServiceGrpc.DatabaseServiceFutureStub futureStub,
       DatabaseServiceGrpc.DatabaseServiceStub observerStub) {
+    this(
+        storeId,
+        typeMapper,
+        tokenProvider,
+        endpoint,
+        noAuth,
+        allowStale,
+        scheduler,
+        channel,
+        futureStub,
+        observerStub,
+        0,
+        0,
+        ClientMetrics.NOOP,
+        Tracer.NOOP,
+        MoreExecutors.directExecutor(),
+        null,
+        0,
+        true,
+        null);
+  }
+
+  Client(
+      long storeId,
+      BaseTypeMapper typeMapper,
+      TokenProvider tokenProvider,
+      URI endpoint,
+      Boolean noAuth,
+      Boolean allowStale,
+      ScheduledExecutorService scheduler,
+      ManagedChannel channel,
+      DatabaseServiceGrpc.DatabaseServiceFutureStub futureStub,
+      DatabaseServiceGrpc.DatabaseServiceStub observerStub,
+      long transactionTimeoutMillis,
+      long transactionIdleTimeoutMillis,
+      ClientMetrics metrics,
+      Tracer tracer,
+      Executor callbackExecutor,
+      Executor parallelDecodeExecutor,
+      int parallelDecodeChunkSize,
+      boolean ownsConnection,
+      StatelyConnection connection) {
 
     // store everything that is required for operation or cloning this client
     this.storeId = storeId;
@@ -279,6 +504,15 @@ public class Client implements AutoCloseable {
     this.channel = channel;
     this.futureStub = futureStub;
     this.observerStub = observerStub;
+    this.transactionTimeoutMillis = transactionTimeoutMillis;
+    this.transactionIdleTimeoutMillis = transactionIdleTimeoutMillis;
+    this.metrics = metrics;
+    this.tracer = tracer;
+    this.callbackExecutor = callbackExecutor;
+    this.parallelDecodeExecutor = parallelDecodeExecutor;
+    this.parallelDecodeChunkSize = parallelDecodeChunkSize;
+    this.ownsConnection = ownsConnection;
+    this.connection = connection;
   }
 
   /**
@@ -298,7 +532,16 @@ public class Client implements AutoCloseable {
         this.scheduler,
         this.channel,
         this.futureStub,
-        this.observerStub);
+        this.observerStub,
+        this.transactionTimeoutMillis,
+        this.transactionIdleTimeoutMillis,
+        this.metrics,
+        this.tracer,
+        this.callbackExecutor,
+        this.parallelDecodeExecutor,
+        this.parallelDecodeChunkSize,
+        this.ownsConnection,
+        this.connection);
   }
 
   /**
@@ -322,6 +565,17 @@ public class Client implements AutoCloseable {
         });
   }
 
+  /**
+   * get retrieves an item by its full key path. This is the same as {@link #get(String)}.
+   *
+   * @param <T> the type of item to retrieve
+   * @param keyPath the full key path of the item
+   * @return a CompletableFuture containing the item or null if not found
+   */
+  public <T extends StatelyItem> CompletableFuture<T> get(KeyPath keyPath) {
+    return get(keyPath.toString());
+  }
+
   /**
    * getBatch retrieves multiple items by their full key paths. This will return the corresponding
    * items that exist. Use beginList instead if you want to retrieve multiple items but don't
@@ -359,16 +613,30 @@ public class Client implements AutoCloseable {
                     .map(keyPath -> GetItem.newBuilder().setKeyPath(keyPath).build())
                     .collect(Collectors.toList()))
             .build();
-    return FutureUtils.toCompletable(futureStub.get(request), scheduler)
-        .handle(
-            (resp, error) -> {
-              if (error != null) {
-                throw StatelyException.from(error);
-              }
-              return resp.getItemsList().stream()
-                  .map(item -> typeMapper.unmarshal(item))
-                  .collect(Collectors.toList());
-            });
+    Span span = tracer.startSpan(Operation.GET);
+    if (span.isRecording()) {
+      traceKeyPath(span, keyPaths.get(0), keyPaths.size());
+    }
+    long start = startCall(Operation.GET);
+    CompletableFuture<List<StatelyItem>> result =
+        FutureUtils.toCompletable(futureStub.get(request), scheduler)
+            .handle(
+                (resp, error) -> {
+                  if (error != null) {
+                    throw failCall(Operation.GET, span, start, error);
+                  }
+                  List<StatelyItem> items =
+                      unmarshalAll(resp.getItemsList(), Operation.GET, span, start);
+                  finishCall(
+                      Operation.GET,
+                      span,
+                      start,
+                      Status.Code.OK,
+                      resp.getItemsCount(),
+                      resp.getSerializedSize());
+                  return items;
+                });
+    return FutureUtils.completeOn(result, callbackExecutor);
   }
 
   /**
@@ -419,6 +687,17 @@ public class Client implements AutoCloseable {
     return put(PutRequest.builder(item).build());
   }
 
+  /**
+   * getBatchKeyPaths retrieves multiple items by their full key paths. This is the same as {@link
+   * #getBatch(List)}.
+   *
+   * @param keyPaths the full key paths of each item to load
+   * @return a CompletableFuture containing the list of items
+   */
+  public CompletableFuture<List<StatelyItem>> getBatchKeyPaths(List<KeyPath> keyPaths) {
+    return getBatch(KeyPaths.toStrings(keyPaths));
+  }
+
   /**
    * putBatch adds multiple Items to the Store, or replaces Items if they already exist at that
    * path. You can put items of different types in a single putBatch. All puts in the request are
@@ -458,16 +737,30 @@ public class Client implements AutoCloseable {
             .addAllPuts(putItems)
             .build();
 
-    return FutureUtils.toCompletable(futureStub.put(request), scheduler)
-        .handle(
-            (resp, error) -> {
-              if (error != null) {
-                throw StatelyException.from(error);
-              }
-              return resp.getItemsList().stream()
-                  .map(item -> typeMapper.unmarshal(item))
-                  .collect(Collectors.toList());
-            });
+    Span span = tracer.startSpan(Operation.PUT);
+    if (span.isRecording()) {
+      traceKeyPath(span, requests.get(0).item().primaryKeyPath(), requests.size());
+    }
+    long start = startCall(Operation.PUT);
+    CompletableFuture<List<StatelyItem>> result =
+        FutureUtils.toCompletable(futureStub.put(request), scheduler)
+            .handle(
+                (resp, error) -> {
+                  if (error != null) {
+                    throw failCall(Operation.PUT, span, start, error);
+                  }
+                  List<StatelyItem> items =
+                      unmarshalAll(resp.getItemsList(), Operation.PUT, span, start);
+                  finishCall(
+                      Operation.PUT,
+                      span,
+                      start,
+                      Status.Code.OK,
+                      resp.getItemsCount(),
+                      resp.getSerializedSize());
+                  return items;
+                });
+    return FutureUtils.completeOn(result, callbackExecutor);
   }
 
   /**
@@ -498,6 +791,156 @@ public class Client implements AutoCloseable {
         items.stream().map(item -> PutRequest.builder(item).build()).collect(Collectors.toList()));
   }
 
+  /**
+   * insertIfAbsent inserts each item only if no item already exists at its key path, and reports
+   * per item whether it was inserted. This is an idempotent bulk insert that needs no
+   * read-then-write transaction: every put is sent with mustNotExist set.
+   *
+   * <p>All items are first put in a single atomic batch, so when nothing conflicts this costs one
+   * round-trip. If any item already exists the batch is rejected as a whole, and each item is then
+   * put individually, at most {@value #INSERT_FALLBACK_CONCURRENCY} at a time, so the items that
+   * don't conflict are still inserted.
+   *
+   * @param <T> the type of the items, must extend StatelyItem
+   * @param items the items to insert
+   * @return a CompletableFuture containing one InsertResult per item, in the same order as the
+   *     input
+   *     <p>Example usage:
+   *     <pre>{@code
+   * List<InsertResult> results = client.insertIfAbsent(List.of(lightsaber, cloak)).get();
+   * for (InsertResult result : results) {
+   *     if (result.alreadyExists()) {
+   *         System.out.println("Skipped " + result.getItem().primaryKeyPath());
+   *     }
+   * }
+   * }</pre>
+   */
+  public <T extends StatelyItem> CompletableFuture<List<InsertResult>> insertIfAbsent(
+      List<T> items) {
+    if (items.isEmpty()) {
+      return CompletableFuture.failedFuture(
+          new StatelyException(
+              "No items were provided to insert", Status.Code.INVALID_ARGUMENT, "InvalidArgument"));
+    }
+    List<PutRequest<T>> requests =
+        items.stream()
+            .map(item -> PutRequest.builder(item).mustNotExist().build())
+            .collect(Collectors.toList());
+
+    return putBatch(requests)
+        .handle(
+            (stored, error) -> {
+              if (error == null) {
+                return CompletableFuture.completedFuture(
+                    stored.stream()
+                        .map(item -> new InsertResult(item, true))
+                        .collect(Collectors.toList()));
+              }
+              StatelyException e = StatelyException.from(error);
+              if (!isAlreadyExists(e)) {
+                return CompletableFuture.<List<InsertResult>>failedFuture(e);
+              }
+              if (requests.size() == 1) {
+                return CompletableFuture.completedFuture(
+                    List.of(new InsertResult(requests.get(0).item(), false)));
+              }
+              return insertEachIfAbsent(requests);
+            })
+        .thenCompose(future -> future);
+  }
+
+  private <T extends StatelyItem> CompletableFuture<List<InsertResult>> insertEachIfAbsent(
+      List<PutRequest<T>> requests) {
+    // the error doesn't say which items conflict, so every item is retried on its own. Each lane
+    // puts every INSERT_FALLBACK_CONCURRENCY-th item in turn, which bounds the puts in flight.
+    InsertResult[] results = new InsertResult[requests.size()];
+    int lanes = Math.min(INSERT_FALLBACK_CONCURRENCY, requests.size());
+    List<CompletableFuture<Void>> laneFutures = new ArrayList<>(lanes);
+    for (int lane = 0; lane < lanes; lane++) {
+      CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+      for (int i = lane; i < requests.size(); i += lanes) {
+        int index = i;
+        PutRequest<T> request = requests.get(index);
+        chain =
+            chain.thenCompose(
+                v ->
+                    put(request)
+                        .handle(
+                            (stored, error) -> {
+                              if (error == null) {
+                                results[index] = new InsertResult(stored, true);
+                                return null;
+                              }
+                              StatelyException e = StatelyException.from(error);
+                              if (isAlreadyExists(e)) {
+                                results[index] = new InsertResult(request.item(), false);
+                                return null;
+                              }
+                              throw e;
+                            }));
+      }
+      laneFutures.add(chain);
+    }
+    return CompletableFuture.allOf(laneFutures.toArray(new CompletableFuture<?>[0]))
+        .thenApply(v -> Arrays.asList(results));
+  }
+
+  private long startCall(Operation operation) {
+    metrics.callStarted(operation);
+    return System.nanoTime();
+  }
+
+  private void finishCall(
+      Operation operation, Span span, long start, Status.Code code, int items, long bytes) {
+    metrics.callFinished(operation, code, System.nanoTime() - start, items, bytes);
+    span.end(code, items, bytes);
+  }
+
+  private StatelyException failCall(Operation operation, Span span, long start, Throwable error) {
+    StatelyException e = StatelyException.from(error);
+    finishCall(operation, span, start, e.getGrpcCode(), 0, 0);
+    return e;
+  }
+
+  /**
+   * Unmarshals the items of a unary response. If an item can't be unmarshalled, the call is
+   * recorded as failed rather than OK.
+   */
+  private List<StatelyItem> unmarshalAll(
+      List<Item> items, Operation operation, Span span, long start) {
+    try {
+      return items.stream().map(item -> typeMapper.unmarshal(item)).collect(Collectors.toList());
+    } catch (RuntimeException e) {
+      throw failCall(operation, span, start, e);
+    }
+  }
+
+  private static void traceKeyPath(Span span, String keyPath, int count) {
+    span.setAttribute(
+        SpanAttributes.KEY_PATH, count > 1 ? keyPath + " (+" + (count - 1) + ")" : keyPath);
+  }
+
+  private ListObserver listObserver(CompletableFuture<ListResult> onComplete, Operation operation) {
+    return listObserver(onComplete, operation, tracer.startSpan(operation));
+  }
+
+  private ListObserver listObserver(
+      CompletableFuture<ListResult> onComplete, Operation operation, Span span) {
+    return new ListObserver(
+        typeMapper,
+        onComplete,
+        metrics,
+        operation,
+        span,
+        parallelDecodeExecutor,
+        parallelDecodeChunkSize);
+  }
+
+  private static boolean isAlreadyExists(StatelyException e) {
+    return e.getGrpcCode() == Status.Code.ALREADY_EXISTS
+        || CONDITIONAL_CHECK_FAILED.equals(e.getStatelyCode());
+  }
+
   /**
    * delete removes one or more items from the Store by their full key paths. delete succeeds even
    * if there isn't an item at that key path. Tombstones will be saved for deleted items for some
@@ -512,7 +955,38 @@ public class Client implements AutoCloseable {
    * }</pre>
    */
   public CompletableFuture<Void> delete(String... keyPaths) {
-    if (keyPaths.length == 0) {
+    return deleteBatch(Arrays.asList(keyPaths)).thenApply(deleted -> null);
+  }
+
+  /**
+   * delete removes one or more items from the Store by their full key paths. This is the same as
+   * {@link #delete(String...)}.
+   *
+   * @param keyPaths the full key paths of the items to delete
+   * @return a CompletableFuture that completes when the deletion is done
+   */
+  public CompletableFuture<Void> delete(KeyPath... keyPaths) {
+    return delete(KeyPaths.toStrings(keyPaths));
+  }
+
+  /**
+   * deleteBatch removes multiple items from the Store by their full key paths and returns the key
+   * path of each item the server acknowledged as deleted. Like delete, it succeeds even if there
+   * isn't an item at a key path, and all deletes are applied atomically. The returned key paths can
+   * be used to invalidate exactly the deleted items in a cache.
+   *
+   * @param keyPaths the full key paths of the items to delete
+   * @return a CompletableFuture containing the key paths of the deleted items
+   *     <p>Example usage:
+   *     <pre>{@code
+   * List<String> deleted = client.deleteBatch(
+   *     List.of("/jedi-luke/equipment-lightsaber", "/jedi-luke/equipment-cloak")
+   * ).get();
+   * deleted.forEach(cache::invalidate);
+   * }</pre>
+   */
+  public CompletableFuture<List<String>> deleteBatch(List<String> keyPaths) {
+    if (keyPaths.isEmpty()) {
       return CompletableFuture.failedFuture(
           new StatelyException(
               "No keyPaths were provided to delete",
@@ -525,19 +999,47 @@ public class Client implements AutoCloseable {
             .setSchemaId(typeMapper.getSchemaId())
             .setSchemaVersionId(typeMapper.getSchemaVersionId())
             .addAllDeletes(
-                Arrays.stream(keyPaths)
+                keyPaths.stream()
                     .map(keyPath -> DeleteItem.newBuilder().setKeyPath(keyPath).build())
                     .collect(Collectors.toList()))
             .build();
 
-    return FutureUtils.toCompletable(futureStub.delete(request), scheduler)
-        .handle(
-            (resp, error) -> {
-              if (error != null) {
-                throw StatelyException.from(error);
-              }
-              return null;
-            });
+    Span span = tracer.startSpan(Operation.DELETE);
+    if (span.isRecording()) {
+      traceKeyPath(span, keyPaths.get(0), keyPaths.size());
+    }
+    long start = startCall(Operation.DELETE);
+    CompletableFuture<List<String>> result =
+        FutureUtils.toCompletable(futureStub.delete(request), scheduler)
+            .handle(
+                (resp, error) -> {
+                  if (error != null) {
+                    throw failCall(Operation.DELETE, span, start, error);
+                  }
+                  finishCall(
+                      Operation.DELETE,
+                      span,
+                      start,
+                      Status.Code.OK,
+                      resp.getResultsCount(),
+                      resp.getSerializedSize());
+                  return resp.getResultsList().stream()
+                      .map(DeleteResult::getKeyPath)
+                      .collect(Collectors.toList());
+                });
+    return FutureUtils.completeOn(result, callbackExecutor);
+  }
+
+  /**
+   * deleteBatchKeyPaths removes multiple items from the Store by their full key paths and returns
+   * the key path of each item the server acknowledged as deleted. This is the same as {@link
+   * #deleteBatch(List)}.
+   *
+   * @param keyPaths the full key paths of the items to delete
+   * @return a CompletableFuture containing the key paths of the deleted items
+   */
+  public CompletableFuture<List<KeyPath>> deleteBatchKeyPaths(List<KeyPath> keyPaths) {
+    return deleteBatch(KeyPaths.toStrings(keyPaths)).thenApply(KeyPaths::fromStrings);
   }
 
   /**
@@ -553,6 +1055,31 @@ public class Client implements AutoCloseable {
     return beginList(keyPathPrefix, null);
   }
 
+  /**
+   * Begins a list operation to retrieve items with the specified key path prefix. This is the same
+   * as {@link #beginList(String)}.
+   *
+   * @param keyPathPrefix the key path prefix to list items for
+   * @return a CompletableFuture containing a ListResult with StatelyItems and a ListToken for
+   *     continuation or sync
+   */
+  public CompletableFuture<ListResult> beginList(KeyPath keyPathPrefix) {
+    return beginList(keyPathPrefix.toString(), null);
+  }
+
+  /**
+   * Begins a list operation to retrieve items with the specified key path prefix and options. This
+   * is the same as {@link #beginList(String, ListOptions)}.
+   *
+   * @param keyPathPrefix the key path prefix to list items for
+   * @param options the list options for filtering and pagination (can be null)
+   * @return a CompletableFuture containing a ListResult with StatelyItems and a ListToken for
+   *     continuation or sync
+   */
+  public CompletableFuture<ListResult> beginList(KeyPath keyPathPrefix, ListOptions options) {
+    return beginList(keyPathPrefix.toString(), options);
+  }
+
   /**
    * Begins a list operation to retrieve items with the specified key path prefix and options. This
    * method returns a ListResult that provides streaming access to the results and a token for
@@ -564,6 +1091,15 @@ public class Client implements AutoCloseable {
    *     continuation or sync
    */
   public CompletableFuture<ListResult> beginList(String keyPathPrefix, ListOptions options) {
+    Span span = beginListSpan(keyPathPrefix);
+    CompletableFuture<ListResult> onComplete = new CompletableFuture<>();
+    observerStub.beginList(
+        beginListRequest(keyPathPrefix, options),
+        listObserver(onComplete, Operation.BEGIN_LIST, span));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  private BeginListRequest beginListRequest(String keyPathPrefix, ListOptions options) {
     BeginListRequest.Builder requestBuilder =
         BeginListRequest.newBuilder()
             .setStoreId(storeId)
@@ -580,10 +1116,15 @@ public class Client implements AutoCloseable {
       }
       requestBuilder.setSortDirection(options.getSortDirection());
     }
+    return requestBuilder.build();
+  }
 
-    CompletableFuture<ListResult> onComplete = new CompletableFuture<>();
-    observerStub.beginList(requestBuilder.build(), new ListObserver(typeMapper, onComplete));
-    return onComplete;
+  private Span beginListSpan(String keyPathPrefix) {
+    Span span = tracer.startSpan(Operation.BEGIN_LIST);
+    if (span.isRecording()) {
+      traceKeyPath(span, keyPathPrefix, 1);
+    }
+    return span;
   }
 
   /**
@@ -596,16 +1137,18 @@ public class Client implements AutoCloseable {
    *     continuation or sync
    */
   public CompletableFuture<ListResult> continueList(ListToken token) {
-    ContinueListRequest request =
-        ContinueListRequest.newBuilder()
-            .setSchemaId(typeMapper.getSchemaId())
-            .setSchemaVersionId(typeMapper.getSchemaVersionId())
-            .setTokenData(token.getTokenData())
-            .build();
-
     CompletableFuture<ListResult> onComplete = new CompletableFuture<>();
-    observerStub.continueList(request, new ListObserver(typeMapper, onComplete));
-    return onComplete;
+    observerStub.continueList(
+        continueListRequest(token), listObserver(onComplete, Operation.CONTINUE_LIST));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  private ContinueListRequest continueListRequest(ListToken token) {
+    return ContinueListRequest.newBuilder()
+        .setSchemaId(typeMapper.getSchemaId())
+        .setSchemaVersionId(typeMapper.getSchemaVersionId())
+        .setTokenData(token.getTokenData())
+        .build();
   }
 
   /**
@@ -626,8 +1169,10 @@ public class Client implements AutoCloseable {
             .setTokenData(token.getTokenData())
             .build();
     CompletableFuture<SyncResult> result = new CompletableFuture<>();
-    observerStub.syncList(request, new SyncObserver(typeMapper, result));
-    return result;
+    observerStub.syncList(
+        request,
+        new SyncObserver(typeMapper, result, metrics, tracer.startSpan(Operation.SYNC_LIST)));
+    return FutureUtils.completeOn(result, callbackExecutor);
   }
 
   /**
@@ -655,6 +1200,14 @@ public class Client implements AutoCloseable {
    *     continuation
    */
   public CompletableFuture<ListResult> beginScan(ScanOptions options) {
+    BeginScanRequest request = beginScanRequest(options);
+    CompletableFuture<ListResult> onComplete = new CompletableFuture<>();
+    observerStub.beginScan(
+        request, listObserver(onComplete, Operation.BEGIN_SCAN, beginScanSpan(request)));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  private BeginScanRequest beginScanRequest(ScanOptions options) {
     BeginScanRequest.Builder requestBuilder =
         BeginScanRequest.newBuilder()
             .setStoreId(storeId)
@@ -670,10 +1223,18 @@ public class Client implements AutoCloseable {
         requestBuilder.setSegmentationParams(options.buildSegmentationParams());
       }
     }
+    return requestBuilder.build();
+  }
 
-    CompletableFuture<ListResult> onComplete = new CompletableFuture<>();
-    observerStub.beginScan(requestBuilder.build(), new ListObserver(typeMapper, onComplete));
-    return onComplete;
+  private Span beginScanSpan(BeginScanRequest request) {
+    Span span = tracer.startSpan(Operation.BEGIN_SCAN);
+    if (request.hasSegmentationParams()) {
+      span.setAttribute(
+          SpanAttributes.SEGMENT_INDEX, request.getSegmentationParams().getSegmentIndex());
+      span.setAttribute(
+          SpanAttributes.TOTAL_SEGMENTS, request.getSegmentationParams().getTotalSegments());
+    }
+    return span;
   }
 
   /**
@@ -686,16 +1247,248 @@ public class Client implements AutoCloseable {
    *     for continuation
    */
   public CompletableFuture<ListResult> continueScan(ListToken token) {
-    ContinueScanRequest request =
-        ContinueScanRequest.newBuilder()
+    CompletableFuture<ListResult> onComplete = new CompletableFuture<>();
+    observerStub.continueScan(
+        continueScanRequest(token), listObserver(onComplete, Operation.CONTINUE_SCAN));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  private ContinueScanRequest continueScanRequest(ListToken token) {
+    return ContinueScanRequest.newBuilder()
+        .setSchemaId(typeMapper.getSchemaId())
+        .setSchemaVersionId(typeMapper.getSchemaVersionId())
+        .setTokenData(token.getTokenData())
+        .build();
+  }
+
+  /**
+   * Begins a list operation like {@link #beginList(String, ListOptions)}, but hands each page of
+   * results to a {@link ListSink} instead of collecting them, and only fetches the next page when
+   * the sink is ready for it. Memory use stays bounded however many items the list returns and
+   * however slowly the sink consumes them.
+   *
+   * @param keyPathPrefix the key path prefix to list items for
+   * @param options the list options for filtering and pagination (can be null)
+   * @param sink the sink that receives each page
+   * @return a CompletableFuture containing the ListToken for continuation or sync, completed once
+   *     the sink has handled every page
+   *     <p>Example usage:
+   *     <pre>{@code
+   * ListToken token = client.beginList("/jedi-luke", null, items -> {
+   *     return writer.writeAll(items); // CompletableFuture<Void>
+   * }).get();
+   * }</pre>
+   */
+  public CompletableFuture<ListToken> beginList(
+      String keyPathPrefix, ListOptions options, ListSink sink) {
+    CompletableFuture<ListToken> onComplete = new CompletableFuture<>();
+    observerStub.beginList(
+        beginListRequest(keyPathPrefix, options),
+        sinkObserver(sink, onComplete, Operation.BEGIN_LIST, beginListSpan(keyPathPrefix)));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  /**
+   * Begins a list operation that hands each page to a sink. This is the same as {@link
+   * #beginList(String, ListOptions, ListSink)}.
+   *
+   * @param keyPathPrefix the key path prefix to list items for
+   * @param options the list options for filtering and pagination (can be null)
+   * @param sink the sink that receives each page
+   * @return a CompletableFuture containing the ListToken for continuation or sync
+   */
+  public CompletableFuture<ListToken> beginList(
+      KeyPath keyPathPrefix, ListOptions options, ListSink sink) {
+    return beginList(keyPathPrefix.toString(), options, sink);
+  }
+
+  /**
+   * Continues a list operation like {@link #continueList(ListToken)}, handing each page to a sink
+   * as described in {@link #beginList(String, ListOptions, ListSink)}.
+   *
+   * @param token the token from a previous list operation
+   * @param sink the sink that receives each page
+   * @return a CompletableFuture containing the ListToken for continuation or sync
+   */
+  public CompletableFuture<ListToken> continueList(ListToken token, ListSink sink) {
+    CompletableFuture<ListToken> onComplete = new CompletableFuture<>();
+    observerStub.continueList(
+        continueListRequest(token),
+        sinkObserver(
+            sink, onComplete, Operation.CONTINUE_LIST, tracer.startSpan(Operation.CONTINUE_LIST)));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  /**
+   * Begins a scan operation like {@link #beginScan(ScanOptions)}, handing each page to a sink as
+   * described in {@link #beginList(String, ListOptions, ListSink)}. Use this to stream a large
+   * store to a slower destination without buffering it in memory.
+   *
+   * <p>WARNING: This API can be expensive for stores with a large number of items.
+   *
+   * @param options the scan options for filtering and configuration (can be null)
+   * @param sink the sink that receives each page
+   * @return a CompletableFuture containing the ListToken for continuation
+   */
+  public CompletableFuture<ListToken> beginScan(ScanOptions options, ListSink sink) {
+    BeginScanRequest request = beginScanRequest(options);
+    CompletableFuture<ListToken> onComplete = new CompletableFuture<>();
+    observerStub.beginScan(
+        request, sinkObserver(sink, onComplete, Operation.BEGIN_SCAN, beginScanSpan(request)));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  /**
+   * Continues a scan operation like {@link #continueScan(ListToken)}, handing each page to a sink
+   * as described in {@link #beginList(String, ListOptions, ListSink)}.
+   *
+   * @param token the token from a previous scan operation
+   * @param sink the sink that receives each page
+   * @return a CompletableFuture containing the ListToken for continuation
+   */
+  public CompletableFuture<ListToken> continueScan(ListToken token, ListSink sink) {
+    CompletableFuture<ListToken> onComplete = new CompletableFuture<>();
+    observerStub.continueScan(
+        continueScanRequest(token),
+        sinkObserver(
+            sink, onComplete, Operation.CONTINUE_SCAN, tracer.startSpan(Operation.CONTINUE_SCAN)));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  private <ReqT> ListSinkObserver<ReqT, StatelyItem> sinkObserver(
+      ListSink sink, CompletableFuture<ListToken> onComplete, Operation operation, Span span) {
+    if (sink == null) {
+      span.end(Status.Code.INVALID_ARGUMENT, 0, 0);
+      throw new StatelyException(
+          "List sink must not be null", Status.Code.INVALID_ARGUMENT, "InvalidArgument");
+    }
+    return new ListSinkObserver<>(
+        typeMapper::unmarshal,
+        sink::onPage,
+        callbackExecutor,
+        onComplete,
+        metrics,
+        operation,
+        span);
+  }
+
+  /**
+   * Scans like {@link #beginScan(ScanOptions, ListSink)}, but hands the sink the raw items without
+   * unmarshalling them, for tools that copy items without needing their types.
+   */
+  CompletableFuture<ListToken> beginScanRaw(
+      ScanOptions options, ListSinkObserver.PageSink<Item> sink) {
+    BeginScanRequest request = beginScanRequest(options);
+    CompletableFuture<ListToken> onComplete = new CompletableFuture<>();
+    observerStub.beginScan(
+        request,
+        new ListSinkObserver<>(
+            item -> item,
+            sink,
+            callbackExecutor,
+            onComplete,
+            metrics,
+            Operation.BEGIN_SCAN,
+            beginScanSpan(request)));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  /** Continues a scan started with {@link #beginScanRaw}. */
+  CompletableFuture<ListToken> continueScanRaw(
+      ListToken token, ListSinkObserver.PageSink<Item> sink) {
+    CompletableFuture<ListToken> onComplete = new CompletableFuture<>();
+    observerStub.continueScan(
+        continueScanRequest(token),
+        new ListSinkObserver<>(
+            item -> item,
+            sink,
+            callbackExecutor,
+            onComplete,
+            metrics,
+            Operation.CONTINUE_SCAN,
+            tracer.startSpan(Operation.CONTINUE_SCAN)));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  /**
+   * Lists like {@link #beginList(String, ListOptions, ListSink)}, but hands the sink the raw items
+   * without unmarshalling them.
+   */
+  CompletableFuture<ListToken> beginListRaw(
+      String keyPathPrefix, ListSinkObserver.PageSink<Item> sink) {
+    CompletableFuture<ListToken> onComplete = new CompletableFuture<>();
+    observerStub.beginList(
+        beginListRequest(keyPathPrefix, null),
+        new ListSinkObserver<>(
+            item -> item,
+            sink,
+            callbackExecutor,
+            onComplete,
+            metrics,
+            Operation.BEGIN_LIST,
+            beginListSpan(keyPathPrefix)));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  /** Continues a list started with {@link #beginListRaw}. */
+  CompletableFuture<ListToken> continueListRaw(
+      ListToken token, ListSinkObserver.PageSink<Item> sink) {
+    CompletableFuture<ListToken> onComplete = new CompletableFuture<>();
+    observerStub.continueList(
+        continueListRequest(token),
+        new ListSinkObserver<>(
+            item -> item,
+            sink,
+            callbackExecutor,
+            onComplete,
+            metrics,
+            Operation.CONTINUE_LIST,
+            tracer.startSpan(Operation.CONTINUE_LIST)));
+    return FutureUtils.completeOn(onComplete, callbackExecutor);
+  }
+
+  /**
+   * Puts raw items as they were read from another store, keeping their metadata timestamps. IDs
+   * are part of the items' key paths, so items with generated IDs keep them.
+   */
+  CompletableFuture<Void> putRaw(List<Item> items) {
+    cloud.stately.db.PutRequest.Builder request =
+        cloud.stately.db.PutRequest.newBuilder()
+            .setStoreId(storeId)
             .setSchemaId(typeMapper.getSchemaId())
-            .setSchemaVersionId(typeMapper.getSchemaVersionId())
-            .setTokenData(token.getTokenData())
-            .build();
+            .setSchemaVersionId(typeMapper.getSchemaVersionId());
+    for (Item item : items) {
+      request.addPuts(PutItem.newBuilder().setItem(item).setOverwriteMetadataTimestamps(true));
+    }
+    Span span = tracer.startSpan(Operation.PUT);
+    long start = startCall(Operation.PUT);
+    CompletableFuture<Void> result =
+        FutureUtils.toCompletable(futureStub.put(request.build()), scheduler)
+            .handle(
+                (resp, error) -> {
+                  if (error != null) {
+                    throw failCall(Operation.PUT, span, start, error);
+                  }
+                  finishCall(
+                      Operation.PUT,
+                      span,
+                      start,
+                      Status.Code.OK,
+                      resp.getItemsCount(),
+                      resp.getSerializedSize());
+                  return null;
+                });
+    return FutureUtils.completeOn(result, callbackExecutor);
+  }
 
-    CompletableFuture<ListResult> onComplete = new CompletableFuture<>();
-    observerStub.continueScan(request, new ListObserver(typeMapper, onComplete));
-    return onComplete;
+  /** Returns the ID of the store this client talks to. */
+  long storeId() {
+    return storeId;
+  }
+
+  /** Returns the type mapper, which identifies the schema this client uses. */
+  BaseTypeMapper typeMapper() {
+    return typeMapper;
   }
 
   /**
@@ -714,6 +1507,9 @@ public class Client implements AutoCloseable {
    * that were put in the transaction, and the committed property will be true. If the transaction
    * was aborted, the committed property will be false.
    *
+   * <p>If the client was built with a transaction timeout or idle timeout, a transaction that
+   * exceeds it is cancelled and fails with DEADLINE_EXCEEDED, even if the handler never completes.
+   *
    * @param handler the transaction handler function
    * @return a CompletableFuture containing the transaction result
    * @throws StatelyException if the transaction fails
@@ -738,10 +1534,18 @@ public class Client implements AutoCloseable {
    * }</pre>
    */
   public CompletableFuture<TransactionResult> transaction(TransactionHandler handler) {
-    TransactionHelper txn = new TransactionHelper(storeId, typeMapper, observerStub);
+    Span span = tracer.startSpan(Operation.TRANSACTION);
+    TransactionHelper txn =
+        new TransactionHelper(storeId, typeMapper, observerStub, false, span, callbackExecutor);
+    txn.startWatchdog(scheduler, transactionTimeoutMillis, transactionIdleTimeoutMillis);
+    long start = startCall(Operation.TRANSACTION);
+    return recordTransaction(span, start, runTransaction(txn, handler));
+  }
+
+  private CompletableFuture<TransactionResult> runTransaction(
+      TransactionHelper txn, TransactionHandler handler) {
     try {
-      return handler
-          .run(txn)
+      return txn.guard(handler.run(txn))
           // if there were no errors in run() and it returned a success then
           // try and commit the transaction. otherwise abort and propagate the error.
           .handle(
@@ -762,10 +1566,104 @@ public class Client implements AutoCloseable {
     }
   }
 
+  private CompletableFuture<TransactionResult> recordTransaction(
+      Span span, long start, CompletableFuture<TransactionResult> result) {
+    return result.whenComplete(
+        (res, error) -> {
+          if (error != null) {
+            failCall(Operation.TRANSACTION, span, start, error);
+          } else {
+            finishCall(
+                Operation.TRANSACTION,
+                span,
+                start,
+                Status.Code.OK,
+                res.getPuts().size() + res.getDeletes().size(),
+                0);
+          }
+        });
+  }
+
+  /**
+   * readOnlyTransaction runs a transaction that only reads. Reads are guaranteed to reflect a
+   * consistent snapshot as of when the transaction started, exactly as in {@link
+   * #transaction(TransactionHandler)}, but any put or delete fails on the client without being
+   * sent to the server.
+   *
+   * <p>Because there is nothing to commit, the transaction ends without a commit round-trip once
+   * the handler completes: the stream is simply cancelled and the server discards it. This makes a
+   * read-only transaction cheaper than a regular one for consistent multi-item reads.
+   *
+   * @param <T> the type of the handler's result
+   * @param handler the transaction handler function
+   * @return a CompletableFuture containing the handler's result
+   *     <p>Example usage:
+   *     <pre>{@code
+   * List<StatelyItem> items = client.readOnlyTransaction(txn ->
+   *     txn.getBatch(List.of("/jedi-luke/equipment-lightsaber", "/jedi-luke/profile"))
+   * ).get();
+   * }</pre>
+   */
+  public <T> CompletableFuture<T> readOnlyTransaction(ReadOnlyTransactionHandler<T> handler) {
+    Span span = tracer.startSpan(Operation.TRANSACTION);
+    span.setAttribute(SpanAttributes.READ_ONLY, true);
+    TransactionHelper txn =
+        new TransactionHelper(storeId, typeMapper, observerStub, true, span, callbackExecutor);
+    txn.startWatchdog(scheduler, transactionTimeoutMillis, transactionIdleTimeoutMillis);
+    long start = startCall(Operation.TRANSACTION);
+    return runReadOnlyTransaction(txn, handler)
+        .whenComplete(
+            (res, error) -> {
+              if (error != null) {
+                failCall(Operation.TRANSACTION, span, start, error);
+              } else {
+                finishCall(Operation.TRANSACTION, span, start, Status.Code.OK, 0, 0);
+              }
+            });
+  }
+
+  private <T> CompletableFuture<T> runReadOnlyTransaction(
+      TransactionHelper txn, ReadOnlyTransactionHandler<T> handler) {
+    try {
+      return txn.guard(handler.run(txn))
+          .handle(
+              (result, throwable) -> {
+                txn.release();
+                if (throwable != null) {
+                  throw StatelyException.from(throwable);
+                }
+                return result;
+              });
+    } catch (Throwable t) {
+      txn.release();
+      return CompletableFuture.failedFuture(StatelyException.from(t));
+    }
+  }
+
+  /** Returns the connection this client was created from, or null if constructed directly. */
+  StatelyConnection connection() {
+    return connection;
+  }
+
+  /**
+   * Shuts down the client's channel and closes its token provider. A client made with {@link
+   * #builder} closes the connection it created, including any callback executor the connection
+   * owns. Clients created from a {@link StatelyConnection} share the connection's channel, so
+   * closing them does nothing; close the connection instead.
+   */
   @Override
   public void close() throws Exception {
+    if (!ownsConnection) {
+      return;
+    }
+    if (connection != null) {
+      connection.close();
+      return;
+    }
     channel.shutdownNow();
-    tokenProvider.close();
+    if (tokenProvider != null) {
+      tokenProvider.close();
+    }
   }
 
   /** Functional interface for transaction handlers. */
@@ -780,4 +1678,22 @@ public class Client implements AutoCloseable {
      */
     CompletableFuture<Void> run(Transaction transaction) throws Throwable;
   }
+
+  /**
+   * Functional interface for read-only transaction handlers, which return the result of their
+   * reads.
+   *
+   * @param <T> the type of the handler's result
+   */
+  @FunctionalInterface
+  public interface ReadOnlyTransactionHandler<T> {
+    /**
+     * Runs the transaction logic.
+     *
+     * @param transaction the transaction context
+     * @return a CompletableFuture containing the handler's result
+     * @throws Throwable if the transaction handler encounters an error
+     */
+    CompletableFuture<T> run(Transaction transaction) throws Throwable;
+  }
 }
@@ -0,0 +1,323 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.db.DatabaseServiceGrpc;
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.metrics.Operation;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-operation message compression for a {@link Client} or {@link StatelyConnection}. Each
+ * operation can use a different encoding, so that large, highly compressible responses such as
+ * scan pages are compressed while small point reads skip the CPU cost. The encoding is set on the
+ * request, and the server answers with the same encoding, so this mainly reduces the size of
+ * responses.
+ *
+ * <p>gzip and identity (no compression) are built in. Other codecs, for example zstd or snappy
+ * from a third-party library, can be registered with {@link Builder#codec(Codec)} and then used by
+ * name; the server must support them too.
+ *
+ * <p>When compression is enabled and a {@link ClientMetrics} is set, the client reports the wire
+ * and uncompressed size of every call through {@link ClientMetrics#bytesTransferred}, which shows
+ * how much each operation's compression saves.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * Client client = Client.builder(storeId, typeMapper, scheduler)
+ *     .compression(CompressionConfig.builder()
+ *         .compress(Operation.BEGIN_SCAN, "gzip")
+ *         .compress(Operation.CONTINUE_SCAN, "gzip")
+ *         .build())
+ *     .build();
+ * }</pre>
+ */
+public final class CompressionConfig {
+
+  /** The gzip encoding. */
+  public static final String GZIP = "gzip";
+
+  /** The identity encoding, which sends messages uncompressed. */
+  public static final String IDENTITY = "identity";
+
+  /** A config that compresses nothing. This is the default. */
+  public static final CompressionConfig NONE = builder().build();
+
+  /** The operations of each DatabaseService method, by full method name. */
+  private static final Map<String, Operation> OPERATIONS = new HashMap<>();
+
+  static {
+    OPERATIONS.put(DatabaseServiceGrpc.getGetMethod().getFullMethodName(), Operation.GET);
+    OPERATIONS.put(DatabaseServiceGrpc.getPutMethod().getFullMethodName(), Operation.PUT);
+    OPERATIONS.put(DatabaseServiceGrpc.getDeleteMethod().getFullMethodName(), Operation.DELETE);
+    OPERATIONS.put(
+        DatabaseServiceGrpc.getBeginListMethod().getFullMethodName(), Operation.BEGIN_LIST);
+    OPERATIONS.put(
+        DatabaseServiceGrpc.getContinueListMethod().getFullMethodName(), Operation.CONTINUE_LIST);
+    OPERATIONS.put(
+        DatabaseServiceGrpc.getSyncListMethod().getFullMethodName(), Operation.SYNC_LIST);
+    OPERATIONS.put(
+        DatabaseServiceGrpc.getBeginScanMethod().getFullMethodName(), Operation.BEGIN_SCAN);
+    OPERATIONS.put(
+        DatabaseServiceGrpc.getContinueScanMethod().getFullMethodName(), Operation.CONTINUE_SCAN);
+    OPERATIONS.put(
+        DatabaseServiceGrpc.getTransactionMethod().getFullMethodName(), Operation.TRANSACTION);
+  }
+
+  private final Map<Operation, String> encodings;
+  private final List<Codec> codecs;
+
+  private CompressionConfig(Builder builder) {
+    this.encodings = new EnumMap<>(builder.encodings);
+    this.codecs = List.copyOf(builder.codecs);
+  }
+
+  /**
+   * Returns a preset that gzips the operations that return many items at once: scans, lists and
+   * syncList. Point gets, puts, deletes and transactions are not compressed.
+   *
+   * @return the preset for large reads
+   */
+  public static CompressionConfig largeReads() {
+    return builder()
+        .compress(Operation.BEGIN_SCAN, GZIP)
+        .compress(Operation.CONTINUE_SCAN, GZIP)
+        .compress(Operation.BEGIN_LIST, GZIP)
+        .compress(Operation.CONTINUE_LIST, GZIP)
+        .compress(Operation.SYNC_LIST, GZIP)
+        .build();
+  }
+
+  /**
+   * Creates a new builder that compresses nothing.
+   *
+   * @return a new Builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns a builder initialized with this config's settings, for adjusting a preset.
+   *
+   * @return a new Builder
+   */
+  public Builder toBuilder() {
+    Builder builder = new Builder();
+    builder.encodings.putAll(encodings);
+    builder.codecs.addAll(codecs);
+    return builder;
+  }
+
+  /**
+   * Returns the encoding used for an operation.
+   *
+   * @param operation the operation
+   * @return the encoding name, {@link #IDENTITY} if the operation is not compressed
+   */
+  public String getEncoding(Operation operation) {
+    return encodings.getOrDefault(operation, IDENTITY);
+  }
+
+  /** Builder for CompressionConfig. */
+  public static class Builder {
+    private final Map<Operation, String> encodings = new EnumMap<>(Operation.class);
+    private final List<Codec> codecs = new ArrayList<>();
+
+    private Builder() {}
+
+    /**
+     * Sets the encoding for an operation, either {@link #GZIP}, {@link #IDENTITY} or the name of a
+     * codec registered with {@link #codec(Codec)}.
+     *
+     * @param operation the operation to configure
+     * @param encoding the encoding name
+     * @return this builder instance
+     */
+    public Builder compress(Operation operation, String encoding) {
+      encodings.put(operation, encoding);
+      return this;
+    }
+
+    /**
+     * Registers a codec so that it can be used with {@link #compress}. The client also advertises
+     * it to the server as an accepted response encoding.
+     *
+     * @param codec the codec to register
+     * @return this builder instance
+     */
+    public Builder codec(Codec codec) {
+      codecs.add(codec);
+      return this;
+    }
+
+    /**
+     * Builds the CompressionConfig.
+     *
+     * @return a new CompressionConfig
+     * @throws StatelyException if an encoding is not built in or registered, or an operation is
+     *     not a call to the database service
+     */
+    public CompressionConfig build() {
+      for (Map.Entry<Operation, String> entry : encodings.entrySet()) {
+        String encoding = entry.getValue();
+        if (encoding == null) {
+          throw new StatelyException(
+              "Encoding must not be null", Status.Code.INVALID_ARGUMENT, "InvalidArgument");
+        }
+        if (entry.getKey() == Operation.GET_AUTH_TOKEN) {
+          throw new StatelyException(
+              "Calls to the auth service can't be compressed",
+              Status.Code.INVALID_ARGUMENT,
+              "InvalidArgument");
+        }
+        boolean known =
+            encoding.equals(GZIP)
+                || encoding.equals(IDENTITY)
+                || codecs.stream().anyMatch(c -> c.getMessageEncoding().equals(encoding));
+        if (!known) {
+          throw new StatelyException(
+              "Unknown encoding: " + encoding, Status.Code.INVALID_ARGUMENT, "InvalidArgument");
+        }
+      }
+      return new CompressionConfig(this);
+    }
+  }
+
+  /** Registers the custom codecs, if any, on the channel. */
+  void configure(ManagedChannelBuilder<?> channelBuilder) {
+    if (codecs.isEmpty()) {
+      return;
+    }
+    CompressorRegistry compressors = CompressorRegistry.newEmptyInstance();
+    compressors.register(new Codec.Gzip());
+    compressors.register(Codec.Identity.NONE);
+    DecompressorRegistry decompressors = DecompressorRegistry.getDefaultInstance();
+    for (Codec codec : codecs) {
+      compressors.register(codec);
+      decompressors = decompressors.with(codec, true);
+    }
+    channelBuilder.compressorRegistry(compressors).decompressorRegistry(decompressors);
+  }
+
+  /**
+   * Returns an interceptor that applies these settings to database calls and reports their sizes
+   * to the metrics, or null if there is nothing to do.
+   */
+  ClientInterceptor interceptor(ClientMetrics metrics) {
+    boolean compresses = encodings.values().stream().anyMatch(e -> !e.equals(IDENTITY));
+    if (!compresses) {
+      return null;
+    }
+    return new CompressionInterceptor(this, metrics);
+  }
+
+  /** Sets the call's compressor and, when metrics are enabled, installs a size tracer. */
+  private static final class CompressionInterceptor implements ClientInterceptor {
+    private final CompressionConfig config;
+    private final ClientMetrics metrics;
+
+    CompressionInterceptor(CompressionConfig config, ClientMetrics metrics) {
+      this.config = config;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      Operation operation = OPERATIONS.get(method.getFullMethodName());
+      if (operation == null) {
+        return next.newCall(method, callOptions);
+      }
+      String encoding = config.getEncoding(operation);
+      if (!encoding.equals(IDENTITY)) {
+        callOptions = callOptions.withCompression(encoding);
+      }
+      if (metrics != ClientMetrics.NOOP) {
+        callOptions = callOptions.withStreamTracerFactory(new SizeTracerFactory(operation));
+      }
+      return next.newCall(method, callOptions);
+    }
+
+    /** Creates a tracer for each attempt of a call. */
+    private final class SizeTracerFactory extends ClientStreamTracer.Factory {
+      private final Operation operation;
+
+      SizeTracerFactory(Operation operation) {
+        this.operation = operation;
+      }
+
+      @Override
+      public ClientStreamTracer newClientStreamTracer(
+          ClientStreamTracer.StreamInfo info, Metadata headers) {
+        return new SizeTracer(operation);
+      }
+    }
+
+    /** Adds up the wire and uncompressed sizes of a stream and reports them when it closes. */
+    private final class SizeTracer extends ClientStreamTracer {
+      private final Operation operation;
+      // a stream's tracer callbacks are serialized per direction, so each field has one writer
+      private volatile long wireBytesSent;
+      private volatile long uncompressedBytesSent;
+      private volatile long wireBytesReceived;
+      private volatile long uncompressedBytesReceived;
+
+      SizeTracer(Operation operation) {
+        this.operation = operation;
+      }
+
+      @Override
+      public void outboundWireSize(long bytes) {
+        wireBytesSent += bytes;
+      }
+
+      @Override
+      public void outboundUncompressedSize(long bytes) {
+        uncompressedBytesSent += bytes;
+      }
+
+      @Override
+      public void inboundWireSize(long bytes) {
+        wireBytesReceived += bytes;
+      }
+
+      @Override
+      public void inboundUncompressedSize(long bytes) {
+        uncompressedBytesReceived += bytes;
+      }
+
+      @Override
+      public void streamClosed(Status status) {
+        metrics.bytesTransferred(
+            operation,
+            config.getEncoding(operation),
+            wireBytesSent,
+            uncompressedBytesSent,
+            wireBytesReceived,
+            uncompressedBytesReceived);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "CompressionConfig{encodings=" + encodings + ", codecs=" + codecs.size() + "}";
+  }
+}
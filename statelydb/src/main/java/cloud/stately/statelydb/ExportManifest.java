@@ -0,0 +1,197 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.statelydb.common.StatelyException;
+import io.grpc.Status;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Describes an export written by {@link StoreExporter}: the store and schema the items came from,
+ * and the chunk files that hold them, in the order they should be imported. The manifest is stored
+ * as {@value #FILE_NAME} in the export directory and is written last, so a directory without one
+ * holds an incomplete export.
+ */
+public final class ExportManifest {
+
+  /** The name of the manifest file in an export directory. */
+  public static final String FILE_NAME = "manifest.properties";
+
+  private static final int FORMAT_VERSION = 1;
+
+  private final long storeId;
+  private final long schemaId;
+  private final int schemaVersionId;
+  private final boolean compressed;
+  private final List<Chunk> chunks;
+
+  ExportManifest(
+      long storeId, long schemaId, int schemaVersionId, boolean compressed, List<Chunk> chunks) {
+    this.storeId = storeId;
+    this.schemaId = schemaId;
+    this.schemaVersionId = schemaVersionId;
+    this.compressed = compressed;
+    this.chunks = List.copyOf(chunks);
+  }
+
+  /** A file of items within an export. */
+  public static final class Chunk {
+    private final String file;
+    private final long items;
+    private final long bytes;
+
+    Chunk(String file, long items, long bytes) {
+      this.file = file;
+      this.items = items;
+      this.bytes = bytes;
+    }
+
+    /**
+     * Returns the name of the chunk file, relative to the export directory.
+     *
+     * @return the file name
+     */
+    public String getFile() {
+      return file;
+    }
+
+    /**
+     * Returns the number of items in the chunk.
+     *
+     * @return the item count
+     */
+    public long getItems() {
+      return items;
+    }
+
+    /**
+     * Returns the size of the chunk's records before compression.
+     *
+     * @return the size in bytes
+     */
+    public long getBytes() {
+      return bytes;
+    }
+  }
+
+  /**
+   * Returns the ID of the store the items were exported from.
+   *
+   * @return the store ID
+   */
+  public long getStoreId() {
+    return storeId;
+  }
+
+  /**
+   * Returns the ID of the schema the exporting client used.
+   *
+   * @return the schema ID
+   */
+  public long getSchemaId() {
+    return schemaId;
+  }
+
+  /**
+   * Returns the schema version the exporting client used.
+   *
+   * @return the schema version ID
+   */
+  public int getSchemaVersionId() {
+    return schemaVersionId;
+  }
+
+  /**
+   * Returns whether the chunk files are gzipped.
+   *
+   * @return true if the chunks are compressed
+   */
+  public boolean isCompressed() {
+    return compressed;
+  }
+
+  /**
+   * Returns the chunk files, in import order.
+   *
+   * @return the chunks
+   */
+  public List<Chunk> getChunks() {
+    return chunks;
+  }
+
+  /**
+   * Returns the total number of items in the export.
+   *
+   * @return the item count
+   */
+  public long getItemCount() {
+    return chunks.stream().mapToLong(Chunk::getItems).sum();
+  }
+
+  /**
+   * Reads the manifest of an export directory.
+   *
+   * @param directory the export directory
+   * @return the manifest
+   * @throws IOException if the manifest can't be read
+   * @throws StatelyException if the manifest is malformed or from a newer format version
+   */
+  public static ExportManifest read(Path directory) throws IOException {
+    Properties properties = PropertiesFiles.load(directory.resolve(FILE_NAME));
+    try {
+      int version = Integer.parseInt(properties.getProperty("formatVersion"));
+      if (version > FORMAT_VERSION) {
+        throw new StatelyException(
+            "Unsupported export format version " + version,
+            Status.Code.FAILED_PRECONDITION,
+            "FailedPrecondition");
+      }
+      int chunkCount = Integer.parseInt(properties.getProperty("chunks"));
+      List<Chunk> chunks = new ArrayList<>(chunkCount);
+      for (int i = 0; i < chunkCount; i++) {
+        String file = properties.getProperty("chunk." + i + ".file");
+        if (file == null) {
+          throw new NumberFormatException("missing chunk." + i + ".file");
+        }
+        chunks.add(
+            new Chunk(
+                file,
+                Long.parseLong(properties.getProperty("chunk." + i + ".items")),
+                Long.parseLong(properties.getProperty("chunk." + i + ".bytes"))));
+      }
+      return new ExportManifest(
+          Long.parseUnsignedLong(properties.getProperty("storeId")),
+          Long.parseUnsignedLong(properties.getProperty("schemaId")),
+          Integer.parseInt(properties.getProperty("schemaVersionId")),
+          Boolean.parseBoolean(properties.getProperty("compressed")),
+          chunks);
+    } catch (NumberFormatException e) {
+      throw new StatelyException(
+          "Malformed export manifest in " + directory + ": " + e.getMessage(),
+          Status.Code.INVALID_ARGUMENT,
+          "InvalidArgument",
+          e);
+    }
+  }
+
+  /** Writes the manifest into the export directory, replacing it atomically where supported. */
+  void write(Path directory) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("formatVersion", Integer.toString(FORMAT_VERSION));
+    properties.setProperty("storeId", Long.toUnsignedString(storeId));
+    properties.setProperty("schemaId", Long.toUnsignedString(schemaId));
+    properties.setProperty("schemaVersionId", Integer.toString(schemaVersionId));
+    properties.setProperty("compressed", Boolean.toString(compressed));
+    properties.setProperty("chunks", Integer.toString(chunks.size()));
+    for (int i = 0; i < chunks.size(); i++) {
+      Chunk chunk = chunks.get(i);
+      properties.setProperty("chunk." + i + ".file", chunk.getFile());
+      properties.setProperty("chunk." + i + ".items", Long.toString(chunk.getItems()));
+      properties.setProperty("chunk." + i + ".bytes", Long.toString(chunk.getBytes()));
+    }
+
+    PropertiesFiles.store(properties, directory.resolve(FILE_NAME), "StatelyDB store export");
+  }
+}
@@ -0,0 +1,52 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.statelydb.schema.StatelyItem;
+
+/**
+ * The outcome of inserting a single item with {@link Client#insertIfAbsent(java.util.List)}. Either
+ * the item was inserted, in which case this holds the stored item with all metadata populated, or
+ * an item already existed at its key path and nothing was written.
+ */
+public class InsertResult {
+  private final StatelyItem item;
+  private final boolean inserted;
+
+  /**
+   * Creates a new InsertResult.
+   *
+   * @param item the stored item if it was inserted, otherwise the item that was attempted
+   * @param inserted whether the item was inserted
+   */
+  public InsertResult(StatelyItem item, boolean inserted) {
+    this.item = item;
+    this.inserted = inserted;
+  }
+
+  /**
+   * Returns the stored item if it was inserted, or the item that was attempted if an item already
+   * existed at its key path.
+   *
+   * @return the item
+   */
+  public StatelyItem getItem() {
+    return item;
+  }
+
+  /**
+   * Returns whether the item was inserted.
+   *
+   * @return true if the item was inserted
+   */
+  public boolean isInserted() {
+    return inserted;
+  }
+
+  /**
+   * Returns whether an item already existed at the key path, so nothing was written.
+   *
+   * @return true if an item already existed
+   */
+  public boolean alreadyExists() {
+    return !inserted;
+  }
+}
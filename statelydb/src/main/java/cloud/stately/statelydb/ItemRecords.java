@@ -0,0 +1,143 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.db.Item;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes files of raw {@link Item} records, each written as its varint length followed
+ * by the serialized item (the same framing as {@code writeDelimitedTo}). Files are optionally
+ * gzipped. Uncompressed files up to 2 GiB are memory mapped when read, and the items' byte fields
+ * alias the mapping instead of being copied.
+ */
+final class ItemRecords {
+  private ItemRecords() {} // prevent instantiation
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Writes records to a new file. */
+  static final class Writer implements Closeable {
+    private final FileChannel channel;
+    private final GZIPOutputStream gzip;
+    private final CodedOutputStream out;
+    private long items = 0;
+    private long bytes = 0;
+
+    /**
+     * Creates the file, failing if it already exists.
+     *
+     * @param file the file to create
+     * @param compress whether to gzip the records
+     */
+    Writer(Path file, boolean compress) throws IOException {
+      this.channel =
+          FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      OutputStream stream = Channels.newOutputStream(channel);
+      this.gzip = compress ? new GZIPOutputStream(stream, BUFFER_SIZE) : null;
+      this.out = CodedOutputStream.newInstance(compress ? gzip : stream, BUFFER_SIZE);
+    }
+
+    /** Appends an item. */
+    void write(Item item) throws IOException {
+      int size = item.getSerializedSize();
+      out.writeUInt32NoTag(size);
+      item.writeTo(out);
+      items++;
+      bytes += CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    }
+
+    /** Returns the number of items written so far. */
+    long items() {
+      return items;
+    }
+
+    /** Returns the number of bytes written so far, before compression. */
+    long bytes() {
+      return bytes;
+    }
+
+    /** Flushes the records, syncs the file to disk and closes it. */
+    @Override
+    public void close() throws IOException {
+      try (FileChannel c = channel) {
+        out.flush();
+        if (gzip != null) {
+          gzip.finish();
+        }
+        c.force(true);
+      }
+    }
+  }
+
+  /** Reads the records of a file in order. */
+  static final class Reader implements Closeable {
+    private final FileChannel channel;
+    private final InputStream stream;
+    private final CodedInputStream in;
+
+    /**
+     * Opens a file written by {@link Writer}.
+     *
+     * @param file the file to read
+     * @param compressed whether the file is gzipped
+     */
+    Reader(Path file, boolean compressed) throws IOException {
+      this.channel = FileChannel.open(file, StandardOpenOption.READ);
+      try {
+        if (compressed) {
+          this.stream = new GZIPInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+          this.in = CodedInputStream.newInstance(stream, BUFFER_SIZE);
+        } else if (channel.size() > Integer.MAX_VALUE) {
+          // a single mapping can't exceed 2 GiB, so larger files are streamed instead
+          this.stream = Channels.newInputStream(channel);
+          this.in = CodedInputStream.newInstance(stream, BUFFER_SIZE);
+        } else {
+          this.stream = null;
+          this.in =
+              CodedInputStream.newInstance(
+                  channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+          in.enableAliasing(true);
+        }
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Returns the next item.
+     *
+     * @return the next item, or null at the end of the file
+     */
+    Item next() throws IOException {
+      if (in.isAtEnd()) {
+        return null;
+      }
+      in.resetSizeCounter();
+      int size = in.readRawVarint32();
+      int oldLimit = in.pushLimit(size);
+      Item item = Item.parseFrom(in);
+      in.popLimit(oldLimit);
+      return item;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try (FileChannel c = channel) {
+        if (stream != null) {
+          stream.close();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.statelydb.schema.KeyPath;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Conversions between lists of {@link KeyPath} and the key path strings sent to StatelyDB. */
+final class KeyPaths {
+
+  private KeyPaths() {}
+
+  static List<String> toStrings(List<KeyPath> keyPaths) {
+    List<String> strings = new ArrayList<>(keyPaths.size());
+    for (KeyPath keyPath : keyPaths) {
+      strings.add(keyPath.toString());
+    }
+    return strings;
+  }
+
+  static String[] toStrings(KeyPath[] keyPaths) {
+    String[] strings = new String[keyPaths.length];
+    for (int i = 0; i < keyPaths.length; i++) {
+      strings[i] = keyPaths[i].toString();
+    }
+    return strings;
+  }
+
+  static List<KeyPath> fromStrings(List<String> keyPaths) {
+    List<KeyPath> parsed = new ArrayList<>(keyPaths.size());
+    for (String keyPath : keyPaths) {
+      parsed.add(KeyPath.of(keyPath));
+    }
+    return parsed;
+  }
+}
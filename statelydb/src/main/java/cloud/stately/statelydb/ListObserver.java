@@ -1,15 +1,24 @@
 package cloud.stately.statelydb;
 
+import cloud.stately.db.Item;
 import cloud.stately.db.ListResponse;
 import cloud.stately.db.ListToken;
 import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.metrics.Operation;
 import cloud.stately.statelydb.schema.BaseTypeMapper;
 import cloud.stately.statelydb.schema.StatelyItem;
+import cloud.stately.statelydb.tracing.Span;
+import cloud.stately.statelydb.tracing.SpanAttributes;
+import cloud.stately.statelydb.tracing.TraceEvent;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
@@ -18,9 +27,22 @@ import java.util.stream.Collectors;
  */
 public class ListObserver implements StreamObserver<ListResponse> {
   private final ConcurrentLinkedDeque<StatelyItem> items = new ConcurrentLinkedDeque<>();
+  // decoded chunks in stream order when decoding in parallel; gRPC calls onNext and onCompleted
+  // serially, so a plain list is enough
+  private final List<CompletableFuture<List<StatelyItem>>> chunks = new ArrayList<>();
+  private final Executor decodeExecutor;
+  private final int chunkSize;
   private ListToken token = null;
   private final BaseTypeMapper typeMapper;
   private final CompletableFuture<ListResult> onComplete;
+  private final ClientMetrics metrics;
+  private final Operation operation;
+  private final Span span;
+  private final long startNanos;
+  private boolean receivedFrame = false;
+  private int frameCount = 0;
+  private int itemCount = 0;
+  private long byteCount = 0;
 
   /**
    * Creates a new ListObserver.
@@ -29,21 +51,106 @@ public class ListObserver implements StreamObserver<ListResponse> {
    * @param onComplete the CompletableFuture to complete when the operation finishes
    */
   public ListObserver(BaseTypeMapper typeMapper, CompletableFuture<ListResult> onComplete) {
+    this(typeMapper, onComplete, ClientMetrics.NOOP, Operation.BEGIN_LIST);
+  }
+
+  /**
+   * Creates a new ListObserver that records metrics for the stream. The call is considered started
+   * when the observer is created.
+   *
+   * @param typeMapper the type mapper for converting proto items to Java objects
+   * @param onComplete the CompletableFuture to complete when the operation finishes
+   * @param metrics the metrics recorder
+   * @param operation the list or scan operation this observer receives results for
+   */
+  public ListObserver(
+      BaseTypeMapper typeMapper,
+      CompletableFuture<ListResult> onComplete,
+      ClientMetrics metrics,
+      Operation operation) {
+    this(typeMapper, onComplete, metrics, operation, Span.NOOP);
+  }
+
+  /**
+   * Creates a new ListObserver that records metrics and a trace span for the stream. Each partial
+   * result is recorded as an event on the span, and the span is ended when the stream finishes.
+   *
+   * @param typeMapper the type mapper for converting proto items to Java objects
+   * @param onComplete the CompletableFuture to complete when the operation finishes
+   * @param metrics the metrics recorder
+   * @param operation the list or scan operation this observer receives results for
+   * @param span the span for the call
+   */
+  public ListObserver(
+      BaseTypeMapper typeMapper,
+      CompletableFuture<ListResult> onComplete,
+      ClientMetrics metrics,
+      Operation operation,
+      Span span) {
+    this(typeMapper, onComplete, metrics, operation, span, null, 0);
+  }
+
+  /**
+   * Creates a new ListObserver that unmarshals the items of each partial result in parallel. Each
+   * partial result is split into chunks of {@code chunkSize} items that are unmarshalled on {@code
+   * decodeExecutor}, so a single stream can use more than one core. The items in the final
+   * ListResult keep the order the server returned them in.
+   *
+   * @param typeMapper the type mapper for converting proto items to Java objects
+   * @param onComplete the CompletableFuture to complete when the operation finishes
+   * @param metrics the metrics recorder
+   * @param operation the list or scan operation this observer receives results for
+   * @param span the span for the call
+   * @param decodeExecutor the executor to unmarshal chunks on, or null to unmarshal each partial
+   *     result on the gRPC callback thread
+   * @param chunkSize the number of items to unmarshal per task; partial results no larger than
+   *     this are unmarshalled on the gRPC callback thread
+   */
+  public ListObserver(
+      BaseTypeMapper typeMapper,
+      CompletableFuture<ListResult> onComplete,
+      ClientMetrics metrics,
+      Operation operation,
+      Span span,
+      Executor decodeExecutor,
+      int chunkSize) {
+    this.decodeExecutor = decodeExecutor;
+    this.chunkSize = chunkSize;
     this.typeMapper = typeMapper;
     this.onComplete = onComplete;
+    this.metrics = metrics;
+    this.operation = operation;
+    this.span = span;
+    metrics.callStarted(operation);
+    this.startNanos = System.nanoTime();
   }
 
   @Override
   public void onNext(ListResponse response) {
+    if (!receivedFrame) {
+      receivedFrame = true;
+      metrics.firstFrame(operation, System.nanoTime() - startNanos);
+    }
+    int frameBytes = response.getSerializedSize();
+    byteCount += frameBytes;
     switch (response.getResponseCase()) {
       case RESULT:
-        items.addAll(
-            response.getResult().getItemsList().stream()
-                .map(item -> typeMapper.unmarshal(item))
-                .collect(Collectors.toList()));
+        int frameItems = response.getResult().getItemsCount();
+        itemCount += frameItems;
+        metrics.partialResult(operation, frameItems, frameBytes);
+        span.event(TraceEvent.PARTIAL_RESULT, frameCount++, frameItems, frameBytes);
+        if (decodeExecutor != null) {
+          decodeInChunks(response.getResult().getItemsList());
+        } else {
+          items.addAll(
+              response.getResult().getItemsList().stream()
+                  .map(item -> typeMapper.unmarshal(item))
+                  .collect(Collectors.toList()));
+        }
         break;
       case FINISHED:
         token = response.getFinished().getToken();
+        span.setAttribute(SpanAttributes.CAN_CONTINUE, token.getCanContinue());
         break;
 
       case RESPONSE_NOT_SET:
@@ -53,13 +160,63 @@ public class ListObserver implements StreamObserver<ListResponse> {
     }
   }
 
+  private void decodeInChunks(List<Item> protoItems) {
+    if (protoItems.size() <= chunkSize) {
+      chunks.add(CompletableFuture.completedFuture(unmarshal(protoItems)));
+      return;
+    }
+    for (int from = 0; from < protoItems.size(); from += chunkSize) {
+      List<Item> chunk = protoItems.subList(from, Math.min(from + chunkSize, protoItems.size()));
+      chunks.add(CompletableFuture.supplyAsync(() -> unmarshal(chunk), decodeExecutor));
+    }
+  }
+
+  private List<StatelyItem> unmarshal(List<Item> protoItems) {
+    List<StatelyItem> decoded = new ArrayList<>(protoItems.size());
+    for (Item item : protoItems) {
+      decoded.add(typeMapper.unmarshal(item));
+    }
+    return decoded;
+  }
+
   @Override
   public void onError(Throwable t) {
-    onComplete.completeExceptionally(StatelyException.from(t));
+    StatelyException e = StatelyException.from(t);
+    metrics.callFinished(
+        operation, e.getGrpcCode(), System.nanoTime() - startNanos, itemCount, byteCount);
+    span.end(e.getGrpcCode(), itemCount, byteCount);
+    onComplete.completeExceptionally(e);
   }
 
   @Override
   public void onCompleted() {
+    if (!chunks.isEmpty()) {
+      completeWhenDecoded();
+      return;
+    }
+    metrics.callFinished(
+        operation, Status.Code.OK, System.nanoTime() - startNanos, itemCount, byteCount);
+    span.end(Status.Code.OK, itemCount, byteCount);
     onComplete.complete(new ListResult(new ArrayList<>(items), token));
   }
+
+  private void completeWhenDecoded() {
+    ListToken finalToken = token;
+    CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]))
+        .whenComplete(
+            (v, error) -> {
+              if (error != null) {
+                onError(error instanceof CompletionException ? error.getCause() : error);
+                return;
+              }
+              List<StatelyItem> decoded = new ArrayList<>(itemCount);
+              for (CompletableFuture<List<StatelyItem>> chunk : chunks) {
+                decoded.addAll(chunk.join());
+              }
+              metrics.callFinished(
+                  operation, Status.Code.OK, System.nanoTime() - startNanos, itemCount, byteCount);
+              span.end(Status.Code.OK, itemCount, byteCount);
+              onComplete.complete(new ListResult(decoded, finalToken));
+            });
+  }
 }
@@ -0,0 +1,36 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.statelydb.schema.StatelyItem;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Receives the pages of a list or scan one at a time, with the consumer deciding when the next
+ * page is fetched. The client only asks the server for the next page once the future returned for
+ * the previous one completes, so a consumer that falls behind (for example one writing to a slow
+ * downstream system) pauses the stream instead of letting pages pile up in memory. At most one page
+ * is held by the client at a time; beyond that the server is held back by HTTP/2 flow control.
+ *
+ * <p>Pages are delivered on the client's callback executor, never concurrently.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * ListToken token = client.beginScan(ScanOptions.builder().build(), items ->
+ *     producer.sendAll(items) // returns a CompletableFuture<Void>
+ * ).get();
+ * }</pre>
+ */
+@FunctionalInterface
+public interface ListSink {
+
+  /**
+   * Handles a page of items. The next page is requested when the returned future completes. If the
+   * future fails, or this method throws, the stream is cancelled and the list fails with that
+   * error.
+   *
+   * @param items the items in the page, in the order the server returned them
+   * @return a future that completes when the sink is ready for the next page
+   */
+  CompletableFuture<Void> onPage(List<StatelyItem> items);
+}
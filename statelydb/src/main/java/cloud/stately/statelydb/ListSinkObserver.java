@@ -0,0 +1,185 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.db.Item;
+import cloud.stately.db.ListResponse;
+import cloud.stately.db.ListToken;
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.metrics.Operation;
+import cloud.stately.statelydb.schema.StatelyItem;
+import cloud.stately.statelydb.tracing.Span;
+import cloud.stately.statelydb.tracing.SpanAttributes;
+import cloud.stately.statelydb.tracing.TraceEvent;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Observer for list and scan streams that hands each page to a sink and only requests the next
+ * response frame once the sink is ready for it. Automatic flow control is disabled, so the number
+ * of frames buffered by the client is bounded no matter how fast the server sends them.
+ *
+ * @param <ReqT> the request type of the list or scan call
+ * @param <T> the type each item is decoded to, {@link StatelyItem} or the raw {@link Item}
+ */
+final class ListSinkObserver<ReqT, T> implements ClientResponseObserver<ReqT, ListResponse> {
+
+  /** Receives the decoded pages of a list or scan. {@link ListSink} is the public form. */
+  @FunctionalInterface
+  interface PageSink<T> {
+    CompletableFuture<Void> onPage(List<T> items);
+  }
+
+  private final Function<Item, T> decoder;
+  private final PageSink<T> sink;
+  private final Executor sinkExecutor;
+  private final CompletableFuture<ListToken> onComplete;
+  private final ClientMetrics metrics;
+  private final Operation operation;
+  private final Span span;
+  private final long startNanos;
+  private final AtomicBoolean finished = new AtomicBoolean(false);
+  private ClientCallStreamObserver<ReqT> requestStream;
+  private ListToken token = null;
+  private boolean receivedFrame = false;
+  private int frameCount = 0;
+  // read when the call is failed from the sink's thread, after the frame was counted
+  private volatile int itemCount = 0;
+  private volatile long byteCount = 0;
+
+  /**
+   * Creates a new ListSinkObserver. The call is considered started when the observer is created.
+   *
+   * @param decoder converts each item of a page, on the gRPC callback thread
+   * @param sink the sink to hand each page to
+   * @param sinkExecutor the executor to call the sink on
+   * @param onComplete completed with the token once the stream finishes
+   * @param metrics the metrics recorder
+   * @param operation the list or scan operation this observer receives results for
+   * @param span the span for the call
+   */
+  ListSinkObserver(
+      Function<Item, T> decoder,
+      PageSink<T> sink,
+      Executor sinkExecutor,
+      CompletableFuture<ListToken> onComplete,
+      ClientMetrics metrics,
+      Operation operation,
+      Span span) {
+    this.decoder = decoder;
+    this.sink = sink;
+    this.sinkExecutor = sinkExecutor;
+    this.onComplete = onComplete;
+    this.metrics = metrics;
+    this.operation = operation;
+    this.span = span;
+    metrics.callStarted(operation);
+    this.startNanos = System.nanoTime();
+  }
+
+  @Override
+  public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+    this.requestStream = requestStream;
+    requestStream.disableAutoRequestWithInitial(1);
+  }
+
+  @Override
+  public void onNext(ListResponse response) {
+    if (!receivedFrame) {
+      receivedFrame = true;
+      metrics.firstFrame(operation, System.nanoTime() - startNanos);
+    }
+    int frameBytes = response.getSerializedSize();
+    byteCount += frameBytes;
+    switch (response.getResponseCase()) {
+      case RESULT:
+        int frameItems = response.getResult().getItemsCount();
+        itemCount += frameItems;
+        metrics.partialResult(operation, frameItems, frameBytes);
+        span.event(TraceEvent.PARTIAL_RESULT, frameCount++, frameItems, frameBytes);
+        List<T> items = new ArrayList<>(frameItems);
+        for (Item item : response.getResult().getItemsList()) {
+          items.add(decoder.apply(item));
+        }
+        try {
+          sinkExecutor.execute(() -> deliver(items));
+        } catch (RuntimeException e) {
+          fail(e);
+        }
+        break;
+      case FINISHED:
+        token = response.getFinished().getToken();
+        span.setAttribute(SpanAttributes.CAN_CONTINUE, token.getCanContinue());
+        requestStream.request(1);
+        break;
+
+      case RESPONSE_NOT_SET:
+      default:
+        throw new StatelyException(
+            "Expected RESULT or FINISHED response", Status.Code.INTERNAL, "Internal");
+    }
+  }
+
+  private void deliver(List<T> items) {
+    if (finished.get()) {
+      return;
+    }
+    CompletableFuture<Void> ready;
+    try {
+      ready = sink.onPage(items);
+    } catch (Throwable t) {
+      fail(t);
+      return;
+    }
+    if (ready == null) {
+      requestStream.request(1);
+      return;
+    }
+    ready.whenComplete(
+        (v, error) -> {
+          if (error != null) {
+            fail(error);
+          } else {
+            requestStream.request(1);
+          }
+        });
+  }
+
+  /** Cancels the stream because the sink failed, and fails the call with the sink's error. */
+  private void fail(Throwable t) {
+    StatelyException e = StatelyException.from(t);
+    if (finished.compareAndSet(false, true)) {
+      requestStream.cancel("List sink failed", e);
+      finish(e.getGrpcCode());
+      onComplete.completeExceptionally(e);
+    }
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    StatelyException e = StatelyException.from(t);
+    if (finished.compareAndSet(false, true)) {
+      finish(e.getGrpcCode());
+      onComplete.completeExceptionally(e);
+    }
+  }
+
+  @Override
+  public void onCompleted() {
+    if (finished.compareAndSet(false, true)) {
+      finish(Status.Code.OK);
+      onComplete.complete(token);
+    }
+  }
+
+  private void finish(Status.Code code) {
+    metrics.callFinished(operation, code, System.nanoTime() - startNanos, itemCount, byteCount);
+    span.end(code, itemCount, byteCount);
+  }
+}
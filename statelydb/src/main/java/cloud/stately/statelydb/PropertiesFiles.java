@@ -0,0 +1,52 @@
+package cloud.stately.statelydb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/** Reads and writes the small properties files that record exports and replication progress. */
+final class PropertiesFiles {
+  private PropertiesFiles() {} // prevent instantiation
+
+  /** Reads a properties file. */
+  static Properties load(Path file) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+    }
+    return properties;
+  }
+
+  /**
+   * Writes a properties file durably, replacing it atomically where the file system supports it,
+   * so that a crash leaves either the old or the new file and never a partial one.
+   */
+  static void store(Properties properties, Path file, String comment) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Path temp = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        OutputStream out = Channels.newOutputStream(channel);
+        properties.store(out, comment);
+        out.flush();
+        channel.force(true);
+      }
+      try {
+        Files.move(
+            temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+}
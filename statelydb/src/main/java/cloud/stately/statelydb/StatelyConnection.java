@@ -0,0 +1,550 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.db.DatabaseServiceGrpc;
+import cloud.stately.statelydb.auth.AuthTokenCallCredentials;
+import cloud.stately.statelydb.auth.AuthTokenProvider;
+import cloud.stately.statelydb.auth.TokenProvider;
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.interceptors.Interceptors;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.schema.BaseTypeMapper;
+import cloud.stately.statelydb.tracing.Tracer;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.CallCredentials;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A connection to StatelyDB that owns the gRPC channel, authentication, metrics and tracing, and
+ * hands out lightweight {@link Client} views for individual stores. Use it when an application
+ * talks to many stores: every client derived from one connection shares a single channel and token
+ * provider, and creating a client only allocates the client itself.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * StatelyConnection connection = StatelyConnection.builder(scheduler)
+ *     .region("us-west-2")
+ *     .metrics(metrics)
+ *     .build();
+ *
+ * Client orders = connection.client(ordersStoreId, new TypeMapper());
+ * Client users = connection.client(usersStoreId, new TypeMapper());
+ * ...
+ * connection.close();
+ * }</pre>
+ *
+ * <p>Clients created from a connection don't own the channel: closing them does nothing, and they
+ * stop working once the connection is closed.
+ */
+public final class StatelyConnection implements AutoCloseable {
+
+  /** Default endpoint for the Stately Cloud API. */
+  private static final String DEFAULT_ENDPOINT_STRING = "https://api.stately.cloud:443";
+
+  /** The default number of items per task when list and scan pages are decoded in parallel. */
+  public static final int DEFAULT_PARALLEL_DECODE_CHUNK_SIZE = 64;
+
+  private final URI endpoint;
+  private final boolean noAuth;
+  private final TokenProvider tokenProvider;
+  private final ScheduledExecutorService scheduler;
+  private final Executor callbackExecutor;
+  // the default callback executor, created and shut down by this connection; null otherwise
+  private final ExecutorService ownedCallbackExecutor;
+  private final Executor parallelDecodeExecutor;
+  private final int parallelDecodeChunkSize;
+  private final ManagedChannel channel;
+  private final DatabaseServiceGrpc.DatabaseServiceFutureStub futureStub;
+  private final DatabaseServiceGrpc.DatabaseServiceStub observerStub;
+  private final long transactionTimeoutMillis;
+  private final long transactionIdleTimeoutMillis;
+  private final ClientMetrics metrics;
+  private final Tracer tracer;
+
+  private StatelyConnection(
+      URI endpoint,
+      boolean noAuth,
+      TokenProvider tokenProvider,
+      ScheduledExecutorService scheduler,
+      Executor callbackExecutor,
+      ExecutorService ownedCallbackExecutor,
+      Executor parallelDecodeExecutor,
+      int parallelDecodeChunkSize,
+      ManagedChannel channel,
+      DatabaseServiceGrpc.DatabaseServiceFutureStub futureStub,
+      DatabaseServiceGrpc.DatabaseServiceStub observerStub,
+      long transactionTimeoutMillis,
+      long transactionIdleTimeoutMillis,
+      ClientMetrics metrics,
+      Tracer tracer) {
+    this.endpoint = endpoint;
+    this.noAuth = noAuth;
+    this.tokenProvider = tokenProvider;
+    this.scheduler = scheduler;
+    this.callbackExecutor = callbackExecutor;
+    this.ownedCallbackExecutor = ownedCallbackExecutor;
+    this.parallelDecodeExecutor = parallelDecodeExecutor;
+    this.parallelDecodeChunkSize = parallelDecodeChunkSize;
+    this.channel = channel;
+    this.futureStub = futureStub;
+    this.observerStub = observerStub;
+    this.transactionTimeoutMillis = transactionTimeoutMillis;
+    this.transactionIdleTimeoutMillis = transactionIdleTimeoutMillis;
+    this.metrics = metrics;
+    this.tracer = tracer;
+  }
+
+  /**
+   * Creates a new builder for a StatelyConnection.
+   *
+   * @param scheduler the scheduled executor service used by the channel and all clients
+   * @return a new builder instance
+   */
+  public static Builder builder(ScheduledExecutorService scheduler) {
+    return new Builder(scheduler);
+  }
+
+  /** Builder for StatelyConnection instances. Required fields: scheduler. */
+  public static class Builder {
+    private final ScheduledExecutorService scheduler;
+    private TokenProvider tokenProvider;
+    private URI endpoint;
+    private String region;
+    private boolean noAuth = false;
+    private Duration transactionTimeout = Duration.ZERO;
+    private Duration transactionIdleTimeout = Duration.ZERO;
+    private ClientMetrics metrics = ClientMetrics.NOOP;
+    private List<ClientInterceptor> interceptors = List.of();
+    private Tracer tracer = Tracer.NOOP;
+    private boolean shareTokenProvider = false;
+    private TransportConfig transport = TransportConfig.DEFAULT;
+    private CompressionConfig compression = CompressionConfig.NONE;
+    private Executor decodeExecutor = MoreExecutors.directExecutor();
+    private Executor callbackExecutor;
+    private Executor parallelDecodeExecutor;
+    private int parallelDecodeChunkSize = DEFAULT_PARALLEL_DECODE_CHUNK_SIZE;
+
+    private Builder(ScheduledExecutorService scheduler) {
+      if (scheduler == null) {
+        throw new StatelyException(
+            "Scheduler must be set", Status.Code.INVALID_ARGUMENT, "InvalidArgument");
+      }
+      this.scheduler = scheduler;
+    }
+
+    /**
+     * Sets the token provider for authentication. If not set, an {@link AuthTokenProvider} is
+     * created using the STATELY_ACCESS_KEY environment variable.
+     *
+     * @param tokenProvider the token provider to use
+     * @return this builder instance
+     */
+    public Builder tokenProvider(TokenProvider tokenProvider) {
+      this.tokenProvider = tokenProvider;
+      return this;
+    }
+
+    /**
+     * Sets the endpoint URI. This takes precedence over the region.
+     *
+     * @param endpoint the endpoint URI to use
+     * @return this builder instance
+     */
+    public Builder endpoint(URI endpoint) {
+      this.endpoint = endpoint;
+      return this;
+    }
+
+    /**
+     * Sets the region, which determines the endpoint if no endpoint is set.
+     *
+     * @param region the region to use
+     * @return this builder instance
+     */
+    public Builder region(String region) {
+      this.region = region;
+      return this;
+    }
+
+    /**
+     * Disables authentication. This is useful in BYOC mode.
+     *
+     * @param noAuth whether to disable authentication
+     * @return this builder instance
+     */
+    public Builder noAuth(boolean noAuth) {
+      this.noAuth = noAuth;
+      return this;
+    }
+
+    /**
+     * Sets the overall deadline for transactions made by clients of this connection. See {@link
+     * Client.Builder#transactionTimeout}.
+     *
+     * @param transactionTimeout the maximum duration of a transaction, or zero for no deadline
+     * @return this builder instance
+     */
+    public Builder transactionTimeout(Duration transactionTimeout) {
+      this.transactionTimeout = transactionTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the idle timeout for transactions made by clients of this connection. See {@link
+     * Client.Builder#transactionIdleTimeout}.
+     *
+     * @param transactionIdleTimeout the maximum idle time of a transaction stream, or zero to
+     *     disable the check
+     * @return this builder instance
+     */
+    public Builder transactionIdleTimeout(Duration transactionIdleTimeout) {
+      this.transactionIdleTimeout = transactionIdleTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the metrics recorder shared by all clients of this connection. See {@link
+     * Client.Builder#metrics}.
+     *
+     * @param metrics the metrics recorder to use
+     * @return this builder instance
+     */
+    public Builder metrics(ClientMetrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Sets interceptors that every call on this connection passes through. See {@link
+     * Client.Builder#interceptors}.
+     *
+     * @param interceptors the interceptors to apply
+     * @return this builder instance
+     */
+    public Builder interceptors(ClientInterceptor... interceptors) {
+      this.interceptors = List.of(interceptors);
+      return this;
+    }
+
+    /**
+     * Sets the tracer shared by all clients of this connection. See {@link Client.Builder#tracer}.
+     *
+     * @param tracer the tracer to use
+     * @return this builder instance
+     */
+    public Builder tracer(Tracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
+    /**
+     * Sets whether the default token provider is shared with other connections in the process.
+     * See {@link Client.Builder#shareTokenProvider}.
+     *
+     * @param shareTokenProvider whether to share the default token provider
+     * @return this builder instance
+     */
+    public Builder shareTokenProvider(boolean shareTokenProvider) {
+      this.shareTokenProvider = shareTokenProvider;
+      return this;
+    }
+
+    /**
+     * Sets the transport settings for the connection's channel. See {@link
+     * Client.Builder#transport}.
+     *
+     * @param transport the transport settings to use
+     * @return this builder instance
+     */
+    public Builder transport(TransportConfig transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    /**
+     * Sets the per-operation compression for clients of this connection. See {@link
+     * Client.Builder#compression}.
+     *
+     * @param compression the compression settings to use
+     * @return this builder instance
+     */
+    public Builder compression(CompressionConfig compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Sets the executor that gRPC delivers responses on. See {@link Client.Builder#decodeExecutor}.
+     *
+     * @param decodeExecutor the executor to decode responses on
+     * @return this builder instance
+     */
+    public Builder decodeExecutor(Executor decodeExecutor) {
+      this.decodeExecutor = decodeExecutor;
+      return this;
+    }
+
+    /**
+     * Sets the executor that completes the futures returned by clients of this connection. See
+     * {@link Client.Builder#callbackExecutor}.
+     *
+     * @param callbackExecutor the executor to complete futures on
+     * @return this builder instance
+     */
+    public Builder callbackExecutor(Executor callbackExecutor) {
+      this.callbackExecutor = callbackExecutor;
+      return this;
+    }
+
+    /**
+     * Unmarshals the items of list and scan pages in parallel for clients of this connection. See
+     * {@link Client.Builder#parallelDecode(Executor, int)}.
+     *
+     * @param executor the executor to unmarshal chunks on, or null to decode serially
+     * @param chunkSize the number of items per task
+     * @return this builder instance
+     */
+    public Builder parallelDecode(Executor executor, int chunkSize) {
+      this.parallelDecodeExecutor = executor;
+      this.parallelDecodeChunkSize = chunkSize;
+      return this;
+    }
+
+    /**
+     * Builds the connection, creating its channel and starting its token provider.
+     *
+     * @return a new StatelyConnection
+     * @throws StatelyException if the endpoint or region is invalid, a setting is out of range, or
+     *     no access key is available
+     */
+    public StatelyConnection build() {
+      URI resolvedEndpoint = makeEndpoint(endpoint, region);
+
+      if (transport == null || compression == null || decodeExecutor == null) {
+        throw new StatelyException(
+            "Transport, compression and decode executor must not be null",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      if (transactionTimeout == null
+          || transactionIdleTimeout == null
+          || transactionTimeout.isNegative()
+          || transactionIdleTimeout.isNegative()) {
+        throw new StatelyException(
+            "Transaction timeout and idle timeout must not be null or negative",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      if (parallelDecodeExecutor != null && parallelDecodeChunkSize <= 0) {
+        throw new StatelyException(
+            "Parallel decode chunk size must be positive",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      Executor resolvedCallbackExecutor = callbackExecutor;
+      ExecutorService ownedCallbackExecutor = null;
+      if (resolvedCallbackExecutor == null) {
+        ownedCallbackExecutor = newVirtualThreadExecutor();
+        resolvedCallbackExecutor =
+            ownedCallbackExecutor != null ? ownedCallbackExecutor : scheduler;
+      }
+      ManagedChannel channel = transport.newChannel(resolvedEndpoint, decodeExecutor, compression);
+
+      // create the gRPC stubs. Compression applies after the user's interceptors, and only to
+      // the database service, not the auth service.
+      List<ClientInterceptor> dbInterceptors = interceptors;
+      ClientInterceptor compressionInterceptor = compression.interceptor(metrics);
+      if (compressionInterceptor != null) {
+        dbInterceptors = new ArrayList<>(interceptors);
+        dbInterceptors.add(compressionInterceptor);
+      }
+      Channel interceptedChannel = Interceptors.apply(channel, dbInterceptors);
+      DatabaseServiceGrpc.DatabaseServiceFutureStub futureStub =
+          DatabaseServiceGrpc.newFutureStub(interceptedChannel);
+      DatabaseServiceGrpc.DatabaseServiceStub observerStub =
+          DatabaseServiceGrpc.newStub(interceptedChannel);
+
+      TokenProvider resolvedTokenProvider = null;
+      if (!noAuth) {
+        if (tokenProvider == null) {
+          // if no token provider is provided, create a default one
+          AuthTokenProvider.Builder providerBuilder =
+              AuthTokenProvider.builder(scheduler)
+                  .metrics(metrics)
+                  .tracer(tracer)
+                  .interceptors(interceptors);
+          resolvedTokenProvider =
+              shareTokenProvider ? providerBuilder.buildShared() : providerBuilder.build();
+        } else {
+          resolvedTokenProvider = tokenProvider;
+        }
+        resolvedTokenProvider.start(resolvedEndpoint);
+        // overwrite the stubs with the authenticated stubs
+        CallCredentials callCreds = new AuthTokenCallCredentials(resolvedTokenProvider);
+        futureStub = futureStub.withCallCredentials(callCreds);
+        observerStub = observerStub.withCallCredentials(callCreds);
+      }
+
+      return new StatelyConnection(
+          resolvedEndpoint,
+          noAuth,
+          resolvedTokenProvider,
+          scheduler,
+          resolvedCallbackExecutor,
+          ownedCallbackExecutor,
+          parallelDecodeExecutor,
+          parallelDecodeChunkSize,
+          channel,
+          futureStub,
+          observerStub,
+          transactionTimeout.toMillis(),
+          transactionIdleTimeout.toMillis(),
+          metrics,
+          tracer);
+    }
+
+    /**
+     * Returns an executor that starts a virtual thread per task on Java 21 and later, or null on
+     * older runtimes. It is looked up reflectively because the SDK targets Java 11.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+      try {
+        return (ExecutorService)
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        return null;
+      }
+    }
+
+    private static URI makeEndpoint(URI endpoint, String region) {
+      URI resolved = endpoint != null ? endpoint : regionEndpoint(region);
+      String scheme = resolved.getScheme();
+      if (resolved.getHost() == null || !("http".equals(scheme) || "https".equals(scheme))) {
+        throw new StatelyException(
+            endpoint != null ? "Invalid endpoint: " + endpoint : "Invalid region: " + region,
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      if (resolved.getPort() == -1) {
+        // the channel needs an explicit port
+        try {
+          return new URI(
+              scheme,
+              null,
+              resolved.getHost(),
+              "https".equals(scheme) ? 443 : 80,
+              resolved.getPath(),
+              null,
+              null);
+        } catch (java.net.URISyntaxException e) {
+          throw new StatelyException(
+              "Invalid endpoint: " + endpoint, Status.Code.INVALID_ARGUMENT, "InvalidArgument");
+        }
+      }
+      return resolved;
+    }
+
+    private static URI regionEndpoint(String region) {
+      if (region == null) {
+        try {
+          return new URI(DEFAULT_ENDPOINT_STRING);
+        } catch (java.net.URISyntaxException e) {
+          throw new StatelyException(
+              "Invalid default endpoint: " + DEFAULT_ENDPOINT_STRING + ". Please contact support.",
+              Status.Code.INTERNAL,
+              "Internal");
+        }
+      }
+      if (region.startsWith("aws-")) {
+        region = region.substring(4); // Remove "aws-" prefix
+      }
+
+      try {
+        return new URI("https://" + region + ".api.stately.cloud:443");
+      } catch (java.net.URISyntaxException e) {
+        throw new StatelyException(
+            "Invalid region: " + region, Status.Code.INVALID_ARGUMENT, "InvalidArgument");
+      }
+    }
+  }
+
+  /**
+   * Returns a client for the given store that uses this connection's channel, authentication,
+   * metrics and tracing. This is cheap enough to call per request. Closing the returned client
+   * does nothing; close the connection instead.
+   *
+   * @param storeId the store ID
+   * @param typeMapper the type mapper for the store's schema
+   * @return a new Client view of this connection
+   */
+  public Client client(long storeId, BaseTypeMapper typeMapper) {
+    return newClient(storeId, typeMapper, false);
+  }
+
+  Client newClient(long storeId, BaseTypeMapper typeMapper, boolean ownsConnection) {
+    if (typeMapper == null) {
+      throw new StatelyException(
+          "Type mapper must be set", Status.Code.INVALID_ARGUMENT, "InvalidArgument");
+    }
+    return new Client(
+        storeId,
+        typeMapper,
+        tokenProvider,
+        endpoint,
+        noAuth,
+        false, // allowStale is always false when the client is constructed
+        scheduler,
+        channel,
+        futureStub,
+        observerStub,
+        transactionTimeoutMillis,
+        transactionIdleTimeoutMillis,
+        metrics,
+        tracer,
+        callbackExecutor,
+        parallelDecodeExecutor,
+        parallelDecodeChunkSize,
+        ownsConnection,
+        this);
+  }
+
+  /**
+   * Returns the endpoint this connection talks to.
+   *
+   * @return the resolved endpoint URI
+   */
+  public URI getEndpoint() {
+    return endpoint;
+  }
+
+  /** Returns the callback executor this connection created and shuts down, or null if none. */
+  ExecutorService ownedCallbackExecutor() {
+    return ownedCallbackExecutor;
+  }
+
+  /**
+   * Shuts down the channel and closes the token provider. Clients created from this connection
+   * stop working.
+   */
+  @Override
+  public void close() throws Exception {
+    channel.shutdownNow();
+    if (ownedCallbackExecutor != null) {
+      ownedCallbackExecutor.shutdown();
+    }
+    if (tokenProvider != null) {
+      tokenProvider.close();
+    }
+  }
+}
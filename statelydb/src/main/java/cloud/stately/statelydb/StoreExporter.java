@@ -0,0 +1,313 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.db.Item;
+import cloud.stately.db.ListToken;
+import cloud.stately.statelydb.common.StatelyException;
+import io.grpc.Status;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Exports every item in a store to a directory of files, for backups or for copying a store with
+ * {@link StoreImporter}. The store is read with a segmented scan, one segment per parallel stream,
+ * and the items are written as they come off the wire, without being unmarshalled into {@link
+ * cloud.stately.statelydb.schema.StatelyItem}s. Each segment writes its own sequence of chunk
+ * files, and a {@link ExportManifest} listing them is written once every segment has finished.
+ *
+ * <p>Pages are written on the client's callback executor, and a segment's stream only asks for the
+ * next page once the previous one is on disk, so a slow disk slows the scan down instead of
+ * buffering the store in memory.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * ExportManifest manifest = StoreExporter.builder(client, Path.of("backup"))
+ *     .segments(8)
+ *     .compress(true)
+ *     .build()
+ *     .export()
+ *     .get();
+ * }</pre>
+ */
+public final class StoreExporter {
+
+  /** The default number of segments scanned in parallel. */
+  public static final int DEFAULT_SEGMENTS = 4;
+
+  /** The default size, before compression, at which a segment starts a new chunk file. */
+  public static final long DEFAULT_CHUNK_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * The largest chunk size. A chunk overshoots the size by up to one item, and this leaves room
+   * for that below the 2 GiB that can be memory mapped on import.
+   */
+  public static final long MAX_CHUNK_BYTES = 1L << 30;
+
+  private final Client client;
+  private final Path directory;
+  private final int segments;
+  private final long chunkBytes;
+  private final boolean compress;
+  private final List<String> itemTypes;
+
+  private StoreExporter(Builder builder) {
+    this.client = builder.client;
+    this.directory = builder.directory;
+    this.segments = builder.segments;
+    this.chunkBytes = builder.chunkBytes;
+    this.compress = builder.compress;
+    this.itemTypes = List.copyOf(builder.itemTypes);
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param client the client for the store to export
+   * @param directory the directory to write the export to; it's created if it doesn't exist
+   * @return a new Builder
+   */
+  public static Builder builder(Client client, Path directory) {
+    return new Builder(client, directory);
+  }
+
+  /** Builder for StoreExporter. */
+  public static class Builder {
+    private final Client client;
+    private final Path directory;
+    private int segments = DEFAULT_SEGMENTS;
+    private long chunkBytes = DEFAULT_CHUNK_BYTES;
+    private boolean compress = false;
+    private final List<String> itemTypes = new ArrayList<>();
+
+    private Builder(Client client, Path directory) {
+      this.client = client;
+      this.directory = directory;
+    }
+
+    /**
+     * Sets the number of segments the store is split into and scanned in parallel.
+     *
+     * @param segments the number of segments, at least 1
+     * @return this builder instance
+     */
+    public Builder segments(int segments) {
+      this.segments = segments;
+      return this;
+    }
+
+    /**
+     * Sets the size, before compression, at which a segment closes its chunk file and starts a new
+     * one.
+     *
+     * @param chunkBytes the chunk size in bytes, at most {@link StoreExporter#MAX_CHUNK_BYTES}
+     * @return this builder instance
+     */
+    public Builder chunkBytes(long chunkBytes) {
+      this.chunkBytes = chunkBytes;
+      return this;
+    }
+
+    /**
+     * Sets whether the chunk files are gzipped. Uncompressed chunks are faster to import, since
+     * they can be memory mapped; compressed chunks are much smaller.
+     *
+     * @param compress whether to compress the chunks
+     * @return this builder instance
+     */
+    public Builder compress(boolean compress) {
+      this.compress = compress;
+      return this;
+    }
+
+    /**
+     * Limits the export to an item type. Can be called multiple times; by default every item is
+     * exported.
+     *
+     * @param itemType the item type to export
+     * @return this builder instance
+     */
+    public Builder addItemType(String itemType) {
+      this.itemTypes.add(itemType);
+      return this;
+    }
+
+    /**
+     * Builds the StoreExporter.
+     *
+     * @return a new StoreExporter
+     * @throws StatelyException if an argument is missing or out of range
+     */
+    public StoreExporter build() {
+      if (client == null || directory == null) {
+        throw new StatelyException(
+            "Client and directory must not be null",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      if (segments < 1) {
+        throw new StatelyException(
+            "Segments must be at least 1", Status.Code.INVALID_ARGUMENT, "InvalidArgument");
+      }
+      if (chunkBytes <= 0 || chunkBytes > MAX_CHUNK_BYTES) {
+        throw new StatelyException(
+            "Chunk size must be positive and at most " + MAX_CHUNK_BYTES + " bytes",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      return new StoreExporter(this);
+    }
+  }
+
+  /**
+   * Exports the store. Fails if the directory already holds a complete export. If any segment
+   * fails, the export fails, no manifest is written and the chunk files written so far are
+   * deleted, so the export can be run again into the same directory.
+   *
+   * @return a future that completes with the manifest of the export
+   */
+  public CompletableFuture<ExportManifest> export() {
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    if (Files.exists(directory.resolve(ExportManifest.FILE_NAME))) {
+      return CompletableFuture.failedFuture(
+          new StatelyException(
+              directory + " already holds an export",
+              Status.Code.ALREADY_EXISTS,
+              "AlreadyExists"));
+    }
+
+    List<SegmentExport> exports = new ArrayList<>(segments);
+    List<CompletableFuture<List<ExportManifest.Chunk>>> results = new ArrayList<>(segments);
+    for (int i = 0; i < segments; i++) {
+      SegmentExport export = new SegmentExport(i);
+      exports.add(export);
+      results.add(export.run());
+    }
+    return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+        .thenApply(
+            v -> {
+              List<ExportManifest.Chunk> chunks = new ArrayList<>();
+              for (CompletableFuture<List<ExportManifest.Chunk>> result : results) {
+                chunks.addAll(result.join());
+              }
+              ExportManifest manifest =
+                  new ExportManifest(
+                      client.storeId(),
+                      client.typeMapper().getSchemaId(),
+                      client.typeMapper().getSchemaVersionId(),
+                      compress,
+                      chunks);
+              try {
+                manifest.write(directory);
+              } catch (IOException e) {
+                throw new CompletionException(e);
+              }
+              return manifest;
+            })
+        .whenComplete(
+            (manifest, error) -> {
+              // allOf waits for every segment, so none of them is still writing
+              if (error != null) {
+                exports.forEach(SegmentExport::deleteFiles);
+              }
+            });
+  }
+
+  /** Scans one segment into its sequence of chunk files. */
+  private final class SegmentExport {
+    private final int segment;
+    private final List<ExportManifest.Chunk> chunks = new ArrayList<>();
+    private final List<String> files = new ArrayList<>();
+    // only touched by the segment's sink, which is never called concurrently
+    private ItemRecords.Writer writer = null;
+    private String fileName = null;
+
+    SegmentExport(int segment) {
+      this.segment = segment;
+    }
+
+    CompletableFuture<List<ExportManifest.Chunk>> run() {
+      ScanOptions.Builder options = ScanOptions.builder();
+      if (segments > 1) {
+        options.segmentation(segments, segment);
+      }
+      itemTypes.forEach(options::addItemType);
+      return client
+          .beginScanRaw(options.build(), this::onPage)
+          .thenCompose(this::continueFrom)
+          .handle(
+              (v, error) -> {
+                try {
+                  closeChunk();
+                } catch (IOException e) {
+                  if (error == null) {
+                    throw new CompletionException(e);
+                  }
+                }
+                if (error != null) {
+                  throw error instanceof CompletionException
+                      ? (CompletionException) error
+                      : new CompletionException(error);
+                }
+                return chunks;
+              });
+    }
+
+    private CompletableFuture<Void> continueFrom(ListToken token) {
+      if (!token.getCanContinue()) {
+        return CompletableFuture.completedFuture(null);
+      }
+      return client.continueScanRaw(token, this::onPage).thenCompose(this::continueFrom);
+    }
+
+    private CompletableFuture<Void> onPage(List<Item> items) {
+      try {
+        for (Item item : items) {
+          if (writer == null) {
+            fileName =
+                String.format(
+                    "segment-%04d-%06d.items%s", segment, chunks.size(), compress ? ".gz" : "");
+            writer = new ItemRecords.Writer(directory.resolve(fileName), compress);
+            files.add(fileName);
+          }
+          writer.write(item);
+          if (writer.bytes() >= chunkBytes) {
+            closeChunk();
+          }
+        }
+      } catch (IOException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+      return CompletableFuture.completedFuture(null);
+    }
+
+    private void closeChunk() throws IOException {
+      if (writer == null) {
+        return;
+      }
+      ItemRecords.Writer w = writer;
+      writer = null;
+      w.close();
+      chunks.add(new ExportManifest.Chunk(fileName, w.items(), w.bytes()));
+    }
+
+    /** Deletes every chunk file this segment created, once the export has failed. */
+    void deleteFiles() {
+      for (String file : files) {
+        try {
+          Files.deleteIfExists(directory.resolve(file));
+        } catch (IOException e) {
+          // the export has already failed, and a file left behind only blocks a retry
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.db.Item;
+import cloud.stately.statelydb.common.StatelyException;
+import io.grpc.Status;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Imports an export written by {@link StoreExporter} into a store. The chunk files are streamed
+ * back in manifest order and their items are put in batches, with a bounded number of batches in
+ * flight at once, so memory use doesn't grow with the size of the export. Items are put exactly
+ * as they were exported, keeping their IDs and metadata timestamps, and are never unmarshalled
+ * into {@link cloud.stately.statelydb.schema.StatelyItem}s.
+ *
+ * <p>The client must use the same schema the export was made with. Importing into a store that
+ * already holds some of the items overwrites them.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * long imported = StoreImporter.builder(client, Path.of("backup")).build().importAll().get();
+ * }</pre>
+ */
+public final class StoreImporter {
+
+  /** The default number of items per put. */
+  public static final int DEFAULT_BATCH_SIZE = 50;
+
+  /** The default number of puts in flight at once. */
+  public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 4;
+
+  private final Client client;
+  private final Path directory;
+  private final int batchSize;
+  private final int maxInFlightBatches;
+
+  private StoreImporter(Builder builder) {
+    this.client = builder.client;
+    this.directory = builder.directory;
+    this.batchSize = builder.batchSize;
+    this.maxInFlightBatches = builder.maxInFlightBatches;
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param client the client for the store to import into
+   * @param directory the directory holding the export
+   * @return a new Builder
+   */
+  public static Builder builder(Client client, Path directory) {
+    return new Builder(client, directory);
+  }
+
+  /** Builder for StoreImporter. */
+  public static class Builder {
+    private final Client client;
+    private final Path directory;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxInFlightBatches = DEFAULT_MAX_IN_FLIGHT_BATCHES;
+
+    private Builder(Client client, Path directory) {
+      this.client = client;
+      this.directory = directory;
+    }
+
+    /**
+     * Sets the number of items put in each request.
+     *
+     * @param batchSize the batch size, at least 1
+     * @return this builder instance
+     */
+    public Builder batchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Sets how many put requests may be in flight at once. Reading pauses while this many are
+     * waiting for a response.
+     *
+     * @param maxInFlightBatches the maximum number of concurrent puts, at least 1
+     * @return this builder instance
+     */
+    public Builder maxInFlightBatches(int maxInFlightBatches) {
+      this.maxInFlightBatches = maxInFlightBatches;
+      return this;
+    }
+
+    /**
+     * Builds the StoreImporter.
+     *
+     * @return a new StoreImporter
+     * @throws StatelyException if an argument is missing or out of range
+     */
+    public StoreImporter build() {
+      if (client == null || directory == null) {
+        throw new StatelyException(
+            "Client and directory must not be null",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      if (batchSize < 1 || maxInFlightBatches < 1) {
+        throw new StatelyException(
+            "Batch size and in-flight batches must be at least 1",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      return new StoreImporter(this);
+    }
+  }
+
+  /**
+   * Imports every item in the export. The first batches are read on the calling thread, the rest
+   * on the threads that complete the puts. If a put or a read fails, no further batches are sent
+   * and the import fails; the batches already put stay in the store, so the import can simply be
+   * run again.
+   *
+   * @return a future that completes with the number of items imported
+   */
+  public CompletableFuture<Long> importAll() {
+    ExportManifest manifest;
+    try {
+      manifest = ExportManifest.read(directory);
+    } catch (IOException | RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    long schemaId = client.typeMapper().getSchemaId();
+    if (manifest.getSchemaId() != schemaId) {
+      return CompletableFuture.failedFuture(
+          new StatelyException(
+              "Export was made with schema "
+                  + Long.toUnsignedString(manifest.getSchemaId())
+                  + " but the client uses schema "
+                  + Long.toUnsignedString(schemaId),
+              Status.Code.FAILED_PRECONDITION,
+              "FailedPrecondition"));
+    }
+    Run run = new Run(manifest);
+    run.pump();
+    return run.result;
+  }
+
+  /**
+   * The state of one import. The counters are guarded by the instance's lock. The reader state is
+   * only touched by the thread that holds the pump, so chunks are read and puts are sent without
+   * holding the lock, and completing puts never wait for a read.
+   */
+  private final class Run {
+    private final ExportManifest manifest;
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+    private int nextChunk = 0;
+    private ItemRecords.Reader reader = null;
+    private long chunkItems = 0;
+    private boolean exhausted = false;
+    private boolean pumping = false;
+    private int inFlight = 0;
+    private long imported = 0;
+
+    Run(ExportManifest manifest) {
+      this.manifest = manifest;
+    }
+
+    /**
+     * Sends batches until the in-flight limit is reached or the export is exhausted. Only one
+     * thread pumps at a time; a put that completes while another thread is pumping only frees its
+     * slot, and the running loop picks it up.
+     */
+    void pump() {
+      synchronized (this) {
+        if (pumping) {
+          return;
+        }
+        pumping = true;
+      }
+      List<Item> batch;
+      while ((batch = nextBatch()) != null) {
+        int size = batch.size();
+        CompletableFuture<Void> put;
+        try {
+          put = client.putRaw(batch);
+        } catch (RuntimeException e) {
+          put = CompletableFuture.failedFuture(e);
+        }
+        put.whenComplete((v, error) -> batchDone(size, error));
+      }
+    }
+
+    /**
+     * Claims an in-flight slot and reads a batch for it. Returns null once the pump should stop,
+     * having released the pump, or completed the import if nothing is left to do.
+     */
+    private List<Item> nextBatch() {
+      while (true) {
+        boolean stopped;
+        boolean claimed = false;
+        long total = -1;
+        synchronized (this) {
+          stopped = result.isDone();
+          if (!stopped) {
+            if (!exhausted && inFlight < maxInFlightBatches) {
+              inFlight++;
+              claimed = true;
+            } else {
+              pumping = false;
+              if (exhausted && inFlight == 0) {
+                total = imported;
+              }
+            }
+          }
+        }
+        if (stopped) {
+          // the pump is never released after a failure, so no other thread can be reading
+          closeReader();
+          return null;
+        }
+        if (!claimed) {
+          if (total >= 0) {
+            result.complete(total);
+          }
+          return null;
+        }
+
+        List<Item> batch;
+        try {
+          batch = readBatch();
+        } catch (IOException | RuntimeException e) {
+          synchronized (this) {
+            inFlight--;
+          }
+          result.completeExceptionally(e);
+          continue;
+        }
+        if (!batch.isEmpty()) {
+          return batch;
+        }
+        synchronized (this) {
+          inFlight--;
+          exhausted = true;
+        }
+      }
+    }
+
+    private void batchDone(int size, Throwable error) {
+      synchronized (this) {
+        inFlight--;
+        if (error == null) {
+          imported += size;
+        }
+      }
+      if (error != null) {
+        result.completeExceptionally(error);
+      }
+      pump();
+    }
+
+    private List<Item> readBatch() throws IOException {
+      List<Item> batch = new ArrayList<>(batchSize);
+      while (batch.size() < batchSize) {
+        if (reader == null) {
+          if (nextChunk == manifest.getChunks().size()) {
+            break;
+          }
+          Path file = directory.resolve(manifest.getChunks().get(nextChunk).getFile());
+          reader = new ItemRecords.Reader(file, manifest.isCompressed());
+          chunkItems = 0;
+        }
+        Item item = reader.next();
+        if (item != null) {
+          batch.add(item);
+          chunkItems++;
+          continue;
+        }
+        reader.close();
+        reader = null;
+        ExportManifest.Chunk chunk = manifest.getChunks().get(nextChunk++);
+        if (chunkItems != chunk.getItems()) {
+          throw new StatelyException(
+              String.format(
+                  "Chunk %s holds %d items but the manifest lists %d",
+                  chunk.getFile(), chunkItems, chunk.getItems()),
+              Status.Code.DATA_LOSS,
+              "DataLoss");
+        }
+      }
+      return batch;
+    }
+
+    private void closeReader() {
+      if (reader == null) {
+        return;
+      }
+      try {
+        reader.close();
+      } catch (IOException e) {
+        // the import has already failed, and the file was only read
+      }
+      reader = null;
+    }
+  }
+}
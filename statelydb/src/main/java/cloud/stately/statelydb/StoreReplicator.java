@@ -0,0 +1,653 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.db.Item;
+import cloud.stately.db.ListToken;
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.schema.StatelyItem;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.Status;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a destination store up to date with a source store. Replication starts with a copy of the
+ * whole source store, made with a segmented scan of raw items like {@link StoreExporter}, and then
+ * tails the changes under a set of key path prefixes with {@link Client#syncList}, applying puts
+ * and deletes to the destination in batches, with a bounded number of batches in flight.
+ *
+ * <p>Before the copy, each prefix is listed to the end to get a token that can sync, so changes
+ * made while the copy runs are picked up by the first sync. Puts and deletes are idempotent, so
+ * applying a change the copy already included is harmless. Only changes under the prefixes are
+ * tailed: items outside them are copied once and then left alone.
+ *
+ * <p>With a checkpoint file, the sync tokens are saved after the copy and after every sync round,
+ * and a replicator started with the same file resumes from the saved tokens instead of copying the
+ * store again. A failed round is reported to the {@link Listener} and retried from the last
+ * checkpoint after the poll interval.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * StoreReplicator replicator = StoreReplicator.builder(source, destination, scheduler)
+ *     .addPrefix("/customer-1234")
+ *     .checkpointFile(Path.of("replication.properties"))
+ *     .listener(new StoreReplicator.Listener() {
+ *       public void onSynced(Duration lag, long puts, long deletes) {
+ *         lagGauge.set(lag.toMillis());
+ *       }
+ *     })
+ *     .build();
+ * replicator.start().get();
+ * }</pre>
+ */
+public final class StoreReplicator implements AutoCloseable {
+
+  /** The default time between the end of one sync round and the start of the next. */
+  public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(1);
+
+  private static final int CHECKPOINT_FORMAT_VERSION = 1;
+
+  private static final ListSinkObserver.PageSink<Item> DISCARD =
+      items -> CompletableFuture.completedFuture(null);
+
+  /**
+   * Receives the progress of a replicator. The methods are called at the end of each sync round,
+   * never concurrently.
+   */
+  public interface Listener {
+
+    /**
+     * Called after a sync round has applied every prefix's changes and saved the checkpoint.
+     *
+     * @param lag how far the destination may be behind the source, measured from the start of the
+     *     round
+     * @param puts the number of items put in the round
+     * @param deletes the number of items deleted in the round
+     */
+    default void onSynced(Duration lag, long puts, long deletes) {}
+
+    /**
+     * Called when a sync round fails.
+     *
+     * @param error the error
+     */
+    default void onError(StatelyException error) {}
+  }
+
+  private final Client source;
+  private final Client destination;
+  private final ScheduledExecutorService scheduler;
+  private final List<String> prefixes;
+  private final int segments;
+  private final int batchSize;
+  private final int maxInFlightBatches;
+  private final Duration pollInterval;
+  private final Path checkpointFile;
+  private final Listener listener;
+  private final AtomicBoolean started = new AtomicBoolean(false);
+  // replaced at the end of each round; rounds never overlap
+  private volatile Map<String, ListToken> tokens = Collections.emptyMap();
+  private volatile long syncedAtNanos;
+  private volatile boolean synced = false;
+  private boolean closed = false;
+  private ScheduledFuture<?> nextRound = null;
+  // puts and deletes in flight to the destination, and those waiting for a slot
+  private int inFlightBatches = 0;
+  private final Queue<Runnable> waitingBatches = new ArrayDeque<>();
+
+  private StoreReplicator(Builder builder) {
+    this.source = builder.source;
+    this.destination = builder.destination;
+    this.scheduler = builder.scheduler;
+    this.prefixes = List.copyOf(builder.prefixes);
+    this.segments = builder.segments;
+    this.batchSize = builder.batchSize;
+    this.maxInFlightBatches = builder.maxInFlightBatches;
+    this.pollInterval = builder.pollInterval;
+    this.checkpointFile = builder.checkpointFile;
+    this.listener = builder.listener;
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param source the client for the store to replicate from
+   * @param destination the client for the store to replicate to, using the same schema
+   * @param scheduler the scheduler that starts each sync round
+   * @return a new Builder
+   */
+  public static Builder builder(
+      Client source, Client destination, ScheduledExecutorService scheduler) {
+    return new Builder(source, destination, scheduler);
+  }
+
+  /** Builder for StoreReplicator. */
+  public static class Builder {
+    private final Client source;
+    private final Client destination;
+    private final ScheduledExecutorService scheduler;
+    private final List<String> prefixes = new ArrayList<>();
+    private int segments = StoreExporter.DEFAULT_SEGMENTS;
+    private int batchSize = StoreImporter.DEFAULT_BATCH_SIZE;
+    private int maxInFlightBatches = StoreImporter.DEFAULT_MAX_IN_FLIGHT_BATCHES;
+    private Duration pollInterval = DEFAULT_POLL_INTERVAL;
+    private Path checkpointFile = null;
+    private Listener listener = new Listener() {};
+
+    private Builder(Client source, Client destination, ScheduledExecutorService scheduler) {
+      this.source = source;
+      this.destination = destination;
+      this.scheduler = scheduler;
+    }
+
+    /**
+     * Adds a key path prefix whose changes are tailed. At least one is required.
+     *
+     * @param keyPathPrefix the key path prefix
+     * @return this builder instance
+     */
+    public Builder addPrefix(String keyPathPrefix) {
+      this.prefixes.add(keyPathPrefix);
+      return this;
+    }
+
+    /**
+     * Sets the number of segments the initial copy scans in parallel.
+     *
+     * @param segments the number of segments, at least 1
+     * @return this builder instance
+     */
+    public Builder segments(int segments) {
+      this.segments = segments;
+      return this;
+    }
+
+    /**
+     * Sets the number of items in each put or delete sent to the destination.
+     *
+     * @param batchSize the batch size, at least 1
+     * @return this builder instance
+     */
+    public Builder batchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Sets how many puts and deletes may be in flight to the destination at once, across the
+     * segments of the initial copy and the prefixes of a sync round. Further batches wait for a
+     * slot.
+     *
+     * @param maxInFlightBatches the maximum number of concurrent requests, at least 1
+     * @return this builder instance
+     */
+    public Builder maxInFlightBatches(int maxInFlightBatches) {
+      this.maxInFlightBatches = maxInFlightBatches;
+      return this;
+    }
+
+    /**
+     * Sets the time between the end of one sync round and the start of the next.
+     *
+     * @param pollInterval the poll interval
+     * @return this builder instance
+     */
+    public Builder pollInterval(Duration pollInterval) {
+      this.pollInterval = pollInterval;
+      return this;
+    }
+
+    /**
+     * Sets the file the sync tokens are saved to. Without one, every start copies the store again.
+     *
+     * @param checkpointFile the checkpoint file
+     * @return this builder instance
+     */
+    public Builder checkpointFile(Path checkpointFile) {
+      this.checkpointFile = checkpointFile;
+      return this;
+    }
+
+    /**
+     * Sets the listener that receives the replication lag and errors.
+     *
+     * @param listener the listener
+     * @return this builder instance
+     */
+    public Builder listener(Listener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Builds the StoreReplicator.
+     *
+     * @return a new StoreReplicator
+     * @throws StatelyException if an argument is missing or out of range
+     */
+    public StoreReplicator build() {
+      if (source == null || destination == null || scheduler == null || listener == null) {
+        throw new StatelyException(
+            "Source, destination, scheduler and listener must not be null",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      if (prefixes.isEmpty()) {
+        throw new StatelyException(
+            "At least one prefix is required", Status.Code.INVALID_ARGUMENT, "InvalidArgument");
+      }
+      if (segments < 1 || batchSize < 1 || maxInFlightBatches < 1) {
+        throw new StatelyException(
+            "Segments, batch size and in-flight batches must be at least 1",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      if (pollInterval == null || pollInterval.isNegative()) {
+        throw new StatelyException(
+            "Poll interval must not be negative", Status.Code.INVALID_ARGUMENT, "InvalidArgument");
+      }
+      return new StoreReplicator(this);
+    }
+  }
+
+  /**
+   * Starts replicating. The returned future completes once the destination holds a copy of the
+   * source, or at once when resuming from a checkpoint; tailing then continues in the background
+   * until {@link #close()}.
+   *
+   * @return a future that completes when tailing begins
+   */
+  public CompletableFuture<Void> start() {
+    if (!started.compareAndSet(false, true)) {
+      return CompletableFuture.failedFuture(
+          new StatelyException(
+              "Replicator was already started",
+              Status.Code.FAILED_PRECONDITION,
+              "FailedPrecondition"));
+    }
+    if (source.typeMapper().getSchemaId() != destination.typeMapper().getSchemaId()) {
+      return CompletableFuture.failedFuture(
+          new StatelyException(
+              "Source and destination clients must use the same schema",
+              Status.Code.FAILED_PRECONDITION,
+              "FailedPrecondition"));
+    }
+    Map<String, ListToken> saved;
+    try {
+      saved = readCheckpoint();
+    } catch (IOException | RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    CompletableFuture<Map<String, ListToken>> initial;
+    if (saved != null) {
+      initial = CompletableFuture.completedFuture(saved);
+    } else {
+      long began = System.nanoTime();
+      initial =
+          acquireTokens()
+              .thenCompose(acquired -> copy().thenApply(v -> acquired))
+              .thenApply(
+                  acquired -> {
+                    writeCheckpoint(acquired);
+                    markSynced(began);
+                    return acquired;
+                  });
+    }
+    return initial.thenAccept(
+        resumed -> {
+          tokens = resumed;
+          scheduleRound();
+        });
+  }
+
+  /**
+   * Returns how far the destination may be behind the source: the time since the start of the
+   * last sync round that completed, or of the initial copy. Every change made before then has been
+   * applied.
+   *
+   * @return the replication lag, or null if nothing has been synced since the replicator started
+   */
+  public Duration getLag() {
+    if (!synced) {
+      return null;
+    }
+    return Duration.ofNanos(System.nanoTime() - syncedAtNanos);
+  }
+
+  /**
+   * Stops tailing. A round that is running finishes, but no further rounds start. The clients are
+   * not closed.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    if (nextRound != null) {
+      nextRound.cancel(false);
+    }
+  }
+
+  private void markSynced(long began) {
+    syncedAtNanos = began;
+    synced = true;
+  }
+
+  private synchronized void scheduleRound() {
+    if (closed) {
+      return;
+    }
+    nextRound = scheduler.schedule(this::runRound, pollInterval.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Syncs each prefix in turn, then saves the new tokens and schedules the next round. */
+  private void runRound() {
+    long began = System.nanoTime();
+    AtomicLong puts = new AtomicLong();
+    AtomicLong deletes = new AtomicLong();
+    Map<String, ListToken> next = new LinkedHashMap<>();
+    CompletableFuture<Void> round = CompletableFuture.completedFuture(null);
+    for (Map.Entry<String, ListToken> entry : tokens.entrySet()) {
+      round =
+          round.thenCompose(
+              v ->
+                  syncPrefix(entry.getKey(), entry.getValue(), puts, deletes)
+                      .thenAccept(token -> next.put(entry.getKey(), token)));
+    }
+    round
+        .thenRun(
+            () -> {
+              writeCheckpoint(next);
+              tokens = next;
+              markSynced(began);
+              listener.onSynced(getLag(), puts.get(), deletes.get());
+            })
+        .whenComplete(
+            (v, error) -> {
+              if (error != null) {
+                listener.onError(StatelyException.from(error));
+              }
+              scheduleRound();
+            });
+  }
+
+  private CompletableFuture<ListToken> syncPrefix(
+      String prefix, ListToken token, AtomicLong puts, AtomicLong deletes) {
+    return source
+        .syncList(token)
+        .thenCompose(
+            result -> {
+              List<Item> changed =
+                  result.getChangedItems().stream()
+                      .map(StatelyItem::marshal)
+                      .collect(Collectors.toList());
+              puts.addAndGet(changed.size());
+              CompletableFuture<Void> put = putInBatches(changed);
+              // the prefix was listed to the end, so the window covers all of it and no items
+              // are reported as updated outside it
+              if (result.isReset()) {
+                Set<String> view =
+                    result.getChangedItems().stream()
+                        .map(StatelyItem::primaryKeyPath)
+                        .collect(Collectors.toSet());
+                return put.thenCompose(v -> deleteOutside(prefix, view, deletes))
+                    .thenApply(v -> result.getToken());
+              }
+              deletes.addAndGet(result.getDeletedItemPaths().size());
+              return put.thenCompose(v -> deleteInBatches(result.getDeletedItemPaths()))
+                  .thenApply(v -> result.getToken());
+            });
+  }
+
+  /**
+   * After a reset, the changed items are the prefix's whole contents. Deletes the destination's
+   * items under the prefix that aren't among them.
+   */
+  private CompletableFuture<Void> deleteOutside(
+      String prefix, Set<String> view, AtomicLong deletes) {
+    List<String> stale = Collections.synchronizedList(new ArrayList<>());
+    ListSink collect =
+        items -> {
+          for (StatelyItem item : items) {
+            String keyPath = item.primaryKeyPath();
+            if (!view.contains(keyPath)) {
+              stale.add(keyPath);
+            }
+          }
+          return CompletableFuture.completedFuture(null);
+        };
+    return destination
+        .beginList(prefix, null, collect)
+        .thenCompose(token -> listDestinationToEnd(token, collect))
+        .thenCompose(
+            v -> {
+              deletes.addAndGet(stale.size());
+              return deleteInBatches(new ArrayList<>(stale));
+            });
+  }
+
+  private CompletableFuture<Void> listDestinationToEnd(ListToken token, ListSink sink) {
+    if (!token.getCanContinue()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return destination
+        .continueList(token, sink)
+        .thenCompose(next -> listDestinationToEnd(next, sink));
+  }
+
+  /** Lists each prefix of the source to the end, for a token that can sync. */
+  private CompletableFuture<Map<String, ListToken>> acquireTokens() {
+    List<CompletableFuture<ListToken>> results = new ArrayList<>(prefixes.size());
+    for (String prefix : prefixes) {
+      results.add(source.beginListRaw(prefix, DISCARD).thenCompose(this::listSourceToEnd));
+    }
+    return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+        .thenApply(
+            v -> {
+              Map<String, ListToken> acquired = new LinkedHashMap<>();
+              for (int i = 0; i < prefixes.size(); i++) {
+                ListToken token = results.get(i).join();
+                if (!token.getCanSync()) {
+                  throw new StatelyException(
+                      "Listing " + prefixes.get(i) + " returned a token that can't sync",
+                      Status.Code.FAILED_PRECONDITION,
+                      "FailedPrecondition");
+                }
+                acquired.put(prefixes.get(i), token);
+              }
+              return acquired;
+            });
+  }
+
+  private CompletableFuture<ListToken> listSourceToEnd(ListToken token) {
+    if (!token.getCanContinue()) {
+      return CompletableFuture.completedFuture(token);
+    }
+    return source.continueListRaw(token, DISCARD).thenCompose(this::listSourceToEnd);
+  }
+
+  /** Copies the whole source store with a segmented scan. */
+  private CompletableFuture<Void> copy() {
+    List<CompletableFuture<Void>> results = new ArrayList<>(segments);
+    for (int i = 0; i < segments; i++) {
+      ScanOptions.Builder options = ScanOptions.builder();
+      if (segments > 1) {
+        options.segmentation(segments, i);
+      }
+      results.add(
+          source.beginScanRaw(options.build(), this::putInBatches).thenCompose(this::scanToEnd));
+    }
+    return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]));
+  }
+
+  private CompletableFuture<Void> scanToEnd(ListToken token) {
+    if (!token.getCanContinue()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return source.continueScanRaw(token, this::putInBatches).thenCompose(this::scanToEnd);
+  }
+
+  private CompletableFuture<Void> putInBatches(List<Item> items) {
+    List<CompletableFuture<?>> puts = new ArrayList<>();
+    for (int i = 0; i < items.size(); i += batchSize) {
+      List<Item> batch = items.subList(i, Math.min(i + batchSize, items.size()));
+      puts.add(sendBatch(() -> destination.putRaw(batch)));
+    }
+    return CompletableFuture.allOf(puts.toArray(new CompletableFuture<?>[0]));
+  }
+
+  private CompletableFuture<Void> deleteInBatches(List<String> keyPaths) {
+    List<CompletableFuture<?>> deletes = new ArrayList<>();
+    for (int i = 0; i < keyPaths.size(); i += batchSize) {
+      List<String> batch = keyPaths.subList(i, Math.min(i + batchSize, keyPaths.size()));
+      deletes.add(sendBatch(() -> destination.deleteBatch(batch)));
+    }
+    return CompletableFuture.allOf(deletes.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /**
+   * Sends a request to the destination once fewer than maxInFlightBatches are in flight. Waiting
+   * requests are started in order as earlier ones complete.
+   */
+  private <T> CompletableFuture<T> sendBatch(Supplier<CompletableFuture<T>> request) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable send =
+        () -> {
+          CompletableFuture<T> sent;
+          try {
+            sent = request.get();
+          } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+          }
+          sent.whenComplete(
+              (value, error) -> {
+                batchDone();
+                if (error != null) {
+                  result.completeExceptionally(error);
+                } else {
+                  result.complete(value);
+                }
+              });
+        };
+    boolean sendNow;
+    synchronized (waitingBatches) {
+      sendNow = inFlightBatches < maxInFlightBatches;
+      if (sendNow) {
+        inFlightBatches++;
+      } else {
+        waitingBatches.add(send);
+      }
+    }
+    if (sendNow) {
+      send.run();
+    }
+    return result;
+  }
+
+  private void batchDone() {
+    Runnable next;
+    synchronized (waitingBatches) {
+      // a waiting request takes over the slot
+      next = waitingBatches.poll();
+      if (next == null) {
+        inFlightBatches--;
+      }
+    }
+    if (next != null) {
+      next.run();
+    }
+  }
+
+  private Map<String, ListToken> readCheckpoint() throws IOException {
+    if (checkpointFile == null || !Files.exists(checkpointFile)) {
+      return null;
+    }
+    Properties properties = PropertiesFiles.load(checkpointFile);
+    for (String key : List.of("formatVersion", "prefixes", "sourceStoreId", "destinationStoreId")) {
+      if (properties.getProperty(key) == null) {
+        throw new StatelyException(
+            "Malformed checkpoint " + checkpointFile + ": missing " + key,
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+    }
+    try {
+      int version = Integer.parseInt(properties.getProperty("formatVersion"));
+      int count = Integer.parseInt(properties.getProperty("prefixes"));
+      List<String> saved = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        saved.add(properties.getProperty("prefix." + i));
+      }
+      boolean matches =
+          version <= CHECKPOINT_FORMAT_VERSION
+              && Long.parseUnsignedLong(properties.getProperty("sourceStoreId"))
+                  == source.storeId()
+              && Long.parseUnsignedLong(properties.getProperty("destinationStoreId"))
+                  == destination.storeId()
+              && new HashSet<>(saved).equals(new HashSet<>(prefixes));
+      if (!matches) {
+        throw new StatelyException(
+            "Checkpoint " + checkpointFile + " was written for a different replication",
+            Status.Code.FAILED_PRECONDITION,
+            "FailedPrecondition");
+      }
+      Map<String, ListToken> tokens = new LinkedHashMap<>();
+      for (int i = 0; i < count; i++) {
+        byte[] token =
+            Base64.getDecoder().decode(properties.getProperty("token." + i, "invalid"));
+        tokens.put(saved.get(i), ListToken.parseFrom(token));
+      }
+      return tokens;
+    } catch (IllegalArgumentException | InvalidProtocolBufferException e) {
+      throw new StatelyException(
+          "Malformed checkpoint " + checkpointFile + ": " + e.getMessage(),
+          Status.Code.INVALID_ARGUMENT,
+          "InvalidArgument",
+          e);
+    }
+  }
+
+  private void writeCheckpoint(Map<String, ListToken> tokens) {
+    if (checkpointFile == null) {
+      return;
+    }
+    Properties properties = new Properties();
+    properties.setProperty("formatVersion", Integer.toString(CHECKPOINT_FORMAT_VERSION));
+    properties.setProperty("sourceStoreId", Long.toUnsignedString(source.storeId()));
+    properties.setProperty("destinationStoreId", Long.toUnsignedString(destination.storeId()));
+    properties.setProperty("prefixes", Integer.toString(tokens.size()));
+    int i = 0;
+    for (Map.Entry<String, ListToken> entry : tokens.entrySet()) {
+      properties.setProperty("prefix." + i, entry.getKey());
+      properties.setProperty(
+          "token." + i, Base64.getEncoder().encodeToString(entry.getValue().toByteArray()));
+      i++;
+    }
+    try {
+      PropertiesFiles.store(properties, checkpointFile, "StatelyDB replication checkpoint");
+    } catch (IOException e) {
+      throw new CompletionException(e);
+    }
+  }
+}
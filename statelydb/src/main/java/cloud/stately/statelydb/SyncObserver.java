@@ -3,8 +3,12 @@ package cloud.stately.statelydb;
 import cloud.stately.db.ListToken;
 import cloud.stately.db.SyncListResponse;
 import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.metrics.Operation;
 import cloud.stately.statelydb.schema.BaseTypeMapper;
 import cloud.stately.statelydb.schema.StatelyItem;
+import cloud.stately.statelydb.tracing.Span;
+import cloud.stately.statelydb.tracing.TraceEvent;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import java.util.ArrayList;
@@ -28,6 +32,13 @@ public class SyncObserver implements StreamObserver<SyncListResponse> {
   private ListToken token = null;
   private boolean isReset = false;
   private final Lock resultLock = new ReentrantLock();
+  private final ClientMetrics metrics;
+  private final Span span;
+  private final long startNanos;
+  private boolean receivedFrame = false;
+  private int frameCount = 0;
+  private int itemCount = 0;
+  private long byteCount = 0;
 
   /**
    * Creates a new SyncObserver.
@@ -36,23 +47,74 @@ public class SyncObserver implements StreamObserver<SyncListResponse> {
    * @param onComplete the CompletableFuture to complete when the sync operation finishes
    */
   public SyncObserver(BaseTypeMapper typeMapper, CompletableFuture<SyncResult> onComplete) {
+    this(typeMapper, onComplete, ClientMetrics.NOOP);
+  }
+
+  /**
+   * Creates a new SyncObserver that records metrics for the stream. The call is considered started
+   * when the observer is created.
+   *
+   * @param typeMapper the type mapper for converting proto items to Java objects
+   * @param onComplete the CompletableFuture to complete when the sync operation finishes
+   * @param metrics the metrics recorder
+   */
+  public SyncObserver(
+      BaseTypeMapper typeMapper,
+      CompletableFuture<SyncResult> onComplete,
+      ClientMetrics metrics) {
+    this(typeMapper, onComplete, metrics, Span.NOOP);
+  }
+
+  /**
+   * Creates a new SyncObserver that records metrics and a trace span for the stream. Each partial
+   * result and reset is recorded as an event on the span, and the span is ended when the stream
+   * finishes.
+   *
+   * @param typeMapper the type mapper for converting proto items to Java objects
+   * @param onComplete the CompletableFuture to complete when the sync operation finishes
+   * @param metrics the metrics recorder
+   * @param span the span for the call
+   */
+  public SyncObserver(
+      BaseTypeMapper typeMapper,
+      CompletableFuture<SyncResult> onComplete,
+      ClientMetrics metrics,
+      Span span) {
     this.typeMapper = typeMapper;
     this.onComplete = onComplete;
+    this.metrics = metrics;
+    this.span = span;
+    metrics.callStarted(Operation.SYNC_LIST);
+    this.startNanos = System.nanoTime();
   }
 
   @Override
   public void onNext(SyncListResponse response) {
     resultLock.lock();
     try {
+      if (!receivedFrame) {
+        receivedFrame = true;
+        metrics.firstFrame(Operation.SYNC_LIST, System.nanoTime() - startNanos);
+      }
+      int frameBytes = response.getSerializedSize();
+      byteCount += frameBytes;
       switch (response.getResponseCase()) {
         case RESET:
           // override the result and empty everything before the reset
           isReset = true;
+          span.event(TraceEvent.SYNC_RESET, frameCount++, 0, frameBytes);
           changedItems.clear();
           deletedItemPaths.clear();
           updatedOutsideListWindowPaths.clear();
           break;
         case RESULT:
+          int frameItems =
+              response.getResult().getChangedItemsCount()
+                  + response.getResult().getDeletedItemsCount()
+                  + response.getResult().getUpdatedItemKeysOutsideListWindowCount();
+          itemCount += frameItems;
+          metrics.partialResult(Operation.SYNC_LIST, frameItems, frameBytes);
+          span.event(TraceEvent.PARTIAL_RESULT, frameCount++, frameItems, frameBytes);
           changedItems.addAll(
               response.getResult().getChangedItemsList().stream()
                   .map(item -> typeMapper.unmarshal(item))
@@ -80,13 +142,24 @@ public class SyncObserver implements StreamObserver<SyncListResponse> {
 
   @Override
   public void onError(Throwable t) {
-    onComplete.completeExceptionally(StatelyException.from(t));
+    StatelyException e = StatelyException.from(t);
+    metrics.callFinished(
+        Operation.SYNC_LIST, e.getGrpcCode(), System.nanoTime() - startNanos, itemCount, byteCount);
+    span.end(e.getGrpcCode(), itemCount, byteCount);
+    onComplete.completeExceptionally(e);
   }
 
   @Override
   public void onCompleted() {
     resultLock.lock();
     try {
+      metrics.callFinished(
+          Operation.SYNC_LIST,
+          Status.Code.OK,
+          System.nanoTime() - startNanos,
+          itemCount,
+          byteCount);
+      span.end(Status.Code.OK, itemCount, byteCount);
       onComplete.complete(
           new SyncResult(
               changedItems, deletedItemPaths, updatedOutsideListWindowPaths, isReset, token));
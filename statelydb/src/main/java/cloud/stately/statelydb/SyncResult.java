@@ -1,6 +1,7 @@
 package cloud.stately.statelydb;
 
 import cloud.stately.db.ListToken;
+import cloud.stately.statelydb.schema.KeyPath;
 import cloud.stately.statelydb.schema.StatelyItem;
 import java.util.List;
 
@@ -56,6 +57,16 @@ public class SyncResult {
     return deletedItemPaths;
   }
 
+  /**
+   * Returns the key paths of deleted items as compact {@link KeyPath} values, which are cheaper to
+   * keep than strings when maintaining a large local view. Each call converts the key paths again.
+   *
+   * @return List of key paths for deleted items
+   */
+  public List<KeyPath> getDeletedKeyPaths() {
+    return KeyPaths.fromStrings(deletedItemPaths);
+  }
+
   /**
    * Returns the list of key paths for items that were updated but are no longer within the current
    * result set. You can treat these like deleted items, but they haven't actually been deleted -
@@ -67,6 +78,16 @@ public class SyncResult {
     return updatedOutsideListWindowPaths;
   }
 
+  /**
+   * Returns the key paths of items updated outside the list window as compact {@link KeyPath}
+   * values. Each call converts the key paths again.
+   *
+   * @return List of key paths for items updated outside the list window
+   */
+  public List<KeyPath> getUpdatedOutsideListWindowKeyPaths() {
+    return KeyPaths.fromStrings(updatedOutsideListWindowPaths);
+  }
+
   /**
    * Returns whether this is a reset signal. If true, any previously cached view of the result set
    * is no longer valid and should be discarded. This will always be followed by a series of changed
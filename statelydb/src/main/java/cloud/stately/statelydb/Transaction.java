@@ -1,9 +1,11 @@
 package cloud.stately.statelydb;
 
 import cloud.stately.db.ListToken;
+import cloud.stately.statelydb.schema.KeyPath;
 import cloud.stately.statelydb.schema.StatelyItem;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Transaction interface that provides data access methods for transactional operations. This
@@ -59,6 +61,17 @@ public interface Transaction {
    */
   <T extends StatelyItem> CompletableFuture<T> get(String keyPath);
 
+  /**
+   * get retrieves an item by its full key path. This is the same as {@link #get(String)}.
+   *
+   * @param <T> the type of the item to retrieve
+   * @param keyPath the full key path of the item
+   * @return a CompletableFuture containing the item or null if not found
+   */
+  default <T extends StatelyItem> CompletableFuture<T> get(KeyPath keyPath) {
+    return get(keyPath.toString());
+  }
+
   /**
    * getBatch retrieves multiple items by their full key paths. This will return the corresponding
    * items that exist. Use beginList instead if you want to retrieve multiple items but don't
@@ -82,6 +95,17 @@ public interface Transaction {
    */
   CompletableFuture<List<StatelyItem>> getBatch(List<String> keyPaths);
 
+  /**
+   * getBatchKeyPaths retrieves multiple items by their full key paths. This is the same as {@link
+   * #getBatch(List)}.
+   *
+   * @param keyPaths the list of key paths to retrieve
+   * @return a CompletableFuture containing the list of items
+   */
+  default CompletableFuture<List<StatelyItem>> getBatchKeyPaths(List<KeyPath> keyPaths) {
+    return getBatch(KeyPaths.toStrings(keyPaths));
+  }
+
   /**
    * put adds an Item to the Store, or replaces the Item if it already exists at that path. Unlike
    * the put method outside of a transaction, this only returns the generated ID of the item, and
@@ -164,6 +188,16 @@ public interface Transaction {
    */
   void delete(String... keyPaths);
 
+  /**
+   * delete removes one or more items from the Store by their full key paths. This is the same as
+   * {@link #delete(String...)}.
+   *
+   * @param keyPaths the full key paths of the items to delete
+   */
+  default void delete(KeyPath... keyPaths) {
+    delete(KeyPaths.toStrings(keyPaths));
+  }
+
   /**
    * beginList retrieves Items that start with a specified keyPathPrefix from a single Group.
    * Because it can only list items from a single Group, the key path prefix must at least start
@@ -211,6 +245,31 @@ public interface Transaction {
    */
   CompletableFuture<ListResult> beginList(String keyPathPrefix, ListOptions options);
 
+  /**
+   * beginList retrieves Items that start with a specified keyPathPrefix from a single Group. This
+   * is the same as {@link #beginList(String)}.
+   *
+   * @param keyPathPrefix the key path prefix to query for. It must be at least a full Group Key
+   *     (e.g. `/user-1234`).
+   * @return a CompletableFuture containing a ListResult
+   */
+  default CompletableFuture<ListResult> beginList(KeyPath keyPathPrefix) {
+    return beginList(keyPathPrefix.toString());
+  }
+
+  /**
+   * beginList retrieves Items that start with a specified keyPathPrefix from a single Group. This
+   * is the same as {@link #beginList(String, ListOptions)}.
+   *
+   * @param keyPathPrefix the key path prefix to query for. It must be at least a full Group Key
+   *     (e.g. `/user-1234`).
+   * @param options the list options for filtering and pagination (can be null)
+   * @return a CompletableFuture containing a ListResult
+   */
+  default CompletableFuture<ListResult> beginList(KeyPath keyPathPrefix, ListOptions options) {
+    return beginList(keyPathPrefix.toString(), options);
+  }
+
   /**
    * continueList takes the token from a beginList call and returns the next "page" of results based
    * on the original query parameters and pagination options. It doesn't have options because it is
@@ -237,4 +296,86 @@ public interface Transaction {
    * }</pre>
    */
   CompletableFuture<ListResult> continueList(ListToken token);
+
+  /**
+   * beginListStream is like beginList, but instead of collecting the whole page before completing,
+   * it hands each partial result to the consumer as soon as it arrives from the server. Only the
+   * partial result currently being handled is kept in memory. The consumer is called in order on
+   * the thread that receives the stream, so it should not block.
+   *
+   * <p>The default implementation collects the page with {@link #beginList(String, ListOptions)}
+   * and hands it to the consumer in one piece, so existing implementations keep working.
+   *
+   * @param keyPathPrefix the key path prefix to query for. It must be at least a full Group Key
+   *     (e.g. `/user-1234`).
+   * @param options the list options for filtering and pagination (can be null)
+   * @param consumer the consumer to receive each partial result
+   * @return a CompletableFuture containing the ListToken for continuation
+   *     <p>Example usage:
+   *     <pre>{@code
+   * ListToken token = txn.beginListStream("/jedi-luke/equipment", null, items -> {
+   *     for (StatelyItem item : items) {
+   *         System.out.println(item.primaryKeyPath());
+   *     }
+   * }).get();
+   * }</pre>
+   */
+  default CompletableFuture<ListToken> beginListStream(
+      String keyPathPrefix, ListOptions options, Consumer<List<StatelyItem>> consumer) {
+    return beginList(keyPathPrefix, options)
+        .thenApply(
+            result -> {
+              consumer.accept(result.getItems());
+              return result.getToken();
+            });
+  }
+
+  /**
+   * continueListStream is like continueList, but hands each partial result to the consumer as soon
+   * as it arrives instead of collecting the whole page. The default implementation collects the
+   * page with {@link #continueList(ListToken)} and hands it to the consumer in one piece.
+   *
+   * @param token the token from a previous list operation
+   * @param consumer the consumer to receive each partial result
+   * @return a CompletableFuture containing the ListToken for further continuation
+   */
+  default CompletableFuture<ListToken> continueListStream(
+      ListToken token, Consumer<List<StatelyItem>> consumer) {
+    return continueList(token)
+        .thenApply(
+            result -> {
+              consumer.accept(result.getItems());
+              return result.getToken();
+            });
+  }
+
+  /**
+   * listAll streams every item matching the key path prefix to the consumer, automatically calling
+   * continueList with each returned token until the result set is exhausted. Each partial result is
+   * handed to the consumer as it arrives, so the full result set is never held in memory.
+   *
+   * @param keyPathPrefix the key path prefix to query for. It must be at least a full Group Key
+   *     (e.g. `/user-1234`).
+   * @param options the list options for filtering and pagination (can be null)
+   * @param consumer the consumer to receive each partial result
+   * @return a CompletableFuture containing the final ListToken
+   *     <p>Example usage:
+   *     <pre>{@code
+   * AtomicInteger count = new AtomicInteger();
+   * txn.listAll("/jedi-luke/equipment", null, items -> count.addAndGet(items.size())).get();
+   * }</pre>
+   */
+  default CompletableFuture<ListToken> listAll(
+      String keyPathPrefix, ListOptions options, Consumer<List<StatelyItem>> consumer) {
+    return beginListStream(keyPathPrefix, options, consumer)
+        .thenCompose(token -> continueAll(token, consumer));
+  }
+
+  private CompletableFuture<ListToken> continueAll(
+      ListToken token, Consumer<List<StatelyItem>> consumer) {
+    if (!token.getCanContinue()) {
+      return CompletableFuture.completedFuture(token);
+    }
+    return continueListStream(token, consumer).thenCompose(next -> continueAll(next, consumer));
+  }
 }
@@ -2,6 +2,7 @@ package cloud.stately.statelydb;
 
 import cloud.stately.db.DatabaseServiceGrpc;
 import cloud.stately.db.DeleteItem;
+import cloud.stately.db.DeleteResult;
 import cloud.stately.db.GetItem;
 import cloud.stately.db.ListToken;
 import cloud.stately.db.PutItem;
@@ -16,16 +17,25 @@ import cloud.stately.db.TransactionResponse;
 import cloud.stately.statelydb.common.StatelyException;
 import cloud.stately.statelydb.schema.BaseTypeMapper;
 import cloud.stately.statelydb.schema.StatelyItem;
+import cloud.stately.statelydb.tracing.Span;
+import cloud.stately.statelydb.tracing.TraceEvent;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.Empty;
 import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -41,9 +51,21 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
   private final BaseTypeMapper typeMapper;
   private final AtomicInteger messageIdCounter = new AtomicInteger(1);
   private StreamObserver<TransactionRequest> requestStream;
-  private final ConcurrentLinkedQueue<CompletableFuture<TransactionResponse>> pendingResponses =
+  private final ConcurrentLinkedQueue<PendingResponse> pendingResponses =
       new ConcurrentLinkedQueue<>();
+  private final Object sendLock = new Object();
   private AtomicBoolean serverError = new AtomicBoolean(false);
+  private final boolean readOnly;
+  private final Span span;
+
+  /* Completed exceptionally if the watchdog gives up on this transaction. */
+  private final CompletableFuture<Void> expired = new CompletableFuture<>();
+  private final AtomicBoolean streamClosed = new AtomicBoolean(false);
+  /* Why the stream closed, if it was expired or failed; read by send() once streamClosed is set. */
+  private volatile StatelyException closedError;
+  private volatile long lastActivityNanos = System.nanoTime();
+  private volatile ScheduledFuture<?> deadlineTask;
+  private volatile ScheduledFuture<?> idleTask;
 
   /**
    * Creates a new TransactionHelper.
@@ -54,9 +76,74 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
    */
   public TransactionHelper(
       long storeId, BaseTypeMapper typeMapper, DatabaseServiceGrpc.DatabaseServiceStub stub) {
+    this(storeId, typeMapper, stub, false);
+  }
+
+  /**
+   * Creates a new TransactionHelper, optionally in read-only mode. A read-only transaction rejects
+   * puts and deletes on the client and is finished with {@link #release()} instead of a commit.
+   *
+   * @param storeId the store ID
+   * @param typeMapper the type mapper for marshalling/unmarshalling items
+   * @param stub the gRPC stub for database operations
+   * @param readOnly whether writes should be rejected
+   */
+  public TransactionHelper(
+      long storeId,
+      BaseTypeMapper typeMapper,
+      DatabaseServiceGrpc.DatabaseServiceStub stub,
+      boolean readOnly) {
+    this(storeId, typeMapper, stub, readOnly, Span.NOOP);
+  }
+
+  /**
+   * Creates a new TransactionHelper that records every message sent and received on the stream as
+   * an event on the given span. The span is not ended by the helper.
+   *
+   * @param storeId the store ID
+   * @param typeMapper the type mapper for marshalling/unmarshalling items
+   * @param stub the gRPC stub for database operations
+   * @param readOnly whether writes should be rejected
+   * @param span the span for the transaction
+   */
+  public TransactionHelper(
+      long storeId,
+      BaseTypeMapper typeMapper,
+      DatabaseServiceGrpc.DatabaseServiceStub stub,
+      boolean readOnly,
+      Span span) {
+    this(storeId, typeMapper, stub, readOnly, span, MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Creates a new TransactionHelper that handles responses on the given executor instead of the
+   * gRPC callback thread. Responses are still handled one at a time and in order, so the futures
+   * returned to the handler, and any stages chained to them without an executor, run on {@code
+   * callbackExecutor}.
+   *
+   * @param storeId the store ID
+   * @param typeMapper the type mapper for marshalling/unmarshalling items
+   * @param stub the gRPC stub for database operations
+   * @param readOnly whether writes should be rejected
+   * @param span the span for the transaction
+   * @param callbackExecutor the executor to handle responses on
+   */
+  public TransactionHelper(
+      long storeId,
+      BaseTypeMapper typeMapper,
+      DatabaseServiceGrpc.DatabaseServiceStub stub,
+      boolean readOnly,
+      Span span,
+      Executor callbackExecutor) {
 
     this.typeMapper = typeMapper;
-    this.requestStream = stub.transaction(this);
+    this.readOnly = readOnly;
+    this.span = span;
+    this.requestStream =
+        stub.transaction(
+            callbackExecutor == MoreExecutors.directExecutor()
+                ? this
+                : new SequentialObserver(MoreExecutors.newSequentialExecutor(callbackExecutor)));
 
     // Send begin message
     TransactionRequest beginRequest =
@@ -70,6 +157,7 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
                     .build())
             .build();
 
+    traceSent(beginRequest);
     requestStream.onNext(beginRequest);
   }
 
@@ -212,6 +300,9 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
    */
   public <T extends StatelyItem> CompletableFuture<List<GeneratedId>> putBatch(
       List<PutRequest<T>> requests) {
+    if (readOnly) {
+      return CompletableFuture.failedFuture(readOnlyViolation("put"));
+    }
 
     TransactionRequest.Builder requestBuilder =
         TransactionRequest.newBuilder()
@@ -221,7 +312,12 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
                         requests.stream()
                             .map(
                                 (PutRequest<T> request) ->
-                                    PutItem.newBuilder().setItem(request.item().marshal()).build())
+                                    PutItem.newBuilder()
+                                        .setItem(request.item().marshal())
+                                        .setMustNotExist(request.mustNotExist())
+                                        .setOverwriteMetadataTimestamps(
+                                            request.overwriteMetadataTimestamp())
+                                        .build())
                             .collect(Collectors.toList()))
                     .build());
 
@@ -253,6 +349,9 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
    * }</pre>
    */
   public void delete(String... keyPaths) {
+    if (readOnly) {
+      throw readOnlyViolation("delete");
+    }
     TransactionRequest.Builder requestBuilder =
         TransactionRequest.newBuilder()
             .setDeleteItems(
@@ -314,6 +413,49 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
    * @return a CompletableFuture containing a ListResult
    */
   public CompletableFuture<ListResult> beginList(String keyPathPrefix, ListOptions options) {
+    return collectList(beginListRequest(keyPathPrefix, options));
+  }
+
+  /**
+   * beginListStream is like beginList, but instead of collecting the whole page before completing,
+   * it hands each partial result to the consumer as soon as it arrives from the server. Only the
+   * partial result currently being handled is kept in memory. The consumer is called in order on
+   * the thread that receives the stream, so it should not block.
+   *
+   * @param keyPathPrefix the key path prefix to query for. It must be at least a full Group Key
+   *     (e.g. `/user-1234`).
+   * @param options the list options for filtering and pagination (can be null)
+   * @param consumer the consumer to receive each partial result
+   * @return a CompletableFuture containing the ListToken for continuation
+   *     <p>Example usage:
+   *     <pre>{@code
+   * ListToken token = txn.beginListStream("/jedi-luke/equipment", null, items -> {
+   *     for (StatelyItem item : items) {
+   *         System.out.println(item.primaryKeyPath());
+   *     }
+   * }).get();
+   * }</pre>
+   */
+  public CompletableFuture<ListToken> beginListStream(
+      String keyPathPrefix, ListOptions options, Consumer<List<StatelyItem>> consumer) {
+    return streamList(beginListRequest(keyPathPrefix, options), consumer);
+  }
+
+  /**
+   * continueListStream is like continueList, but hands each partial result to the consumer as soon
+   * as it arrives instead of collecting the whole page.
+   *
+   * @param token the token from a previous list operation
+   * @param consumer the consumer to receive each partial result
+   * @return a CompletableFuture containing the ListToken for further continuation
+   */
+  public CompletableFuture<ListToken> continueListStream(
+      ListToken token, Consumer<List<StatelyItem>> consumer) {
+    return streamList(continueListRequest(token), consumer);
+  }
+
+  private static TransactionRequest.Builder beginListRequest(
+      String keyPathPrefix, ListOptions options) {
     TransactionBeginList.Builder beginListRequestBuilder =
         TransactionBeginList.newBuilder().setKeyPathPrefix(keyPathPrefix);
 
@@ -326,92 +468,40 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
       beginListRequestBuilder.setSortDirection(options.getSortDirection());
     }
 
-    TransactionRequest.Builder requestBuilder =
-        TransactionRequest.newBuilder().setBeginList(beginListRequestBuilder.build());
-
-    return streamListResponses(requestBuilder);
+    return TransactionRequest.newBuilder().setBeginList(beginListRequestBuilder.build());
   }
 
-  /**
-   * Initiates streaming list responses for a list operation.
-   *
-   * @param requestBuilder the transaction request builder for the list operation
-   * @return a CompletableFuture containing the complete ListResult
-   */
-  private CompletableFuture<ListResult> streamListResponses(
-      TransactionRequest.Builder requestBuilder) {
-    int msgId = requestOnly(requestBuilder);
-    return collectListResponses(msgId);
+  private static TransactionRequest.Builder continueListRequest(ListToken token) {
+    return TransactionRequest.newBuilder()
+        .setContinueList(
+            TransactionContinueList.newBuilder().setTokenData(token.getTokenData()).build());
   }
 
   /**
-   * Collects all list responses for a given message ID using iterative approach.
+   * Sends a list request and collects every partial result into a single ListResult.
    *
-   * @param messageId the message ID for the list operation
+   * @param requestBuilder the transaction request builder for the list operation
    * @return a CompletableFuture containing the complete ListResult
    */
-  private CompletableFuture<ListResult> collectListResponses(int messageId) {
+  private CompletableFuture<ListResult> collectList(TransactionRequest.Builder requestBuilder) {
+    // The consumer is only ever called from the stream's callback thread, one frame at a time.
     List<StatelyItem> items = new ArrayList<>();
-
-    CompletableFuture<ListResult> collectMore = new CompletableFuture<>();
-    collectListResponse(messageId, items, collectMore);
-    return collectMore;
+    return streamList(requestBuilder, items::addAll)
+        .thenApply(token -> new ListResult(items, token));
   }
 
   /**
-   * Collects a single list response and continues collecting if needed.
+   * Sends a list request and feeds each partial result to the consumer as it arrives.
    *
-   * @param messageId the message ID for the list operation
-   * @param items the accumulating list of items
-   * @param result the future to complete with the final result
+   * @param requestBuilder the transaction request builder for the list operation
+   * @param consumer the consumer to receive each partial result
+   * @return a CompletableFuture containing the token from the finished list
    */
-  private void collectListResponse(
-      int messageId, List<StatelyItem> items, CompletableFuture<ListResult> result) {
-
-    CompletableFuture<TransactionResponse> responseFuture = new CompletableFuture<>();
-    pendingResponses.add(responseFuture);
-
-    waitForResponse(responseFuture, messageId)
-        .thenAccept(
-            response -> {
-              if (!response.hasListResults()) {
-                result.completeExceptionally(
-                    new StatelyException(
-                        "Expected list results", Status.Code.INTERNAL, "Internal"));
-                return;
-              }
-
-              var listResponse = response.getListResults();
-              switch (listResponse.getResponseCase()) {
-                case RESULT:
-                  items.addAll(
-                      listResponse.getResult().getItemsList().stream()
-                          .map(typeMapper::unmarshal)
-                          .collect(Collectors.toList()));
-                  collectListResponse(messageId, items, result);
-                  break;
-
-                case FINISHED:
-                  result.complete(
-                      new ListResult(
-                          new ArrayList<>(items), listResponse.getFinished().getToken()));
-                  break;
-
-                case RESPONSE_NOT_SET:
-                default:
-                  result.completeExceptionally(
-                      new StatelyException(
-                          "Expected RESULT or FINISHED response",
-                          Status.Code.INTERNAL,
-                          "Internal"));
-                  break;
-              }
-            })
-        .exceptionally(
-            throwable -> {
-              result.completeExceptionally(throwable);
-              return null;
-            });
+  private CompletableFuture<ListToken> streamList(
+      TransactionRequest.Builder requestBuilder, Consumer<List<StatelyItem>> consumer) {
+    ListResponseSink sink = new ListResponseSink(consumer);
+    send(requestBuilder, sink);
+    return sink.result;
   }
 
   /**
@@ -440,12 +530,7 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
    * }</pre>
    */
   public CompletableFuture<ListResult> continueList(ListToken token) {
-    TransactionRequest.Builder requestBuilder =
-        TransactionRequest.newBuilder()
-            .setContinueList(
-                TransactionContinueList.newBuilder().setTokenData(token.getTokenData()).build());
-
-    return streamListResponses(requestBuilder);
+    return collectList(continueListRequest(token));
   }
 
   /**
@@ -475,6 +560,9 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
                       response.getFinished().getPutResultsList().stream()
                           .map(item -> typeMapper.unmarshal(item))
                           .collect(Collectors.toList()),
+                      response.getFinished().getDeleteResultsList().stream()
+                          .map(DeleteResult::getKeyPath)
+                          .collect(Collectors.toList()),
                       response.getFinished().getCommitted()));
             });
   }
@@ -500,27 +588,151 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
   }
 
   /**
-   * Waits for a response with the specified message ID and validates it matches.
+   * release finishes a read-only transaction. Because nothing was written there is nothing to
+   * commit, so instead of a commit round-trip the stream is cancelled and the server discards the
+   * transaction. This is called automatically when a read-only handler completes.
+   */
+  public void release() {
+    serverError.set(true); // any error from the cancelled stream is expected, skip abort
+    cancelStream("Read-only transaction finished");
+  }
+
+  /**
+   * Starts the watchdog for this transaction. If the whole transaction takes longer than {@code
+   * timeoutMillis}, or no message is sent or received for {@code idleTimeoutMillis}, the stream is
+   * cancelled and every pending operation fails with DEADLINE_EXCEEDED. A value of zero disables
+   * the corresponding check.
+   *
+   * @param scheduler the scheduler to run the checks on
+   * @param timeoutMillis the overall deadline for the transaction in milliseconds
+   * @param idleTimeoutMillis the maximum time without stream activity in milliseconds
+   */
+  public void startWatchdog(
+      ScheduledExecutorService scheduler, long timeoutMillis, long idleTimeoutMillis) {
+    if (timeoutMillis > 0) {
+      deadlineTask =
+          scheduler.schedule(
+              () -> expire("Transaction did not finish within " + timeoutMillis + "ms"),
+              timeoutMillis,
+              TimeUnit.MILLISECONDS);
+    }
+    if (idleTimeoutMillis > 0) {
+      scheduleIdleCheck(scheduler, TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis));
+    }
+  }
+
+  /**
+   * Wraps a future so that it also fails if the watchdog expires the transaction. This is used to
+   * make sure the caller is released even if the handler itself never completes.
    *
-   * @param responseFuture the future that will contain the response
-   * @param messageId the expected message ID
-   * @return a CompletableFuture containing the validated TransactionResponse
+   * @param <T> the type of the future result
+   * @param future the future to guard
+   * @return a future that completes with the input or fails when the transaction expires
    */
-  private CompletableFuture<TransactionResponse> waitForResponse(
-      CompletableFuture<TransactionResponse> responseFuture, int messageId) {
-    return responseFuture.thenCompose(
-        response -> {
-          if (response.getMessageId() != messageId) {
-            CompletableFuture<TransactionResponse> failedFuture = new CompletableFuture<>();
-            failedFuture.completeExceptionally(
-                new StatelyException(
-                    "Mismatched response message ID",
-                    Status.Code.INTERNAL,
-                    "Internal: expected " + messageId + " but got " + response.getMessageId()));
-            return failedFuture;
+  <T> CompletableFuture<T> guard(CompletableFuture<T> future) {
+    CompletableFuture<T> guarded = new CompletableFuture<>();
+    future.whenComplete(
+        (result, error) -> {
+          if (error != null) {
+            guarded.completeExceptionally(error);
+          } else {
+            guarded.complete(result);
           }
-          return CompletableFuture.completedFuture(response);
         });
+    expired.whenComplete(
+        (v, error) -> {
+          if (error != null) {
+            guarded.completeExceptionally(error);
+          }
+        });
+    return guarded;
+  }
+
+  private void scheduleIdleCheck(ScheduledExecutorService scheduler, long idleTimeoutNanos) {
+    long idleNanos = System.nanoTime() - lastActivityNanos;
+    if (idleNanos >= idleTimeoutNanos) {
+      expire(
+          "Transaction stream was idle for more than "
+              + TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos)
+              + "ms");
+      return;
+    }
+    if (streamClosed.get()) {
+      return;
+    }
+    // Re-check when the current idle window would run out rather than polling.
+    idleTask =
+        scheduler.schedule(
+            () -> scheduleIdleCheck(scheduler, idleTimeoutNanos),
+            idleTimeoutNanos - idleNanos,
+            TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Gives up on the transaction: cancels the stream so the HTTP/2 stream is freed, and fails any
+   * pending operation along with the guarded handler future.
+   *
+   * @param message the reason the transaction expired
+   */
+  private void expire(String message) {
+    StatelyException e =
+        new StatelyException(message, Status.Code.DEADLINE_EXCEEDED, "DeadlineExceeded");
+    // under the send lock, so no request is sent on the stream once it is cancelled
+    synchronized (sendLock) {
+      if (!streamClosed.compareAndSet(false, true)) {
+        return;
+      }
+      closedError = e;
+    }
+    // set true so abort will be skipped as the stream is gone.
+    serverError.set(true);
+    cancelStream(message);
+    failPending(e);
+    expired.completeExceptionally(e);
+  }
+
+  private void cancelStream(String message) {
+    if (requestStream instanceof ClientCallStreamObserver) {
+      ((ClientCallStreamObserver<TransactionRequest>) requestStream).cancel(message, null);
+    } else {
+      requestStream.onCompleted();
+    }
+    stopWatchdog();
+  }
+
+  private void stopWatchdog() {
+    streamClosed.set(true);
+    ScheduledFuture<?> deadline = deadlineTask;
+    if (deadline != null) {
+      deadline.cancel(false);
+    }
+    ScheduledFuture<?> idle = idleTask;
+    if (idle != null) {
+      idle.cancel(false);
+    }
+  }
+
+  private void failPending(StatelyException e) {
+    PendingResponse pending;
+    while ((pending = pendingResponses.poll()) != null) {
+      pending.fail(e);
+    }
+  }
+
+  /**
+   * Returns whether this transaction rejects writes.
+   *
+   * @return true if this is a read-only transaction
+   */
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  private static StatelyException readOnlyViolation(String operation) {
+    return new StatelyException(
+        "Cannot " + operation + " items in a read-only transaction",
+        Status.Code.FAILED_PRECONDITION,
+        "ReadOnlyTransaction");
   }
 
   /**
@@ -531,10 +743,9 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
    */
   private CompletableFuture<TransactionResponse> requestResponse(
       TransactionRequest.Builder builder) {
-    int msgId = requestOnly(builder);
-    CompletableFuture<TransactionResponse> responseFuture = new CompletableFuture<>();
-    pendingResponses.add(responseFuture);
-    return waitForResponse(responseFuture, msgId);
+    SingleResponse pending = new SingleResponse();
+    send(builder, pending);
+    return pending.result;
   }
 
   /**
@@ -544,19 +755,222 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
    * @return the message ID assigned to the request
    */
   private int requestOnly(TransactionRequest.Builder builder) {
-    int msgId = messageIdCounter.getAndIncrement();
-    builder.setMessageId(msgId);
-    requestStream.onNext(builder.build());
-    return msgId;
+    return send(builder, null);
+  }
+
+  /**
+   * Assigns a message ID, registers the handler for its responses and sends the request. This is
+   * done under a lock so the order of pending handlers always matches the order of messages on the
+   * stream, which is what lets responses be matched up positionally. Once the stream is closed,
+   * the request is not sent: the handler fails with the reason the stream closed, or the error is
+   * thrown if there is no handler.
+   *
+   * @param builder the transaction request builder
+   * @param pending the handler for the responses, or null if none are expected
+   * @return the message ID assigned to the request
+   */
+  private int send(TransactionRequest.Builder builder, PendingResponse pending) {
+    synchronized (sendLock) {
+      if (streamClosed.get()) {
+        StatelyException e = closedError;
+        if (e == null) {
+          e =
+              new StatelyException(
+                  "Transaction stream is closed",
+                  Status.Code.FAILED_PRECONDITION,
+                  "FailedPrecondition");
+        }
+        if (pending == null) {
+          throw e;
+        }
+        pending.fail(e);
+        return -1;
+      }
+      int msgId = messageIdCounter.getAndIncrement();
+      builder.setMessageId(msgId);
+      if (pending != null) {
+        pending.messageId = msgId;
+        pendingResponses.add(pending);
+      }
+      lastActivityNanos = System.nanoTime();
+      TransactionRequest request = builder.build();
+      traceSent(request);
+      requestStream.onNext(request);
+      return msgId;
+    }
+  }
+
+  private void traceSent(TransactionRequest request) {
+    if (span.isRecording()) {
+      span.event(TraceEvent.MESSAGE_SENT, request.getMessageId(), 0, request.getSerializedSize());
+    }
+  }
+
+  private void traceReceived(TransactionResponse response) {
+    if (span.isRecording()) {
+      span.event(
+          TraceEvent.MESSAGE_RECEIVED,
+          response.getMessageId(),
+          responseItemCount(response),
+          response.getSerializedSize());
+    }
+  }
+
+  private static int responseItemCount(TransactionResponse response) {
+    switch (response.getResultCase()) {
+      case GET_RESULTS:
+        return response.getGetResults().getItemsCount();
+      case PUT_ACK:
+        return response.getPutAck().getGeneratedIdsCount();
+      case LIST_RESULTS:
+        return response.getListResults().getResult().getItemsCount();
+      case FINISHED:
+        return response.getFinished().getPutResultsCount()
+            + response.getFinished().getDeleteResultsCount();
+      case RESULT_NOT_SET:
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * A handler for the response(s) to a single request. Most requests get exactly one response, but
+   * list requests get a series of partial results followed by a finished message, all with the same
+   * message ID.
+   */
+  private abstract static class PendingResponse {
+    int messageId;
+
+    /**
+     * Handles a response for this request.
+     *
+     * @param response the response from the server
+     * @return true if this was the last response expected for the request
+     */
+    final boolean accept(TransactionResponse response) {
+      if (response.getMessageId() != messageId) {
+        fail(
+            new StatelyException(
+                "Mismatched response message ID",
+                Status.Code.INTERNAL,
+                "Internal: expected " + messageId + " but got " + response.getMessageId()));
+        return true;
+      }
+      return handle(response);
+    }
+
+    abstract boolean handle(TransactionResponse response);
+
+    abstract void fail(StatelyException e);
+  }
+
+  /** Completes a future with the single response to a request. */
+  private static final class SingleResponse extends PendingResponse {
+    final CompletableFuture<TransactionResponse> result = new CompletableFuture<>();
+
+    @Override
+    boolean handle(TransactionResponse response) {
+      result.complete(response);
+      return true;
+    }
+
+    @Override
+    void fail(StatelyException e) {
+      result.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Hands each partial list result to a consumer as it arrives and completes with the token once
+   * the list is finished. No future is created per partial result.
+   */
+  private final class ListResponseSink extends PendingResponse {
+    final CompletableFuture<ListToken> result = new CompletableFuture<>();
+    private final Consumer<List<StatelyItem>> consumer;
+
+    ListResponseSink(Consumer<List<StatelyItem>> consumer) {
+      this.consumer = consumer;
+    }
+
+    @Override
+    boolean handle(TransactionResponse response) {
+      if (!response.hasListResults()) {
+        fail(new StatelyException("Expected list results", Status.Code.INTERNAL, "Internal"));
+        return true;
+      }
+
+      var listResponse = response.getListResults();
+      switch (listResponse.getResponseCase()) {
+        case RESULT:
+          if (!result.isDone()) {
+            try {
+              consumer.accept(
+                  listResponse.getResult().getItemsList().stream()
+                      .map(typeMapper::unmarshal)
+                      .collect(Collectors.toList()));
+            } catch (Throwable t) {
+              // keep draining this list's frames so later responses stay matched up
+              fail(StatelyException.from(t));
+            }
+          }
+          return false;
+
+        case FINISHED:
+          result.complete(listResponse.getFinished().getToken());
+          return true;
+
+        case RESPONSE_NOT_SET:
+        default:
+          fail(
+              new StatelyException(
+                  "Expected RESULT or FINISHED response", Status.Code.INTERNAL, "Internal"));
+          return true;
+      }
+    }
+
+    @Override
+    void fail(StatelyException e) {
+      result.completeExceptionally(e);
+    }
+  }
+
+  /** Forwards stream callbacks to this helper one at a time on another executor. */
+  private final class SequentialObserver implements StreamObserver<TransactionResponse> {
+    private final Executor executor;
+
+    SequentialObserver(Executor executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public void onNext(TransactionResponse response) {
+      executor.execute(() -> TransactionHelper.this.onNext(response));
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      executor.execute(() -> TransactionHelper.this.onError(t));
+    }
+
+    @Override
+    public void onCompleted() {
+      executor.execute(TransactionHelper.this::onCompleted);
+    }
   }
 
   // StreamObserver implementation methods
   /** Handles the next response from the transaction stream. */
   @Override
   public void onNext(TransactionResponse response) {
-    // Poll should never return null. We implement request
-    // response protocol ourselves on the stream.
-    pendingResponses.poll().complete(response);
+    lastActivityNanos = System.nanoTime();
+    traceReceived(response);
+    // Peek should only return null for a late frame on a released
+    // read-only transaction. We implement request response protocol
+    // ourselves on the stream.
+    PendingResponse pending = pendingResponses.peek();
+    if (pending != null && pending.accept(response)) {
+      pendingResponses.poll();
+    }
   }
 
   /**
@@ -569,12 +983,15 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
     // set true so abort will be skipped as we already
     // have an error from the server.
     serverError.set(true);
-
     StatelyException e = StatelyException.from(t);
-    for (CompletableFuture<TransactionResponse> future : pendingResponses) {
-      future.completeExceptionally(e);
+    synchronized (sendLock) {
+      if (!streamClosed.get()) {
+        closedError = e;
+      }
+      stopWatchdog();
     }
-    pendingResponses.clear();
+
+    failPending(e);
   }
 
   /**
@@ -583,16 +1000,13 @@ public class TransactionHelper implements Transaction, StreamObserver<Transactio
    */
   @Override
   public void onCompleted() {
+    stopWatchdog();
 
     // If the stream completes with pending responses, that's an error condition
     if (!pendingResponses.isEmpty()) {
-      StatelyException e =
+      failPending(
           new StatelyException(
-              "Transaction stream completed unexpectedly", Status.Code.INTERNAL, "Internal");
-      for (CompletableFuture<TransactionResponse> future : pendingResponses) {
-        future.completeExceptionally(e);
-      }
-      pendingResponses.clear();
+              "Transaction stream completed unexpectedly", Status.Code.INTERNAL, "Internal"));
     }
   }
 }
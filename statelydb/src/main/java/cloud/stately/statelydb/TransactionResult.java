@@ -5,7 +5,7 @@ import java.util.List;
 
 /**
  * After a transaction is done, this result contains the updated or created items from any puts in
- * the transaction.
+ * the transaction, and the key paths of any items deleted in it.
  *
  * <p>Example usage:
  *
@@ -29,6 +29,7 @@ import java.util.List;
  */
 public class TransactionResult {
   private final List<StatelyItem> puts;
+  private final List<String> deletes;
   private final boolean committed;
 
   /**
@@ -38,7 +39,19 @@ public class TransactionResult {
    * @param committed whether the transaction was committed successfully
    */
   public TransactionResult(List<StatelyItem> puts, boolean committed) {
+    this(puts, List.of(), committed);
+  }
+
+  /**
+   * Creates a new TransactionResult.
+   *
+   * @param puts the list of items that were put during the transaction
+   * @param deletes the key paths of the items that were deleted during the transaction
+   * @param committed whether the transaction was committed successfully
+   */
+  public TransactionResult(List<StatelyItem> puts, List<String> deletes, boolean committed) {
     this.puts = puts;
+    this.deletes = deletes;
     this.committed = committed;
   }
 
@@ -52,6 +65,16 @@ public class TransactionResult {
     return puts;
   }
 
+  /**
+   * Contains the key path of each item deleted in the transaction, as acknowledged by the commit.
+   * This can be used to invalidate exactly the deleted items in a cache.
+   *
+   * @return the key paths of the deleted items
+   */
+  public List<String> getDeletes() {
+    return deletes;
+  }
+
   /**
    * Did the commit finish (the alternative is that it was aborted/rolled back).
    *
@@ -0,0 +1,442 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.statelydb.common.StatelyException;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for the gRPC transport used by a {@link Client} or {@link StatelyConnection}: HTTP/2
+ * flow control, keepalive, message size limits and the Netty event loop. Unset options keep the
+ * gRPC defaults, so {@link #DEFAULT} behaves exactly like a client without a transport config.
+ *
+ * <p>Two presets cover the common workloads:
+ *
+ * <ul>
+ *   <li>{@link #bulkScans()} for scans, large lists and exports: a large initial flow-control
+ *       window so big pages stream without waiting for window updates, and a higher inbound
+ *       message limit.
+ *   <li>{@link #lowLatency()} for point reads and writes: the native epoll transport where
+ *       available, and a long idle timeout so the connection stays warm between bursts.
+ * </ul>
+ *
+ * <p>Keepalive pings keep long-lived syncList and transaction streams alive through proxies and
+ * detect dead connections, but servers reject clients that ping more often than they allow
+ * (usually no more than every 5 minutes), so only shorten the keepalive time if the server permits
+ * it.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * Client client = Client.builder(storeId, typeMapper, scheduler)
+ *     .transport(TransportConfig.bulkScans().toBuilder()
+ *         .maxInboundMessageSize(128 * 1024 * 1024)
+ *         .build())
+ *     .build();
+ * }</pre>
+ */
+public final class TransportConfig {
+
+  /** A config that leaves every transport setting at its gRPC default. */
+  public static final TransportConfig DEFAULT = builder().build();
+
+  private static final int MIB = 1024 * 1024;
+
+  private final Integer initialFlowControlWindow;
+  private final Integer maxInboundMessageSize;
+  private final Duration keepAliveTime;
+  private final Duration keepAliveTimeout;
+  private final boolean keepAliveWithoutCalls;
+  private final Duration idleTimeout;
+  private final Boolean nativeTransport;
+  private final int eventLoopThreads;
+
+  private TransportConfig(Builder builder) {
+    this.initialFlowControlWindow = builder.initialFlowControlWindow;
+    this.maxInboundMessageSize = builder.maxInboundMessageSize;
+    this.keepAliveTime = builder.keepAliveTime;
+    this.keepAliveTimeout = builder.keepAliveTimeout;
+    this.keepAliveWithoutCalls = builder.keepAliveWithoutCalls;
+    this.idleTimeout = builder.idleTimeout;
+    this.nativeTransport = builder.nativeTransport;
+    this.eventLoopThreads = builder.eventLoopThreads;
+  }
+
+  /**
+   * Returns a preset for bulk reads such as scans, large lists and exports: a 16 MiB initial
+   * flow-control window (still auto-tuned), a 64 MiB inbound message limit, and keepalive pings
+   * every 5 minutes while streams are open.
+   *
+   * @return the bulk scan preset
+   */
+  public static TransportConfig bulkScans() {
+    return builder()
+        .initialFlowControlWindow(16 * MIB)
+        .maxInboundMessageSize(64 * MIB)
+        .keepAliveTime(Duration.ofMinutes(5))
+        .keepAliveTimeout(Duration.ofSeconds(20))
+        .build();
+  }
+
+  /**
+   * Returns a preset for latency-sensitive point reads and writes: the native epoll transport when
+   * available, keepalive pings every 5 minutes while streams are open, and a one hour idle timeout
+   * so the connection isn't torn down and re-established between bursts of traffic.
+   *
+   * @return the low latency preset
+   */
+  public static TransportConfig lowLatency() {
+    return builder()
+        .nativeTransport(true)
+        .keepAliveTime(Duration.ofMinutes(5))
+        .keepAliveTimeout(Duration.ofSeconds(10))
+        .idleTimeout(Duration.ofHours(1))
+        .build();
+  }
+
+  /**
+   * Returns whether the native epoll transport can be used on this platform.
+   *
+   * @return true if epoll is available
+   */
+  public static boolean isNativeTransportAvailable() {
+    return Epoll.isAvailable();
+  }
+
+  /**
+   * Creates a new builder with every setting at its gRPC default.
+   *
+   * @return a new Builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns a builder initialized with this config's settings, for adjusting a preset.
+   *
+   * @return a new Builder
+   */
+  public Builder toBuilder() {
+    Builder builder = new Builder();
+    builder.initialFlowControlWindow = initialFlowControlWindow;
+    builder.maxInboundMessageSize = maxInboundMessageSize;
+    builder.keepAliveTime = keepAliveTime;
+    builder.keepAliveTimeout = keepAliveTimeout;
+    builder.keepAliveWithoutCalls = keepAliveWithoutCalls;
+    builder.idleTimeout = idleTimeout;
+    builder.nativeTransport = nativeTransport;
+    builder.eventLoopThreads = eventLoopThreads;
+    return builder;
+  }
+
+  /** Builder for TransportConfig. */
+  public static class Builder {
+    private Integer initialFlowControlWindow;
+    private Integer maxInboundMessageSize;
+    private Duration keepAliveTime;
+    private Duration keepAliveTimeout;
+    private boolean keepAliveWithoutCalls = false;
+    private Duration idleTimeout;
+    private Boolean nativeTransport;
+    private int eventLoopThreads = 0;
+
+    private Builder() {}
+
+    /**
+     * Sets the initial HTTP/2 flow-control window in bytes. gRPC still auto-tunes the window from
+     * the measured bandwidth-delay product; a larger starting point lets large pages stream at
+     * full speed from the first response.
+     *
+     * @param bytes the initial window size in bytes
+     * @return this builder instance
+     */
+    public Builder initialFlowControlWindow(int bytes) {
+      this.initialFlowControlWindow = bytes;
+      return this;
+    }
+
+    /**
+     * Sets the largest response message the client accepts, in bytes. The gRPC default is 4 MiB.
+     *
+     * @param bytes the maximum inbound message size in bytes
+     * @return this builder instance
+     */
+    public Builder maxInboundMessageSize(int bytes) {
+      this.maxInboundMessageSize = bytes;
+      return this;
+    }
+
+    /**
+     * Sets how long the connection may go without reading anything before the client sends a
+     * keepalive ping. Keepalive is disabled by default.
+     *
+     * @param keepAliveTime the time between keepalive pings
+     * @return this builder instance
+     */
+    public Builder keepAliveTime(Duration keepAliveTime) {
+      this.keepAliveTime = keepAliveTime;
+      return this;
+    }
+
+    /**
+     * Sets how long to wait for a keepalive ping to be acknowledged before the connection is
+     * considered dead.
+     *
+     * @param keepAliveTimeout the keepalive ping timeout
+     * @return this builder instance
+     */
+    public Builder keepAliveTimeout(Duration keepAliveTimeout) {
+      this.keepAliveTimeout = keepAliveTimeout;
+      return this;
+    }
+
+    /**
+     * Sets whether keepalive pings are sent when there are no open calls. Most servers reject
+     * this unless configured to permit it. Defaults to false.
+     *
+     * @param keepAliveWithoutCalls whether to ping without open calls
+     * @return this builder instance
+     */
+    public Builder keepAliveWithoutCalls(boolean keepAliveWithoutCalls) {
+      this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+      return this;
+    }
+
+    /**
+     * Sets how long the channel may have no calls before it closes its connection. The gRPC
+     * default is 30 minutes.
+     *
+     * @param idleTimeout the idle timeout
+     * @return this builder instance
+     */
+    public Builder idleTimeout(Duration idleTimeout) {
+      this.idleTimeout = idleTimeout;
+      return this;
+    }
+
+    /**
+     * Chooses the Netty transport. When true, the native epoll transport is used if it is
+     * available on this platform (otherwise NIO); when false, NIO is always used. Channels that
+     * choose the same transport share one event loop, unless {@link #eventLoopThreads} is set. If
+     * not set, gRPC picks the transport and shares its event loop with other channels in the
+     * process.
+     *
+     * @param nativeTransport whether to prefer the native epoll transport
+     * @return this builder instance
+     */
+    public Builder nativeTransport(boolean nativeTransport) {
+      this.nativeTransport = nativeTransport;
+      return this;
+    }
+
+    /**
+     * Gives each channel its own event loop with this many threads, when {@link #nativeTransport}
+     * is set. The event loop is shut down with the channel. Zero, the default, uses an event loop
+     * shared by all such channels in the process, sized by Netty based on the number of
+     * processors.
+     *
+     * @param eventLoopThreads the number of event loop threads
+     * @return this builder instance
+     */
+    public Builder eventLoopThreads(int eventLoopThreads) {
+      this.eventLoopThreads = eventLoopThreads;
+      return this;
+    }
+
+    /**
+     * Builds the TransportConfig.
+     *
+     * @return a new TransportConfig
+     * @throws StatelyException if a size, duration or thread count is not valid
+     */
+    public TransportConfig build() {
+      if ((initialFlowControlWindow != null && initialFlowControlWindow <= 0)
+          || (maxInboundMessageSize != null && maxInboundMessageSize <= 0)
+          || eventLoopThreads < 0
+          || isNotPositive(keepAliveTime)
+          || isNotPositive(keepAliveTimeout)
+          || isNotPositive(idleTimeout)) {
+        throw new StatelyException(
+            "Transport sizes, durations and thread counts must be positive",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      return new TransportConfig(this);
+    }
+
+    private static boolean isNotPositive(Duration duration) {
+      return duration != null && (duration.isNegative() || duration.isZero());
+    }
+  }
+
+  /**
+   * Creates the channel for an endpoint with these settings. The returned channel also shuts
+   * down any event loop created for it.
+   */
+  ManagedChannel newChannel(URI endpoint, Executor executor, CompressionConfig compression) {
+    boolean netty = initialFlowControlWindow != null || nativeTransport != null;
+    ManagedChannelBuilder<?> channelBuilder;
+    EventLoopGroup eventLoop = null;
+    if (netty) {
+      NettyChannelBuilder nettyBuilder =
+          NettyChannelBuilder.forAddress(endpoint.getHost(), endpoint.getPort());
+      if (initialFlowControlWindow != null) {
+        nettyBuilder.initialFlowControlWindow(initialFlowControlWindow);
+      }
+      if (nativeTransport != null) {
+        boolean epoll = nativeTransport && Epoll.isAvailable();
+        EventLoopGroup group;
+        if (eventLoopThreads == 0) {
+          group = sharedEventLoopGroup(epoll);
+        } else {
+          // an explicit thread count gets its own event loop, shut down with the channel
+          eventLoop =
+              epoll
+                  ? new EpollEventLoopGroup(eventLoopThreads)
+                  : new NioEventLoopGroup(eventLoopThreads);
+          group = eventLoop;
+        }
+        nettyBuilder
+            .eventLoopGroup(group)
+            .channelType(epoll ? EpollSocketChannel.class : NioSocketChannel.class);
+      }
+      channelBuilder = nettyBuilder;
+    } else {
+      channelBuilder = ManagedChannelBuilder.forAddress(endpoint.getHost(), endpoint.getPort());
+    }
+
+    channelBuilder
+        .executor(executor)
+        .maxInboundMetadataSize(
+            Integer.MAX_VALUE); // disabled so that large error details don't cause issues
+    if (endpoint.getScheme().equals("http")) {
+      channelBuilder.usePlaintext();
+    }
+    compression.configure(channelBuilder);
+    if (maxInboundMessageSize != null) {
+      channelBuilder.maxInboundMessageSize(maxInboundMessageSize);
+    }
+    if (keepAliveTime != null) {
+      channelBuilder.keepAliveTime(keepAliveTime.toNanos(), TimeUnit.NANOSECONDS);
+    }
+    if (keepAliveTimeout != null) {
+      channelBuilder.keepAliveTimeout(keepAliveTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+    channelBuilder.keepAliveWithoutCalls(keepAliveWithoutCalls);
+    if (idleTimeout != null) {
+      channelBuilder.idleTimeout(idleTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    ManagedChannel channel = channelBuilder.build();
+    return eventLoop == null ? channel : new EventLoopChannel(channel, eventLoop);
+  }
+
+  @Override
+  public String toString() {
+    return "TransportConfig{initialFlowControlWindow="
+        + initialFlowControlWindow
+        + ", maxInboundMessageSize="
+        + maxInboundMessageSize
+        + ", keepAliveTime="
+        + keepAliveTime
+        + ", keepAliveTimeout="
+        + keepAliveTimeout
+        + ", keepAliveWithoutCalls="
+        + keepAliveWithoutCalls
+        + ", idleTimeout="
+        + idleTimeout
+        + ", nativeTransport="
+        + nativeTransport
+        + ", eventLoopThreads="
+        + eventLoopThreads
+        + "}";
+  }
+
+  /**
+   * Returns the event loop shared by every channel that chooses a transport without setting a
+   * thread count. It is created on first use with daemon threads, and is never shut down.
+   */
+  static EventLoopGroup sharedEventLoopGroup(boolean epoll) {
+    return epoll ? SharedEpollGroup.GROUP : SharedNioGroup.GROUP;
+  }
+
+  // holder classes, so that each group is only created when first used
+  private static final class SharedEpollGroup {
+    static final EventLoopGroup GROUP =
+        new EpollEventLoopGroup(0, new DefaultThreadFactory("stately-epoll", true));
+  }
+
+  private static final class SharedNioGroup {
+    static final EventLoopGroup GROUP =
+        new NioEventLoopGroup(0, new DefaultThreadFactory("stately-nio", true));
+  }
+
+  /** A channel that owns its event loop and shuts it down along with the channel. */
+  private static final class EventLoopChannel extends ManagedChannel {
+    private final ManagedChannel delegate;
+    private final EventLoopGroup eventLoop;
+
+    EventLoopChannel(ManagedChannel delegate, EventLoopGroup eventLoop) {
+      this.delegate = delegate;
+      this.eventLoop = eventLoop;
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+      delegate.shutdown();
+      eventLoop.shutdownGracefully();
+      return this;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+      delegate.shutdownNow();
+      eventLoop.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+      return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated() && eventLoop.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      return delegate.awaitTermination(timeout, unit)
+          && eventLoop.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
+        MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
+      return delegate.newCall(methodDescriptor, callOptions);
+    }
+
+    @Override
+    public String authority() {
+      return delegate.authority();
+    }
+  }
+}
@@ -3,16 +3,28 @@ package cloud.stately.statelydb.auth;
 import io.grpc.CallCredentials;
 import io.grpc.Metadata;
 import io.grpc.Status;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 
 /**
  * A CallCredentials implementation that attaches a JWT bearer token to each call. It uses a
  * TokenProvider to asynchronously fetch the token.
+ *
+ * <p>The authorization header is built once per token and reused for every call until the token
+ * changes. When the TokenProvider already has a valid token, the header is applied immediately on
+ * the calling thread; the application executor is only used when the call has to wait for a token
+ * to be fetched.
  */
 public class AuthTokenCallCredentials extends CallCredentials {
 
+  private static final Metadata.Key<String> AUTHORIZATION =
+      Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+
   private final TokenProvider tokenProvider;
 
+  /** The headers for the most recently seen token. Replaced whenever the token changes. */
+  private volatile AuthHeaders cachedHeaders;
+
   /**
    * Creates new AuthTokenCallCredentials with the given token provider.
    *
@@ -28,34 +40,56 @@ public class AuthTokenCallCredentials extends CallCredentials {
   @Override
   public void applyRequestMetadata(
       RequestInfo requestInfo, Executor appExecutor, MetadataApplier applier) {
-    // Use the provided executor to run the async token fetch
-    appExecutor.execute(
-        () -> {
-          tokenProvider
-              .getToken(false)
-              .whenComplete(
-                  (token, error) -> {
-                    if (error != null) {
-                      // If token fetch fails, fail the call with UNAUTHENTICATED
-                      applier.fail(
-                          Status.UNAUTHENTICATED
-                              .withDescription("Failed to get authentication token")
-                              .withCause(error));
-                      return;
-                    }
-
-                    // If token fetch succeeds, apply the header
-                    Metadata headers = new Metadata();
-                    Metadata.Key<String> authHeader =
-                        Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
-                    headers.put(authHeader, "Bearer " + token);
-                    applier.apply(headers);
-                  });
-        });
+    CompletableFuture<String> tokenFuture = tokenProvider.getToken(false);
+    if (tokenFuture.isDone() && !tokenFuture.isCompletedExceptionally()) {
+      // The provider had a valid token ready, so there is nothing to wait for
+      applier.apply(headersFor(tokenFuture.join()));
+      return;
+    }
+
+    // Wait for the token on the provided executor rather than the thread that completes the fetch
+    tokenFuture.whenCompleteAsync(
+        (token, error) -> {
+          if (error != null) {
+            // If token fetch fails, fail the call with UNAUTHENTICATED
+            applier.fail(
+                Status.UNAUTHENTICATED
+                    .withDescription("Failed to get authentication token")
+                    .withCause(error));
+            return;
+          }
+          applier.apply(headersFor(token));
+        },
+        appExecutor);
+  }
+
+  /**
+   * Returns the headers for the given token, building them only if the token has changed. The
+   * returned Metadata is shared between calls and must not be modified; gRPC copies its entries
+   * into each call's own headers.
+   */
+  private Metadata headersFor(String token) {
+    AuthHeaders headers = cachedHeaders;
+    if (headers == null || !headers.token.equals(token)) {
+      headers = new AuthHeaders(token);
+      cachedHeaders = headers;
+    }
+    return headers.metadata;
   }
 
   @Override
   public void thisUsesUnstableApi() {
     // Required implementation for CallCredentials interface
   }
+
+  /** A token and the ready-to-send Metadata carrying it. */
+  private static final class AuthHeaders {
+    final String token;
+    final Metadata metadata = new Metadata();
+
+    AuthHeaders(String token) {
+      this.token = token;
+      metadata.put(AUTHORIZATION, "Bearer " + token);
+    }
+  }
 }
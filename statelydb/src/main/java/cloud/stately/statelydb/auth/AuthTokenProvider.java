@@ -2,8 +2,13 @@ package cloud.stately.statelydb.auth;
 
 import cloud.stately.statelydb.common.FutureUtils;
 import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.tracing.Tracer;
+import io.grpc.ClientInterceptor;
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
@@ -14,6 +19,14 @@ import java.util.concurrent.atomic.AtomicReference;
  * class manages token validation and refresh scheduling, while the StatelyAccessTokenFetcher
  * handles the actual token retrieval from the StatelyDB API as well as retry logic.
  *
+ * <p>Tokens are refreshed in the background before they expire, so requests don't wait for a new
+ * token. The refresh starts after a configurable fraction of the token's lifetime has passed (plus
+ * a little jitter). If that refresh has not finished by the end of the jitter window, the token is
+ * soft-expired: it is still used, and each request that sees it starts a refresh if one is not
+ * already running. A stale-while-revalidate grace period can additionally let the token be used
+ * for a short while past its expiry while a refresh is retried. Requests only wait for a token
+ * when there is none, or when it is past both its expiry and the grace period.
+ *
  * <p>Example usage with builder pattern:
  *
  * <pre>{@code
@@ -38,12 +51,15 @@ public class AuthTokenProvider implements TokenProvider {
   /** Default base retry backoff in seconds. */
   private static final long DEFAULT_BASE_RETRY_BACKOFF_SECS = 1;
 
-  /** Minimum jitter percentage (90%). */
-  private static final double JITTER_PERCENTAGE_MIN = 0.9;
+  /** Default fraction of the token lifetime after which a background refresh starts (90%). */
+  private static final double DEFAULT_REFRESH_AHEAD_FRACTION = 0.9;
 
-  /** Jitter percentage range (5%), resulting in a total range of 90-95%. */
+  /** Jitter percentage range (5%), resulting in a default refresh at 90-95% of the lifetime. */
   private static final double JITTER_PERCENTAGE_RANGE = 0.05;
 
+  /** By default an expired token is never used. */
+  private static final Duration DEFAULT_STALE_GRACE_PERIOD = Duration.ZERO;
+
   /** The token fetcher used to retrieve access tokens. */
   private AtomicReference<TokenFetcher> tokenFetcher = new AtomicReference<>(null);
 
@@ -76,6 +92,21 @@ public class AuthTokenProvider implements TokenProvider {
   /** The base retry backoff in seconds. */
   private final long baseRetryBackoffSecs;
 
+  /** The fraction of the token lifetime after which a background refresh starts. */
+  private final double refreshAheadFraction;
+
+  /** How long an expired token may still be used while a refresh is running. */
+  private final Duration staleGracePeriod;
+
+  /** The metrics recorder for token refreshes. */
+  private final ClientMetrics metrics;
+
+  /** The tracer that starts a span for each token refresh. */
+  private final Tracer tracer;
+
+  /** Interceptors applied to the channel used to reach the auth service. */
+  private final List<ClientInterceptor> interceptors;
+
   /**
    * Constructs an AuthTokenProvider with a custom endpoint.
    *
@@ -85,9 +116,34 @@ public class AuthTokenProvider implements TokenProvider {
    */
   public AuthTokenProvider(
       String accessKey, long baseRetryBackoffSecs, ScheduledExecutorService scheduler) {
+    this(
+        accessKey,
+        baseRetryBackoffSecs,
+        DEFAULT_REFRESH_AHEAD_FRACTION,
+        DEFAULT_STALE_GRACE_PERIOD,
+        scheduler,
+        ClientMetrics.NOOP,
+        Tracer.NOOP,
+        List.of());
+  }
+
+  private AuthTokenProvider(
+      String accessKey,
+      long baseRetryBackoffSecs,
+      double refreshAheadFraction,
+      Duration staleGracePeriod,
+      ScheduledExecutorService scheduler,
+      ClientMetrics metrics,
+      Tracer tracer,
+      List<ClientInterceptor> interceptors) {
     this.accessKey = accessKey;
     this.baseRetryBackoffSecs = baseRetryBackoffSecs;
+    this.refreshAheadFraction = refreshAheadFraction;
+    this.staleGracePeriod = staleGracePeriod;
     this.scheduler = scheduler;
+    this.metrics = metrics;
+    this.tracer = tracer;
+    this.interceptors = interceptors;
   }
 
   /**
@@ -104,6 +160,11 @@ public class AuthTokenProvider implements TokenProvider {
   public static class Builder {
     private String accessKey;
     private long baseRetryBackoffSecs = DEFAULT_BASE_RETRY_BACKOFF_SECS;
+    private double refreshAheadFraction = DEFAULT_REFRESH_AHEAD_FRACTION;
+    private Duration staleGracePeriod = DEFAULT_STALE_GRACE_PERIOD;
+    private ClientMetrics metrics = ClientMetrics.NOOP;
+    private Tracer tracer = Tracer.NOOP;
+    private List<ClientInterceptor> interceptors = List.of();
     private final ScheduledExecutorService scheduler;
 
     private Builder(ScheduledExecutorService scheduler) {
@@ -133,20 +194,117 @@ public class AuthTokenProvider implements TokenProvider {
       return this;
     }
 
+    /**
+     * Sets the fraction of each token's lifetime after which it is refreshed in the background.
+     * The refresh is spread over the following 5% of the lifetime to avoid many clients refreshing
+     * at once; after that the token is soft-expired and requests that use it start the refresh
+     * themselves. Defaults to 0.9.
+     *
+     * @param refreshAheadFraction A fraction greater than 0 and less than 1
+     * @return This builder instance
+     */
+    public Builder refreshAheadFraction(double refreshAheadFraction) {
+      this.refreshAheadFraction = refreshAheadFraction;
+      return this;
+    }
+
+    /**
+     * Sets how long a token may still be used after it expires while a refresh is running, so a
+     * slow or failing auth service doesn't immediately block requests. The server decides whether
+     * it accepts an expired token, so keep this short. Defaults to zero, which never uses an
+     * expired token.
+     *
+     * @param staleGracePeriod The grace period after expiry
+     * @return This builder instance
+     */
+    public Builder staleWhileRevalidate(Duration staleGracePeriod) {
+      this.staleGracePeriod = staleGracePeriod;
+      return this;
+    }
+
+    /**
+     * Sets the metrics recorder for token refresh timings and auth service calls.
+     *
+     * @param metrics The metrics recorder
+     * @return This builder instance
+     */
+    public Builder metrics(ClientMetrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Sets the tracer that starts a span for each token refresh. The span covers all retries of
+     * the refresh and records each one as an event.
+     *
+     * @param tracer The tracer
+     * @return This builder instance
+     */
+    public Builder tracer(Tracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
+    /**
+     * Sets the interceptors applied to calls to the auth service, in the order they should run.
+     *
+     * @param interceptors The interceptors to apply
+     * @return This builder instance
+     */
+    public Builder interceptors(List<ClientInterceptor> interceptors) {
+      this.interceptors = List.copyOf(interceptors);
+      return this;
+    }
+
     /**
      * Builds a new AuthTokenProvider instance.
      *
      * @return A new AuthTokenProvider instance
      * @throws StatelyException If STATELY_ACCESS_KEY environment variable is not set when accessKey
-     *     is null
+     *     is null, or if the refresh settings are out of range
      */
     public AuthTokenProvider build() {
+      if (!(refreshAheadFraction > 0 && refreshAheadFraction < 1)) {
+        throw new StatelyException(
+            "refreshAheadFraction must be greater than 0 and less than 1",
+            io.grpc.Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      if (staleGracePeriod.isNegative()) {
+        throw new StatelyException(
+            "staleWhileRevalidate must not be negative",
+            io.grpc.Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
       String finalAccessKey = accessKey;
       if (finalAccessKey == null) {
         finalAccessKey = getAccessKeyFromEnvironment();
       }
 
-      return new AuthTokenProvider(finalAccessKey, baseRetryBackoffSecs, scheduler);
+      return new AuthTokenProvider(
+          finalAccessKey,
+          baseRetryBackoffSecs,
+          refreshAheadFraction,
+          staleGracePeriod,
+          scheduler,
+          metrics,
+          tracer,
+          interceptors);
+    }
+
+    /**
+     * Builds a handle to a token provider shared with every other shared handle in the process
+     * that uses the same access key, endpoint and scheduler. If no such provider is running when
+     * the handle is started, this builder's settings are used to create it. See {@link
+     * SharedTokenProvider}.
+     *
+     * @return A new SharedTokenProvider handle
+     * @throws StatelyException If STATELY_ACCESS_KEY environment variable is not set when accessKey
+     *     is null, or if the refresh settings are out of range
+     */
+    public SharedTokenProvider buildShared() {
+      AuthTokenProvider provider = build();
+      return new SharedTokenProvider(provider.accessKey, scheduler, () -> provider);
     }
   }
 
@@ -188,6 +346,9 @@ public class AuthTokenProvider implements TokenProvider {
         this.tokenFetcher.getAndSet(
             StatelyAccessTokenFetcher.builder(uri, accessKey, scheduler)
                 .baseRetryBackoffSecs(baseRetryBackoffSecs)
+                .metrics(metrics)
+                .tracer(tracer)
+                .interceptors(interceptors)
                 .build());
     if (oldFetcher != null) {
       try {
@@ -197,6 +358,13 @@ public class AuthTokenProvider implements TokenProvider {
       }
     }
 
+    TokenState restored = currentTokenState.get();
+    if (restored != null && Instant.now().isBefore(restored.getRefreshAt())) {
+      // a restored token is still good, so just schedule its refresh as if we had fetched it
+      scheduleBackgroundRefresh(restored.getExpiresAt());
+      return;
+    }
+
     // kick off a background refresh to prime the cache.
     refreshToken();
   }
@@ -223,6 +391,28 @@ public class AuthTokenProvider implements TokenProvider {
     return refreshToken();
   }
 
+  @Override
+  public TokenState getTokenState() {
+    return currentTokenState.get();
+  }
+
+  /**
+   * Offer a previously obtained token, for example one read from a cache, before the provider is
+   * started. It is used in place of fetching a new token if it is later than the current one and
+   * not yet due for refresh when the provider starts.
+   *
+   * @param tokenState The previously obtained token and its expiry
+   */
+  @Override
+  public void restoreTokenState(TokenState tokenState) {
+    currentTokenState.accumulateAndGet(
+        tokenState,
+        (current, restored) ->
+            current == null || restored.getExpiresAt().isAfter(current.getExpiresAt())
+                ? restored
+                : current);
+  }
+
   /**
    * Close the token provider and kill any background operations. This method should be idempotent
    * and safe to call multiple times.
@@ -254,9 +444,20 @@ public class AuthTokenProvider implements TokenProvider {
 
   private String validToken() {
     TokenState tokenState = currentTokenState.get();
-    if (tokenState == null || Instant.now().isAfter(tokenState.getExpiresAt())) {
+    if (tokenState == null) {
+      return null;
+    }
+    Instant now = Instant.now();
+    if (now.isBefore(tokenState.getRefreshAt())) {
+      return tokenState.getToken();
+    }
+    if (now.isAfter(tokenState.getExpiresAt().plus(staleGracePeriod))) {
       return null;
     }
+    // The token is soft-expired or within the grace period: keep using it while it is refreshed.
+    // refreshToken joins any refresh that is already running, and its errors surface on the next
+    // call that has to wait for a token.
+    refreshToken();
     return tokenState.getToken();
   }
 
@@ -297,10 +498,24 @@ public class AuthTokenProvider implements TokenProvider {
     // just assume this is not null because we call start in the client constructor.
     // All of our integ tests will fail if someone ever removes it for some reason.
     TokenFetcher tokenFetcher = this.tokenFetcher.get();
-    CompletableFuture<TokenResult> fetchFuture = tokenFetcher.fetch();
+    long start = System.nanoTime();
+    CompletableFuture<TokenResult> fetchFuture =
+        tokenFetcher
+            .fetch()
+            .whenComplete(
+                (result, error) -> metrics.tokenRefresh(System.nanoTime() - start, error == null));
     return fetchFuture.thenApply(
         tokenResult -> {
-          Instant fetchedExpiry = Instant.now().plusSeconds(tokenResult.getExpiresInSecs());
+          Instant now = Instant.now();
+          Instant fetchedExpiry = now.plusSeconds(tokenResult.getExpiresInSecs());
+          // Requests start refreshing the token themselves once the background refresh window
+          // has passed
+          Instant refreshAt =
+              now.plusMillis(
+                  (long)
+                      (tokenResult.getExpiresInSecs()
+                          * 1000
+                          * Math.min(1.0, refreshAheadFraction + JITTER_PERCENTAGE_RANGE)));
 
           // Update the current token state atomically (pure function, no side effects)
           // There should only be one refreshTokenImpl running at a time but a force refresh
@@ -310,7 +525,7 @@ public class AuthTokenProvider implements TokenProvider {
                   current -> {
                     // Update only if it's null or the new expiry is later
                     if (current == null || fetchedExpiry.isAfter(current.getExpiresAt())) {
-                      return new TokenState(tokenResult.getToken(), fetchedExpiry);
+                      return new TokenState(tokenResult.getToken(), fetchedExpiry, refreshAt);
                     }
                     return current;
                   });
@@ -324,10 +539,12 @@ public class AuthTokenProvider implements TokenProvider {
   }
 
   private void scheduleBackgroundRefresh(Instant tokenExpiry) {
-    // Calculate refresh time with jitter (90-95% of token lifetime)
+    // Calculate refresh time with jitter (90-95% of token lifetime by default)
     double jitter =
-        JITTER_PERCENTAGE_MIN
-            + (ThreadLocalRandom.current().nextDouble() * JITTER_PERCENTAGE_RANGE);
+        Math.min(
+            1.0,
+            refreshAheadFraction
+                + (ThreadLocalRandom.current().nextDouble() * JITTER_PERCENTAGE_RANGE));
     long tokenLifetimeMillis = tokenExpiry.toEpochMilli() - Instant.now().toEpochMilli();
     long delayMillis = (long) (tokenLifetimeMillis * jitter);
 
@@ -0,0 +1,270 @@
+package cloud.stately.statelydb.auth;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A TokenProvider decorator that saves the current token to a local file and reuses it when the
+ * process starts again, so a freshly started process can make its first calls without waiting for
+ * the auth service. A large number of processes starting at once also no longer all fetch a token
+ * at the same moment.
+ *
+ * <p>On {@link #start}, a token saved for the same endpoint that is not yet due for refresh is
+ * handed to the wrapped provider with {@link TokenProvider#restoreTokenState}, and the wrapped
+ * provider refreshes it in the background as usual. Whenever the wrapped provider holds a new
+ * token, it is written to the file on an executor, so the call that notices the new token does not
+ * wait for the disk. The file contains a bearer token, so it is created readable and writable by
+ * the owner only where the file system supports POSIX permissions, and is replaced atomically. Use
+ * a separate file for each access key.
+ *
+ * <p>The cache is best-effort: a missing, unreadable or corrupt file is ignored and a failed write
+ * leaves the wrapped provider working normally.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * TokenProvider provider = new PersistentTokenProvider(
+ *     AuthTokenProvider.builder(scheduler).accessKey(accessKey).build(),
+ *     Path.of(System.getProperty("user.home"), ".stately", "token-cache"),
+ *     scheduler);
+ * Client client = Client.builder(storeId, typeMapper, scheduler)
+ *     .tokenProvider(provider)
+ *     .build();
+ * }</pre>
+ */
+public class PersistentTokenProvider implements TokenProvider {
+
+  private static final Set<PosixFilePermission> OWNER_ONLY =
+      PosixFilePermissions.fromString("rw-------");
+
+  private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY =
+      PosixFilePermissions.fromString("rwx------");
+
+  private final TokenProvider delegate;
+  private final Path file;
+  private final Executor writeExecutor;
+
+  /** The endpoint the provider was started with; tokens are only reused for the same endpoint. */
+  private volatile URI endpoint;
+
+  /** The latest token state to be written to (or read from) the file. */
+  private final AtomicReference<TokenState> persisted = new AtomicReference<>(null);
+
+  /** Whether a write is queued on the executor that hasn't started yet. */
+  private final AtomicBoolean writeQueued = new AtomicBoolean(false);
+
+  /** Serializes writes, so an older token never replaces a newer one in the file. */
+  private final Object writeLock = new Object();
+
+  /** The token state in the file, guarded by writeLock. */
+  private TokenState written;
+
+  /**
+   * Creates a PersistentTokenProvider that caches the tokens of the given provider in a file,
+   * writing the file on the common fork-join pool.
+   *
+   * @param delegate The token provider to wrap, which must support {@link
+   *     TokenProvider#getTokenState()} for tokens to be saved, such as {@link AuthTokenProvider}
+   * @param file The file to keep the token in. Its parent directory is created if needed.
+   */
+  public PersistentTokenProvider(TokenProvider delegate, Path file) {
+    this(delegate, file, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a PersistentTokenProvider that caches the tokens of the given provider in a file.
+   *
+   * @param delegate The token provider to wrap, which must support {@link
+   *     TokenProvider#getTokenState()} for tokens to be saved, such as {@link AuthTokenProvider}
+   * @param file The file to keep the token in. Its parent directory is created if needed.
+   * @param writeExecutor The executor to write the file on, such as the client's scheduler
+   */
+  public PersistentTokenProvider(TokenProvider delegate, Path file, Executor writeExecutor) {
+    if (delegate == null) {
+      throw new IllegalArgumentException("TokenProvider cannot be null");
+    }
+    if (writeExecutor == null) {
+      throw new IllegalArgumentException("Executor cannot be null");
+    }
+    this.delegate = delegate;
+    this.file = file;
+    this.writeExecutor = writeExecutor;
+  }
+
+  @Override
+  public void start(URI uri) {
+    this.endpoint = uri;
+    TokenState saved = read(uri);
+    if (saved != null && Instant.now().isBefore(saved.getRefreshAt())) {
+      synchronized (writeLock) {
+        written = saved;
+      }
+      persisted.set(saved);
+      delegate.restoreTokenState(saved);
+    }
+    delegate.start(uri);
+  }
+
+  @Override
+  public CompletableFuture<String> getToken(boolean force) {
+    CompletableFuture<String> token = delegate.getToken(force);
+    if (token.isDone()) {
+      // the usual case: only a reference comparison unless the token has changed
+      persistIfChanged();
+      return token;
+    }
+    return token.whenComplete((result, error) -> persistIfChanged());
+  }
+
+  @Override
+  public TokenState getTokenState() {
+    return delegate.getTokenState();
+  }
+
+  @Override
+  public void close() throws Exception {
+    // write the last token before returning, since the executor may be shut down next
+    noteChange();
+    writeLatest();
+    delegate.close();
+  }
+
+  private void persistIfChanged() {
+    if (!noteChange() || !writeQueued.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      writeExecutor.execute(
+          () -> {
+            // cleared first, so a token that changes during the write queues another write
+            writeQueued.set(false);
+            writeLatest();
+          });
+    } catch (RejectedExecutionException e) {
+      writeQueued.set(false);
+    }
+  }
+
+  // Records the delegate's current token state as the one to persist. Only a reference comparison
+  // unless the token has changed. Returns true if it changed.
+  private boolean noteChange() {
+    TokenState current = delegate.getTokenState();
+    TokenState previous = persisted.get();
+    return current != null && current != previous && persisted.compareAndSet(previous, current);
+  }
+
+  private void writeLatest() {
+    synchronized (writeLock) {
+      TokenState latest = persisted.get();
+      if (latest == null || latest == written) {
+        return;
+      }
+      try {
+        write(latest);
+        written = latest;
+      } catch (IOException | RuntimeException e) {
+        // the cache is an optimization; a failed write leaves the previous file in place
+      }
+    }
+  }
+
+  private TokenState read(URI uri) {
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+    } catch (IOException | IllegalArgumentException e) {
+      // most often the file doesn't exist yet
+      return null;
+    }
+    String token = properties.getProperty("token");
+    String savedEndpoint = properties.getProperty("endpoint");
+    if (token == null || !uri.toString().equals(savedEndpoint)) {
+      return null;
+    }
+    try {
+      Instant expiresAt = Instant.ofEpochMilli(Long.parseLong(properties.getProperty("expiresAt")));
+      Instant refreshAt = Instant.ofEpochMilli(Long.parseLong(properties.getProperty("refreshAt")));
+      return new TokenState(token, expiresAt, refreshAt);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private void write(TokenState state) throws IOException {
+    URI uri = endpoint;
+    if (uri == null) {
+      return;
+    }
+    Properties properties = new Properties();
+    properties.setProperty("endpoint", uri.toString());
+    properties.setProperty("token", state.getToken());
+    properties.setProperty("expiresAt", Long.toString(state.getExpiresAt().toEpochMilli()));
+    properties.setProperty("refreshAt", Long.toString(state.getRefreshAt().toEpochMilli()));
+
+    Path directory = file.toAbsolutePath().getParent();
+    boolean posix = file.getFileSystem().supportedFileAttributeViews().contains("posix");
+    if (!Files.isDirectory(directory)) {
+      if (posix) {
+        Files.createDirectories(
+            directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+      } else {
+        Files.createDirectories(directory);
+      }
+    }
+
+    // write a private temporary file next to the cache file, then move it into place so readers
+    // never see a partial file
+    Path temp;
+    if (posix) {
+      temp =
+          Files.createTempFile(
+              directory,
+              ".stately-token",
+              ".tmp",
+              PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+    } else {
+      temp = Files.createTempFile(directory, ".stately-token", ".tmp");
+      restrictToOwner(temp);
+    }
+    try {
+      try (OutputStream out = Files.newOutputStream(temp)) {
+        properties.store(out, "StatelyDB auth token cache");
+      }
+      try {
+        Files.move(
+            temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  // Best effort for file systems without POSIX permissions, such as on Windows
+  private static void restrictToOwner(Path path) {
+    File f = path.toFile();
+    f.setReadable(false, false);
+    f.setWritable(false, false);
+    f.setReadable(true, true);
+    f.setWritable(true, true);
+  }
+}
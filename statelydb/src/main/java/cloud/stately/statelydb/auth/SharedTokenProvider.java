@@ -0,0 +1,222 @@
+package cloud.stately.statelydb.auth;
+
+import cloud.stately.statelydb.common.StatelyException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * A handle to a token provider that is shared by every client in the process using the same access
+ * key, endpoint and scheduler. The first handle started for a given combination creates and starts
+ * the underlying provider, with its own auth service channel and refresh timer; later handles
+ * reuse it. The underlying provider is reference counted and only closed when the last handle is
+ * closed.
+ *
+ * <p>The shared provider keeps the settings (metrics, tracer, interceptors and retry backoff) of
+ * the handle that created it. Create handles with {@link AuthTokenProvider.Builder#buildShared()},
+ * or let the client do it with {@code Client.Builder.shareTokenProvider(true)}:
+ *
+ * <pre>{@code
+ * // Both clients use a single AuthTokenProvider and auth channel
+ * Client orders = Client.builder(ordersStoreId, typeMapper, scheduler)
+ *     .shareTokenProvider(true)
+ *     .build();
+ * Client users = Client.builder(usersStoreId, typeMapper, scheduler)
+ *     .shareTokenProvider(true)
+ *     .build();
+ * }</pre>
+ */
+public final class SharedTokenProvider implements TokenProvider {
+
+  /** The shared providers in use, guarded by the map's monitor. */
+  private static final Map<Key, Entry> REGISTRY = new HashMap<>();
+
+  private final String accessKey;
+  private final ScheduledExecutorService scheduler;
+  private final Supplier<TokenProvider> factory;
+
+  // the registry entry this handle holds a reference to, or null when not started or closed
+  private Key key;
+  private TokenProvider provider;
+  // a token to hand to the shared provider if this handle is the one that creates it
+  private TokenState restored;
+
+  SharedTokenProvider(
+      String accessKey, ScheduledExecutorService scheduler, Supplier<TokenProvider> factory) {
+    this.accessKey = accessKey;
+    this.scheduler = scheduler;
+    this.factory = factory;
+  }
+
+  /**
+   * Attaches this handle to the shared provider for the given endpoint, creating and starting it if
+   * no other handle is using it. Starting again with a different endpoint releases the previous
+   * provider.
+   *
+   * @param uri The URI of the StatelyDB endpoint
+   */
+  @Override
+  public synchronized void start(URI uri) {
+    Key newKey = new Key(accessKey, uri, scheduler);
+    if (newKey.equals(key)) {
+      return;
+    }
+    TokenProvider newProvider = acquire(newKey, uri, factory, restored);
+    releaseCurrent();
+    this.key = newKey;
+    this.provider = newProvider;
+  }
+
+  /**
+   * Get the current access token from the shared provider.
+   *
+   * @param force Whether to force a refresh of the token
+   * @return A CompletableFuture containing the current access token
+   */
+  @Override
+  public CompletableFuture<String> getToken(boolean force) {
+    TokenProvider current;
+    synchronized (this) {
+      current = provider;
+    }
+    if (current == null) {
+      return CompletableFuture.failedFuture(
+          new StatelyException(
+              "SharedTokenProvider is not started",
+              io.grpc.Status.Code.FAILED_PRECONDITION,
+              "FailedPrecondition"));
+    }
+    return current.getToken(force);
+  }
+
+  /**
+   * Offers a previously obtained token to the shared provider. It is passed on before the provider
+   * is started if this handle is the one that creates it; a provider that is already running keeps
+   * its own token.
+   *
+   * @param tokenState The previously obtained token and its expiry
+   */
+  @Override
+  public synchronized void restoreTokenState(TokenState tokenState) {
+    this.restored = tokenState;
+  }
+
+  @Override
+  public TokenState getTokenState() {
+    TokenProvider current;
+    synchronized (this) {
+      current = provider;
+    }
+    return current == null ? null : current.getTokenState();
+  }
+
+  /**
+   * Releases this handle's reference to the shared provider, closing the provider if this was the
+   * last handle using it. This method is idempotent.
+   */
+  @Override
+  public synchronized void close() throws StatelyException {
+    releaseCurrent();
+  }
+
+  /**
+   * Returns the number of shared providers currently open in this process.
+   *
+   * @return the number of distinct access key, endpoint and scheduler combinations in use
+   */
+  public static int openProviderCount() {
+    synchronized (REGISTRY) {
+      return REGISTRY.size();
+    }
+  }
+
+  private void releaseCurrent() {
+    if (key == null) {
+      return;
+    }
+    Key oldKey = key;
+    key = null;
+    provider = null;
+    release(oldKey);
+  }
+
+  private static TokenProvider acquire(
+      Key key, URI uri, Supplier<TokenProvider> factory, TokenState restored) {
+    synchronized (REGISTRY) {
+      Entry entry = REGISTRY.get(key);
+      if (entry == null) {
+        TokenProvider provider = factory.get();
+        if (restored != null) {
+          provider.restoreTokenState(restored);
+        }
+        provider.start(uri);
+        entry = new Entry(provider);
+        REGISTRY.put(key, entry);
+      }
+      entry.references++;
+      return entry.provider;
+    }
+  }
+
+  private static void release(Key key) {
+    TokenProvider toClose = null;
+    synchronized (REGISTRY) {
+      Entry entry = REGISTRY.get(key);
+      if (entry != null && --entry.references == 0) {
+        REGISTRY.remove(key);
+        toClose = entry.provider;
+      }
+    }
+    if (toClose != null) {
+      // close outside the lock, since closing shuts down the auth channel
+      try {
+        toClose.close();
+      } catch (Exception e) {
+        throw StatelyException.from(e);
+      }
+    }
+  }
+
+  /** A shared provider and the number of handles using it. */
+  private static final class Entry {
+    final TokenProvider provider;
+    int references;
+
+    Entry(TokenProvider provider) {
+      this.provider = provider;
+    }
+  }
+
+  /** Identifies a shared provider. The scheduler is compared by identity. */
+  private static final class Key {
+    final String accessKey;
+    final URI endpoint;
+    final ScheduledExecutorService scheduler;
+
+    Key(String accessKey, URI endpoint, ScheduledExecutorService scheduler) {
+      this.accessKey = accessKey;
+      this.endpoint = endpoint;
+      this.scheduler = scheduler;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return accessKey.equals(other.accessKey)
+          && endpoint.equals(other.endpoint)
+          && scheduler == other.scheduler;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(accessKey, endpoint, System.identityHashCode(scheduler));
+    }
+  }
+}
@@ -5,11 +5,19 @@ import cloud.stately.auth.GetAuthTokenRequest;
 import cloud.stately.auth.GetAuthTokenResponse;
 import cloud.stately.statelydb.common.FutureUtils;
 import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.interceptors.Interceptors;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.metrics.Operation;
+import cloud.stately.statelydb.tracing.Span;
+import cloud.stately.statelydb.tracing.TraceEvent;
+import cloud.stately.statelydb.tracing.Tracer;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.ClientInterceptor;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.Status;
 import java.net.URI;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -70,6 +78,12 @@ public class StatelyAccessTokenFetcher implements TokenFetcher {
   /** Maximum backoff attempts to prevent overflow. */
   private static final long MAX_BACKOFF_ATTEMPTS = 10;
 
+  /** The metrics recorder for auth service calls and retries. */
+  private final ClientMetrics metrics;
+
+  /** The tracer that starts a span for each fetch, including its retries. */
+  private final Tracer tracer;
+
   /**
    * Creates a new StatelyAccessTokenFetcher.
    *
@@ -84,9 +98,29 @@ public class StatelyAccessTokenFetcher implements TokenFetcher {
       String accessKey,
       long baseRetryBackoffSecs,
       ScheduledExecutorService scheduler) {
+    this(
+        endpoint,
+        accessKey,
+        baseRetryBackoffSecs,
+        scheduler,
+        ClientMetrics.NOOP,
+        Tracer.NOOP,
+        List.of());
+  }
+
+  private StatelyAccessTokenFetcher(
+      URI endpoint,
+      String accessKey,
+      long baseRetryBackoffSecs,
+      ScheduledExecutorService scheduler,
+      ClientMetrics metrics,
+      Tracer tracer,
+      List<ClientInterceptor> interceptors) {
     this.accessKey = accessKey;
     this.baseRetryBackoffSecs = baseRetryBackoffSecs;
     this.scheduler = scheduler;
+    this.metrics = metrics;
+    this.tracer = tracer;
 
     ManagedChannelBuilder<?> channelBuilder =
         ManagedChannelBuilder.forAddress(endpoint.getHost(), endpoint.getPort())
@@ -99,7 +133,7 @@ public class StatelyAccessTokenFetcher implements TokenFetcher {
     }
 
     this.channel = channelBuilder.build();
-    this.stub = AuthServiceGrpc.newFutureStub(this.channel);
+    this.stub = AuthServiceGrpc.newFutureStub(Interceptors.apply(this.channel, interceptors));
   }
 
   /**
@@ -120,6 +154,9 @@ public class StatelyAccessTokenFetcher implements TokenFetcher {
     private final URI endpoint;
     private final String accessKey;
     private long baseRetryBackoffSecs = 1; // Default value
+    private ClientMetrics metrics = ClientMetrics.NOOP;
+    private Tracer tracer = Tracer.NOOP;
+    private List<ClientInterceptor> interceptors = List.of();
     private final ScheduledExecutorService scheduler;
 
     private Builder(URI endpoint, String accessKey, ScheduledExecutorService scheduler) {
@@ -139,13 +176,48 @@ public class StatelyAccessTokenFetcher implements TokenFetcher {
       return this;
     }
 
+    /**
+     * Sets the metrics recorder for auth service calls and retries.
+     *
+     * @param metrics The metrics recorder
+     * @return This builder instance
+     */
+    public Builder metrics(ClientMetrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Sets the tracer that starts a span for each fetch. Retries are recorded as events on the
+     * span.
+     *
+     * @param tracer The tracer
+     * @return This builder instance
+     */
+    public Builder tracer(Tracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
+    /**
+     * Sets the interceptors applied to calls to the auth service, in the order they should run.
+     *
+     * @param interceptors The interceptors to apply
+     * @return This builder instance
+     */
+    public Builder interceptors(List<ClientInterceptor> interceptors) {
+      this.interceptors = List.copyOf(interceptors);
+      return this;
+    }
+
     /**
      * Builds a new StatelyAccessTokenFetcher instance.
      *
      * @return A new StatelyAccessTokenFetcher instance
      */
     public StatelyAccessTokenFetcher build() {
-      return new StatelyAccessTokenFetcher(endpoint, accessKey, baseRetryBackoffSecs, scheduler);
+      return new StatelyAccessTokenFetcher(
+          endpoint, accessKey, baseRetryBackoffSecs, scheduler, metrics, tracer, interceptors);
     }
   }
 
@@ -156,31 +228,40 @@ public class StatelyAccessTokenFetcher implements TokenFetcher {
    */
   @Override
   public CompletableFuture<TokenResult> fetch() {
-    CompletableFuture<TokenResult> fetchFuture = fetchWithRetries(0);
+    Span span = tracer.startSpan(Operation.GET_AUTH_TOKEN);
+    CompletableFuture<TokenResult> fetchFuture = fetchWithRetries(0, span);
 
     // Track this fetch operation so it can be cancelled if close() is called
     ongoingFetches.add(fetchFuture);
 
     // Remove from tracking when complete (success or failure)
-    fetchFuture.whenComplete((result, throwable) -> ongoingFetches.remove(fetchFuture));
+    fetchFuture.whenComplete(
+        (result, throwable) -> {
+          ongoingFetches.remove(fetchFuture);
+          span.end(
+              throwable == null ? Status.Code.OK : StatelyException.from(throwable).getGrpcCode(),
+              0,
+              0);
+        });
 
     return fetchFuture;
   }
 
-  private CompletableFuture<TokenResult> fetchWithRetries(int attempt) {
+  private CompletableFuture<TokenResult> fetchWithRetries(int attempt, Span span) {
     return fetchImpl()
         .handle(
             (result, error) -> {
               if (error == null) {
                 return CompletableFuture.completedFuture(result);
               } else {
-                return handleError(StatelyException.from(error), attempt);
+                return handleError(StatelyException.from(error), attempt, span);
               }
             })
         .thenCompose(f -> f);
   }
 
-  private CompletableFuture<TokenResult> handleError(StatelyException error, int attempt) {
+  private CompletableFuture<TokenResult> handleError(
+      StatelyException error, int attempt, Span span) {
     // Check if we should retry
     if (attempt >= RETRY_ATTEMPTS || !isRetryableError(error.getGrpcCode())) {
       // No more retries or non-retryable error, propagate the error
@@ -188,16 +269,28 @@ public class StatelyAccessTokenFetcher implements TokenFetcher {
     }
 
     // Otherwise, wait then retry
+    metrics.retry(Operation.GET_AUTH_TOKEN, attempt + 1);
+    span.event(TraceEvent.RETRY, attempt + 1, 0, 0);
     long delayMillis = backoff(attempt, baseRetryBackoffSecs * 1000);
     return FutureUtils.setTimeout(delayMillis, scheduler)
-        .thenCompose(v -> fetchWithRetries(attempt + 1));
+        .thenCompose(v -> fetchWithRetries(attempt + 1, span));
   }
 
   private CompletableFuture<TokenResult> fetchImpl() {
     GetAuthTokenRequest request = GetAuthTokenRequest.newBuilder().setAccessKey(accessKey).build();
 
+    metrics.callStarted(Operation.GET_AUTH_TOKEN);
+    long start = System.nanoTime();
     ListenableFuture<GetAuthTokenResponse> future = stub.getAuthToken(request);
     return FutureUtils.toCompletable(future, scheduler)
+        .whenComplete(
+            (resp, error) ->
+                metrics.callFinished(
+                    Operation.GET_AUTH_TOKEN,
+                    error == null ? Status.Code.OK : StatelyException.from(error).getGrpcCode(),
+                    System.nanoTime() - start,
+                    0,
+                    error == null ? resp.getSerializedSize() : 0))
         .thenApply(resp -> new TokenResult(resp.getAuthToken(), resp.getExpiresInS()));
   }
 
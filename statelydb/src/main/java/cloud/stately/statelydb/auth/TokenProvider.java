@@ -32,4 +32,22 @@ public interface TokenProvider extends AutoCloseable {
   default CompletableFuture<String> getToken() {
     return getToken(false);
   }
+
+  /**
+   * Get the state of the current token, if the provider tracks it. This is used by decorators such
+   * as {@link PersistentTokenProvider} that cache tokens outside of the provider.
+   *
+   * @return The current token and its expiry, or null if there is none or it isn't tracked
+   */
+  default TokenState getTokenState() {
+    return null;
+  }
+
+  /**
+   * Offer a previously obtained token to the provider before it is started, so that it can be used
+   * instead of fetching a new one. Providers that don't support this ignore it.
+   *
+   * @param tokenState The previously obtained token and its expiry
+   */
+  default void restoreTokenState(TokenState tokenState) {}
 }
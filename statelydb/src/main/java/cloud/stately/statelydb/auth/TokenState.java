@@ -7,6 +7,7 @@ public final class TokenState {
 
   private final String token;
   private final Instant expiresAt;
+  private final Instant refreshAt;
 
   /**
    * Create a new TokenState.
@@ -15,8 +16,20 @@ public final class TokenState {
    * @param expiresAt The time when the token expires
    */
   public TokenState(String token, Instant expiresAt) {
+    this(token, expiresAt, expiresAt);
+  }
+
+  /**
+   * Create a new TokenState that should be refreshed before it expires.
+   *
+   * @param token The access token
+   * @param expiresAt The time when the token expires
+   * @param refreshAt The time after which the token is still used but should be replaced
+   */
+  public TokenState(String token, Instant expiresAt, Instant refreshAt) {
     this.token = token;
     this.expiresAt = expiresAt;
+    this.refreshAt = refreshAt.isAfter(expiresAt) ? expiresAt : refreshAt;
   }
 
   /**
@@ -36,4 +49,14 @@ public final class TokenState {
   public Instant getExpiresAt() {
     return expiresAt;
   }
+
+  /**
+   * Get the soft expiry time. After this, the token is still used, but each use starts a refresh
+   * in the background if one is not already running.
+   *
+   * @return The refresh time as an Instant, no later than the expiration time
+   */
+  public Instant getRefreshAt() {
+    return refreshAt;
+  }
 }
@@ -40,6 +40,41 @@ public class FutureUtils {
     return cf;
   }
 
+  /**
+   * Returns a future that completes like the given one, but on the given executor. Dependent
+   * stages added without an explicit executor then run on that executor instead of the thread that
+   * completed the original future, such as a gRPC event loop thread.
+   *
+   * @param <T> The type of the future result
+   * @param future The future to hand off
+   * @param executor The executor to complete the returned future on
+   * @return The future itself if the executor is the direct executor, otherwise a new future
+   */
+  public static <T> CompletableFuture<T> completeOn(
+      CompletableFuture<T> future, Executor executor) {
+    if (executor == MoreExecutors.directExecutor()) {
+      return future;
+    }
+    CompletableFuture<T> handedOff = new CompletableFuture<>();
+    future.whenComplete(
+        (result, error) -> {
+          try {
+            executor.execute(
+                () -> {
+                  if (error != null) {
+                    handedOff.completeExceptionally(error);
+                  } else {
+                    handedOff.complete(result);
+                  }
+                });
+          } catch (RuntimeException e) {
+            // the executor rejected the task, most likely because it is shut down
+            handedOff.completeExceptionally(error != null ? error : e);
+          }
+        });
+    return handedOff;
+  }
+
   /**
    * Create a CompletableFuture that completes after the specified timeout. This is useful when you
    * want to implement a non-blocking sleep or delay.
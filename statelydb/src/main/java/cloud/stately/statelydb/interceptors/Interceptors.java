@@ -0,0 +1,31 @@
+package cloud.stately.statelydb.interceptors;
+
+import io.grpc.Channel;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Utility methods for applying client interceptors to channels. */
+public class Interceptors {
+  private Interceptors() {} // prevent instantiation
+
+  /**
+   * Wraps a channel so that every call made on it passes through the given interceptors. The
+   * interceptors run in list order: the first one sees each call first. Note this is the reverse of
+   * {@link ClientInterceptors#intercept(Channel, List)}.
+   *
+   * @param channel the channel to wrap
+   * @param interceptors the interceptors to apply, in the order they should run
+   * @return the wrapped channel, or the channel itself if there are no interceptors
+   */
+  public static Channel apply(Channel channel, List<ClientInterceptor> interceptors) {
+    if (interceptors.isEmpty()) {
+      return channel;
+    }
+    List<ClientInterceptor> reversed = new ArrayList<>(interceptors);
+    Collections.reverse(reversed);
+    return ClientInterceptors.intercept(channel, reversed);
+  }
+}
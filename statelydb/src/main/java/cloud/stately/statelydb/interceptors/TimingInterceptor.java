@@ -0,0 +1,88 @@
+package cloud.stately.statelydb.interceptors;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * A ClientInterceptor that times every gRPC call at the transport level, from when the call starts
+ * until the server closes it, and counts the response messages received. Unlike the per-operation
+ * {@link cloud.stately.statelydb.metrics.ClientMetrics}, this sees each raw RPC, including calls to
+ * the auth service and the time spent attaching credentials.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * Client client = Client.builder(storeId, typeMapper, scheduler)
+ *     .interceptors(new TimingInterceptor((method, code, nanos, messages) ->
+ *         registry.timer("grpc.client", "method", method.getBareMethodName(), "code", code.name())
+ *             .record(nanos, TimeUnit.NANOSECONDS)))
+ *     .build();
+ * }</pre>
+ */
+public class TimingInterceptor implements ClientInterceptor {
+
+  /** Receives the timing of each finished call. */
+  @FunctionalInterface
+  public interface Recorder {
+    /**
+     * Records a finished call. This is called on the gRPC callback thread and should not block.
+     *
+     * @param method the method that was called
+     * @param code the status code the call finished with
+     * @param durationNanos the time from the start of the call until it closed, in nanoseconds
+     * @param messagesReceived the number of response messages received
+     */
+    void record(
+        MethodDescriptor<?, ?> method, Status.Code code, long durationNanos, int messagesReceived);
+  }
+
+  private final Recorder recorder;
+
+  /**
+   * Creates a new TimingInterceptor.
+   *
+   * @param recorder the recorder to receive the timing of each call
+   */
+  public TimingInterceptor(Recorder recorder) {
+    this.recorder = recorder;
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+        next.newCall(method, callOptions)) {
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        long start = System.nanoTime();
+        super.start(
+            new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+                responseListener) {
+              // gRPC delivers listener callbacks serially, so a plain field is enough.
+              private int messagesReceived = 0;
+
+              @Override
+              public void onMessage(RespT message) {
+                messagesReceived++;
+                super.onMessage(message);
+              }
+
+              @Override
+              public void onClose(Status status, Metadata trailers) {
+                recorder.record(
+                    method, status.getCode(), System.nanoTime() - start, messagesReceived);
+                super.onClose(status, trailers);
+              }
+            },
+            headers);
+      }
+    };
+  }
+}
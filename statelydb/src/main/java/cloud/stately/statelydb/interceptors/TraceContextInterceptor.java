@@ -0,0 +1,85 @@
+package cloud.stately.statelydb.interceptors;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import java.util.function.Supplier;
+
+/**
+ * A ClientInterceptor that propagates the caller's trace context to the server using the W3C Trace
+ * Context headers {@code traceparent} and {@code tracestate}. The header values are read from
+ * suppliers when each call starts, so they can come from whatever tracing library is in use. If a
+ * supplier returns null or an empty string the header is omitted.
+ *
+ * <p>Example usage with OpenTelemetry:
+ *
+ * <pre>{@code
+ * Client client = Client.builder(storeId, typeMapper, scheduler)
+ *     .interceptors(new TraceContextInterceptor(() -> {
+ *         SpanContext ctx = Span.current().getSpanContext();
+ *         if (!ctx.isValid()) {
+ *             return null;
+ *         }
+ *         return "00-" + ctx.getTraceId() + "-" + ctx.getSpanId() + "-"
+ *             + ctx.getTraceFlags().asHex();
+ *     }))
+ *     .build();
+ * }</pre>
+ */
+public class TraceContextInterceptor implements ClientInterceptor {
+
+  /** The W3C traceparent header. */
+  public static final Metadata.Key<String> TRACEPARENT =
+      Metadata.Key.of("traceparent", Metadata.ASCII_STRING_MARSHALLER);
+
+  /** The W3C tracestate header. */
+  public static final Metadata.Key<String> TRACESTATE =
+      Metadata.Key.of("tracestate", Metadata.ASCII_STRING_MARSHALLER);
+
+  private final Supplier<String> traceparent;
+  private final Supplier<String> tracestate;
+
+  /**
+   * Creates a new TraceContextInterceptor that only propagates the traceparent header.
+   *
+   * @param traceparent supplies the traceparent value for the current call
+   */
+  public TraceContextInterceptor(Supplier<String> traceparent) {
+    this(traceparent, () -> null);
+  }
+
+  /**
+   * Creates a new TraceContextInterceptor.
+   *
+   * @param traceparent supplies the traceparent value for the current call
+   * @param tracestate supplies the tracestate value for the current call
+   */
+  public TraceContextInterceptor(Supplier<String> traceparent, Supplier<String> tracestate) {
+    this.traceparent = traceparent;
+    this.tracestate = tracestate;
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+        next.newCall(method, callOptions)) {
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        putIfPresent(headers, TRACEPARENT, traceparent.get());
+        putIfPresent(headers, TRACESTATE, tracestate.get());
+        super.start(responseListener, headers);
+      }
+    };
+  }
+
+  private static void putIfPresent(Metadata headers, Metadata.Key<String> key, String value) {
+    if (value != null && !value.isEmpty()) {
+      headers.put(key, value);
+    }
+  }
+}
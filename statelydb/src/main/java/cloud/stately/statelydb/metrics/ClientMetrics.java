@@ -0,0 +1,107 @@
+package cloud.stately.statelydb.metrics;
+
+import io.grpc.Status;
+
+/**
+ * ClientMetrics receives measurements from a Client. Every method has an empty default so that an
+ * adapter for a metrics library such as Micrometer or OpenTelemetry only needs to override what it
+ * records. Use {@link #NOOP} to record nothing, or {@link SimpleClientMetrics} to keep counters and
+ * latency histograms in memory.
+ *
+ * <p>Methods are called on the hot path of every request, often from gRPC callback threads. They
+ * take only primitives and enums so that recording does not have to allocate, and implementations
+ * should not block.
+ *
+ * <p>Example adapter:
+ *
+ * <pre>{@code
+ * class MicrometerClientMetrics implements ClientMetrics {
+ *   private final MeterRegistry registry;
+ *
+ *   public void callFinished(
+ *       Operation operation, Status.Code code, long durationNanos, int items, long bytes) {
+ *     registry.timer("stately.call", "op", operation.name(), "code", code.name())
+ *         .record(durationNanos, TimeUnit.NANOSECONDS);
+ *   }
+ * }
+ * }</pre>
+ */
+public interface ClientMetrics {
+
+  /** A ClientMetrics that records nothing. */
+  ClientMetrics NOOP = new ClientMetrics() {};
+
+  /**
+   * Called when a call starts. Together with {@link #callFinished} this tracks in-flight calls.
+   *
+   * @param operation the operation being performed
+   */
+  default void callStarted(Operation operation) {}
+
+  /**
+   * Called exactly once when a call started with {@link #callStarted} finishes, successfully or
+   * not.
+   *
+   * @param operation the operation that was performed
+   * @param code the gRPC status code the call finished with
+   * @param durationNanos the time from the start of the call until it finished, in nanoseconds
+   * @param items the number of items returned by the call
+   * @param bytes the serialized size of the responses, in bytes
+   */
+  default void callFinished(
+      Operation operation, Status.Code code, long durationNanos, int items, long bytes) {}
+
+  /**
+   * Called when the first response frame of a streaming call arrives.
+   *
+   * @param operation the streaming operation
+   * @param nanosSinceStart the time from the start of the call to the first frame, in nanoseconds
+   */
+  default void firstFrame(Operation operation, long nanosSinceStart) {}
+
+  /**
+   * Called for each partial result received on a streaming call.
+   *
+   * @param operation the streaming operation
+   * @param items the number of items in the partial result
+   * @param bytes the serialized size of the frame, in bytes
+   */
+  default void partialResult(Operation operation, int items, long bytes) {}
+
+  /**
+   * Called when a call finishes with the number of bytes it sent and received, both as sent over
+   * the wire and before compression. Only called when the client compresses at least one
+   * operation, see {@link cloud.stately.statelydb.CompressionConfig}; comparing the two sizes shows
+   * how much the operation's encoding saves.
+   *
+   * @param operation the operation that was performed
+   * @param encoding the encoding requested for the operation, such as "gzip" or "identity"
+   * @param wireBytesSent the size of the requests on the wire, in bytes
+   * @param uncompressedBytesSent the size of the requests before compression, in bytes
+   * @param wireBytesReceived the size of the responses on the wire, in bytes
+   * @param uncompressedBytesReceived the size of the responses after decompression, in bytes
+   */
+  default void bytesTransferred(
+      Operation operation,
+      String encoding,
+      long wireBytesSent,
+      long uncompressedBytesSent,
+      long wireBytesReceived,
+      long uncompressedBytesReceived) {}
+
+  /**
+   * Called when a call is retried after a failure.
+   *
+   * @param operation the operation being retried
+   * @param attempt the number of the retry about to be made, starting at 1
+   */
+  default void retry(Operation operation, int attempt) {}
+
+  /**
+   * Called when an access token refresh finishes.
+   *
+   * @param durationNanos the time the refresh took, including retries, in nanoseconds
+   * @param success whether a token was obtained
+   */
+  default void tokenRefresh(long durationNanos, boolean success) {}
+}
@@ -0,0 +1,28 @@
+package cloud.stately.statelydb.metrics;
+
+/**
+ * The operations a client performs against StatelyDB. These are used to label metrics without
+ * allocating strings on every call.
+ */
+public enum Operation {
+  /** A get or getBatch call. */
+  GET,
+  /** A put or putBatch call. */
+  PUT,
+  /** A delete or deleteBatch call. */
+  DELETE,
+  /** A beginList call. */
+  BEGIN_LIST,
+  /** A continueList call. */
+  CONTINUE_LIST,
+  /** A syncList call. */
+  SYNC_LIST,
+  /** A beginScan call. */
+  BEGIN_SCAN,
+  /** A continueScan call. */
+  CONTINUE_SCAN,
+  /** A transaction, from begin until commit or abort. */
+  TRANSACTION,
+  /** A request to the auth service for an access token. */
+  GET_AUTH_TOKEN
+}
@@ -0,0 +1,282 @@
+package cloud.stately.statelydb.metrics;
+
+import io.grpc.Status;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An in-memory ClientMetrics that keeps a latency histogram per operation and status code, along
+ * with per-operation counters for calls in flight, items, bytes and retries. All storage is
+ * allocated up front in flat atomic arrays, so recording never allocates or locks.
+ *
+ * <p>Latency histograms use power-of-two buckets: bucket {@code i} counts durations in {@code
+ * [2^(i-1), 2^i)} nanoseconds, so quantiles are accurate to within a factor of two. That is enough
+ * to spot latency shifts cheaply; use an adapter for a metrics library if you need more precision.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * SimpleClientMetrics metrics = new SimpleClientMetrics();
+ * Client client = Client.builder(storeId, typeMapper, scheduler).metrics(metrics).build();
+ * // ...
+ * long p99 = metrics.getLatencyQuantileNanos(Operation.GET, Status.Code.OK, 0.99);
+ * }</pre>
+ */
+public class SimpleClientMetrics implements ClientMetrics {
+
+  /** The number of latency buckets. The last bucket collects everything above ~37 minutes. */
+  public static final int LATENCY_BUCKETS = 43;
+
+  private static final int OPERATIONS = Operation.values().length;
+  private static final int CODES = Status.Code.values().length;
+
+  private final AtomicLongArray latencies =
+      new AtomicLongArray(OPERATIONS * CODES * LATENCY_BUCKETS);
+  private final AtomicLongArray inFlight = new AtomicLongArray(OPERATIONS);
+  private final AtomicLongArray items = new AtomicLongArray(OPERATIONS);
+  private final AtomicLongArray bytes = new AtomicLongArray(OPERATIONS);
+  private final AtomicLongArray partialResults = new AtomicLongArray(OPERATIONS);
+  private final AtomicLongArray firstFrames = new AtomicLongArray(OPERATIONS * LATENCY_BUCKETS);
+  private final AtomicLongArray retries = new AtomicLongArray(OPERATIONS);
+  private final AtomicLongArray wireBytesReceived = new AtomicLongArray(OPERATIONS);
+  private final AtomicLongArray uncompressedBytesReceived = new AtomicLongArray(OPERATIONS);
+  private final AtomicLongArray tokenRefreshes = new AtomicLongArray(2 * LATENCY_BUCKETS);
+
+  /** Creates a new SimpleClientMetrics with all counters at zero. */
+  public SimpleClientMetrics() {}
+
+  @Override
+  public void callStarted(Operation operation) {
+    inFlight.incrementAndGet(operation.ordinal());
+  }
+
+  @Override
+  public void callFinished(
+      Operation operation, Status.Code code, long durationNanos, int items, long bytes) {
+    int op = operation.ordinal();
+    inFlight.decrementAndGet(op);
+    latencies.incrementAndGet(latencyIndex(op, code.ordinal(), bucketFor(durationNanos)));
+    this.items.addAndGet(op, items);
+    this.bytes.addAndGet(op, bytes);
+  }
+
+  @Override
+  public void firstFrame(Operation operation, long nanosSinceStart) {
+    firstFrames.incrementAndGet(operation.ordinal() * LATENCY_BUCKETS + bucketFor(nanosSinceStart));
+  }
+
+  @Override
+  public void partialResult(Operation operation, int items, long bytes) {
+    partialResults.incrementAndGet(operation.ordinal());
+  }
+
+  @Override
+  public void bytesTransferred(
+      Operation operation,
+      String encoding,
+      long wireBytesSent,
+      long uncompressedBytesSent,
+      long wireBytesReceived,
+      long uncompressedBytesReceived) {
+    int op = operation.ordinal();
+    this.wireBytesReceived.addAndGet(op, wireBytesReceived);
+    this.uncompressedBytesReceived.addAndGet(op, uncompressedBytesReceived);
+  }
+
+  @Override
+  public void retry(Operation operation, int attempt) {
+    retries.incrementAndGet(operation.ordinal());
+  }
+
+  @Override
+  public void tokenRefresh(long durationNanos, boolean success) {
+    tokenRefreshes.incrementAndGet((success ? 0 : LATENCY_BUCKETS) + bucketFor(durationNanos));
+  }
+
+  /**
+   * Returns the number of calls currently in flight for an operation.
+   *
+   * @param operation the operation
+   * @return the number of calls started but not yet finished
+   */
+  public long getInFlight(Operation operation) {
+    return inFlight.get(operation.ordinal());
+  }
+
+  /**
+   * Returns the number of finished calls for an operation with the given status code.
+   *
+   * @param operation the operation
+   * @param code the status code
+   * @return the number of calls
+   */
+  public long getCallCount(Operation operation, Status.Code code) {
+    long total = 0;
+    for (long count : getLatencyHistogram(operation, code)) {
+      total += count;
+    }
+    return total;
+  }
+
+  /**
+   * Returns the total number of items returned by an operation.
+   *
+   * @param operation the operation
+   * @return the number of items
+   */
+  public long getItems(Operation operation) {
+    return items.get(operation.ordinal());
+  }
+
+  /**
+   * Returns the total serialized size of the responses to an operation.
+   *
+   * @param operation the operation
+   * @return the number of bytes
+   */
+  public long getBytes(Operation operation) {
+    return bytes.get(operation.ordinal());
+  }
+
+  /**
+   * Returns the number of partial results received by a streaming operation.
+   *
+   * @param operation the operation
+   * @return the number of partial results
+   */
+  public long getPartialResults(Operation operation) {
+    return partialResults.get(operation.ordinal());
+  }
+
+  /**
+   * Returns the total size of the responses to an operation as received over the wire, after
+   * compression. Only recorded when compression is enabled on the client.
+   *
+   * @param operation the operation
+   * @return the number of bytes
+   */
+  public long getWireBytesReceived(Operation operation) {
+    return wireBytesReceived.get(operation.ordinal());
+  }
+
+  /**
+   * Returns the total size of the responses to an operation after decompression. Only recorded
+   * when compression is enabled on the client.
+   *
+   * @param operation the operation
+   * @return the number of bytes
+   */
+  public long getUncompressedBytesReceived(Operation operation) {
+    return uncompressedBytesReceived.get(operation.ordinal());
+  }
+
+  /**
+   * Returns the number of retries made for an operation.
+   *
+   * @param operation the operation
+   * @return the number of retries
+   */
+  public long getRetries(Operation operation) {
+    return retries.get(operation.ordinal());
+  }
+
+  /**
+   * Returns a snapshot of the latency histogram for an operation and status code.
+   *
+   * @param operation the operation
+   * @param code the status code
+   * @return the count in each bucket, see {@link #bucketUpperBoundNanos(int)}
+   */
+  public long[] getLatencyHistogram(Operation operation, Status.Code code) {
+    long[] histogram = new long[LATENCY_BUCKETS];
+    int base = latencyIndex(operation.ordinal(), code.ordinal(), 0);
+    for (int i = 0; i < LATENCY_BUCKETS; i++) {
+      histogram[i] = latencies.get(base + i);
+    }
+    return histogram;
+  }
+
+  /**
+   * Returns a snapshot of the time-to-first-frame histogram for a streaming operation.
+   *
+   * @param operation the operation
+   * @return the count in each bucket, see {@link #bucketUpperBoundNanos(int)}
+   */
+  public long[] getFirstFrameHistogram(Operation operation) {
+    long[] histogram = new long[LATENCY_BUCKETS];
+    for (int i = 0; i < LATENCY_BUCKETS; i++) {
+      histogram[i] = firstFrames.get(operation.ordinal() * LATENCY_BUCKETS + i);
+    }
+    return histogram;
+  }
+
+  /**
+   * Returns a snapshot of the token refresh duration histogram.
+   *
+   * @param success whether to return successful or failed refreshes
+   * @return the count in each bucket, see {@link #bucketUpperBoundNanos(int)}
+   */
+  public long[] getTokenRefreshHistogram(boolean success) {
+    long[] histogram = new long[LATENCY_BUCKETS];
+    int base = success ? 0 : LATENCY_BUCKETS;
+    for (int i = 0; i < LATENCY_BUCKETS; i++) {
+      histogram[i] = tokenRefreshes.get(base + i);
+    }
+    return histogram;
+  }
+
+  /**
+   * Returns an upper bound for the given latency quantile of an operation and status code.
+   *
+   * @param operation the operation
+   * @param code the status code
+   * @param quantile the quantile, between 0 and 1
+   * @return the upper bound of the bucket containing the quantile in nanoseconds, or 0 if no calls
+   *     were recorded
+   */
+  public long getLatencyQuantileNanos(Operation operation, Status.Code code, double quantile) {
+    long[] histogram = getLatencyHistogram(operation, code);
+    long total = 0;
+    for (long count : histogram) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(quantile * total);
+    long seen = 0;
+    for (int i = 0; i < LATENCY_BUCKETS; i++) {
+      seen += histogram[i];
+      if (seen >= rank && histogram[i] > 0) {
+        return bucketUpperBoundNanos(i);
+      }
+    }
+    return bucketUpperBoundNanos(LATENCY_BUCKETS - 1);
+  }
+
+  /**
+   * Returns the exclusive upper bound of a latency bucket.
+   *
+   * @param bucket the bucket index
+   * @return the upper bound in nanoseconds, or Long.MAX_VALUE for the last bucket
+   */
+  public static long bucketUpperBoundNanos(int bucket) {
+    return bucket >= LATENCY_BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+  }
+
+  /**
+   * Returns the histogram bucket for a duration.
+   *
+   * @param nanos the duration in nanoseconds
+   * @return the bucket index
+   */
+  static int bucketFor(long nanos) {
+    if (nanos <= 0) {
+      return 0;
+    }
+    return Math.min(64 - Long.numberOfLeadingZeros(nanos), LATENCY_BUCKETS - 1);
+  }
+
+  private static int latencyIndex(int op, int code, int bucket) {
+    return (op * CODES + code) * LATENCY_BUCKETS + bucket;
+  }
+}
@@ -0,0 +1,308 @@
+package cloud.stately.statelydb.schema;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Encoding and decoding of the IDs in key path segments, shared by the key path builders and
+ * parsers. Encoders write into a caller-supplied {@code char[]} and return the position after what
+ * they wrote; the matching {@code ...Length} methods give the exact number of characters needed.
+ * Decoders read a {@code [start, end)} range of a CharSequence without copying it, and throw
+ * IllegalArgumentException if the range is not a valid ID of that type.
+ */
+final class KeyIds {
+
+  static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  static final char[] BASE64_URL_DIGITS =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+  /** The value of each base64url digit, or -1 for characters that are not digits. */
+  private static final byte[] BASE64_URL_VALUES = new byte[128];
+
+  static {
+    Arrays.fill(BASE64_URL_VALUES, (byte) -1);
+    for (int i = 0; i < BASE64_URL_DIGITS.length; i++) {
+      BASE64_URL_VALUES[BASE64_URL_DIGITS[i]] = (byte) i;
+    }
+  }
+
+  /** The length of a UUID in its canonical form. */
+  static final int UUID_LENGTH = 36;
+
+  private static final char[] LONG_MIN_DIGITS = Long.toString(Long.MIN_VALUE).toCharArray();
+
+  private KeyIds() {}
+
+  /**
+   * Returns the length of a string ID once each "/" is escaped as "%/".
+   *
+   * @param id the string ID
+   * @return the escaped length
+   */
+  static int escapedLength(CharSequence id) {
+    int length = id.length();
+    int escaped = length;
+    for (int i = 0; i < length; i++) {
+      if (id.charAt(i) == '/') {
+        escaped++;
+      }
+    }
+    return escaped;
+  }
+
+  /**
+   * Appends a string ID, escaping each "/" as "%/" so it is not mistaken for a segment separator.
+   *
+   * @param out the buffer to append to
+   * @param id the string ID
+   */
+  static void appendEscaped(StringBuilder out, CharSequence id) {
+    int start = 0;
+    int length = id.length();
+    for (int i = 0; i < length; i++) {
+      if (id.charAt(i) == '/') {
+        out.append(id, start, i).append("%/");
+        start = i + 1;
+      }
+    }
+    out.append(id, start, length);
+  }
+
+  static int writeEscaped(char[] out, int pos, CharSequence id) {
+    int length = id.length();
+    for (int i = 0; i < length; i++) {
+      char c = id.charAt(i);
+      if (c == '/') {
+        out[pos++] = '%';
+      }
+      out[pos++] = c;
+    }
+    return pos;
+  }
+
+  static int writeUuid(char[] out, int pos, UUID id) {
+    long msb = id.getMostSignificantBits();
+    long lsb = id.getLeastSignificantBits();
+    pos = writeHex(out, pos, msb >>> 32, 8);
+    out[pos++] = '-';
+    pos = writeHex(out, pos, msb >>> 16, 4);
+    out[pos++] = '-';
+    pos = writeHex(out, pos, msb, 4);
+    out[pos++] = '-';
+    pos = writeHex(out, pos, lsb >>> 48, 4);
+    out[pos++] = '-';
+    return writeHex(out, pos, lsb, 12);
+  }
+
+  private static int writeHex(char[] out, int pos, long value, int digits) {
+    for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+      out[pos++] = HEX_DIGITS[(int) (value >>> shift) & 0xf];
+    }
+    return pos;
+  }
+
+  /**
+   * Returns the length of bytes encoded as unpadded base64.
+   *
+   * @param byteCount the number of bytes
+   * @return the encoded length
+   */
+  static int base64Length(int byteCount) {
+    return (byteCount * 4 + 2) / 3;
+  }
+
+  static int writeBase64(char[] out, int pos, byte[] id) {
+    int i = 0;
+    int full = id.length - id.length % 3;
+    for (; i < full; i += 3) {
+      int bits = (id[i] & 0xff) << 16 | (id[i + 1] & 0xff) << 8 | (id[i + 2] & 0xff);
+      out[pos++] = BASE64_URL_DIGITS[bits >>> 18];
+      out[pos++] = BASE64_URL_DIGITS[(bits >>> 12) & 0x3f];
+      out[pos++] = BASE64_URL_DIGITS[(bits >>> 6) & 0x3f];
+      out[pos++] = BASE64_URL_DIGITS[bits & 0x3f];
+    }
+    int remaining = id.length - full;
+    if (remaining > 0) {
+      int bits = (id[i] & 0xff) << 16 | (remaining == 2 ? (id[i + 1] & 0xff) << 8 : 0);
+      out[pos++] = BASE64_URL_DIGITS[bits >>> 18];
+      out[pos++] = BASE64_URL_DIGITS[(bits >>> 12) & 0x3f];
+      if (remaining == 2) {
+        out[pos++] = BASE64_URL_DIGITS[(bits >>> 6) & 0x3f];
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * Returns the number of characters in the decimal form of a long, including any sign.
+   *
+   * @param value the value
+   * @return the decimal length
+   */
+  static int decimalLength(long value) {
+    if (value == Long.MIN_VALUE) {
+      return LONG_MIN_DIGITS.length;
+    }
+    int length = 1;
+    if (value < 0) {
+      length++;
+      value = -value;
+    }
+    while (value >= 10) {
+      value /= 10;
+      length++;
+    }
+    return length;
+  }
+
+  static int writeDecimal(char[] out, int pos, long value) {
+    if (value == Long.MIN_VALUE) {
+      System.arraycopy(LONG_MIN_DIGITS, 0, out, pos, LONG_MIN_DIGITS.length);
+      return pos + LONG_MIN_DIGITS.length;
+    }
+    int end = pos + decimalLength(value);
+    if (value < 0) {
+      out[pos] = '-';
+      value = -value;
+    }
+    int i = end;
+    do {
+      out[--i] = (char) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    return end;
+  }
+
+  /**
+   * Finds the end of the segment or ID starting at {@code start}: the next "/" that is not escaped
+   * as "%/", or the end of the key path.
+   *
+   * @param keyPath the key path
+   * @param start where to start looking
+   * @return the index of the next unescaped "/", or the length of the key path
+   */
+  static int segmentEnd(CharSequence keyPath, int start) {
+    int length = keyPath.length();
+    for (int i = start; i < length; i++) {
+      if (keyPath.charAt(i) == '/' && (i == start || keyPath.charAt(i - 1) != '%')) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Decodes a string ID, turning each "%/" back into "/". Only one String is allocated.
+   *
+   * @param keyPath the key path
+   * @param start the start of the ID
+   * @param end the end of the ID
+   * @return the decoded ID
+   */
+  static String decodeString(CharSequence keyPath, int start, int end) {
+    int escapes = 0;
+    for (int i = start + 1; i < end; i++) {
+      if (keyPath.charAt(i) == '/' && keyPath.charAt(i - 1) == '%') {
+        escapes++;
+      }
+    }
+    if (escapes == 0) {
+      return keyPath.subSequence(start, end).toString();
+    }
+    char[] chars = new char[end - start - escapes];
+    int pos = 0;
+    for (int i = start; i < end; i++) {
+      char c = keyPath.charAt(i);
+      if (c == '%' && i + 1 < end && keyPath.charAt(i + 1) == '/') {
+        continue;
+      }
+      chars[pos++] = c;
+    }
+    return new String(chars);
+  }
+
+  static long decodeLong(CharSequence keyPath, int start, int end) {
+    if (start >= end) {
+      throw new IllegalArgumentException("empty numeric ID");
+    }
+    boolean negative = keyPath.charAt(start) == '-';
+    int i = negative ? start + 1 : start;
+    if (i >= end) {
+      throw new IllegalArgumentException("invalid numeric ID");
+    }
+    // accumulate negatively so that Long.MIN_VALUE can be parsed
+    long result = 0;
+    for (; i < end; i++) {
+      int digit = keyPath.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw new IllegalArgumentException("invalid numeric ID");
+      }
+      if (result < (Long.MIN_VALUE + digit) / 10) {
+        throw new IllegalArgumentException("numeric ID out of range");
+      }
+      result = result * 10 - digit;
+    }
+    if (!negative) {
+      if (result == Long.MIN_VALUE) {
+        throw new IllegalArgumentException("numeric ID out of range");
+      }
+      return -result;
+    }
+    return result;
+  }
+
+  static UUID decodeUuid(CharSequence keyPath, int start, int end) {
+    if (end - start != UUID_LENGTH
+        || keyPath.charAt(start + 8) != '-'
+        || keyPath.charAt(start + 13) != '-'
+        || keyPath.charAt(start + 18) != '-'
+        || keyPath.charAt(start + 23) != '-') {
+      throw new IllegalArgumentException("invalid UUID ID");
+    }
+    long msb = decodeHex(keyPath, start, start + 8) << 32;
+    msb |= decodeHex(keyPath, start + 9, start + 13) << 16;
+    msb |= decodeHex(keyPath, start + 14, start + 18);
+    long lsb = decodeHex(keyPath, start + 19, start + 23) << 48;
+    lsb |= decodeHex(keyPath, start + 24, end);
+    return new UUID(msb, lsb);
+  }
+
+  private static long decodeHex(CharSequence keyPath, int start, int end) {
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      int digit = Character.digit(keyPath.charAt(i), 16);
+      if (digit < 0) {
+        throw new IllegalArgumentException("invalid UUID ID");
+      }
+      value = value << 4 | digit;
+    }
+    return value;
+  }
+
+  static byte[] decodeBase64(CharSequence keyPath, int start, int end) {
+    int length = end - start;
+    if (length % 4 == 1) {
+      throw new IllegalArgumentException("invalid base64 ID");
+    }
+    byte[] out = new byte[length * 3 / 4];
+    int pos = 0;
+    int bits = 0;
+    int bitCount = 0;
+    for (int i = start; i < end; i++) {
+      char c = keyPath.charAt(i);
+      int value = c < 128 ? BASE64_URL_VALUES[c] : -1;
+      if (value < 0) {
+        throw new IllegalArgumentException("invalid base64 ID");
+      }
+      bits = bits << 6 | value;
+      bitCount += 6;
+      if (bitCount >= 8) {
+        bitCount -= 8;
+        out[pos++] = (byte) (bits >>> bitCount);
+        bits &= (1 << bitCount) - 1;
+      }
+    }
+    return out;
+  }
+}
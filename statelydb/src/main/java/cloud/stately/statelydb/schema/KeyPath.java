@@ -0,0 +1,214 @@
+package cloud.stately.statelydb.schema;
+
+import cloud.stately.statelydb.common.StatelyException;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import io.grpc.Status;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A compact, immutable key path, for holding large numbers of key paths such as a local view of a
+ * list result set or the key paths from {@link cloud.stately.statelydb.SyncResult}.
+ *
+ * <p>A KeyPath stores only the UTF-8 bytes of its last segment and points at its parent key path.
+ * Parent key paths are interned, so key paths that share a prefix, like every item under {@code
+ * /cust-1234}, share a single copy of it. Interned prefixes are weakly held and go away once no key
+ * path refers to them.
+ *
+ * <p>KeyPaths are compared by value and can be used as map keys. Convert to and from the string
+ * form with {@link #of(String)} and {@link #toString()}; the string form is rebuilt on each call,
+ * so keep the String instead when it is needed repeatedly.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * Map<KeyPath, StatelyItem> view = new HashMap<>();
+ * for (StatelyItem item : result.getItems()) {
+ *     view.put(KeyPath.of(item.primaryKeyPath()), item);
+ * }
+ * for (KeyPath deleted : syncResult.getDeletedKeyPaths()) {
+ *     view.remove(deleted);
+ * }
+ * }</pre>
+ */
+public final class KeyPath {
+
+  /** The root key path, "/". */
+  public static final KeyPath ROOT = new KeyPath(null, new byte[0]);
+
+  private static final Interner<KeyPath> PREFIXES = Interners.newWeakInterner();
+
+  // null for key paths with a single segment; always an interned instance otherwise
+  private final KeyPath parent;
+  // the UTF-8 bytes of the last segment, including its leading "/"
+  private final byte[] segment;
+  private final int hash;
+
+  private KeyPath(KeyPath parent, byte[] segment) {
+    this.parent = parent;
+    this.segment = segment;
+    this.hash = (parent == null ? 0 : parent.hash * 31) + Arrays.hashCode(segment);
+  }
+
+  /**
+   * Parses a key path from its string form.
+   *
+   * @param keyPath the key path, such as {@code /cust-1234/order-5}
+   * @return the KeyPath
+   * @throws StatelyException if the key path does not start with "/"
+   */
+  public static KeyPath of(String keyPath) {
+    int length = keyPath.length();
+    if (length == 0 || keyPath.charAt(0) != '/') {
+      throw new StatelyException(
+          "Invalid key path '" + keyPath + "': key paths must start with '/'",
+          Status.Code.INVALID_ARGUMENT,
+          "InvalidArgument");
+    }
+    if (length == 1) {
+      return ROOT;
+    }
+    KeyPath current = null;
+    int start = 0;
+    while (start < length) {
+      int end = KeyIds.segmentEnd(keyPath, start + 1);
+      if (current != null) {
+        // only a key path that has children is worth interning
+        current = PREFIXES.intern(current);
+      }
+      current = new KeyPath(current, utf8(keyPath, start, end));
+      start = end;
+    }
+    return current;
+  }
+
+  /**
+   * Parses a key path from its UTF-8 bytes, as returned by {@link #toUtf8()}.
+   *
+   * @param keyPath the UTF-8 bytes of the key path
+   * @return the KeyPath
+   * @throws StatelyException if the key path does not start with "/"
+   */
+  public static KeyPath fromUtf8(byte[] keyPath) {
+    return of(new String(keyPath, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns the key path one segment shorter than this one, or {@link #ROOT} for a key path with a
+   * single segment or the root itself.
+   *
+   * @return the parent key path
+   */
+  public KeyPath getParent() {
+    return parent == null ? ROOT : parent;
+  }
+
+  /**
+   * Returns the number of segments in the key path; 0 for the root key path.
+   *
+   * @return the segment count
+   */
+  public int getSegmentCount() {
+    int count = 0;
+    for (KeyPath k = this; k != null && k != ROOT; k = k.parent) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns whether this key path is the given key path or one of its ancestors, that is, whether a
+   * list with this key path as its prefix would include an item at the given key path.
+   *
+   * @param other the key path to check
+   * @return true if this key path is a prefix of other
+   */
+  public boolean isPrefixOf(KeyPath other) {
+    if (this == ROOT) {
+      return true;
+    }
+    for (KeyPath k = other; k != null; k = k.parent) {
+      if (k.equals(this)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the length of the key path in UTF-8 bytes.
+   *
+   * @return the UTF-8 length
+   */
+  public int utf8Length() {
+    if (this == ROOT) {
+      return 1;
+    }
+    int length = 0;
+    for (KeyPath k = this; k != null; k = k.parent) {
+      length += k.segment.length;
+    }
+    return length;
+  }
+
+  /**
+   * Returns the UTF-8 bytes of the key path.
+   *
+   * @return a new array holding the key path's UTF-8 bytes
+   */
+  public byte[] toUtf8() {
+    if (this == ROOT) {
+      return new byte[] {'/'};
+    }
+    byte[] out = new byte[utf8Length()];
+    int end = out.length;
+    for (KeyPath k = this; k != null; k = k.parent) {
+      end -= k.segment.length;
+      System.arraycopy(k.segment, 0, out, end, k.segment.length);
+    }
+    return out;
+  }
+
+  /**
+   * Returns the string form of the key path, as accepted by {@link #of(String)} and by the Client.
+   *
+   * @return the key path string
+   */
+  @Override
+  public String toString() {
+    return new String(toUtf8(), StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof KeyPath)) {
+      return false;
+    }
+    KeyPath other = (KeyPath) o;
+    // parents are interned, so they can be compared by identity
+    return hash == other.hash && parent == other.parent && Arrays.equals(segment, other.segment);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  // Encodes keyPath[start, end) as UTF-8, copying ASCII directly to avoid an intermediate String.
+  private static byte[] utf8(String keyPath, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (keyPath.charAt(i) >= 0x80) {
+        return keyPath.substring(start, end).getBytes(StandardCharsets.UTF_8);
+      }
+    }
+    byte[] bytes = new byte[end - start];
+    for (int i = start; i < end; i++) {
+      bytes[i - start] = (byte) keyPath.charAt(i);
+    }
+    return bytes;
+  }
+}
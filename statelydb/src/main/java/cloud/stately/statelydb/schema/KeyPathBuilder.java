@@ -1,18 +1,83 @@
 package cloud.stately.statelydb.schema;
 
-import java.util.Base64;
 import java.util.UUID;
 
 /**
  * Builder for constructing Stately key paths. Provides methods to build hierarchical key paths with
  * namespaces and identifiers.
+ *
+ * <p>IDs are written straight into the builder's buffers: string IDs are escaped inline, and UUID,
+ * byte array and numeric IDs are formatted without creating intermediate strings, so a reused
+ * builder only allocates the final key path returned by {@link #build()}. When building many key
+ * paths, reuse a builder with {@link #reset()}, or use the per-thread builder from {@link
+ * #local()}:
+ *
+ * <pre>{@code
+ * String keyPath = KeyPathBuilder.local().with("cust", customerId).with("order", orderId).build();
+ * }</pre>
  */
 public class KeyPathBuilder {
+
+  /** The default initial capacity of the buffer, enough for most key paths. */
+  private static final int DEFAULT_CAPACITY = 64;
+
+  /** Builders larger than this are not kept for reuse by {@link #local()}. */
+  private static final int MAX_LOCAL_CAPACITY = 4096;
+
+  private static final ThreadLocal<KeyPathBuilder> LOCAL =
+      ThreadLocal.withInitial(KeyPathBuilder::new);
+
   private final StringBuilder keyPath;
+  private char[] scratch = new char[KeyIds.UUID_LENGTH];
+
+  // Set while this is the thread's local() builder and a key path is being built with it.
+  private boolean inUse = false;
 
   /** Creates a new KeyPathBuilder with an empty key path. */
   public KeyPathBuilder() {
-    this.keyPath = new StringBuilder();
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a new KeyPathBuilder with an empty key path and a buffer pre-sized for key paths of the
+   * given length.
+   *
+   * @param capacity the initial capacity of the buffer in characters
+   */
+  public KeyPathBuilder(int capacity) {
+    this.keyPath = new StringBuilder(capacity);
+  }
+
+  /**
+   * Returns this thread's reusable builder, reset to an empty key path. The builder is handed back
+   * to the thread by {@link #build()}, so it must not be kept after that or shared with another
+   * thread. If local() is called again before the thread's builder is built, as happens when an
+   * argument to {@link #with} computes its own key path with local(), or when a chain threw before
+   * reaching build(), a new builder is returned instead and becomes the thread's builder.
+   *
+   * @return the reset builder for the current thread, or a new builder if it is in use
+   */
+  public static KeyPathBuilder local() {
+    KeyPathBuilder builder = LOCAL.get();
+    if (builder.inUse || builder.keyPath.capacity() > MAX_LOCAL_CAPACITY) {
+      // replace a builder that may never be built, and don't pin an unusually large buffer to the
+      // thread forever
+      builder = new KeyPathBuilder();
+      LOCAL.set(builder);
+    }
+    builder.inUse = true;
+    return builder.reset();
+  }
+
+  /**
+   * Clears the key path so the builder can be reused. The buffer is kept, so a reused builder does
+   * not allocate until {@link #build()}.
+   *
+   * @return this builder for chaining
+   */
+  public KeyPathBuilder reset() {
+    this.keyPath.setLength(0);
+    return this;
   }
 
   /**
@@ -22,7 +87,7 @@ public class KeyPathBuilder {
    * @return this builder for chaining
    */
   public KeyPathBuilder with(String namespace) {
-    this.keyPath.append("/").append(namespace);
+    this.keyPath.append('/').append(namespace);
     return this;
   }
 
@@ -34,7 +99,10 @@ public class KeyPathBuilder {
    * @return this builder for chaining
    */
   public KeyPathBuilder with(String namespace, UUID id) {
-    return with(namespace, id.toString());
+    segment(namespace);
+    char[] buf = scratch(KeyIds.UUID_LENGTH);
+    this.keyPath.append(buf, 0, KeyIds.writeUuid(buf, 0, id));
+    return this;
   }
 
   /**
@@ -45,7 +113,8 @@ public class KeyPathBuilder {
    * @return this builder for chaining
    */
   public KeyPathBuilder with(String namespace, String id) {
-    this.keyPath.append("/").append(namespace).append("-").append(id.replace("/", "%/"));
+    segment(namespace);
+    KeyIds.appendEscaped(this.keyPath, id);
     return this;
   }
 
@@ -57,11 +126,9 @@ public class KeyPathBuilder {
    * @return this builder for chaining
    */
   public KeyPathBuilder with(String namespace, byte[] id) {
-    this.keyPath
-        .append("/")
-        .append(namespace)
-        .append("-")
-        .append(Base64.getUrlEncoder().withoutPadding().encodeToString(id));
+    segment(namespace);
+    char[] buf = scratch(KeyIds.base64Length(id.length));
+    this.keyPath.append(buf, 0, KeyIds.writeBase64(buf, 0, id));
     return this;
   }
 
@@ -73,7 +140,8 @@ public class KeyPathBuilder {
    * @return this builder for chaining
    */
   public KeyPathBuilder with(String namespace, int id) {
-    this.keyPath.append("/").append(namespace).append("-").append(id);
+    segment(namespace);
+    this.keyPath.append(id);
     return this;
   }
 
@@ -85,7 +153,8 @@ public class KeyPathBuilder {
    * @return this builder for chaining
    */
   public KeyPathBuilder with(String namespace, long id) {
-    this.keyPath.append("/").append(namespace).append("-").append(id);
+    segment(namespace);
+    this.keyPath.append(id);
     return this;
   }
 
@@ -117,9 +186,22 @@ public class KeyPathBuilder {
    * @return the constructed key path
    */
   public String build() {
+    inUse = false;
     if (keyPath.length() == 0) {
       return "/";
     }
     return keyPath.toString();
   }
+
+  private void segment(String namespace) {
+    this.keyPath.append('/').append(namespace).append('-');
+  }
+
+  // Returns a buffer of at least the given size for IDs that are encoded before being appended.
+  private char[] scratch(int size) {
+    if (scratch.length < size) {
+      scratch = new char[Math.max(size, scratch.length * 2)];
+    }
+    return scratch;
+  }
 }
@@ -0,0 +1,343 @@
+package cloud.stately.statelydb.schema;
+
+import cloud.stately.statelydb.common.StatelyException;
+import io.grpc.Status;
+import java.util.UUID;
+
+/**
+ * A cursor over the segments of a key path, the inverse of {@link KeyPathBuilder}. It is meant for
+ * code that has to inspect key paths returned by StatelyDB, such as routing the key paths from
+ * {@link cloud.stately.statelydb.SyncResult#getDeletedItemPaths()} to the right local cache,
+ * without regular expressions or splitting the key path into strings.
+ *
+ * <p>The reader walks the key path in place. {@link #namespace()} and {@link #rawId()} return
+ * views onto the key path that are only valid until the next call to {@link #next()} or {@link
+ * #reset}; copy them with {@code toString()} to keep them. The typed accessors decode the current
+ * ID exactly as {@link KeyPathBuilder} encoded it, including "%/" escapes in string IDs, and only
+ * allocate the decoded value.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * KeyPathReader reader = new KeyPathReader();
+ * for (String keyPath : result.getDeletedItemPaths()) {
+ *     reader.reset(keyPath);
+ *     if (reader.next() && reader.isNamespace("cust") && reader.next()
+ *         && reader.isNamespace("order")) {
+ *         orders.remove(reader.getLongId());
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>A reader is not thread-safe, but it can be reused for any number of key paths.
+ */
+public final class KeyPathReader {
+
+  private final Slice namespace = new Slice();
+  private final Slice rawId = new Slice();
+
+  private CharSequence keyPath = "";
+  // the end of the current segment, which is where the next segment starts
+  private int position;
+  private int segmentIndex = -1;
+  private boolean onSegment;
+  // the bounds of the current namespace and ID; idStart is -1 when the segment has no ID
+  private int namespaceStart;
+  private int namespaceEnd;
+  private int idStart = -1;
+  private int idEnd = -1;
+
+  /** Creates a reader with no key path. Call {@link #reset} before reading. */
+  public KeyPathReader() {}
+
+  /**
+   * Creates a reader positioned before the first segment of the given key path.
+   *
+   * @param keyPath the key path to read
+   * @throws StatelyException if the key path does not start with "/"
+   */
+  public KeyPathReader(CharSequence keyPath) {
+    reset(keyPath);
+  }
+
+  /**
+   * Starts reading a new key path, positioned before its first segment.
+   *
+   * @param keyPath the key path to read
+   * @return this reader
+   * @throws StatelyException if the key path does not start with "/"
+   */
+  public KeyPathReader reset(CharSequence keyPath) {
+    if (keyPath.length() == 0 || keyPath.charAt(0) != '/') {
+      throw invalid(keyPath, "key paths must start with '/'");
+    }
+    this.keyPath = keyPath;
+    this.position = 0;
+    this.segmentIndex = -1;
+    this.onSegment = false;
+    return this;
+  }
+
+  /**
+   * Moves to the next segment of the key path.
+   *
+   * @return true if there was another segment, or false at the end of the key path
+   */
+  public boolean next() {
+    int length = keyPath.length();
+    if (!hasNext()) {
+      position = length;
+      onSegment = false;
+      return false;
+    }
+    int start = position + 1;
+    int end = KeyIds.segmentEnd(keyPath, start);
+    namespaceStart = start;
+    namespaceEnd = end;
+    idStart = -1;
+    idEnd = -1;
+    for (int i = start; i < end; i++) {
+      if (keyPath.charAt(i) == '-') {
+        namespaceEnd = i;
+        idStart = i + 1;
+        idEnd = end;
+        break;
+      }
+    }
+    position = end;
+    segmentIndex++;
+    onSegment = true;
+    return true;
+  }
+
+  /**
+   * Returns the index of the current segment, starting from 0 for the first segment.
+   *
+   * @return the segment index, or -1 before the first call to {@link #next()}
+   */
+  public int getSegmentIndex() {
+    return segmentIndex;
+  }
+
+  /**
+   * Returns whether the key path has segments after the current one.
+   *
+   * @return true if {@link #next()} would move to another segment
+   */
+  public boolean hasNext() {
+    // the root key path "/" has no segments
+    return position < keyPath.length() && !(position == 0 && keyPath.length() == 1);
+  }
+
+  /**
+   * Returns the namespace of the current segment as a view onto the key path. The view is only
+   * valid until the reader moves.
+   *
+   * @return the namespace
+   */
+  public CharSequence namespace() {
+    checkSegment();
+    return namespace.set(keyPath, namespaceStart, namespaceEnd);
+  }
+
+  /**
+   * Returns whether the current segment has the given namespace, without allocating.
+   *
+   * @param name the namespace to compare with
+   * @return true if the namespace matches
+   */
+  public boolean isNamespace(String name) {
+    checkSegment();
+    int length = namespaceEnd - namespaceStart;
+    if (name.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (keyPath.charAt(namespaceStart + i) != name.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the current segment has an ID. Segments such as {@code /items} have only a
+   * namespace.
+   *
+   * @return true if the segment has an ID
+   */
+  public boolean hasId() {
+    checkSegment();
+    return idStart >= 0;
+  }
+
+  /**
+   * Returns the ID of the current segment as it appears in the key path, still escaped, as a view
+   * onto the key path. The view is only valid until the reader moves.
+   *
+   * @return the encoded ID
+   * @throws StatelyException if the segment has no ID
+   */
+  public CharSequence rawId() {
+    checkId();
+    return rawId.set(keyPath, idStart, idEnd);
+  }
+
+  /**
+   * Decodes the ID of the current segment as a string ID.
+   *
+   * @return the string ID
+   * @throws StatelyException if the segment has no ID
+   */
+  public String getStringId() {
+    checkId();
+    return KeyIds.decodeString(keyPath, idStart, idEnd);
+  }
+
+  /**
+   * Decodes the ID of the current segment as a UUID ID.
+   *
+   * @return the UUID ID
+   * @throws StatelyException if the segment has no ID or the ID is not a UUID
+   */
+  public UUID getUuidId() {
+    checkId();
+    try {
+      return KeyIds.decodeUuid(keyPath, idStart, idEnd);
+    } catch (IllegalArgumentException e) {
+      throw invalidId(e);
+    }
+  }
+
+  /**
+   * Decodes the ID of the current segment as a byte array ID.
+   *
+   * @return the byte array ID
+   * @throws StatelyException if the segment has no ID or the ID is not base64
+   */
+  public byte[] getBytesId() {
+    checkId();
+    try {
+      return KeyIds.decodeBase64(keyPath, idStart, idEnd);
+    } catch (IllegalArgumentException e) {
+      throw invalidId(e);
+    }
+  }
+
+  /**
+   * Decodes the ID of the current segment as a numeric ID.
+   *
+   * @return the numeric ID
+   * @throws StatelyException if the segment has no ID or the ID is not a number
+   */
+  public long getLongId() {
+    checkId();
+    try {
+      return KeyIds.decodeLong(keyPath, idStart, idEnd);
+    } catch (IllegalArgumentException e) {
+      throw invalidId(e);
+    }
+  }
+
+  /**
+   * Decodes the ID of the current segment as an int ID, such as an enum number.
+   *
+   * @return the int ID
+   * @throws StatelyException if the segment has no ID or the ID is not a number in int range
+   */
+  public int getIntId() {
+    long id = getLongId();
+    if (id < Integer.MIN_VALUE || id > Integer.MAX_VALUE) {
+      throw invalidId(new IllegalArgumentException("numeric ID out of int range"));
+    }
+    return (int) id;
+  }
+
+  /**
+   * Returns the namespace of the last segment of a key path, which usually identifies the item
+   * type, without allocating anything but the result.
+   *
+   * @param keyPath the key path
+   * @return the namespace of the last segment, or an empty string for the root key path
+   * @throws StatelyException if the key path does not start with "/"
+   */
+  public static String lastNamespace(CharSequence keyPath) {
+    KeyPathReader reader = new KeyPathReader(keyPath);
+    String namespace = "";
+    while (reader.next()) {
+      if (!reader.hasNext()) {
+        namespace = reader.namespace().toString();
+      }
+    }
+    return namespace;
+  }
+
+  @Override
+  public String toString() {
+    return keyPath.toString();
+  }
+
+  private void checkSegment() {
+    if (!onSegment) {
+      throw new IllegalStateException("next() must return true before reading a segment");
+    }
+  }
+
+  private void checkId() {
+    checkSegment();
+    if (idStart < 0) {
+      throw invalid(keyPath, "segment " + segmentIndex + " has no ID");
+    }
+  }
+
+  private StatelyException invalidId(IllegalArgumentException cause) {
+    return invalid(keyPath, "segment " + segmentIndex + ": " + cause.getMessage());
+  }
+
+  private static StatelyException invalid(CharSequence keyPath, String reason) {
+    return new StatelyException(
+        "Invalid key path '" + keyPath + "': " + reason,
+        Status.Code.INVALID_ARGUMENT,
+        "InvalidArgument");
+  }
+
+  /** A reusable view onto part of a key path. */
+  private static final class Slice implements CharSequence {
+    private CharSequence source = "";
+    private int start;
+    private int end;
+
+    Slice set(CharSequence source, int start, int end) {
+      this.source = source;
+      this.start = start;
+      this.end = end;
+      return this;
+    }
+
+    @Override
+    public int length() {
+      return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= end - start) {
+        throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+      }
+      return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      if (from < 0 || to > end - start || from > to) {
+        throw new IndexOutOfBoundsException("range [" + from + ", " + to + ")");
+      }
+      return source.subSequence(start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+      return source.subSequence(start, end).toString();
+    }
+  }
+}
@@ -0,0 +1,530 @@
+package cloud.stately.statelydb.schema;
+
+import cloud.stately.statelydb.common.StatelyException;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A key path pattern compiled once into its literal fragments and typed ID slots, so that key paths
+ * of a single shape can be formatted and parsed quickly. This is meant for hot paths such as {@code
+ * primaryKeyPath()} implementations and request routing, where {@link KeyPathBuilder} would
+ * re-append the same namespace literals for every key path.
+ *
+ * <p>A pattern is a key path in which each ID is replaced by a slot: {@code {name}} for a string
+ * ID, or {@code {name:type}} where type is one of {@code string}, {@code uuid}, {@code bytes} or
+ * {@code long} ({@code int} is accepted as an alias of {@code long}). Each slot must be followed by
+ * a "/" or the end of the pattern. IDs are encoded exactly as {@link KeyPathBuilder} encodes them.
+ *
+ * <p>Formatting computes the exact length of the key path first and writes it into a single array.
+ * Parsing reads the key path in place and only allocates the decoded IDs.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * static final KeyPathTemplate ORDER = KeyPathTemplate.compile("/cust-{id:uuid}/order-{oid:long}");
+ *
+ * String keyPath = ORDER.format(customerId, orderId);
+ *
+ * KeyPathTemplate.Match match = ORDER.match(keyPath);
+ * if (match != null) {
+ *     UUID customer = match.getUuid(0);
+ *     long order = match.getLong(1);
+ * }
+ * }</pre>
+ *
+ * <p>KeyPathTemplate is immutable and safe to share between threads.
+ */
+public final class KeyPathTemplate {
+
+  /** The types of ID a slot can hold. */
+  public enum SlotType {
+    /** A string ID. Accepts any CharSequence. */
+    STRING,
+    /** A UUID ID. Accepts a {@link UUID}. */
+    UUID,
+    /** A bytes ID, encoded as unpadded URL-safe base64. Accepts a byte[] or a ByteString. */
+    BYTES,
+    /**
+     * A numeric ID. Accepts a Long, Integer, Short or Byte, an enum (by ordinal) or a {@link
+     * StatelyEnum} (by number).
+     */
+    LONG
+  }
+
+  private final String pattern;
+  // literals[i] comes before slot i, and the last literal comes after the last slot
+  private final char[][] literals;
+  private final String[] names;
+  private final SlotType[] types;
+  private final int literalLength;
+
+  private KeyPathTemplate(
+      String pattern, char[][] literals, String[] names, SlotType[] types, int literalLength) {
+    this.pattern = pattern;
+    this.literals = literals;
+    this.names = names;
+    this.types = types;
+    this.literalLength = literalLength;
+  }
+
+  /**
+   * Compiles a key path pattern such as {@code /cust-{id:uuid}/order-{oid:long}}.
+   *
+   * @param pattern the pattern to compile
+   * @return the compiled template
+   * @throws StatelyException if the pattern is invalid
+   */
+  public static KeyPathTemplate compile(String pattern) {
+    if (pattern.isEmpty() || pattern.charAt(0) != '/') {
+      throw invalidPattern(pattern, "it must start with '/'");
+    }
+    List<char[]> literals = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    List<SlotType> types = new ArrayList<>();
+    int literalLength = 0;
+    int literalStart = 0;
+    int i = 0;
+    while (i < pattern.length()) {
+      char c = pattern.charAt(i);
+      if (c == '}') {
+        throw invalidPattern(pattern, "unmatched '}'");
+      }
+      if (c != '{') {
+        i++;
+        continue;
+      }
+      int close = pattern.indexOf('}', i);
+      if (close < 0) {
+        throw invalidPattern(pattern, "unmatched '{'");
+      }
+      if (close + 1 < pattern.length() && pattern.charAt(close + 1) != '/') {
+        throw invalidPattern(pattern, "a slot must be followed by '/' or the end of the pattern");
+      }
+      String slot = pattern.substring(i + 1, close);
+      int colon = slot.indexOf(':');
+      String name = colon < 0 ? slot : slot.substring(0, colon);
+      if (name.isEmpty() || name.indexOf('{') >= 0) {
+        throw invalidPattern(pattern, "invalid slot '{" + slot + "}'");
+      }
+      if (names.contains(name)) {
+        throw invalidPattern(pattern, "duplicate slot name '" + name + "'");
+      }
+      literals.add(pattern.substring(literalStart, i).toCharArray());
+      literalLength += i - literalStart;
+      names.add(name);
+      types.add(colon < 0 ? SlotType.STRING : slotType(pattern, slot.substring(colon + 1)));
+      i = close + 1;
+      literalStart = i;
+    }
+    literals.add(pattern.substring(literalStart).toCharArray());
+    literalLength += pattern.length() - literalStart;
+
+    return new KeyPathTemplate(
+        pattern,
+        literals.toArray(new char[0][]),
+        names.toArray(new String[0]),
+        types.toArray(new SlotType[0]),
+        literalLength);
+  }
+
+  private static SlotType slotType(String pattern, String type) {
+    switch (type) {
+      case "string":
+        return SlotType.STRING;
+      case "uuid":
+        return SlotType.UUID;
+      case "bytes":
+        return SlotType.BYTES;
+      case "long":
+      case "int":
+        return SlotType.LONG;
+      default:
+        throw invalidPattern(pattern, "unknown slot type '" + type + "'");
+    }
+  }
+
+  private static StatelyException invalidPattern(String pattern, String reason) {
+    return new StatelyException(
+        "Invalid key path pattern '" + pattern + "': " + reason,
+        Status.Code.INVALID_ARGUMENT,
+        "InvalidArgument");
+  }
+
+  /**
+   * Returns the pattern this template was compiled from.
+   *
+   * @return the pattern
+   */
+  public String getPattern() {
+    return pattern;
+  }
+
+  /**
+   * Returns the number of ID slots in the template.
+   *
+   * @return the number of slots
+   */
+  public int getSlotCount() {
+    return names.length;
+  }
+
+  /**
+   * Returns the name of a slot.
+   *
+   * @param slot the index of the slot
+   * @return the slot name
+   */
+  public String getSlotName(int slot) {
+    return names[slot];
+  }
+
+  /**
+   * Returns the type of a slot.
+   *
+   * @param slot the index of the slot
+   * @return the slot type
+   */
+  public SlotType getSlotType(int slot) {
+    return types[slot];
+  }
+
+  /**
+   * Returns the exact length of the key path that {@link #format} would produce for these IDs.
+   *
+   * @param ids one ID per slot, in order
+   * @return the key path length in characters
+   * @throws StatelyException if the IDs don't fit the slots
+   */
+  public int length(Object... ids) {
+    checkArity(ids);
+    int length = literalLength;
+    for (int i = 0; i < ids.length; i++) {
+      length += idLength(i, ids[i]);
+    }
+    return length;
+  }
+
+  /**
+   * Formats a key path from the given IDs.
+   *
+   * @param ids one ID per slot, in order
+   * @return the key path
+   * @throws StatelyException if the IDs don't fit the slots
+   */
+  public String format(Object... ids) {
+    char[] out = new char[length(ids)];
+    writeTo(out, 0, ids);
+    return new String(out);
+  }
+
+  /**
+   * Formats a key path from the given IDs as UTF-8 bytes.
+   *
+   * @param ids one ID per slot, in order
+   * @return the UTF-8 encoded key path
+   * @throws StatelyException if the IDs don't fit the slots
+   */
+  public byte[] formatUtf8(Object... ids) {
+    char[] chars = new char[length(ids)];
+    writeTo(chars, 0, ids);
+    if (isAscii(chars)) {
+      byte[] out = new byte[chars.length];
+      for (int i = 0; i < chars.length; i++) {
+        out[i] = (byte) chars[i];
+      }
+      return out;
+    }
+    return new String(chars).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static boolean isAscii(char[] chars) {
+    for (char c : chars) {
+      if (c >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes a key path into the given array, which must have room for {@link #length} characters
+   * from the offset. This does not allocate.
+   *
+   * @param out the array to write into
+   * @param offset where to start writing
+   * @param ids one ID per slot, in order
+   * @return the offset just after the key path
+   * @throws StatelyException if the IDs don't fit the slots
+   */
+  public int writeTo(char[] out, int offset, Object... ids) {
+    checkArity(ids);
+    int pos = offset;
+    for (int i = 0; i < ids.length; i++) {
+      char[] literal = literals[i];
+      System.arraycopy(literal, 0, out, pos, literal.length);
+      pos += literal.length;
+      pos = writeId(out, pos, i, ids[i]);
+    }
+    char[] last = literals[ids.length];
+    System.arraycopy(last, 0, out, pos, last.length);
+    return pos + last.length;
+  }
+
+  private void checkArity(Object[] ids) {
+    if (ids.length != names.length) {
+      throw new StatelyException(
+          "Key path pattern '"
+              + pattern
+              + "' has "
+              + names.length
+              + " slots but "
+              + ids.length
+              + " IDs were given",
+          Status.Code.INVALID_ARGUMENT,
+          "InvalidArgument");
+    }
+  }
+
+  private int idLength(int slot, Object id) {
+    switch (types[slot]) {
+      case STRING:
+        return KeyIds.escapedLength(stringId(slot, id));
+      case UUID:
+        uuidId(slot, id);
+        return KeyIds.UUID_LENGTH;
+      case BYTES:
+        return KeyIds.base64Length(bytesId(slot, id).length);
+      case LONG:
+      default:
+        return KeyIds.decimalLength(longId(slot, id));
+    }
+  }
+
+  private int writeId(char[] out, int pos, int slot, Object id) {
+    switch (types[slot]) {
+      case STRING:
+        return KeyIds.writeEscaped(out, pos, stringId(slot, id));
+      case UUID:
+        return KeyIds.writeUuid(out, pos, uuidId(slot, id));
+      case BYTES:
+        return KeyIds.writeBase64(out, pos, bytesId(slot, id));
+      case LONG:
+      default:
+        return KeyIds.writeDecimal(out, pos, longId(slot, id));
+    }
+  }
+
+  private CharSequence stringId(int slot, Object id) {
+    if (id instanceof CharSequence) {
+      return (CharSequence) id;
+    }
+    throw wrongIdType(slot, id);
+  }
+
+  private UUID uuidId(int slot, Object id) {
+    if (id instanceof UUID) {
+      return (UUID) id;
+    }
+    throw wrongIdType(slot, id);
+  }
+
+  private byte[] bytesId(int slot, Object id) {
+    if (id instanceof byte[]) {
+      return (byte[]) id;
+    }
+    if (id instanceof ByteString) {
+      return ((ByteString) id).toByteArray();
+    }
+    throw wrongIdType(slot, id);
+  }
+
+  private long longId(int slot, Object id) {
+    if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte) {
+      return ((Number) id).longValue();
+    }
+    if (id instanceof StatelyEnum) {
+      return ((StatelyEnum<?>) id).getNumber();
+    }
+    if (id instanceof Enum) {
+      return ((Enum<?>) id).ordinal();
+    }
+    throw wrongIdType(slot, id);
+  }
+
+  private StatelyException wrongIdType(int slot, Object id) {
+    return new StatelyException(
+        "Slot '"
+            + names[slot]
+            + "' of key path pattern '"
+            + pattern
+            + "' expects a "
+            + types[slot]
+            + " ID but got "
+            + (id == null ? "null" : id.getClass().getSimpleName()),
+        Status.Code.INVALID_ARGUMENT,
+        "InvalidArgument");
+  }
+
+  /**
+   * Returns whether the key path has the shape of this template, with IDs of the right types.
+   *
+   * @param keyPath the key path to check
+   * @return true if the key path matches
+   */
+  public boolean matches(CharSequence keyPath) {
+    return match(keyPath) != null;
+  }
+
+  /**
+   * Parses a key path of this template's shape back into its typed IDs: a String, UUID, byte[] or
+   * Long for each slot, by slot type.
+   *
+   * @param keyPath the key path to parse
+   * @return the IDs, or null if the key path doesn't match the template
+   */
+  public Match match(CharSequence keyPath) {
+    Object[] ids = new Object[names.length];
+    int pos = 0;
+    int length = keyPath.length();
+    for (int i = 0; i < names.length; i++) {
+      if (!regionMatches(keyPath, pos, literals[i])) {
+        return null;
+      }
+      pos += literals[i].length;
+      int end = KeyIds.segmentEnd(keyPath, pos);
+      try {
+        ids[i] = decodeId(keyPath, pos, end, types[i]);
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+      pos = end;
+    }
+    char[] last = literals[names.length];
+    if (pos + last.length != length || !regionMatches(keyPath, pos, last)) {
+      return null;
+    }
+    return new Match(ids);
+  }
+
+  private static boolean regionMatches(CharSequence keyPath, int pos, char[] literal) {
+    if (pos + literal.length > keyPath.length()) {
+      return false;
+    }
+    for (int i = 0; i < literal.length; i++) {
+      if (keyPath.charAt(pos + i) != literal[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Object decodeId(CharSequence keyPath, int start, int end, SlotType type) {
+    switch (type) {
+      case STRING:
+        return KeyIds.decodeString(keyPath, start, end);
+      case UUID:
+        return KeyIds.decodeUuid(keyPath, start, end);
+      case BYTES:
+        return KeyIds.decodeBase64(keyPath, start, end);
+      case LONG:
+      default:
+        return KeyIds.decodeLong(keyPath, start, end);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return pattern;
+  }
+
+  /** The typed IDs parsed from a key path by {@link #match}. */
+  public final class Match {
+    private final Object[] ids;
+
+    private Match(Object[] ids) {
+      this.ids = ids;
+    }
+
+    /**
+     * Returns the ID in a slot: a String, UUID, byte[] or Long depending on the slot type.
+     *
+     * @param slot the index of the slot
+     * @return the ID
+     */
+    public Object get(int slot) {
+      return ids[slot];
+    }
+
+    /**
+     * Returns the ID in the slot with the given name.
+     *
+     * @param name the name of the slot
+     * @return the ID
+     * @throws StatelyException if the template has no slot with that name
+     */
+    public Object get(String name) {
+      for (int i = 0; i < names.length; i++) {
+        if (names[i].equals(name)) {
+          return ids[i];
+        }
+      }
+      throw new StatelyException(
+          "Key path pattern '" + pattern + "' has no slot '" + name + "'",
+          Status.Code.INVALID_ARGUMENT,
+          "InvalidArgument");
+    }
+
+    /**
+     * Returns the ID in a string slot.
+     *
+     * @param slot the index of the slot
+     * @return the ID
+     */
+    public String getString(int slot) {
+      return (String) ids[slot];
+    }
+
+    /**
+     * Returns the ID in a UUID slot.
+     *
+     * @param slot the index of the slot
+     * @return the ID
+     */
+    public UUID getUuid(int slot) {
+      return (UUID) ids[slot];
+    }
+
+    /**
+     * Returns the ID in a bytes slot.
+     *
+     * @param slot the index of the slot
+     * @return the ID
+     */
+    public byte[] getBytes(int slot) {
+      return (byte[]) ids[slot];
+    }
+
+    /**
+     * Returns the ID in a numeric slot.
+     *
+     * @param slot the index of the slot
+     * @return the ID
+     */
+    public long getLong(int slot) {
+      return (Long) ids[slot];
+    }
+
+    /**
+     * Returns the number of IDs, which is the number of slots in the template.
+     *
+     * @return the number of IDs
+     */
+    public int size() {
+      return ids.length;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package cloud.stately.statelydb.tracing;
+
+import cloud.stately.statelydb.metrics.Operation;
+import io.grpc.Status;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/** A record of one finished call, as kept by a {@link FlightRecorder}. */
+public final class CallRecord {
+  private final long sequence;
+  private final Operation operation;
+  private final String keyPath;
+  private final long startEpochMillis;
+  private final long durationNanos;
+  private final Status.Code code;
+  private final int items;
+  private final long bytes;
+  private final int retries;
+
+  CallRecord(
+      long sequence,
+      Operation operation,
+      String keyPath,
+      long startEpochMillis,
+      long durationNanos,
+      Status.Code code,
+      int items,
+      long bytes,
+      int retries) {
+    this.sequence = sequence;
+    this.operation = operation;
+    this.keyPath = keyPath;
+    this.startEpochMillis = startEpochMillis;
+    this.durationNanos = durationNanos;
+    this.code = code;
+    this.items = items;
+    this.bytes = bytes;
+    this.retries = retries;
+  }
+
+  /**
+   * Returns the position of this call in the order calls finished, starting at 0.
+   *
+   * @return the sequence number of the call
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Returns the operation that was performed.
+   *
+   * @return the operation
+   */
+  public Operation getOperation() {
+    return operation;
+  }
+
+  /**
+   * Returns the key path or key path prefix of the call, if it had one. See {@link
+   * SpanAttributes#KEY_PATH}.
+   *
+   * @return the key path, or null for calls such as continueList or a transaction
+   */
+  public String getKeyPath() {
+    return keyPath;
+  }
+
+  /**
+   * Returns when the call started, by the wall clock.
+   *
+   * @return the start time of the call
+   */
+  public Instant getStartTime() {
+    return Instant.ofEpochMilli(startEpochMillis);
+  }
+
+  /**
+   * Returns how long the call took.
+   *
+   * @return the duration of the call in nanoseconds
+   */
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * Returns the gRPC status code the call finished with.
+   *
+   * @return the status code
+   */
+  public Status.Code getCode() {
+    return code;
+  }
+
+  /**
+   * Returns the number of items returned by the call.
+   *
+   * @return the item count
+   */
+  public int getItems() {
+    return items;
+  }
+
+  /**
+   * Returns the serialized size of the responses.
+   *
+   * @return the response size in bytes
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns how many times the call was retried.
+   *
+   * @return the retry count
+   */
+  public int getRetries() {
+    return retries;
+  }
+
+  @Override
+  public String toString() {
+    return getStartTime()
+        + " "
+        + operation
+        + (keyPath != null ? " " + keyPath : "")
+        + " "
+        + code
+        + " "
+        + TimeUnit.NANOSECONDS.toMicros(durationNanos) / 1000.0
+        + "ms items="
+        + items
+        + " bytes="
+        + bytes
+        + " retries="
+        + retries;
+  }
+}
@@ -0,0 +1,57 @@
+package cloud.stately.statelydb.tracing;
+
+import io.grpc.Status;
+
+/** A Span that forwards to several spans, created by {@link Tracer#compose}. */
+final class CompositeSpan implements Span {
+  private final Span[] spans;
+
+  CompositeSpan(Span[] spans) {
+    this.spans = spans;
+  }
+
+  @Override
+  public boolean isRecording() {
+    for (Span span : spans) {
+      if (span.isRecording()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void event(TraceEvent event, long id, int items, long bytes) {
+    for (Span span : spans) {
+      span.event(event, id, items, bytes);
+    }
+  }
+
+  @Override
+  public void setAttribute(String key, long value) {
+    for (Span span : spans) {
+      span.setAttribute(key, value);
+    }
+  }
+
+  @Override
+  public void setAttribute(String key, boolean value) {
+    for (Span span : spans) {
+      span.setAttribute(key, value);
+    }
+  }
+
+  @Override
+  public void setAttribute(String key, String value) {
+    for (Span span : spans) {
+      span.setAttribute(key, value);
+    }
+  }
+
+  @Override
+  public void end(Status.Code code, int items, long bytes) {
+    for (Span span : spans) {
+      span.end(code, items, bytes);
+    }
+  }
+}
@@ -0,0 +1,336 @@
+package cloud.stately.statelydb.tracing;
+
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.Operation;
+import io.grpc.Status;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * FlightRecorder is a Tracer that keeps the last few calls made by a client in memory, so that
+ * latency spikes can be investigated after the fact. Calls that take longer than a threshold are
+ * also kept in a separate slow-call log, which holds on to them after they have rotated out of the
+ * recent calls, and can be reported to a listener as they happen.
+ *
+ * <p>Both logs are fixed-size ring buffers. Recording a call claims a slot with a single atomic
+ * increment and never locks, so the recorder can stay enabled in production. The oldest calls are
+ * overwritten once a log is full.
+ *
+ * <p>To keep an existing tracer running alongside the recorder, combine them with {@link
+ * Tracer#compose}.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * FlightRecorder recorder = FlightRecorder.builder()
+ *     .capacity(4096)
+ *     .slowCallThreshold(Duration.ofMillis(250))
+ *     .slowCallListener(call -> log.warn("Slow StatelyDB call: {}", call))
+ *     .build();
+ * Client client = Client.builder(storeId, typeMapper, scheduler)
+ *     .tracer(Tracer.compose(otelTracer, recorder))
+ *     .build();
+ * // ...
+ * System.out.println(recorder.dump());
+ * }</pre>
+ */
+public class FlightRecorder implements Tracer {
+
+  /** The default number of recent calls kept. */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /** The default number of slow calls kept. */
+  public static final int DEFAULT_SLOW_CALL_CAPACITY = 128;
+
+  /** The default duration above which a call is considered slow. */
+  public static final Duration DEFAULT_SLOW_CALL_THRESHOLD = Duration.ofSeconds(1);
+
+  private final Ring recent;
+  private final Ring slow;
+  private final long slowCallThresholdNanos;
+  private final Consumer<CallRecord> slowCallListener;
+  private final AtomicLong sequence = new AtomicLong();
+
+  private FlightRecorder(
+      int capacity,
+      int slowCallCapacity,
+      long slowCallThresholdNanos,
+      Consumer<CallRecord> slowCallListener) {
+    this.recent = new Ring(capacity);
+    this.slow = new Ring(slowCallCapacity);
+    this.slowCallThresholdNanos = slowCallThresholdNanos;
+    this.slowCallListener = slowCallListener;
+  }
+
+  /**
+   * Creates a new builder for FlightRecorder.
+   *
+   * @return a new Builder instance
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Builder for FlightRecorder. */
+  public static class Builder {
+    private int capacity = DEFAULT_CAPACITY;
+    private int slowCallCapacity = DEFAULT_SLOW_CALL_CAPACITY;
+    private Duration slowCallThreshold = DEFAULT_SLOW_CALL_THRESHOLD;
+    private Consumer<CallRecord> slowCallListener = null;
+
+    private Builder() {}
+
+    /**
+     * Sets the number of recent calls to keep. It is rounded up to a power of two.
+     *
+     * @param capacity the number of recent calls to keep
+     * @return this builder instance
+     */
+    public Builder capacity(int capacity) {
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Sets the number of slow calls to keep. It is rounded up to a power of two.
+     *
+     * @param slowCallCapacity the number of slow calls to keep
+     * @return this builder instance
+     */
+    public Builder slowCallCapacity(int slowCallCapacity) {
+      this.slowCallCapacity = slowCallCapacity;
+      return this;
+    }
+
+    /**
+     * Sets the duration at or above which a call is logged as slow. Zero disables the slow-call
+     * log.
+     *
+     * @param slowCallThreshold the slow-call threshold
+     * @return this builder instance
+     */
+    public Builder slowCallThreshold(Duration slowCallThreshold) {
+      this.slowCallThreshold = slowCallThreshold;
+      return this;
+    }
+
+    /**
+     * Sets a listener that is called with each slow call as soon as it finishes, for example to
+     * write it to a log. It is called on the thread that finished the call, so it should not block.
+     *
+     * @param slowCallListener the listener for slow calls
+     * @return this builder instance
+     */
+    public Builder slowCallListener(Consumer<CallRecord> slowCallListener) {
+      this.slowCallListener = slowCallListener;
+      return this;
+    }
+
+    /**
+     * Builds a new FlightRecorder instance.
+     *
+     * @return a new FlightRecorder instance
+     * @throws StatelyException if a capacity is not positive
+     */
+    public FlightRecorder build() {
+      if (capacity <= 0 || slowCallCapacity <= 0) {
+        throw new StatelyException(
+            "Flight recorder capacities must be positive",
+            Status.Code.INVALID_ARGUMENT,
+            "InvalidArgument");
+      }
+      return new FlightRecorder(
+          capacity, slowCallCapacity, slowCallThreshold.toNanos(), slowCallListener);
+    }
+  }
+
+  @Override
+  public Span startSpan(Operation operation) {
+    return new RecordingSpan(operation);
+  }
+
+  /**
+   * Returns the most recent calls, oldest first.
+   *
+   * @return a snapshot of the recent calls
+   */
+  public List<CallRecord> getRecentCalls() {
+    return recent.snapshot();
+  }
+
+  /**
+   * Returns the most recent slow calls, oldest first.
+   *
+   * @return a snapshot of the slow calls
+   */
+  public List<CallRecord> getSlowCalls() {
+    return slow.snapshot();
+  }
+
+  /**
+   * Returns the total number of calls recorded, including those that have been overwritten.
+   *
+   * @return the number of calls recorded
+   */
+  public long getRecordedCount() {
+    return sequence.get();
+  }
+
+  /**
+   * Writes the recent and slow calls to the given output, one call per line.
+   *
+   * @param out where to write the calls
+   * @throws IOException if writing fails
+   */
+  public void dump(Appendable out) throws IOException {
+    List<CallRecord> recentCalls = getRecentCalls();
+    out.append("Recent calls (")
+        .append(String.valueOf(recentCalls.size()))
+        .append(" of ")
+        .append(String.valueOf(getRecordedCount()))
+        .append("):\n");
+    for (CallRecord call : recentCalls) {
+      out.append("  ").append(call.toString()).append('\n');
+    }
+    List<CallRecord> slowCalls = getSlowCalls();
+    out.append("Slow calls (>= ")
+        .append(String.valueOf(Duration.ofNanos(slowCallThresholdNanos).toMillis()))
+        .append("ms, ")
+        .append(String.valueOf(slowCalls.size()))
+        .append("):\n");
+    for (CallRecord call : slowCalls) {
+      out.append("  ").append(call.toString()).append('\n');
+    }
+  }
+
+  /**
+   * Returns the recent and slow calls as text, one call per line.
+   *
+   * @return the dump of the recorded calls
+   */
+  public String dump() {
+    StringBuilder sb = new StringBuilder();
+    try {
+      dump(sb);
+    } catch (IOException e) {
+      // StringBuilder does not throw
+      throw new UncheckedIOException(e);
+    }
+    return sb.toString();
+  }
+
+  private void record(
+      Operation operation,
+      String keyPath,
+      long startEpochMillis,
+      long durationNanos,
+      Status.Code code,
+      int items,
+      long bytes,
+      int retries) {
+    CallRecord call =
+        new CallRecord(
+            sequence.getAndIncrement(),
+            operation,
+            keyPath,
+            startEpochMillis,
+            durationNanos,
+            code,
+            items,
+            bytes,
+            retries);
+    recent.add(call);
+    if (slowCallThresholdNanos > 0 && durationNanos >= slowCallThresholdNanos) {
+      slow.add(call);
+      if (slowCallListener != null) {
+        slowCallListener.accept(call);
+      }
+    }
+  }
+
+  /** Collects the details of one call until it ends. */
+  private final class RecordingSpan implements Span {
+    private final Operation operation;
+    private final long startEpochMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private volatile String keyPath;
+    private volatile int retries;
+
+    RecordingSpan(Operation operation) {
+      this.operation = operation;
+    }
+
+    @Override
+    public boolean isRecording() {
+      return true;
+    }
+
+    @Override
+    public void event(TraceEvent event, long id, int items, long bytes) {
+      if (event == TraceEvent.RETRY) {
+        // retries are numbered from 1, so the last one is the count
+        retries = (int) id;
+      }
+    }
+
+    @Override
+    public void setAttribute(String key, String value) {
+      if (SpanAttributes.KEY_PATH.equals(key)) {
+        keyPath = value;
+      }
+    }
+
+    @Override
+    public void end(Status.Code code, int items, long bytes) {
+      record(
+          operation,
+          keyPath,
+          startEpochMillis,
+          System.nanoTime() - startNanos,
+          code,
+          items,
+          bytes,
+          retries);
+    }
+  }
+
+  /**
+   * A fixed-size ring of call records. Writers claim a slot with an atomic increment and overwrite
+   * whatever was there, so adding never blocks. Concurrent writers may briefly leave an older
+   * record in a slot, which only means a snapshot can miss a call that was being recorded.
+   */
+  private static final class Ring {
+    private final AtomicReferenceArray<CallRecord> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    Ring(int capacity) {
+      int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+      this.slots = new AtomicReferenceArray<>(size);
+      this.mask = size - 1;
+    }
+
+    void add(CallRecord call) {
+      slots.set((int) (next.getAndIncrement() & mask), call);
+    }
+
+    List<CallRecord> snapshot() {
+      List<CallRecord> calls = new ArrayList<>(slots.length());
+      for (int i = 0; i < slots.length(); i++) {
+        CallRecord call = slots.get(i);
+        if (call != null) {
+          calls.add(call);
+        }
+      }
+      calls.sort(Comparator.comparingLong(CallRecord::getSequence));
+      return calls;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package cloud.stately.statelydb.tracing;
+
+import io.grpc.Status;
+
+/**
+ * Span represents one call made by a Client: a unary RPC, one page of a list or scan, a sync, a
+ * whole transaction, or an access token refresh. Child events are recorded on the span as the call
+ * progresses, and {@link #end} is called exactly once when it finishes.
+ *
+ * <p>Every method has an empty default, and the methods take only primitives, enums and constant
+ * strings, so that recording does not have to allocate. Methods may be called from gRPC callback
+ * threads and should not block.
+ */
+public interface Span {
+
+  /** A Span that records nothing. */
+  Span NOOP = new Span() {};
+
+  /**
+   * Returns whether this span records anything. The client checks this before computing values
+   * that are only needed for tracing, such as the serialized size of a transaction message.
+   *
+   * @return true if the span records events
+   */
+  default boolean isRecording() {
+    return false;
+  }
+
+  /**
+   * Records a child event on the span.
+   *
+   * @param event what happened
+   * @param id the transaction message ID for transaction messages, otherwise the index of the frame
+   *     within the call, starting at 0
+   * @param items the number of items in the message
+   * @param bytes the serialized size of the message, in bytes
+   */
+  default void event(TraceEvent event, long id, int items, long bytes) {}
+
+  /**
+   * Sets a numeric attribute on the span.
+   *
+   * @param key the attribute name
+   * @param value the attribute value
+   */
+  default void setAttribute(String key, long value) {}
+
+  /**
+   * Sets a boolean attribute on the span.
+   *
+   * @param key the attribute name
+   * @param value the attribute value
+   */
+  default void setAttribute(String key, boolean value) {}
+
+  /**
+   * Sets a string attribute on the span. The client only computes string attributes when {@link
+   * #isRecording()} is true.
+   *
+   * @param key the attribute name
+   * @param value the attribute value
+   */
+  default void setAttribute(String key, String value) {}
+
+  /**
+   * Ends the span. Called exactly once when the call finishes, successfully or not.
+   *
+   * @param code the gRPC status code the call finished with
+   * @param items the number of items returned by the call
+   * @param bytes the serialized size of the responses, in bytes
+   */
+  default void end(Status.Code code, int items, long bytes) {}
+}
@@ -0,0 +1,25 @@
+package cloud.stately.statelydb.tracing;
+
+/** The names of the attributes the client sets on a {@link Span}. */
+public final class SpanAttributes {
+
+  /**
+   * The key path of the first item of a get, put or delete, or the key path prefix of a list. Calls
+   * on more than one item have the number of other items appended, e.g. {@code "/user-1 (+9)"}.
+   */
+  public static final String KEY_PATH = "stately.key_path";
+
+  /** Whether a list or scan page can be continued. */
+  public static final String CAN_CONTINUE = "stately.can_continue";
+
+  /** Whether a transaction is read-only. */
+  public static final String READ_ONLY = "stately.read_only";
+
+  /** The index of the segment of a segmented scan. */
+  public static final String SEGMENT_INDEX = "stately.segment_index";
+
+  /** The total number of segments of a segmented scan. */
+  public static final String TOTAL_SEGMENTS = "stately.total_segments";
+
+  private SpanAttributes() {}
+}
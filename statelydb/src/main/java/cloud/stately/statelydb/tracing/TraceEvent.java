@@ -0,0 +1,18 @@
+package cloud.stately.statelydb.tracing;
+
+/** The kinds of child events recorded on a {@link Span}. */
+public enum TraceEvent {
+  /** A message was sent on a transaction stream. The event ID is the message ID. */
+  MESSAGE_SENT,
+  /** A message was received on a transaction stream. The event ID is the message ID. */
+  MESSAGE_RECEIVED,
+  /** A partial result of a list, scan or sync was received. The event ID is the frame index. */
+  PARTIAL_RESULT,
+  /**
+   * A sync was reset, so the partial results received before it were discarded. The event ID is the
+   * frame index.
+   */
+  SYNC_RESET,
+  /** A failed call is about to be retried. The event ID is the number of the retry, from 1. */
+  RETRY
+}
@@ -0,0 +1,92 @@
+package cloud.stately.statelydb.tracing;
+
+import cloud.stately.statelydb.metrics.Operation;
+import java.util.Arrays;
+
+/**
+ * Tracer starts a {@link Span} for each call a Client makes, so that the time spent inside a long
+ * transaction or a multi-page list can be broken down. Implement it to bridge to a tracing library
+ * such as OpenTelemetry; use {@link #NOOP} (the default) to trace nothing.
+ *
+ * <p>When tracing is disabled every span is {@link Span#NOOP}, so the instrumentation only costs a
+ * few calls to empty methods: nothing is allocated and sizes are not computed.
+ *
+ * <p>Example adapter:
+ *
+ * <pre>{@code
+ * class OtelTracer implements Tracer {
+ *   private final io.opentelemetry.api.trace.Tracer tracer;
+ *
+ *   public Span startSpan(Operation operation) {
+ *     var span = tracer.spanBuilder("stately." + operation.name()).startSpan();
+ *     return new Span() {
+ *       public boolean isRecording() {
+ *         return true;
+ *       }
+ *
+ *       public void event(TraceEvent event, long id, int items, long bytes) {
+ *         span.addEvent(event.name(), Attributes.of(ID, id, ITEMS, (long) items, BYTES, bytes));
+ *       }
+ *
+ *       public void end(Status.Code code, int items, long bytes) {
+ *         span.setAttribute("stately.items", items);
+ *         span.setAttribute("stately.bytes", bytes);
+ *         span.setAttribute("rpc.grpc.status_code", code.value());
+ *         span.end();
+ *       }
+ *     };
+ *   }
+ * }
+ * }</pre>
+ */
+@FunctionalInterface
+public interface Tracer {
+
+  /** A Tracer that traces nothing. */
+  Tracer NOOP = operation -> Span.NOOP;
+
+  /**
+   * Starts a span for a call. This is called on the calling thread right before the call is made.
+   *
+   * @param operation the operation being performed
+   * @return the span for the call, or {@link Span#NOOP} to not trace it
+   */
+  Span startSpan(Operation operation);
+
+  /**
+   * Returns a Tracer that starts a span on each of the given tracers for every call, so that a
+   * {@link FlightRecorder} can run alongside the application's own tracer. Tracers that are {@link
+   * #NOOP}, and spans that are {@link Span#NOOP}, are skipped, so composing adds no cost when only
+   * one tracer is recording.
+   *
+   * @param tracers the tracers to start spans on, in order
+   * @return a Tracer that traces to all of the given tracers
+   */
+  static Tracer compose(Tracer... tracers) {
+    Tracer[] active =
+        Arrays.stream(tracers).filter(tracer -> tracer != NOOP).toArray(Tracer[]::new);
+    if (active.length == 0) {
+      return NOOP;
+    }
+    if (active.length == 1) {
+      return active[0];
+    }
+    return operation -> {
+      Span[] spans = new Span[active.length];
+      int recording = 0;
+      for (Tracer tracer : active) {
+        Span span = tracer.startSpan(operation);
+        if (span != Span.NOOP) {
+          spans[recording++] = span;
+        }
+      }
+      if (recording == 0) {
+        return Span.NOOP;
+      }
+      if (recording == 1) {
+        return spans[0];
+      }
+      return new CompositeSpan(Arrays.copyOf(spans, recording));
+    };
+  }
+}
@@ -0,0 +1,205 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.db.Item;
+import cloud.stately.statelydb.FakeDatabaseService.NamedItem;
+import cloud.stately.statelydb.FakeDatabaseService.NamedTypeMapper;
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.metrics.Operation;
+import cloud.stately.statelydb.schema.StatelyItem;
+import cloud.stately.statelydb.tracing.Span;
+import cloud.stately.statelydb.tracing.SpanAttributes;
+import cloud.stately.statelydb.tracing.TraceEvent;
+import cloud.stately.statelydb.tracing.Tracer;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for Client against an in-memory DatabaseService. */
+class ClientTest {
+
+  private ScheduledExecutorService scheduler;
+  private FakeDatabaseService service;
+  private Client client;
+
+  /** Records each metrics and tracing call as a string, in order. */
+  private static class Recorder implements ClientMetrics, Tracer {
+    final List<String> calls = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void callStarted(Operation operation) {
+      calls.add("started " + operation);
+    }
+
+    @Override
+    public void callFinished(
+        Operation operation, Status.Code code, long durationNanos, int items, long bytes) {
+      calls.add("finished " + operation + " " + code + " " + items);
+    }
+
+    @Override
+    public void partialResult(Operation operation, int items, long bytes) {
+      calls.add("partial " + operation + " " + items);
+    }
+
+    @Override
+    public Span startSpan(Operation operation) {
+      calls.add("span " + operation);
+      return new Span() {
+        @Override
+        public boolean isRecording() {
+          return true;
+        }
+
+        @Override
+        public void event(TraceEvent event, long id, int items, long bytes) {
+          calls.add("event " + event + " " + items);
+        }
+
+        @Override
+        public void setAttribute(String key, String value) {
+          calls.add("attribute " + key + "=" + value);
+        }
+
+        @Override
+        public void end(Status.Code code, int items, long bytes) {
+          calls.add("end " + operation + " " + code + " " + items);
+        }
+      };
+    }
+  }
+
+  @BeforeEach
+  void setUp() throws Exception {
+    scheduler = Executors.newScheduledThreadPool(1);
+    service = new FakeDatabaseService();
+    client = service.newClient(1, scheduler);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    service.close();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  void testInsertIfAbsentInsertsAllInOneBatch() throws Exception {
+    List<InsertResult> results =
+        client.insertIfAbsent(List.of(new NamedItem("a"), new NamedItem("b"))).get();
+    assertTrue(results.get(0).isInserted());
+    assertTrue(results.get(1).isInserted());
+    assertEquals(List.of(2), service.putSizes);
+  }
+
+  @Test
+  void testInsertIfAbsentFallbackIsBounded() throws Exception {
+    service.add("item-7", ByteString.EMPTY);
+    service.writeDelayMillis = 20;
+    List<NamedItem> items = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      items.add(new NamedItem("item-" + i));
+    }
+
+    List<InsertResult> results = client.insertIfAbsent(items).get();
+
+    assertEquals(40, results.size());
+    for (int i = 0; i < 40; i++) {
+      assertEquals("/item-" + i, results.get(i).getItem().primaryKeyPath());
+      assertEquals(i != 7, results.get(i).isInserted());
+    }
+    assertFalse(results.get(7).isInserted());
+    // one rejected batch, then one put per item
+    assertEquals(41, service.putSizes.size());
+    assertTrue(service.maxWritesInFlight.get() <= 8, "in flight: " + service.maxWritesInFlight);
+    assertEquals(41, service.items.size());
+  }
+
+  @Test
+  void testDeleteBatchReturnsDeletedKeyPaths() throws Exception {
+    service.add("a", ByteString.EMPTY);
+    service.add("b", ByteString.EMPTY);
+    service.add("c", ByteString.EMPTY);
+
+    List<String> deleted = client.deleteBatch(List.of("/a", "/c", "/missing")).get();
+
+    assertEquals(List.of("/a", "/c", "/missing"), deleted);
+    assertEquals(List.of(List.of("/a", "/c", "/missing")), service.deletes);
+    assertEquals(List.of("/b"), new ArrayList<>(service.items.keySet()));
+  }
+
+  @Test
+  void testRecordsMetricsAndSpans() throws Exception {
+    Recorder recorder = new Recorder();
+    service.add("a-1", ByteString.EMPTY);
+    service.add("a-2", ByteString.EMPTY);
+    try (Client recorded =
+        service.clientBuilder(1, scheduler).metrics(recorder).tracer(recorder).build()) {
+      recorded.getBatch(List.of("/a-1")).get();
+      assertEquals(
+          List.of(
+              "span GET",
+              "attribute " + SpanAttributes.KEY_PATH + "=/a-1",
+              "started GET",
+              "finished GET OK 1",
+              "end GET OK 1"),
+          recorder.calls);
+
+      recorder.calls.clear();
+      recorded.beginList("/a").get();
+      assertTrue(recorder.calls.contains("span BEGIN_LIST"), recorder.calls.toString());
+      assertTrue(recorder.calls.contains("started BEGIN_LIST"), recorder.calls.toString());
+      assertTrue(recorder.calls.contains("partial BEGIN_LIST 2"), recorder.calls.toString());
+      assertTrue(recorder.calls.contains("event PARTIAL_RESULT 2"), recorder.calls.toString());
+      assertTrue(recorder.calls.contains("finished BEGIN_LIST OK 2"), recorder.calls.toString());
+      assertTrue(recorder.calls.contains("end BEGIN_LIST OK 2"), recorder.calls.toString());
+    }
+  }
+
+  @Test
+  void testUnmarshalFailureIsRecordedAsFailedCall() throws Exception {
+    Recorder recorder = new Recorder();
+    service.add("a", ByteString.EMPTY);
+    NamedTypeMapper failing =
+        new NamedTypeMapper() {
+          @Override
+          public StatelyItem unmarshal(Item pbItem) {
+            throw new IllegalArgumentException("Unknown item type " + pbItem.getItemType());
+          }
+        };
+    try (Client recorded =
+        Client.builder(1, failing, scheduler)
+            .endpoint(service.endpoint())
+            .noAuth(true)
+            .metrics(recorder)
+            .tracer(recorder)
+            .build()) {
+      ExecutionException e =
+          assertThrows(ExecutionException.class, () -> recorded.getBatch(List.of("/a")).get());
+      StatelyException cause = assertInstanceOf(StatelyException.class, e.getCause());
+      assertEquals(Status.Code.UNKNOWN, cause.getGrpcCode());
+      assertEquals(
+          List.of(
+              "span GET",
+              "attribute " + SpanAttributes.KEY_PATH + "=/a",
+              "started GET",
+              "finished GET UNKNOWN 0",
+              "end GET UNKNOWN 0"),
+          recorder.calls);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import cloud.stately.db.DatabaseServiceGrpc;
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.metrics.Operation;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Codec;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for CompressionConfig. */
+class CompressionConfigTest {
+
+  /** A channel that records the options of the last call instead of making it. */
+  private static class RecordingChannel extends Channel {
+    final AtomicReference<CallOptions> lastOptions = new AtomicReference<>();
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+      lastOptions.set(callOptions);
+      return null;
+    }
+
+    @Override
+    public String authority() {
+      return "localhost";
+    }
+  }
+
+  /** A codec that doesn't compress, registered under a custom name. */
+  private static class PassthroughCodec implements Codec {
+    @Override
+    public String getMessageEncoding() {
+      return "passthrough";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) {
+      return os;
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) {
+      return is;
+    }
+  }
+
+  @Test
+  void testLargeReadsPreset() {
+    CompressionConfig config = CompressionConfig.largeReads();
+    assertEquals(CompressionConfig.GZIP, config.getEncoding(Operation.BEGIN_SCAN));
+    assertEquals(CompressionConfig.GZIP, config.getEncoding(Operation.SYNC_LIST));
+    assertEquals(CompressionConfig.IDENTITY, config.getEncoding(Operation.GET));
+    assertNull(CompressionConfig.NONE.interceptor(ClientMetrics.NOOP));
+  }
+
+  @Test
+  void testInterceptorSetsCompressionPerOperation() {
+    ClientInterceptor interceptor = CompressionConfig.largeReads().interceptor(ClientMetrics.NOOP);
+    assertNotNull(interceptor);
+    RecordingChannel channel = new RecordingChannel();
+
+    interceptor.interceptCall(
+        DatabaseServiceGrpc.getBeginScanMethod(), CallOptions.DEFAULT, channel);
+    assertEquals("gzip", channel.lastOptions.get().getCompressor());
+
+    interceptor.interceptCall(DatabaseServiceGrpc.getGetMethod(), CallOptions.DEFAULT, channel);
+    assertNull(channel.lastOptions.get().getCompressor());
+    assertEquals(0, channel.lastOptions.get().getStreamTracerFactories().size());
+  }
+
+  @Test
+  void testCustomCodec() {
+    CompressionConfig config =
+        CompressionConfig.builder()
+            .codec(new PassthroughCodec())
+            .compress(Operation.CONTINUE_SCAN, "passthrough")
+            .build();
+    assertEquals("passthrough", config.getEncoding(Operation.CONTINUE_SCAN));
+    assertEquals("passthrough", config.toBuilder().build().getEncoding(Operation.CONTINUE_SCAN));
+  }
+
+  @Test
+  void testInvalidSettings() {
+    StatelyException e =
+        assertThrows(
+            StatelyException.class,
+            () -> CompressionConfig.builder().compress(Operation.GET, "zstd").build());
+    assertEquals(Status.Code.INVALID_ARGUMENT, e.getGrpcCode());
+    assertThrows(
+        StatelyException.class,
+        () ->
+            CompressionConfig.builder()
+                .compress(Operation.GET_AUTH_TOKEN, CompressionConfig.GZIP)
+                .build());
+  }
+}
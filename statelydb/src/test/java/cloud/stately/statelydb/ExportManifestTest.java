@@ -0,0 +1,59 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.statelydb.common.StatelyException;
+import io.grpc.Status;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Unit tests for ExportManifest. */
+class ExportManifestTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testRoundTrip() throws Exception {
+    ExportManifest manifest =
+        new ExportManifest(
+            -1L,
+            1234L,
+            7,
+            true,
+            List.of(
+                new ExportManifest.Chunk("segment-0000-000000.items.gz", 10, 1000),
+                new ExportManifest.Chunk("segment-0001-000000.items.gz", 5, 500)));
+    manifest.write(tempDir);
+
+    ExportManifest read = ExportManifest.read(tempDir);
+    assertEquals(-1L, read.getStoreId());
+    assertEquals(1234L, read.getSchemaId());
+    assertEquals(7, read.getSchemaVersionId());
+    assertTrue(read.isCompressed());
+    assertEquals(15, read.getItemCount());
+    assertEquals(2, read.getChunks().size());
+    assertEquals("segment-0001-000000.items.gz", read.getChunks().get(1).getFile());
+    assertEquals(500, read.getChunks().get(1).getBytes());
+  }
+
+  @Test
+  void testMalformed() throws Exception {
+    Files.writeString(tempDir.resolve(ExportManifest.FILE_NAME), "formatVersion=1\n");
+    StatelyException e = assertThrows(StatelyException.class, () -> ExportManifest.read(tempDir));
+    assertEquals(Status.Code.INVALID_ARGUMENT, e.getGrpcCode());
+  }
+
+  @Test
+  void testNewerFormatVersion() throws Exception {
+    new ExportManifest(1L, 1L, 1, false, List.of()).write(tempDir);
+    Path file = tempDir.resolve(ExportManifest.FILE_NAME);
+    Files.writeString(file, Files.readString(file).replace("formatVersion=1", "formatVersion=99"));
+    StatelyException e = assertThrows(StatelyException.class, () -> ExportManifest.read(tempDir));
+    assertEquals(Status.Code.FAILED_PRECONDITION, e.getGrpcCode());
+  }
+}
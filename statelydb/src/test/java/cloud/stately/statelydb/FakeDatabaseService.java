@@ -0,0 +1,434 @@
+package cloud.stately.statelydb;
+
+import cloud.stately.db.BeginListRequest;
+import cloud.stately.db.BeginScanRequest;
+import cloud.stately.db.ContinueListRequest;
+import cloud.stately.db.ContinueScanRequest;
+import cloud.stately.db.DatabaseServiceGrpc;
+import cloud.stately.db.DeleteItem;
+import cloud.stately.db.DeleteRequest;
+import cloud.stately.db.DeleteResponse;
+import cloud.stately.db.DeleteResult;
+import cloud.stately.db.GeneratedID;
+import cloud.stately.db.GetItem;
+import cloud.stately.db.Item;
+import cloud.stately.db.ListFinished;
+import cloud.stately.db.ListPartialResult;
+import cloud.stately.db.ListResponse;
+import cloud.stately.db.ListToken;
+import cloud.stately.db.PutItem;
+import cloud.stately.db.PutResponse;
+import cloud.stately.db.SyncListRequest;
+import cloud.stately.db.SyncListResponse;
+import cloud.stately.db.TransactionFinished;
+import cloud.stately.db.TransactionGetResponse;
+import cloud.stately.db.TransactionListResponse;
+import cloud.stately.db.TransactionPutAck;
+import cloud.stately.db.TransactionRequest;
+import cloud.stately.db.TransactionResponse;
+import cloud.stately.statelydb.schema.BaseTypeMapper;
+import cloud.stately.statelydb.schema.StatelyItem;
+import com.google.protobuf.ByteString;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-memory DatabaseService served on a local port, for testing clients end to end. Items are
+ * keyed by "/" followed by their item type, which matches {@link NamedItem#primaryKeyPath}.
+ */
+class FakeDatabaseService extends DatabaseServiceGrpc.DatabaseServiceImplBase
+    implements AutoCloseable {
+
+  /** An item that only remembers its name, stored as the item type. */
+  static class NamedItem extends StatelyItem {
+    final String name;
+
+    NamedItem(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Item marshal() {
+      return Item.newBuilder().setItemType(name).build();
+    }
+
+    @Override
+    public StatelyItem clone() {
+      return new NamedItem(name);
+    }
+
+    @Override
+    public String primaryKeyPath() {
+      return "/" + name;
+    }
+  }
+
+  /** Unmarshals every item to a NamedItem. */
+  static class NamedTypeMapper extends BaseTypeMapper {
+    NamedTypeMapper() {
+      super(1, 1);
+    }
+
+    @Override
+    public StatelyItem unmarshal(Item pbItem) {
+      return new NamedItem(pbItem.getItemType());
+    }
+  }
+
+  /** Handles syncList calls. */
+  @FunctionalInterface
+  interface SyncHandler {
+    List<SyncListResponse> handle(SyncListRequest request);
+  }
+
+  /** The items in the store, by key path. */
+  final Map<String, Item> items = new ConcurrentSkipListMap<>();
+  /** The number of items in each put request. */
+  final List<Integer> putSizes = new CopyOnWriteArrayList<>();
+  /** The key paths of each delete request. */
+  final List<List<String>> deletes = new CopyOnWriteArrayList<>();
+  /** The token data of each syncList request. */
+  final List<String> syncTokens = new CopyOnWriteArrayList<>();
+  /** The number of upcoming puts that fail with UNAVAILABLE. */
+  final AtomicInteger failPuts = new AtomicInteger();
+  /** The number of upcoming continueScan calls that fail with UNAVAILABLE. */
+  final AtomicInteger failContinueScans = new AtomicInteger();
+  /** The most puts and deletes that were in flight at once. */
+  final AtomicInteger maxWritesInFlight = new AtomicInteger();
+  /** How long each put and delete takes. */
+  volatile long writeDelayMillis = 0;
+  /** The number of items per scan page. */
+  volatile int scanPageSize = Integer.MAX_VALUE;
+  /** Answers syncList calls, which fail with UNIMPLEMENTED if unset. */
+  volatile SyncHandler syncHandler = null;
+  /** Every transaction request received, in order. */
+  final List<TransactionRequest> transactionRequests = new CopyOnWriteArrayList<>();
+  /** The put items of each transaction put request, as the server received them. */
+  final List<PutItem> transactionPuts = new CopyOnWriteArrayList<>();
+  /** Completes when a client cancels a transaction stream. */
+  final CompletableFuture<Void> transactionCancelled = new CompletableFuture<>();
+  /** Whether transactions stop answering once they have begun. */
+  volatile boolean stallTransactions = false;
+
+  private final AtomicInteger writesInFlight = new AtomicInteger();
+  private final Server server;
+
+  FakeDatabaseService() throws IOException {
+    this.server = ServerBuilder.forPort(0).addService(this).build().start();
+  }
+
+  /** Returns a client for this service that owns its own channel. */
+  Client newClient(long storeId, ScheduledExecutorService scheduler) {
+    return clientBuilder(storeId, scheduler).build();
+  }
+
+  /** Returns a builder for a client of this service, for tests that need more options. */
+  Client.Builder clientBuilder(long storeId, ScheduledExecutorService scheduler) {
+    return Client.builder(storeId, new NamedTypeMapper(), scheduler)
+        .endpoint(endpoint())
+        .noAuth(true);
+  }
+
+  URI endpoint() {
+    return URI.create("http://localhost:" + server.getPort());
+  }
+
+  /** Adds an item with the given name and payload. */
+  void add(String name, ByteString payload) {
+    items.put("/" + name, Item.newBuilder().setItemType(name).setProto(payload).build());
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  private void startWrite() {
+    int inFlight = writesInFlight.incrementAndGet();
+    maxWritesInFlight.accumulateAndGet(inFlight, Math::max);
+    if (writeDelayMillis > 0) {
+      try {
+        Thread.sleep(writeDelayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void put(
+      cloud.stately.db.PutRequest request, StreamObserver<PutResponse> responseObserver) {
+    startWrite();
+    try {
+      putSizes.add(request.getPutsCount());
+      if (failPuts.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+        responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+        return;
+      }
+      PutResponse.Builder response = PutResponse.newBuilder();
+      synchronized (items) {
+        for (PutItem put : request.getPutsList()) {
+          if (put.getMustNotExist() && items.containsKey(keyPath(put.getItem()))) {
+            responseObserver.onError(Status.ALREADY_EXISTS.asRuntimeException());
+            return;
+          }
+        }
+        for (PutItem put : request.getPutsList()) {
+          items.put(keyPath(put.getItem()), put.getItem());
+          response.addItems(put.getItem());
+        }
+      }
+      responseObserver.onNext(response.build());
+      responseObserver.onCompleted();
+    } finally {
+      writesInFlight.decrementAndGet();
+    }
+  }
+
+  @Override
+  public void delete(DeleteRequest request, StreamObserver<DeleteResponse> responseObserver) {
+    startWrite();
+    try {
+      List<String> keyPaths = new ArrayList<>();
+      DeleteResponse.Builder response = DeleteResponse.newBuilder();
+      for (DeleteItem delete : request.getDeletesList()) {
+        keyPaths.add(delete.getKeyPath());
+        items.remove(delete.getKeyPath());
+        response.addResults(DeleteResult.newBuilder().setKeyPath(delete.getKeyPath()));
+      }
+      deletes.add(keyPaths);
+      responseObserver.onNext(response.build());
+      responseObserver.onCompleted();
+    } finally {
+      writesInFlight.decrementAndGet();
+    }
+  }
+
+  @Override
+  public void beginList(BeginListRequest request, StreamObserver<ListResponse> responseObserver) {
+    List<Item> page = new ArrayList<>();
+    for (Map.Entry<String, Item> entry : items.entrySet()) {
+      if (entry.getKey().startsWith(request.getKeyPathPrefix())) {
+        page.add(entry.getValue());
+      }
+    }
+    sendPage(responseObserver, page, token("list:" + request.getKeyPathPrefix(), false, true));
+  }
+
+  @Override
+  public void continueList(
+      ContinueListRequest request, StreamObserver<ListResponse> responseObserver) {
+    sendPage(
+        responseObserver, List.of(), token(request.getTokenData().toStringUtf8(), false, true));
+  }
+
+  @Override
+  public void beginScan(BeginScanRequest request, StreamObserver<ListResponse> responseObserver) {
+    int total = Math.max(1, request.getSegmentationParams().getTotalSegments());
+    scanFrom(total, request.getSegmentationParams().getSegmentIndex(), 0, responseObserver);
+  }
+
+  @Override
+  public void continueScan(
+      ContinueScanRequest request, StreamObserver<ListResponse> responseObserver) {
+    if (failContinueScans.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+      responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+      return;
+    }
+    String[] parts = request.getTokenData().toStringUtf8().split(":");
+    scanFrom(
+        Integer.parseInt(parts[1]),
+        Integer.parseInt(parts[2]),
+        Integer.parseInt(parts[3]),
+        responseObserver);
+  }
+
+  /** Sends a page of the items in one segment, starting at the offset-th item of the segment. */
+  private void scanFrom(
+      int total, int segment, int offset, StreamObserver<ListResponse> responseObserver) {
+    List<Item> segmentItems = new ArrayList<>();
+    int index = 0;
+    for (Item item : items.values()) {
+      if (index++ % total == segment) {
+        segmentItems.add(item);
+      }
+    }
+    int end = (int) Math.min(segmentItems.size(), (long) offset + scanPageSize);
+    String next = "scan:" + total + ":" + segment + ":" + end;
+    sendPage(
+        responseObserver,
+        segmentItems.subList(offset, end),
+        token(next, end < segmentItems.size(), false));
+  }
+
+  @Override
+  public void syncList(SyncListRequest request, StreamObserver<SyncListResponse> responseObserver) {
+    syncTokens.add(request.getTokenData().toStringUtf8());
+    SyncHandler handler = syncHandler;
+    if (handler == null) {
+      responseObserver.onError(Status.UNIMPLEMENTED.asRuntimeException());
+      return;
+    }
+    List<SyncListResponse> responses;
+    try {
+      responses = handler.handle(request);
+    } catch (RuntimeException e) {
+      responseObserver.onError(Status.fromThrowable(e).asRuntimeException());
+      return;
+    }
+    responses.forEach(responseObserver::onNext);
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public StreamObserver<TransactionRequest> transaction(
+      StreamObserver<TransactionResponse> responseObserver) {
+    ((ServerCallStreamObserver<TransactionResponse>) responseObserver)
+        .setOnCancelHandler(() -> transactionCancelled.complete(null));
+    return new FakeTransaction(responseObserver);
+  }
+
+  /**
+   * One transaction stream. Gets and lists read the store directly; puts and deletes are applied
+   * when the transaction commits. A list sends one partial result per item.
+   */
+  private final class FakeTransaction implements StreamObserver<TransactionRequest> {
+    private final StreamObserver<TransactionResponse> responseObserver;
+    private final List<Item> puts = new ArrayList<>();
+    private final List<String> deleted = new ArrayList<>();
+
+    FakeTransaction(StreamObserver<TransactionResponse> responseObserver) {
+      this.responseObserver = responseObserver;
+    }
+
+    @Override
+    public void onNext(TransactionRequest request) {
+      transactionRequests.add(request);
+      if (stallTransactions && !request.hasBegin()) {
+        return;
+      }
+      TransactionResponse.Builder response =
+          TransactionResponse.newBuilder().setMessageId(request.getMessageId());
+      switch (request.getCommandCase()) {
+        case BEGIN:
+          return;
+        case DELETE_ITEMS:
+          request.getDeleteItems().getDeletesList().forEach(d -> deleted.add(d.getKeyPath()));
+          return;
+        case GET_ITEMS:
+          TransactionGetResponse.Builder got = TransactionGetResponse.newBuilder();
+          for (GetItem get : request.getGetItems().getGetsList()) {
+            Item item = items.get(get.getKeyPath());
+            if (item != null) {
+              got.addItems(item);
+            }
+          }
+          responseObserver.onNext(response.setGetResults(got).build());
+          return;
+        case PUT_ITEMS:
+          TransactionPutAck.Builder ack = TransactionPutAck.newBuilder();
+          for (PutItem put : request.getPutItems().getPutsList()) {
+            transactionPuts.add(put);
+            puts.add(put.getItem());
+            ack.addGeneratedIds(GeneratedID.newBuilder().setUint(puts.size()));
+          }
+          responseObserver.onNext(response.setPutAck(ack).build());
+          return;
+        case BEGIN_LIST:
+          String prefix = request.getBeginList().getKeyPathPrefix();
+          for (Map.Entry<String, Item> entry : items.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+              responseObserver.onNext(
+                  response
+                      .setListResults(
+                          TransactionListResponse.newBuilder()
+                              .setResult(ListPartialResult.newBuilder().addItems(entry.getValue())))
+                      .build());
+            }
+          }
+          finishList(response, "txn-list:" + prefix);
+          return;
+        case CONTINUE_LIST:
+          finishList(response, request.getContinueList().getTokenData().toStringUtf8());
+          return;
+        case COMMIT:
+          TransactionFinished.Builder committed =
+              TransactionFinished.newBuilder().setCommitted(true);
+          for (Item item : puts) {
+            items.put(keyPath(item), item);
+            committed.addPutResults(item);
+          }
+          for (String keyPath : deleted) {
+            items.remove(keyPath);
+            committed.addDeleteResults(DeleteResult.newBuilder().setKeyPath(keyPath));
+          }
+          responseObserver.onNext(response.setFinished(committed).build());
+          return;
+        case ABORT:
+          responseObserver.onNext(
+              response.setFinished(TransactionFinished.newBuilder().setCommitted(false)).build());
+          return;
+        case COMMAND_NOT_SET:
+        default:
+          responseObserver.onError(Status.INVALID_ARGUMENT.asRuntimeException());
+      }
+    }
+
+    private void finishList(TransactionResponse.Builder response, String token) {
+      responseObserver.onNext(
+          response
+              .setListResults(
+                  TransactionListResponse.newBuilder()
+                      .setFinished(
+                          ListFinished.newBuilder().setToken(token(token, false, false))))
+              .build());
+    }
+
+    @Override
+    public void onError(Throwable t) {}
+
+    @Override
+    public void onCompleted() {
+      responseObserver.onCompleted();
+    }
+  }
+
+  static ListToken token(String data, boolean canContinue, boolean canSync) {
+    return ListToken.newBuilder()
+        .setTokenData(ByteString.copyFromUtf8(data))
+        .setCanContinue(canContinue)
+        .setCanSync(canSync)
+        .build();
+  }
+
+  private static void sendPage(
+      StreamObserver<ListResponse> responseObserver, List<Item> page, ListToken token) {
+    if (!page.isEmpty()) {
+      responseObserver.onNext(
+          ListResponse.newBuilder()
+              .setResult(ListPartialResult.newBuilder().addAllItems(page))
+              .build());
+    }
+    responseObserver.onNext(
+        ListResponse.newBuilder().setFinished(ListFinished.newBuilder().setToken(token)).build());
+    responseObserver.onCompleted();
+  }
+
+  private static String keyPath(Item item) {
+    return "/" + item.getItemType();
+  }
+}
@@ -0,0 +1,84 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.db.Item;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Unit tests for ItemRecords. */
+class ItemRecordsTest {
+
+  @TempDir Path tempDir;
+
+  private static List<Item> items(int count) {
+    List<Item> items = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      items.add(Item.newBuilder().setItemType("item-" + i + "-" + "x".repeat(i)).build());
+    }
+    return items;
+  }
+
+  private static List<Item> readAll(Path file, boolean compressed) throws Exception {
+    List<Item> read = new ArrayList<>();
+    try (ItemRecords.Reader reader = new ItemRecords.Reader(file, compressed)) {
+      for (Item item = reader.next(); item != null; item = reader.next()) {
+        read.add(item);
+      }
+    }
+    return read;
+  }
+
+  @Test
+  void testRoundTrip() throws Exception {
+    Path file = tempDir.resolve("chunk.items");
+    List<Item> items = items(200);
+    try (ItemRecords.Writer writer = new ItemRecords.Writer(file, false)) {
+      for (Item item : items) {
+        writer.write(item);
+      }
+      assertEquals(200, writer.items());
+    }
+    assertEquals(items, readAll(file, false));
+  }
+
+  @Test
+  void testCompressedRoundTrip() throws Exception {
+    Path file = tempDir.resolve("chunk.items.gz");
+    List<Item> items = items(200);
+    long bytes;
+    try (ItemRecords.Writer writer = new ItemRecords.Writer(file, true)) {
+      for (Item item : items) {
+        writer.write(item);
+      }
+      bytes = writer.bytes();
+    }
+    assertEquals(items, readAll(file, true));
+    // the byte count is the uncompressed size, which these repetitive items easily beat
+    assertTrue(Files.size(file) < bytes);
+  }
+
+  @Test
+  void testEmptyFile() throws Exception {
+    Path file = tempDir.resolve("empty.items");
+    new ItemRecords.Writer(file, false).close();
+    try (ItemRecords.Reader reader = new ItemRecords.Reader(file, false)) {
+      assertNull(reader.next());
+    }
+  }
+
+  @Test
+  void testWriterDoesNotOverwrite() throws Exception {
+    Path file = tempDir.resolve("chunk.items");
+    new ItemRecords.Writer(file, false).close();
+    assertThrows(FileAlreadyExistsException.class, () -> new ItemRecords.Writer(file, false));
+  }
+}
@@ -0,0 +1,157 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import cloud.stately.db.Item;
+import cloud.stately.db.ListFinished;
+import cloud.stately.db.ListPartialResult;
+import cloud.stately.db.ListResponse;
+import cloud.stately.db.ListToken;
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.metrics.Operation;
+import cloud.stately.statelydb.schema.BaseTypeMapper;
+import cloud.stately.statelydb.schema.StatelyItem;
+import cloud.stately.statelydb.tracing.Span;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for ListObserver. */
+class ListObserverTest {
+
+  /** An item that only remembers its name. */
+  private static class NamedItem extends StatelyItem {
+    final String name;
+
+    NamedItem(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Item marshal() {
+      return Item.newBuilder().setItemType(name).build();
+    }
+
+    @Override
+    public StatelyItem clone() {
+      return new NamedItem(name);
+    }
+
+    @Override
+    public String primaryKeyPath() {
+      return "/" + name;
+    }
+  }
+
+  /** Unmarshals items after a random delay so that parallel chunks finish out of order. */
+  private static class SlowTypeMapper extends BaseTypeMapper {
+    SlowTypeMapper() {
+      super(1, 1);
+    }
+
+    @Override
+    public StatelyItem unmarshal(Item pbItem) {
+      if (pbItem.getItemType().equals("bad")) {
+        throw new IllegalArgumentException("cannot unmarshal");
+      }
+      try {
+        Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return new NamedItem(pbItem.getItemType());
+    }
+  }
+
+  private static ListResponse page(List<String> names) {
+    ListPartialResult.Builder result = ListPartialResult.newBuilder();
+    for (String name : names) {
+      result.addItems(Item.newBuilder().setItemType(name));
+    }
+    return ListResponse.newBuilder().setResult(result).build();
+  }
+
+  private static ListResponse finished() {
+    ListToken token = ListToken.newBuilder().setCanContinue(true).build();
+    return ListResponse.newBuilder()
+        .setFinished(ListFinished.newBuilder().setToken(token))
+        .build();
+  }
+
+  private static List<String> names(int from, int to) {
+    List<String> names = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      names.add("item-" + i);
+    }
+    return names;
+  }
+
+  @Test
+  void testParallelDecodingKeepsOrder() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      CompletableFuture<ListResult> result = new CompletableFuture<>();
+      ListObserver observer =
+          new ListObserver(
+              new SlowTypeMapper(),
+              result,
+              ClientMetrics.NOOP,
+              Operation.BEGIN_SCAN,
+              Span.NOOP,
+              pool,
+              8);
+      observer.onNext(page(names(0, 100)));
+      observer.onNext(page(names(100, 105))); // smaller than a chunk
+      observer.onNext(page(names(105, 200)));
+      observer.onNext(finished());
+      observer.onCompleted();
+
+      ListResult list = result.get(10, TimeUnit.SECONDS);
+      List<String> decoded =
+          list.getItems().stream()
+              .map(item -> ((NamedItem) item).name)
+              .collect(Collectors.toList());
+      assertEquals(names(0, 200), decoded);
+      assertEquals(true, list.getToken().getCanContinue());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void testParallelDecodingFailure() {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      CompletableFuture<ListResult> result = new CompletableFuture<>();
+      ListObserver observer =
+          new ListObserver(
+              new SlowTypeMapper(),
+              result,
+              ClientMetrics.NOOP,
+              Operation.BEGIN_LIST,
+              Span.NOOP,
+              pool,
+              4);
+      List<String> names = names(0, 20);
+      names.set(13, "bad");
+      observer.onNext(page(names));
+      observer.onNext(finished());
+      observer.onCompleted();
+
+      ExecutionException e =
+          assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+      assertEquals(StatelyException.class, e.getCause().getClass());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.db.BeginScanRequest;
+import cloud.stately.db.Item;
+import cloud.stately.db.ListFinished;
+import cloud.stately.db.ListPartialResult;
+import cloud.stately.db.ListResponse;
+import cloud.stately.db.ListToken;
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.ClientMetrics;
+import cloud.stately.statelydb.metrics.Operation;
+import cloud.stately.statelydb.schema.BaseTypeMapper;
+import cloud.stately.statelydb.schema.StatelyItem;
+import cloud.stately.statelydb.tracing.Span;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for ListSinkObserver. */
+class ListSinkObserverTest {
+
+  /** A request stream that records flow control calls. */
+  private static class RecordingRequestStream extends ClientCallStreamObserver<BeginScanRequest> {
+    int requested = 0;
+    boolean autoRequestDisabled = false;
+    Throwable cancelCause = null;
+
+    @Override
+    public void disableAutoRequestWithInitial(int request) {
+      autoRequestDisabled = true;
+      requested += request;
+    }
+
+    @Override
+    public void request(int count) {
+      requested += count;
+    }
+
+    @Override
+    public void cancel(String message, Throwable cause) {
+      cancelCause = cause;
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {}
+
+    @Override
+    public void disableAutoInboundFlowControl() {}
+
+    @Override
+    public void setMessageCompression(boolean enable) {}
+
+    @Override
+    public void onNext(BeginScanRequest value) {}
+
+    @Override
+    public void onError(Throwable t) {}
+
+    @Override
+    public void onCompleted() {}
+  }
+
+  /** Unmarshals every item to a null placeholder; the test only counts items. */
+  private static class CountingTypeMapper extends BaseTypeMapper {
+    CountingTypeMapper() {
+      super(1, 1);
+    }
+
+    @Override
+    public StatelyItem unmarshal(Item pbItem) {
+      return null;
+    }
+  }
+
+  private static ListResponse page(int items) {
+    ListPartialResult.Builder result = ListPartialResult.newBuilder();
+    for (int i = 0; i < items; i++) {
+      result.addItems(Item.newBuilder().setItemType("item"));
+    }
+    return ListResponse.newBuilder().setResult(result).build();
+  }
+
+  private static ListResponse finished() {
+    return ListResponse.newBuilder()
+        .setFinished(ListFinished.newBuilder().setToken(ListToken.getDefaultInstance()))
+        .build();
+  }
+
+  private static ListSinkObserver<BeginScanRequest, StatelyItem> observer(
+      ListSink sink, CompletableFuture<ListToken> result, RecordingRequestStream stream) {
+    ListSinkObserver<BeginScanRequest, StatelyItem> observer =
+        new ListSinkObserver<>(
+            new CountingTypeMapper()::unmarshal,
+            sink::onPage,
+            MoreExecutors.directExecutor(),
+            result,
+            ClientMetrics.NOOP,
+            Operation.BEGIN_SCAN,
+            Span.NOOP);
+    observer.beforeStart(stream);
+    return observer;
+  }
+
+  @Test
+  void testRequestsNextPageWhenSinkIsReady() {
+    List<Integer> pageSizes = new ArrayList<>();
+    List<CompletableFuture<Void>> ready = new ArrayList<>();
+    CompletableFuture<ListToken> result = new CompletableFuture<>();
+    RecordingRequestStream stream = new RecordingRequestStream();
+    ListSinkObserver<BeginScanRequest, StatelyItem> observer =
+        observer(
+            items -> {
+              pageSizes.add(items.size());
+              CompletableFuture<Void> future = new CompletableFuture<>();
+              ready.add(future);
+              return future;
+            },
+            result,
+            stream);
+
+    assertTrue(stream.autoRequestDisabled);
+    assertEquals(1, stream.requested);
+
+    observer.onNext(page(3));
+    assertEquals(List.of(3), pageSizes);
+    assertEquals(1, stream.requested); // the sink isn't ready yet
+
+    ready.get(0).complete(null);
+    assertEquals(2, stream.requested);
+
+    observer.onNext(page(2));
+    ready.get(1).complete(null);
+    observer.onNext(finished());
+    assertEquals(4, stream.requested);
+
+    observer.onCompleted();
+    assertEquals(ListToken.getDefaultInstance(), result.join());
+    assertEquals(List.of(3, 2), pageSizes);
+  }
+
+  @Test
+  void testSinkFailureCancelsStream() {
+    CompletableFuture<ListToken> result = new CompletableFuture<>();
+    RecordingRequestStream stream = new RecordingRequestStream();
+    ListSinkObserver<BeginScanRequest, StatelyItem> observer =
+        observer(
+            items ->
+                CompletableFuture.failedFuture(
+                    new StatelyException(
+                        "downstream unavailable", Status.Code.UNAVAILABLE, "Unavailable")),
+            result,
+            stream);
+
+    observer.onNext(page(1));
+    assertEquals(1, stream.requested);
+    assertTrue(stream.cancelCause instanceof StatelyException);
+    assertTrue(result.isCompletedExceptionally());
+
+    // the cancellation comes back as an error, which must not complete the result again
+    observer.onError(Status.CANCELLED.asRuntimeException());
+    StatelyException e = StatelyException.from(result.handle((v, t) -> t).join());
+    assertEquals(Status.Code.UNAVAILABLE, e.getGrpcCode());
+    assertFalse(result.isCancelled());
+  }
+}
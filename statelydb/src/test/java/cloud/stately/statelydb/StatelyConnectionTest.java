@@ -0,0 +1,139 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.statelydb.FakeDatabaseService.NamedItem;
+import cloud.stately.statelydb.FakeDatabaseService.NamedTypeMapper;
+import cloud.stately.statelydb.common.StatelyException;
+import io.grpc.Status;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for StatelyConnection. */
+class StatelyConnectionTest {
+
+  private static final URI ENDPOINT = URI.create("http://localhost:3000");
+
+  private ScheduledExecutorService scheduler;
+
+  @BeforeEach
+  void setUp() {
+    scheduler = Executors.newScheduledThreadPool(1);
+  }
+
+  @AfterEach
+  void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  private StatelyConnection.Builder builder() {
+    return StatelyConnection.builder(scheduler).endpoint(ENDPOINT).noAuth(true);
+  }
+
+  private static void assertInvalid(StatelyConnection.Builder builder) {
+    StatelyException e = assertThrows(StatelyException.class, builder::build);
+    assertEquals(Status.Code.INVALID_ARGUMENT, e.getGrpcCode());
+  }
+
+  @Test
+  void testInvalidTransactionTimeouts() {
+    assertInvalid(builder().transactionTimeout(null));
+    assertInvalid(builder().transactionTimeout(Duration.ofSeconds(-1)));
+    assertInvalid(builder().transactionIdleTimeout(null));
+    assertInvalid(builder().transactionIdleTimeout(Duration.ofMillis(-1)));
+  }
+
+  @Test
+  void testClosingClientViewLeavesChannelOpen() throws Exception {
+    try (FakeDatabaseService service = new FakeDatabaseService()) {
+      StatelyConnection connection = builder().endpoint(service.endpoint()).build();
+      Client first = connection.client(1, new NamedTypeMapper());
+      first.put(new NamedItem("a")).get();
+      first.close();
+
+      Client second = connection.client(2, new NamedTypeMapper());
+      first.put(new NamedItem("b")).get();
+      second.put(new NamedItem("c")).get();
+      assertEquals(3, service.items.size());
+
+      connection.close();
+      assertThrows(ExecutionException.class, () -> second.put(new NamedItem("d")).get());
+    }
+  }
+
+  @Test
+  void testBuilderOwnedClientShutsDownChannel() throws Exception {
+    try (FakeDatabaseService service = new FakeDatabaseService()) {
+      Client client = service.newClient(1, scheduler);
+      client.put(new NamedItem("a")).get();
+      client.close();
+      assertThrows(ExecutionException.class, () -> client.put(new NamedItem("b")).get());
+    }
+  }
+
+  @Test
+  void testBuilderOwnedClientClosesItsConnection() throws Exception {
+    try (FakeDatabaseService service = new FakeDatabaseService()) {
+      Client client = service.newClient(1, scheduler);
+      StatelyConnection connection = client.connection();
+      assertNotNull(connection);
+      client.close();
+
+      // the virtual thread executor only exists on Java 21 and later
+      ExecutorService executor = connection.ownedCallbackExecutor();
+      assertTrue(executor == null || executor.isShutdown());
+      Client view = connection.client(1, new NamedTypeMapper());
+      assertThrows(ExecutionException.class, () -> view.put(new NamedItem("a")).get());
+    }
+  }
+
+  @Test
+  void testCloseWithoutAuth() {
+    StatelyConnection connection = builder().build();
+    assertDoesNotThrow(connection::close);
+    Client client =
+        Client.builder(1, new NamedTypeMapper(), scheduler).endpoint(ENDPOINT).noAuth(true).build();
+    assertDoesNotThrow(client::close);
+  }
+
+  @Test
+  void testResolvesRegion() throws Exception {
+    StatelyConnection connection =
+        StatelyConnection.builder(scheduler).region("aws-us-west-2").noAuth(true).build();
+    assertEquals(URI.create("https://us-west-2.api.stately.cloud:443"), connection.getEndpoint());
+    connection.close();
+
+    // the endpoint takes precedence over the region
+    connection = builder().region("us-west-2").build();
+    assertEquals(ENDPOINT, connection.getEndpoint());
+    connection.close();
+  }
+
+  @Test
+  void testDefaultsEndpointPort() throws Exception {
+    StatelyConnection connection = builder().endpoint(URI.create("https://db.example.com")).build();
+    assertEquals(URI.create("https://db.example.com:443"), connection.getEndpoint());
+    connection.close();
+  }
+
+  @Test
+  void testInvalidRegionAndEndpoint() {
+    StatelyConnection.Builder noAuth = StatelyConnection.builder(scheduler).noAuth(true);
+    assertInvalid(noAuth.region("us west 2"));
+    assertInvalid(noAuth.region(""));
+    assertInvalid(builder().endpoint(URI.create("localhost:3000")));
+    assertInvalid(builder().endpoint(URI.create("ftp://localhost:3000")));
+    assertInvalid(builder().endpoint(URI.create("/just/a/path")));
+  }
+}
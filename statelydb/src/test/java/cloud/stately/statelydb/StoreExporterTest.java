@@ -0,0 +1,131 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.db.Item;
+import cloud.stately.statelydb.common.StatelyException;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for StoreExporter against an in-memory DatabaseService. */
+class StoreExporterTest {
+
+  private static final int PAYLOAD_BYTES = 100;
+
+  @TempDir Path tempDir;
+
+  private ScheduledExecutorService scheduler;
+  private FakeDatabaseService service;
+  private Client client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    scheduler = Executors.newScheduledThreadPool(1);
+    service = new FakeDatabaseService();
+    client = service.newClient(1, scheduler);
+    for (int i = 0; i < 10; i++) {
+      service.add(String.format("item-%02d", i), ByteString.copyFrom(new byte[PAYLOAD_BYTES]));
+    }
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    service.close();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  void testChunksRollOverAtChunkBytes() throws Exception {
+    service.scanPageSize = 2;
+    long itemBytes = service.items.values().iterator().next().getSerializedSize() + 1;
+    long chunkBytes = itemBytes * 2 + 1;
+    Path directory = tempDir.resolve("export");
+
+    ExportManifest manifest =
+        StoreExporter.builder(client, directory)
+            .segments(2)
+            .chunkBytes(chunkBytes)
+            .build()
+            .export()
+            .get();
+
+    // each segment holds five items, split into chunks of three and two
+    assertEquals(10, manifest.getItemCount());
+    assertEquals(4, manifest.getChunks().size());
+    List<Item> exported = new ArrayList<>();
+    for (ExportManifest.Chunk chunk : manifest.getChunks()) {
+      assertTrue(chunk.getItems() <= 3, chunk.getFile());
+      if (chunk.getItems() == 3) {
+        assertTrue(chunk.getBytes() >= chunkBytes, chunk.getFile());
+      }
+      try (ItemRecords.Reader reader =
+          new ItemRecords.Reader(directory.resolve(chunk.getFile()), false)) {
+        for (Item item = reader.next(); item != null; item = reader.next()) {
+          exported.add(item);
+        }
+      }
+    }
+    assertEquals(10, exported.size());
+    assertTrue(exported.containsAll(service.items.values()));
+    assertTrue(Files.exists(directory.resolve(ExportManifest.FILE_NAME)));
+  }
+
+  @Test
+  void testRefusesToOverwriteExport() throws Exception {
+    StoreExporter exporter = StoreExporter.builder(client, tempDir).segments(1).build();
+    exporter.export().get();
+    ExecutionException e = assertThrows(ExecutionException.class, () -> exporter.export().get());
+    StatelyException cause = assertInstanceOf(StatelyException.class, e.getCause());
+    assertEquals(Status.Code.ALREADY_EXISTS, cause.getGrpcCode());
+  }
+
+  @Test
+  void testFailedExportDeletesItsChunks() throws Exception {
+    service.scanPageSize = 2;
+    service.failContinueScans.set(1);
+    long itemBytes = service.items.values().iterator().next().getSerializedSize() + 1;
+    StoreExporter exporter =
+        StoreExporter.builder(client, tempDir).segments(1).chunkBytes(itemBytes).build();
+
+    ExecutionException e = assertThrows(ExecutionException.class, () -> exporter.export().get());
+    StatelyException cause = assertInstanceOf(StatelyException.class, e.getCause());
+    assertEquals(Status.Code.UNAVAILABLE, cause.getGrpcCode());
+    try (Stream<Path> files = Files.list(tempDir)) {
+      assertEquals(List.of(), files.collect(Collectors.toList()));
+    }
+
+    // nothing is left to collide with, so the export can simply be run again
+    assertEquals(10, exporter.export().get().getItemCount());
+  }
+
+  @Test
+  void testRejectsChunkSizesThatCantBeImported() {
+    StatelyException e =
+        assertThrows(
+            StatelyException.class,
+            () ->
+                StoreExporter.builder(client, tempDir)
+                    .chunkBytes(StoreExporter.MAX_CHUNK_BYTES + 1)
+                    .build());
+    assertEquals(Status.Code.INVALID_ARGUMENT, e.getGrpcCode());
+    assertThrows(
+        StatelyException.class, () -> StoreExporter.builder(client, tempDir).chunkBytes(0).build());
+  }
+}
@@ -0,0 +1,139 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.db.Item;
+import cloud.stately.statelydb.common.StatelyException;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for StoreImporter against an in-memory DatabaseService. */
+class StoreImporterTest {
+
+  @TempDir Path tempDir;
+
+  private ScheduledExecutorService scheduler;
+  private FakeDatabaseService service;
+  private Client client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    scheduler = Executors.newScheduledThreadPool(1);
+    service = new FakeDatabaseService();
+    client = service.newClient(1, scheduler);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    service.close();
+    scheduler.shutdownNow();
+  }
+
+  private static Item item(int i) {
+    return Item.newBuilder()
+        .setItemType(String.format("item-%03d", i))
+        .setProto(ByteString.copyFromUtf8("payload-" + i))
+        .build();
+  }
+
+  /**
+   * Writes an export of the given number of items, split into chunks of up to chunkItems items.
+   * The manifest lists listedExtra more items in the last chunk than it holds.
+   */
+  private void writeExport(int count, int chunkItems, int listedExtra) throws Exception {
+    List<ExportManifest.Chunk> chunks = new ArrayList<>();
+    for (int start = 0; start < count; start += chunkItems) {
+      String file = String.format("segment-0000-%06d.items", chunks.size());
+      try (ItemRecords.Writer writer = new ItemRecords.Writer(tempDir.resolve(file), false)) {
+        for (int i = start; i < Math.min(count, start + chunkItems); i++) {
+          writer.write(item(i));
+        }
+        boolean last = start + chunkItems >= count;
+        chunks.add(
+            new ExportManifest.Chunk(file, writer.items() + (last ? listedExtra : 0), 0));
+      }
+    }
+    long schemaId = client.typeMapper().getSchemaId();
+    int schemaVersionId = client.typeMapper().getSchemaVersionId();
+    new ExportManifest(7, schemaId, schemaVersionId, false, chunks).write(tempDir);
+  }
+
+  private static StatelyException failure(StoreImporter importer) {
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class, () -> importer.importAll().get(10, TimeUnit.SECONDS));
+    return assertInstanceOf(StatelyException.class, e.getCause());
+  }
+
+  @Test
+  void testImportBoundsBatchesInFlight() throws Exception {
+    writeExport(40, 7, 0);
+    service.writeDelayMillis = 20;
+
+    long imported =
+        StoreImporter.builder(client, tempDir)
+            .batchSize(3)
+            .maxInFlightBatches(2)
+            .build()
+            .importAll()
+            .get(10, TimeUnit.SECONDS);
+
+    assertEquals(40, imported);
+    assertEquals(40, service.items.size());
+    for (int i = 0; i < 40; i++) {
+      assertEquals(item(i), service.items.get("/" + item(i).getItemType()));
+    }
+    // batches span chunk boundaries, so every batch but the last is full
+    assertEquals(14, service.putSizes.size());
+    assertTrue(service.putSizes.stream().allMatch(size -> size <= 3));
+    assertTrue(service.maxWritesInFlight.get() <= 2, "in flight: " + service.maxWritesInFlight);
+  }
+
+  @Test
+  void testEmptyExport() throws Exception {
+    writeExport(0, 10, 0);
+    assertEquals(0, StoreImporter.builder(client, tempDir).build().importAll().get());
+    assertTrue(service.putSizes.isEmpty());
+  }
+
+  @Test
+  void testChunkItemCountMismatch() throws Exception {
+    writeExport(10, 4, 1);
+    StatelyException e = failure(StoreImporter.builder(client, tempDir).batchSize(4).build());
+    assertEquals(Status.Code.DATA_LOSS, e.getGrpcCode());
+  }
+
+  @Test
+  void testFailedPutStopsImport() throws Exception {
+    writeExport(40, 10, 0);
+    service.failPuts.set(1);
+    StatelyException e =
+        failure(StoreImporter.builder(client, tempDir).batchSize(5).maxInFlightBatches(1).build());
+    assertEquals(Status.Code.UNAVAILABLE, e.getGrpcCode());
+    // the first put failed, so nothing after it was sent
+    assertEquals(1, service.putSizes.size());
+  }
+
+  @Test
+  void testSchemaMismatch() throws Exception {
+    List<ExportManifest.Chunk> chunks = List.of();
+    new ExportManifest(7, client.typeMapper().getSchemaId() + 1, 1, false, chunks).write(tempDir);
+    StatelyException e = failure(StoreImporter.builder(client, tempDir).build());
+    assertEquals(Status.Code.FAILED_PRECONDITION, e.getGrpcCode());
+  }
+}
@@ -0,0 +1,256 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.db.DeletedItem;
+import cloud.stately.db.Item;
+import cloud.stately.db.ListFinished;
+import cloud.stately.db.SyncListPartialResponse;
+import cloud.stately.db.SyncListReset;
+import cloud.stately.db.SyncListResponse;
+import cloud.stately.statelydb.common.StatelyException;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for StoreReplicator against two in-memory DatabaseServices. */
+class StoreReplicatorTest {
+
+  /** The token the source's list of "/a" returns, which the first sync round starts from. */
+  private static final String LIST_TOKEN = "list:/a";
+
+  @TempDir Path tempDir;
+
+  private ScheduledExecutorService scheduler;
+  private FakeDatabaseService sourceService;
+  private FakeDatabaseService destinationService;
+  private Client source;
+  private Client destination;
+  private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+  private final List<StoreReplicator> replicators = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    scheduler = Executors.newScheduledThreadPool(2);
+    sourceService = new FakeDatabaseService();
+    destinationService = new FakeDatabaseService();
+    source = sourceService.newClient(1, scheduler);
+    destination = destinationService.newClient(2, scheduler);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    replicators.forEach(StoreReplicator::close);
+    source.close();
+    destination.close();
+    sourceService.close();
+    destinationService.close();
+    scheduler.shutdownNow();
+  }
+
+  /** Records each listener call as "synced puts deletes" or "error CODE". */
+  private StoreReplicator.Builder builder(String prefix) {
+    return StoreReplicator.builder(source, destination, scheduler)
+        .addPrefix(prefix)
+        .pollInterval(Duration.ofMillis(10))
+        .listener(
+            new StoreReplicator.Listener() {
+              @Override
+              public void onSynced(Duration lag, long puts, long deletes) {
+                events.add("synced " + puts + " " + deletes);
+              }
+
+              @Override
+              public void onError(StatelyException error) {
+                events.add("error " + error.getGrpcCode());
+              }
+            });
+  }
+
+  private StoreReplicator start(StoreReplicator.Builder builder) throws Exception {
+    StoreReplicator replicator = builder.build();
+    replicators.add(replicator);
+    replicator.start().get(10, TimeUnit.SECONDS);
+    return replicator;
+  }
+
+  private String nextEvent() throws InterruptedException {
+    String event = events.poll(10, TimeUnit.SECONDS);
+    assertNotNull(event, "no listener call");
+    return event;
+  }
+
+  private static Item item(String name) {
+    return Item.newBuilder().setItemType(name).build();
+  }
+
+  /** A sync that returns the given changes and deletes, finishing with the given token. */
+  private static List<SyncListResponse> sync(
+      boolean reset, List<String> changed, List<String> deleted, String token) {
+    List<SyncListResponse> responses = new ArrayList<>();
+    if (reset) {
+      responses.add(
+          SyncListResponse.newBuilder().setReset(SyncListReset.getDefaultInstance()).build());
+    }
+    SyncListPartialResponse.Builder result = SyncListPartialResponse.newBuilder();
+    changed.forEach(name -> result.addChangedItems(item(name)));
+    deleted.forEach(
+        keyPath -> result.addDeletedItems(DeletedItem.newBuilder().setKeyPath(keyPath)));
+    responses.add(SyncListResponse.newBuilder().setResult(result).build());
+    responses.add(
+        SyncListResponse.newBuilder()
+            .setFinished(
+                ListFinished.newBuilder().setToken(FakeDatabaseService.token(token, false, true)))
+            .build());
+    return responses;
+  }
+
+  /** Answers the first sync with the given changes, and every later one with no changes. */
+  private void syncOnce(boolean reset, List<String> changed, List<String> deleted) {
+    sourceService.syncHandler =
+        request ->
+            request.getTokenData().toStringUtf8().equals(LIST_TOKEN)
+                ? sync(reset, changed, deleted, "sync-1")
+                : sync(false, List.of(), List.of(), "sync-1");
+  }
+
+  @Test
+  void testCopiesThenTailsWithBoundedBatches() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      sourceService.add("a-" + i, ByteString.copyFromUtf8("v" + i));
+    }
+    sourceService.add("b-1", ByteString.EMPTY);
+    destinationService.writeDelayMillis = 10;
+    syncOnce(false, List.of("a-10"), List.of("/a-0"));
+
+    StoreReplicator replicator =
+        start(builder("/a").segments(3).batchSize(1).maxInFlightBatches(2));
+
+    // the copy includes items outside the prefix
+    assertEquals(sourceService.items, destinationService.items);
+    assertTrue(destinationService.maxWritesInFlight.get() <= 2);
+    assertNotNull(replicator.getLag());
+
+    assertEquals("synced 1 1", nextEvent());
+    assertTrue(destinationService.items.containsKey("/a-10"));
+    assertFalse(destinationService.items.containsKey("/a-0"));
+    assertTrue(destinationService.items.containsKey("/b-1"));
+    assertEquals("synced 0 0", nextEvent());
+    assertEquals(List.of(LIST_TOKEN, "sync-1"), sourceService.syncTokens.subList(0, 2));
+    assertTrue(destinationService.maxWritesInFlight.get() <= 2);
+  }
+
+  @Test
+  void testResetDeletesOnlyItemsMissingFromView() throws Exception {
+    sourceService.add("a-1", ByteString.EMPTY);
+    sourceService.add("a-2", ByteString.EMPTY);
+    destinationService.add("a-old", ByteString.EMPTY);
+    destinationService.add("b-1", ByteString.EMPTY);
+    syncOnce(true, List.of("a-1", "a-2"), List.of());
+
+    start(builder("/a"));
+
+    assertEquals("synced 2 1", nextEvent());
+    assertEquals(List.of(List.of("/a-old")), destinationService.deletes);
+    assertEquals(
+        List.of("/a-1", "/a-2", "/b-1"), new ArrayList<>(destinationService.items.keySet()));
+  }
+
+  @Test
+  void testFailedRoundIsRetriedFromSavedTokens() throws Exception {
+    syncOnce(false, List.of("a-1"), List.of());
+    destinationService.failPuts.set(1);
+
+    start(builder("/a").checkpointFile(tempDir.resolve("checkpoint")));
+
+    assertEquals("error UNAVAILABLE", nextEvent());
+    assertEquals("synced 1 0", nextEvent());
+    assertTrue(destinationService.items.containsKey("/a-1"));
+    assertEquals("synced 0 0", nextEvent());
+    // the failed round didn't advance the token, so the retry synced from the same place
+    assertEquals(
+        List.of(LIST_TOKEN, LIST_TOKEN, "sync-1"), sourceService.syncTokens.subList(0, 3));
+  }
+
+  @Test
+  void testResumesFromCheckpoint() throws Exception {
+    Path checkpoint = tempDir.resolve("checkpoint");
+    sourceService.add("a-1", ByteString.EMPTY);
+    syncOnce(false, List.of("a-2"), List.of());
+    StoreReplicator first = start(builder("/a").checkpointFile(checkpoint));
+    assertEquals("synced 1 0", nextEvent());
+    first.close();
+    assertTrue(Files.exists(checkpoint));
+
+    // a round of the first replicator may still be finishing, but it syncs nothing
+    destinationService.putSizes.clear();
+    sourceService.syncTokens.clear();
+    events.clear();
+    StoreReplicator resumed =
+        start(builder("/a").checkpointFile(checkpoint).pollInterval(Duration.ofMillis(200)));
+
+    // no copy, and tailing picks up from the saved token
+    assertTrue(destinationService.putSizes.isEmpty());
+    assertNull(resumed.getLag());
+    assertEquals("synced 0 0", nextEvent());
+    assertEquals("sync-1", sourceService.syncTokens.get(0));
+  }
+
+  @Test
+  void testCheckpointForDifferentReplication() throws Exception {
+    Path checkpoint = tempDir.resolve("checkpoint");
+    syncOnce(false, List.of(), List.of());
+    start(builder("/a").checkpointFile(checkpoint)).close();
+
+    StoreReplicator other = builder("/b").checkpointFile(checkpoint).build();
+    ExecutionException e = assertThrows(ExecutionException.class, () -> other.start().get());
+    StatelyException cause = assertInstanceOf(StatelyException.class, e.getCause());
+    assertEquals(Status.Code.FAILED_PRECONDITION, cause.getGrpcCode());
+  }
+
+  @Test
+  void testMalformedCheckpoint() throws Exception {
+    Path checkpoint = tempDir.resolve("checkpoint");
+    Files.writeString(
+        checkpoint, "formatVersion=1\nprefixes=one\nsourceStoreId=1\ndestinationStoreId=2\n");
+    StoreReplicator replicator = builder("/a").checkpointFile(checkpoint).build();
+    ExecutionException e = assertThrows(ExecutionException.class, () -> replicator.start().get());
+    StatelyException cause = assertInstanceOf(StatelyException.class, e.getCause());
+    assertEquals(Status.Code.INVALID_ARGUMENT, cause.getGrpcCode());
+  }
+
+  @Test
+  void testCheckpointWithCorruptToken() throws Exception {
+    Path checkpoint = tempDir.resolve("checkpoint");
+    // a token whose only field claims five bytes that aren't there
+    Files.writeString(
+        checkpoint,
+        "formatVersion=1\nprefixes=1\nprefix.0=/a\ntoken.0=CgU=\n"
+            + "sourceStoreId=1\ndestinationStoreId=2\n");
+    StoreReplicator replicator = builder("/a").checkpointFile(checkpoint).build();
+    ExecutionException e = assertThrows(ExecutionException.class, () -> replicator.start().get());
+    StatelyException cause = assertInstanceOf(StatelyException.class, e.getCause());
+    assertEquals(Status.Code.INVALID_ARGUMENT, cause.getGrpcCode());
+    assertTrue(cause.getMessage().contains("Malformed checkpoint"), cause.getMessage());
+  }
+}
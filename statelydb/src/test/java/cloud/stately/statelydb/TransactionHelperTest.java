@@ -0,0 +1,286 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.db.ListToken;
+import cloud.stately.db.PutItem;
+import cloud.stately.db.TransactionRequest;
+import cloud.stately.statelydb.FakeDatabaseService.NamedItem;
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.schema.StatelyItem;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for TransactionHelper, run through Client against an in-memory DatabaseService. */
+class TransactionHelperTest {
+
+  private ScheduledExecutorService scheduler;
+  private FakeDatabaseService service;
+  private Client client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    scheduler = Executors.newScheduledThreadPool(1);
+    service = new FakeDatabaseService();
+    client = service.newClient(1, scheduler);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    service.close();
+    scheduler.shutdownNow();
+  }
+
+  private static StatelyException failure(CompletableFuture<?> future) {
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+    return assertInstanceOf(StatelyException.class, e.getCause());
+  }
+
+  /** Returns the kind of each transaction request the service received. */
+  private List<TransactionRequest.CommandCase> commands() {
+    return service.transactionRequests.stream()
+        .map(TransactionRequest::getCommandCase)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  void testReadOnlyTransactionReturnsResultAndReleases() throws Exception {
+    service.add("a", ByteString.EMPTY);
+    AtomicReference<CompletableFuture<GeneratedId>> put = new AtomicReference<>();
+    AtomicReference<StatelyException> delete = new AtomicReference<>();
+    AtomicBoolean cancelledDuringHandler = new AtomicBoolean(true);
+
+    StatelyItem item =
+        client
+            .<StatelyItem>readOnlyTransaction(
+                txn -> {
+                  put.set(txn.put(new NamedItem("b")));
+                  delete.set(assertThrows(StatelyException.class, () -> txn.delete("/a")));
+                  return txn.<StatelyItem>get("/a")
+                      .thenApply(
+                          got -> {
+                            cancelledDuringHandler.set(service.transactionCancelled.isDone());
+                            return got;
+                          });
+                })
+            .get(10, TimeUnit.SECONDS);
+
+    assertEquals("/a", item.primaryKeyPath());
+    assertEquals(Status.Code.FAILED_PRECONDITION, failure(put.get()).getGrpcCode());
+    assertEquals(Status.Code.FAILED_PRECONDITION, delete.get().getGrpcCode());
+    // the stream is cancelled once the handler is done, without a commit
+    assertFalse(cancelledDuringHandler.get());
+    service.transactionCancelled.get(10, TimeUnit.SECONDS);
+    assertEquals(
+        List.of(TransactionRequest.CommandCase.BEGIN, TransactionRequest.CommandCase.GET_ITEMS),
+        commands());
+  }
+
+  @Test
+  void testFailedReadOnlyTransactionIsReleasedWithoutAbort() throws Exception {
+    StatelyException e =
+        failure(
+            client.readOnlyTransaction(
+                txn ->
+                    txn.get("/a")
+                        .thenApply(
+                            got -> {
+                              throw new StatelyException(
+                                  "nope", Status.Code.NOT_FOUND, "NotFound");
+                            })));
+
+    assertEquals(Status.Code.NOT_FOUND, e.getGrpcCode());
+    service.transactionCancelled.get(10, TimeUnit.SECONDS);
+    assertEquals(
+        List.of(TransactionRequest.CommandCase.BEGIN, TransactionRequest.CommandCase.GET_ITEMS),
+        commands());
+  }
+
+  /**
+   * Runs a transaction whose get is never answered and whose handler never completes, and checks
+   * that the watchdog fails both with DEADLINE_EXCEEDED and cancels the stream. Requests made after
+   * that fail with the same error instead of being sent on the cancelled stream.
+   */
+  private void assertExpires(Client expiring, String reason) throws Exception {
+    service.stallTransactions = true;
+    AtomicReference<Transaction> transaction = new AtomicReference<>();
+    AtomicReference<CompletableFuture<StatelyItem>> get = new AtomicReference<>();
+
+    StatelyException e =
+        failure(
+            expiring.transaction(
+                txn -> {
+                  transaction.set(txn);
+                  get.set(txn.get("/a"));
+                  return new CompletableFuture<>();
+                }));
+
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, e.getGrpcCode());
+    assertTrue(e.getMessage().contains(reason), e.getMessage());
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, failure(get.get()).getGrpcCode());
+    service.transactionCancelled.get(10, TimeUnit.SECONDS);
+
+    Transaction txn = transaction.get();
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, failure(txn.get("/a")).getGrpcCode());
+    StatelyException delete = assertThrows(StatelyException.class, () -> txn.delete("/a"));
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, delete.getGrpcCode());
+    // the abort is skipped, and nothing is sent after the stream is cancelled
+    assertEquals(
+        List.of(TransactionRequest.CommandCase.BEGIN, TransactionRequest.CommandCase.GET_ITEMS),
+        commands());
+  }
+
+  @Test
+  void testTransactionDeadline() throws Exception {
+    try (Client expiring =
+        service.clientBuilder(1, scheduler).transactionTimeout(Duration.ofMillis(200)).build()) {
+      assertExpires(expiring, "did not finish within 200ms");
+    }
+  }
+
+  @Test
+  void testTransactionIdleTimeout() throws Exception {
+    try (Client expiring =
+        service
+            .clientBuilder(1, scheduler)
+            .transactionIdleTimeout(Duration.ofMillis(200))
+            .build()) {
+      assertExpires(expiring, "idle for more than 200ms");
+    }
+  }
+
+  private static List<String> keyPaths(List<StatelyItem> items) {
+    return items.stream().map(StatelyItem::primaryKeyPath).collect(Collectors.toList());
+  }
+
+  @Test
+  void testListStreamDeliversEachFrame() throws Exception {
+    service.add("a-1", ByteString.EMPTY);
+    service.add("a-2", ByteString.EMPTY);
+    service.add("a-3", ByteString.EMPTY);
+    service.add("b-1", ByteString.EMPTY);
+    List<List<String>> frames = new ArrayList<>();
+    List<List<String>> continued = new ArrayList<>();
+    AtomicReference<ListToken> first = new AtomicReference<>();
+    AtomicReference<ListToken> next = new AtomicReference<>();
+
+    client
+        .transaction(
+            txn ->
+                txn.beginListStream("/a", null, items -> frames.add(keyPaths(items)))
+                    .thenCompose(
+                        token -> {
+                          first.set(token);
+                          return txn.continueListStream(
+                              token, items -> continued.add(keyPaths(items)));
+                        })
+                    .thenAccept(next::set))
+        .get(10, TimeUnit.SECONDS);
+
+    // one call per partial result, in order
+    assertEquals(List.of(List.of("/a-1"), List.of("/a-2"), List.of("/a-3")), frames);
+    assertEquals("txn-list:/a", first.get().getTokenData().toStringUtf8());
+    assertTrue(continued.isEmpty());
+    assertEquals("txn-list:/a", next.get().getTokenData().toStringUtf8());
+  }
+
+  @Test
+  void testListStreamDrainsFramesAfterConsumerFails() throws Exception {
+    service.add("a-1", ByteString.EMPTY);
+    service.add("a-2", ByteString.EMPTY);
+    service.add("a-3", ByteString.EMPTY);
+    List<List<String>> frames = new ArrayList<>();
+    AtomicReference<CompletableFuture<ListToken>> list = new AtomicReference<>();
+    AtomicReference<StatelyItem> got = new AtomicReference<>();
+
+    TransactionResult result =
+        client
+            .transaction(
+                txn -> {
+                  list.set(
+                      txn.beginListStream(
+                          "/a",
+                          null,
+                          items -> {
+                            frames.add(keyPaths(items));
+                            throw new IllegalStateException("consumer failed");
+                          }));
+                  // sent after the list, so its response follows the list's remaining frames
+                  return list.get()
+                      .handle((token, error) -> null)
+                      .thenCompose(v -> txn.<StatelyItem>get("/a-2"))
+                      .thenAccept(got::set);
+                })
+            .get(10, TimeUnit.SECONDS);
+
+    failure(list.get());
+    assertEquals(List.of(List.of("/a-1")), frames);
+    assertEquals("/a-2", got.get().primaryKeyPath());
+    assertTrue(result.isCommitted());
+  }
+
+  @Test
+  void testCommitReturnsPutsAndDeletes() throws Exception {
+    service.add("a", ByteString.EMPTY);
+    service.add("b", ByteString.EMPTY);
+
+    TransactionResult result =
+        client
+            .transaction(
+                txn -> {
+                  txn.delete("/a", "/b");
+                  return txn.put(new NamedItem("c")).thenApply(id -> null);
+                })
+            .get(10, TimeUnit.SECONDS);
+
+    assertTrue(result.isCommitted());
+    assertEquals(List.of("/c"), keyPaths(result.getPuts()));
+    assertEquals(List.of("/a", "/b"), result.getDeletes());
+    assertEquals(List.of("/c"), new ArrayList<>(service.items.keySet()));
+  }
+
+  @Test
+  void testPutSendsOptions() throws Exception {
+    client
+        .transaction(
+            txn ->
+                txn.putBatch(
+                        List.of(
+                            PutRequest.builder(new NamedItem("a")).mustNotExist().build(),
+                            PutRequest.builder(new NamedItem("b"))
+                                .overwriteMetadataTimestamp()
+                                .build(),
+                            PutRequest.builder(new NamedItem("c")).build()))
+                    .thenApply(ids -> null))
+        .get(10, TimeUnit.SECONDS);
+
+    List<PutItem> puts = service.transactionPuts;
+    assertEquals(3, puts.size());
+    assertTrue(puts.get(0).getMustNotExist());
+    assertFalse(puts.get(0).getOverwriteMetadataTimestamps());
+    assertFalse(puts.get(1).getMustNotExist());
+    assertTrue(puts.get(1).getOverwriteMetadataTimestamps());
+    assertFalse(puts.get(2).getMustNotExist());
+    assertFalse(puts.get(2).getOverwriteMetadataTimestamps());
+  }
+}
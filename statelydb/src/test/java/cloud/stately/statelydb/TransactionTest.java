@@ -0,0 +1,127 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import cloud.stately.db.Item;
+import cloud.stately.db.ListToken;
+import cloud.stately.statelydb.schema.StatelyItem;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the default methods of Transaction. */
+class TransactionTest {
+
+  /** An item that only remembers its name. */
+  private static class NamedItem extends StatelyItem {
+    final String name;
+
+    NamedItem(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Item marshal() {
+      return Item.newBuilder().setItemType(name).build();
+    }
+
+    @Override
+    public StatelyItem clone() {
+      return new NamedItem(name);
+    }
+
+    @Override
+    public String primaryKeyPath() {
+      return "/" + name;
+    }
+  }
+
+  /**
+   * A transaction written before the streaming list methods existed: it only implements the
+   * abstract methods, and serves three pages of one item each.
+   */
+  private static class PagedTransaction implements Transaction {
+    private static final List<String> PAGES = List.of("a", "b", "c");
+
+    private static ListResult page(int index) {
+      ListToken token =
+          ListToken.newBuilder()
+              .setTokenData(ByteString.copyFromUtf8(Integer.toString(index + 1)))
+              .setCanContinue(index + 1 < PAGES.size())
+              .build();
+      return new ListResult(List.of(new NamedItem(PAGES.get(index))), token);
+    }
+
+    @Override
+    public CompletableFuture<ListResult> beginList(String keyPathPrefix, ListOptions options) {
+      return CompletableFuture.completedFuture(page(0));
+    }
+
+    @Override
+    public CompletableFuture<ListResult> beginList(String keyPathPrefix) {
+      return beginList(keyPathPrefix, null);
+    }
+
+    @Override
+    public CompletableFuture<ListResult> continueList(ListToken token) {
+      return CompletableFuture.completedFuture(
+          page(Integer.parseInt(token.getTokenData().toStringUtf8())));
+    }
+
+    @Override
+    public <T extends StatelyItem> CompletableFuture<T> get(String keyPath) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CompletableFuture<List<StatelyItem>> getBatch(List<String> keyPaths) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T extends StatelyItem> CompletableFuture<GeneratedId> put(T item) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T extends StatelyItem> CompletableFuture<GeneratedId> put(PutRequest<T> request) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T extends StatelyItem> CompletableFuture<List<GeneratedId>> putBatch(
+        List<PutRequest<T>> requests) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(String... keyPaths) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test
+  void testDefaultStreamMethodsDeliverWholePages() throws Exception {
+    Transaction txn = new PagedTransaction();
+    List<List<StatelyItem>> pages = new ArrayList<>();
+    ListToken token = txn.beginListStream("/p", null, pages::add).get();
+    assertEquals(1, pages.size());
+    txn.continueListStream(token, pages::add).get();
+    assertEquals(2, pages.size());
+    assertEquals("/b", pages.get(1).get(0).primaryKeyPath());
+  }
+
+  @Test
+  void testDefaultListAllFollowsTokens() throws Exception {
+    List<StatelyItem> items = new ArrayList<>();
+    ListToken token = new PagedTransaction().listAll("/p", null, items::addAll).get();
+    assertFalse(token.getCanContinue());
+    assertEquals(
+        List.of("/a", "/b", "/c"),
+        items.stream().map(StatelyItem::primaryKeyPath).collect(Collectors.toList()));
+  }
+}
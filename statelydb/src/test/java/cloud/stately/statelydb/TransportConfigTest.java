@@ -0,0 +1,85 @@
+package cloud.stately.statelydb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.statelydb.common.StatelyException;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for TransportConfig. */
+class TransportConfigTest {
+
+  private static final URI ENDPOINT = URI.create("http://localhost:3000");
+
+  @Test
+  void testInvalidSettings() {
+    StatelyException e =
+        assertThrows(
+            StatelyException.class,
+            () -> TransportConfig.builder().initialFlowControlWindow(0).build());
+    assertEquals(Status.Code.INVALID_ARGUMENT, e.getGrpcCode());
+    assertThrows(
+        StatelyException.class,
+        () -> TransportConfig.builder().keepAliveTime(Duration.ofSeconds(-1)).build());
+    assertThrows(
+        StatelyException.class, () -> TransportConfig.builder().eventLoopThreads(-1).build());
+  }
+
+  @Test
+  void testToBuilderKeepsPresetSettings() {
+    TransportConfig preset = TransportConfig.bulkScans();
+    assertEquals(preset.toString(), preset.toBuilder().build().toString());
+    TransportConfig tuned = preset.toBuilder().maxInboundMessageSize(1024).build();
+    assertTrue(tuned.toString().contains("maxInboundMessageSize=1024"));
+    assertTrue(tuned.toString().contains("initialFlowControlWindow=16777216"));
+  }
+
+  @Test
+  void testChannelShutsDownOwnEventLoop() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      for (TransportConfig config :
+          new TransportConfig[] {
+            TransportConfig.DEFAULT,
+            TransportConfig.bulkScans(),
+            TransportConfig.lowLatency(),
+            TransportConfig.builder().nativeTransport(false).eventLoopThreads(1).build()
+          }) {
+        ManagedChannel channel = config.newChannel(ENDPOINT, executor, CompressionConfig.NONE);
+        assertEquals("localhost:3000", channel.authority());
+        channel.shutdownNow();
+        assertTrue(channel.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(channel.isTerminated());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testChannelsShareEventLoopByDefault() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      boolean epoll = TransportConfig.isNativeTransportAvailable();
+      for (int i = 0; i < 2; i++) {
+        ManagedChannel channel =
+            TransportConfig.lowLatency().newChannel(ENDPOINT, executor, CompressionConfig.NONE);
+        channel.shutdownNow();
+        assertTrue(channel.awaitTermination(10, TimeUnit.SECONDS));
+      }
+      // closing the channels leaves the shared event loop running for the next one
+      assertFalse(TransportConfig.sharedEventLoopGroup(epoll).isShuttingDown());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
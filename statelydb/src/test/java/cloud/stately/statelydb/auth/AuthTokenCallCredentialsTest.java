@@ -0,0 +1,113 @@
+package cloud.stately.statelydb.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.grpc.CallCredentials.MetadataApplier;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for AuthTokenCallCredentials. */
+class AuthTokenCallCredentialsTest {
+
+  private static final Metadata.Key<String> AUTHORIZATION =
+      Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+  @Test
+  @DisplayName("Applies a ready token synchronously and reuses its headers")
+  void testReadyToken() {
+    FakeTokenProvider provider = new FakeTokenProvider();
+    provider.next = CompletableFuture.completedFuture("token-1");
+    AuthTokenCallCredentials credentials = new AuthTokenCallCredentials(provider);
+    List<Runnable> executed = new ArrayList<>();
+    Executor executor = executed::add;
+
+    RecordingApplier first = new RecordingApplier();
+    credentials.applyRequestMetadata(null, executor, first);
+    RecordingApplier second = new RecordingApplier();
+    credentials.applyRequestMetadata(null, executor, second);
+
+    assertEquals(0, executed.size());
+    assertEquals("Bearer token-1", first.headers.get(AUTHORIZATION));
+    assertSame(first.headers, second.headers);
+
+    provider.next = CompletableFuture.completedFuture("token-2");
+    RecordingApplier third = new RecordingApplier();
+    credentials.applyRequestMetadata(null, executor, third);
+    assertEquals("Bearer token-2", third.headers.get(AUTHORIZATION));
+    assertNotSame(first.headers, third.headers);
+  }
+
+  @Test
+  @DisplayName("Waits for a pending token on the application executor")
+  void testPendingToken() {
+    FakeTokenProvider provider = new FakeTokenProvider();
+    CompletableFuture<String> pending = new CompletableFuture<>();
+    provider.next = pending;
+    AuthTokenCallCredentials credentials = new AuthTokenCallCredentials(provider);
+    List<Runnable> executed = new ArrayList<>();
+
+    RecordingApplier applier = new RecordingApplier();
+    credentials.applyRequestMetadata(null, executed::add, applier);
+    assertNull(applier.headers);
+
+    pending.complete("token-1");
+    assertEquals(1, executed.size());
+    executed.get(0).run();
+    assertEquals("Bearer token-1", applier.headers.get(AUTHORIZATION));
+  }
+
+  @Test
+  @DisplayName("Fails the call when the token can't be fetched")
+  void testFailedToken() {
+    FakeTokenProvider provider = new FakeTokenProvider();
+    provider.next = CompletableFuture.failedFuture(new RuntimeException("boom"));
+    AuthTokenCallCredentials credentials = new AuthTokenCallCredentials(provider);
+
+    RecordingApplier applier = new RecordingApplier();
+    credentials.applyRequestMetadata(null, Runnable::run, applier);
+    assertNull(applier.headers);
+    assertNotNull(applier.failure);
+    assertEquals(Status.Code.UNAUTHENTICATED, applier.failure.getCode());
+  }
+
+  private static class FakeTokenProvider implements TokenProvider {
+    CompletableFuture<String> next;
+
+    @Override
+    public void start(URI uri) {}
+
+    @Override
+    public CompletableFuture<String> getToken(boolean force) {
+      return next;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static class RecordingApplier extends MetadataApplier {
+    Metadata headers;
+    Status failure;
+
+    @Override
+    public void apply(Metadata headers) {
+      this.headers = headers;
+    }
+
+    @Override
+    public void fail(Status status) {
+      this.failure = status;
+    }
+  }
+}
@@ -12,6 +12,7 @@ import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.Status;
 import java.net.URI;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -433,4 +434,64 @@ class AuthTokenProviderTest {
 
     server.shutdownNow();
   }
+
+  @Test
+  void testSoftExpiryDoesNotBlock() throws Exception {
+    AtomicInteger callCount = new AtomicInteger(0);
+    GetAuthTokenHandler handler =
+        (request, responseObserver) -> {
+          if (callCount.incrementAndGet() == 1) {
+            GetAuthTokenResponse response =
+                GetAuthTokenResponse.newBuilder().setAuthToken("1").setExpiresInS(2).build();
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+          }
+          // later refreshes never complete
+        };
+
+    withTestServer(
+        handler,
+        serverPort -> {
+          AuthTokenProvider provider =
+              AuthTokenProvider.builder(scheduler)
+                  .accessKey("valid-key")
+                  .refreshAheadFraction(0.25)
+                  .staleWhileRevalidate(Duration.ofSeconds(5))
+                  .build();
+          provider.start(new URI("http://localhost:" + serverPort));
+          assertEquals("1", provider.getToken().get());
+
+          // past the refresh window, the refresh is stuck but the token is still used
+          Thread.sleep(1000);
+          CompletableFuture<String> softExpired = provider.getToken();
+          assertTrue(softExpired.isDone());
+          assertEquals("1", softExpired.get());
+
+          // past expiry, the grace period keeps the token in use
+          Thread.sleep(1500);
+          CompletableFuture<String> stale = provider.getToken();
+          assertTrue(stale.isDone());
+          assertEquals("1", stale.get());
+          assertEquals(2, callCount.get());
+          provider.close();
+        });
+  }
+
+  @Test
+  void testInvalidRefreshSettings() {
+    assertThrows(
+        StatelyException.class,
+        () ->
+            AuthTokenProvider.builder(scheduler)
+                .accessKey("valid-key")
+                .refreshAheadFraction(1.0)
+                .build());
+    assertThrows(
+        StatelyException.class,
+        () ->
+            AuthTokenProvider.builder(scheduler)
+                .accessKey("valid-key")
+                .staleWhileRevalidate(Duration.ofSeconds(-1))
+                .build());
+  }
 }
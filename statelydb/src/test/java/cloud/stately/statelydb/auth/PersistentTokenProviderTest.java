@@ -0,0 +1,189 @@
+package cloud.stately.statelydb.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Unit tests for PersistentTokenProvider. */
+class PersistentTokenProviderTest {
+
+  private static final URI ENDPOINT = URI.create("https://us-west-2.api.stately.cloud:443");
+
+  @TempDir Path tempDir;
+
+  /** A provider that fetches a new token on start unless one was restored. */
+  private static class FakeTokenProvider implements TokenProvider {
+    final AtomicInteger fetches = new AtomicInteger();
+    volatile TokenState state;
+
+    @Override
+    public void start(URI uri) {
+      if (state == null) {
+        int fetch = fetches.incrementAndGet();
+        Instant now = Instant.now();
+        state = new TokenState("token-" + fetch, now.plusSeconds(3600), now.plusSeconds(3000));
+      }
+    }
+
+    @Override
+    public CompletableFuture<String> getToken(boolean force) {
+      return CompletableFuture.completedFuture(state.getToken());
+    }
+
+    @Override
+    public TokenState getTokenState() {
+      return state;
+    }
+
+    @Override
+    public void restoreTokenState(TokenState tokenState) {
+      state = tokenState;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  @Test
+  void testReusesSavedToken() throws Exception {
+    Path file = tempDir.resolve("cache").resolve("token");
+
+    FakeTokenProvider first = new FakeTokenProvider();
+    PersistentTokenProvider provider = new PersistentTokenProvider(first, file);
+    provider.start(ENDPOINT);
+    assertEquals("token-1", provider.getToken().get());
+    provider.close();
+    assertTrue(Files.exists(file));
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+    }
+
+    FakeTokenProvider second = new FakeTokenProvider();
+    PersistentTokenProvider restarted = new PersistentTokenProvider(second, file);
+    restarted.start(ENDPOINT);
+    assertEquals("token-1", restarted.getToken().get());
+    assertEquals(0, second.fetches.get());
+    restarted.close();
+  }
+
+  @Test
+  void testWritesOnExecutor() throws Exception {
+    Path file = tempDir.resolve("token");
+    List<Runnable> queued = new ArrayList<>();
+    FakeTokenProvider delegate = new FakeTokenProvider();
+    PersistentTokenProvider provider = new PersistentTokenProvider(delegate, file, queued::add);
+    provider.start(ENDPOINT);
+
+    assertEquals("token-1", provider.getToken().get());
+    assertEquals("token-1", provider.getToken().get());
+    assertEquals(1, queued.size());
+    assertTrue(Files.notExists(file));
+
+    queued.remove(0).run();
+    assertTrue(Files.readString(file).contains("token=token-1"));
+
+    // a newer token queued before the write runs is the one that is written
+    Instant now = Instant.now();
+    delegate.state = new TokenState("token-2", now.plusSeconds(3600), now.plusSeconds(3000));
+    provider.getToken().get();
+    delegate.state = new TokenState("token-3", now.plusSeconds(3600), now.plusSeconds(3000));
+    provider.getToken().get();
+    assertEquals(1, queued.size());
+    queued.remove(0).run();
+    assertTrue(Files.readString(file).contains("token=token-3"));
+
+    provider.close();
+    assertTrue(queued.isEmpty());
+  }
+
+  @Test
+  void testRestoresThroughSharedHandle() throws Exception {
+    Path file = tempDir.resolve("token");
+    PersistentTokenProvider provider = new PersistentTokenProvider(new FakeTokenProvider(), file);
+    provider.start(ENDPOINT);
+    provider.getToken().get();
+    provider.close();
+
+    FakeTokenProvider shared = new FakeTokenProvider();
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    try {
+      PersistentTokenProvider restarted =
+          new PersistentTokenProvider(
+              new SharedTokenProvider("persistent-test", scheduler, () -> shared), file);
+      restarted.start(ENDPOINT);
+      assertEquals("token-1", restarted.getToken().get());
+      assertEquals(0, shared.fetches.get());
+      restarted.close();
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  void testIgnoresTokenForOtherEndpoint() throws Exception {
+    Path file = tempDir.resolve("token");
+    PersistentTokenProvider provider = new PersistentTokenProvider(new FakeTokenProvider(), file);
+    provider.start(ENDPOINT);
+    provider.getToken().get();
+    provider.close();
+
+    FakeTokenProvider other = new FakeTokenProvider();
+    PersistentTokenProvider restarted = new PersistentTokenProvider(other, file);
+    restarted.start(URI.create("http://localhost:3000"));
+    assertEquals(1, other.fetches.get());
+    restarted.close();
+  }
+
+  @Test
+  void testIgnoresCorruptFile() throws Exception {
+    Path file = tempDir.resolve("token");
+    Files.writeString(file, "token=abc\nexpiresAt=soon\n");
+    FakeTokenProvider delegate = new FakeTokenProvider();
+    PersistentTokenProvider provider = new PersistentTokenProvider(delegate, file);
+    provider.start(ENDPOINT);
+    assertEquals(1, delegate.fetches.get());
+    assertEquals("token-1", provider.getToken().get());
+    provider.close();
+  }
+
+  @Test
+  void testWithoutTokenState() throws Exception {
+    Path file = tempDir.resolve("token");
+    FakeTokenProvider delegate = new FakeTokenProvider();
+    delegate.start(ENDPOINT);
+    TokenProvider stateless =
+        new TokenProvider() {
+          @Override
+          public void start(URI uri) {}
+
+          @Override
+          public CompletableFuture<String> getToken(boolean force) {
+            return delegate.getToken(force);
+          }
+
+          @Override
+          public void close() {}
+        };
+    PersistentTokenProvider provider = new PersistentTokenProvider(stateless, file);
+    provider.start(ENDPOINT);
+    assertEquals("token-1", provider.getToken().get());
+    provider.close();
+    assertNull(stateless.getTokenState());
+    assertTrue(Files.notExists(file));
+  }
+}
@@ -0,0 +1,133 @@
+package cloud.stately.statelydb.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for SharedTokenProvider. */
+class SharedTokenProviderTest {
+
+  private static final URI ENDPOINT = URI.create("https://us-west-2.api.stately.cloud:443");
+
+  private ScheduledExecutorService scheduler;
+  private AtomicInteger created;
+  private AtomicInteger closed;
+  private List<TokenState> restored;
+
+  @BeforeEach
+  void setUp() {
+    scheduler = Executors.newScheduledThreadPool(1);
+    created = new AtomicInteger();
+    closed = new AtomicInteger();
+    restored = new ArrayList<>();
+  }
+
+  @AfterEach
+  void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  private SharedTokenProvider handle(String accessKey) {
+    return new SharedTokenProvider(
+        accessKey,
+        scheduler,
+        () -> {
+          int id = created.incrementAndGet();
+          return new TokenProvider() {
+            @Override
+            public void start(URI uri) {}
+
+            @Override
+            public CompletableFuture<String> getToken(boolean force) {
+              return CompletableFuture.completedFuture("token-" + id);
+            }
+
+            @Override
+            public void restoreTokenState(TokenState tokenState) {
+              restored.add(tokenState);
+            }
+
+            @Override
+            public void close() {
+              closed.incrementAndGet();
+            }
+          };
+        });
+  }
+
+  @Test
+  void testSharesProviderUntilLastClose() throws Exception {
+    int openBefore = SharedTokenProvider.openProviderCount();
+    SharedTokenProvider first = handle("key-a");
+    SharedTokenProvider second = handle("key-a");
+    first.start(ENDPOINT);
+    second.start(ENDPOINT);
+
+    assertEquals(1, created.get());
+    assertEquals(openBefore + 1, SharedTokenProvider.openProviderCount());
+    assertEquals("token-1", second.getToken().get());
+
+    first.close();
+    first.close();
+    assertEquals(0, closed.get());
+    assertEquals("token-1", second.getToken().get());
+
+    second.close();
+    assertEquals(1, closed.get());
+    assertEquals(openBefore, SharedTokenProvider.openProviderCount());
+  }
+
+  @Test
+  void testSeparatesAccessKeysAndEndpoints() throws Exception {
+    SharedTokenProvider first = handle("key-a");
+    SharedTokenProvider second = handle("key-b");
+    SharedTokenProvider third = handle("key-a");
+    first.start(ENDPOINT);
+    second.start(ENDPOINT);
+    third.start(URI.create("http://localhost:3000"));
+
+    assertEquals(3, created.get());
+
+    first.close();
+    second.close();
+    third.close();
+    assertEquals(3, closed.get());
+  }
+
+  @Test
+  void testRestoresTokenOnlyWhenCreatingProvider() throws Exception {
+    Instant now = Instant.now();
+    TokenState saved = new TokenState("saved", now.plusSeconds(3600), now.plusSeconds(3000));
+    SharedTokenProvider first = handle("key-a");
+    first.restoreTokenState(saved);
+    first.start(ENDPOINT);
+    assertEquals(List.of(saved), restored);
+
+    // the provider is already running, so its token is kept
+    SharedTokenProvider second = handle("key-a");
+    second.restoreTokenState(saved);
+    second.start(ENDPOINT);
+    assertEquals(1, restored.size());
+
+    first.close();
+    second.close();
+  }
+
+  @Test
+  void testFailsBeforeStart() {
+    SharedTokenProvider provider = handle("key-a");
+    assertThrows(ExecutionException.class, () -> provider.getToken().get());
+  }
+}
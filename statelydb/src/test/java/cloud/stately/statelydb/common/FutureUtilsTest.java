@@ -0,0 +1,53 @@
+package cloud.stately.statelydb.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for FutureUtils. */
+class FutureUtilsTest {
+
+  @Test
+  void testCompleteOnRunsDependentsOnExecutor() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "callbacks"));
+    try {
+      CompletableFuture<String> source = new CompletableFuture<>();
+      CompletableFuture<String> thread =
+          FutureUtils.completeOn(source, executor)
+              .thenApply(v -> v + "@" + Thread.currentThread().getName());
+      source.complete("done");
+      assertEquals("done@callbacks", thread.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testCompleteOnPropagatesFailure() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CompletableFuture<String> source = new CompletableFuture<>();
+      CompletableFuture<String> handedOff = FutureUtils.completeOn(source, executor);
+      source.completeExceptionally(new IllegalStateException("boom"));
+      ExecutionException e =
+          assertThrows(ExecutionException.class, () -> handedOff.get(5, TimeUnit.SECONDS));
+      assertEquals(IllegalStateException.class, e.getCause().getClass());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testCompleteOnDirectExecutorReturnsSameFuture() {
+    CompletableFuture<String> source = new CompletableFuture<>();
+    assertSame(source, FutureUtils.completeOn(source, MoreExecutors.directExecutor()));
+  }
+}
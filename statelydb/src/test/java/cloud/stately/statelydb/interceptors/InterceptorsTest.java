@@ -0,0 +1,78 @@
+package cloud.stately.statelydb.interceptors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for Interceptors. */
+class InterceptorsTest {
+
+  /** Appends its name to a shared log when a call is created and when it starts. */
+  private static class NamedInterceptor implements ClientInterceptor {
+    private final String name;
+    private final List<String> log;
+
+    NamedInterceptor(String name, List<String> log) {
+      this.name = name;
+      this.log = log;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      log.add("intercept " + name);
+      return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+          next.newCall(method, callOptions)) {
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+          log.add("start " + name);
+          super.start(responseListener, headers);
+        }
+      };
+    }
+  }
+
+  @Test
+  void testFirstInterceptorRunsFirst() {
+    List<String> log = new ArrayList<>();
+    RecordingChannel channel = new RecordingChannel();
+    Channel intercepted =
+        Interceptors.apply(
+            channel,
+            List.of(
+                new NamedInterceptor("first", log),
+                new NamedInterceptor("second", log),
+                new NamedInterceptor("third", log)));
+
+    intercepted
+        .newCall(RecordingChannel.METHOD, CallOptions.DEFAULT)
+        .start(new ClientCall.Listener<String>() {}, new Metadata());
+
+    assertEquals(
+        List.of(
+            "intercept first",
+            "intercept second",
+            "intercept third",
+            "start first",
+            "start second",
+            "start third"),
+        log);
+    assertEquals(1, channel.calls.size());
+  }
+
+  @Test
+  void testNoInterceptorsReturnsChannel() {
+    RecordingChannel channel = new RecordingChannel();
+    assertSame(channel, Interceptors.apply(channel, List.of()));
+  }
+}
@@ -0,0 +1,84 @@
+package cloud.stately.statelydb.interceptors;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Channel that never sends anything. It records the headers each call starts with and keeps the
+ * call's listener, so tests can play back the server's response.
+ */
+class RecordingChannel extends Channel {
+
+  /** A unary method with String messages. */
+  static final MethodDescriptor<String, String> METHOD =
+      MethodDescriptor.<String, String>newBuilder()
+          .setType(MethodDescriptor.MethodType.UNARY)
+          .setFullMethodName("test.Service/Method")
+          .setRequestMarshaller(new StringMarshaller())
+          .setResponseMarshaller(new StringMarshaller())
+          .build();
+
+  /** The calls started on this channel, in order. */
+  final List<RecordedCall> calls = new ArrayList<>();
+
+  /** A call started on a RecordingChannel. */
+  static class RecordedCall extends ClientCall<String, String> {
+    Listener<String> listener;
+    Metadata headers;
+    final List<String> sent = new ArrayList<>();
+
+    @Override
+    public void start(Listener<String> responseListener, Metadata headers) {
+      this.listener = responseListener;
+      this.headers = headers;
+    }
+
+    @Override
+    public void request(int numMessages) {}
+
+    @Override
+    public void cancel(String message, Throwable cause) {}
+
+    @Override
+    public void halfClose() {}
+
+    @Override
+    public void sendMessage(String message) {
+      sent.add(message);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+      MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+    RecordedCall call = new RecordedCall();
+    calls.add(call);
+    return (ClientCall<ReqT, RespT>) call;
+  }
+
+  @Override
+  public String authority() {
+    return "localhost";
+  }
+
+  private static class StringMarshaller implements MethodDescriptor.Marshaller<String> {
+    @Override
+    public InputStream stream(String value) {
+      return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String parse(InputStream stream) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
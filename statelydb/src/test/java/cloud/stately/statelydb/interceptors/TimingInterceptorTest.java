@@ -0,0 +1,79 @@
+package cloud.stately.statelydb.interceptors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for TimingInterceptor. */
+class TimingInterceptorTest {
+
+  /** One call to the recorder. */
+  private static class Recorded {
+    final MethodDescriptor<?, ?> method;
+    final Status.Code code;
+    final long durationNanos;
+    final int messagesReceived;
+
+    Recorded(
+        MethodDescriptor<?, ?> method, Status.Code code, long durationNanos, int messagesReceived) {
+      this.method = method;
+      this.code = code;
+      this.durationNanos = durationNanos;
+      this.messagesReceived = messagesReceived;
+    }
+  }
+
+  @Test
+  void testRecordsCallOnClose() throws Exception {
+    List<Recorded> recorded = new ArrayList<>();
+    List<String> received = new ArrayList<>();
+    List<Status> closed = new ArrayList<>();
+    RecordingChannel channel = new RecordingChannel();
+    TimingInterceptor interceptor =
+        new TimingInterceptor(
+            (method, code, nanos, messages) ->
+                recorded.add(new Recorded(method, code, nanos, messages)));
+
+    interceptor
+        .interceptCall(RecordingChannel.METHOD, CallOptions.DEFAULT, channel)
+        .start(
+            new ClientCall.Listener<String>() {
+              @Override
+              public void onMessage(String message) {
+                received.add(message);
+              }
+
+              @Override
+              public void onClose(Status status, Metadata trailers) {
+                closed.add(status);
+              }
+            },
+            new Metadata());
+
+    ClientCall.Listener<String> listener = channel.calls.get(0).listener;
+    listener.onMessage("one");
+    listener.onMessage("two");
+    assertTrue(recorded.isEmpty());
+    Thread.sleep(5);
+    listener.onClose(Status.DEADLINE_EXCEEDED, new Metadata());
+
+    assertEquals(1, recorded.size());
+    Recorded call = recorded.get(0);
+    assertSame(RecordingChannel.METHOD, call.method);
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, call.code);
+    assertEquals(2, call.messagesReceived);
+    assertTrue(call.durationNanos >= 5_000_000L, "duration: " + call.durationNanos);
+    // the wrapped listener still sees everything
+    assertEquals(List.of("one", "two"), received);
+    assertEquals(1, closed.size());
+  }
+}
@@ -0,0 +1,57 @@
+package cloud.stately.statelydb.interceptors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for TraceContextInterceptor. */
+class TraceContextInterceptorTest {
+
+  private static final String TRACEPARENT =
+      "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+  private static Metadata startCall(TraceContextInterceptor interceptor) {
+    RecordingChannel channel = new RecordingChannel();
+    Channel intercepted = Interceptors.apply(channel, List.of(interceptor));
+    intercepted
+        .newCall(RecordingChannel.METHOD, CallOptions.DEFAULT)
+        .start(new ClientCall.Listener<String>() {}, new Metadata());
+    return channel.calls.get(0).headers;
+  }
+
+  @Test
+  void testAddsHeaders() {
+    Metadata headers =
+        startCall(new TraceContextInterceptor(() -> TRACEPARENT, () -> "vendor=value"));
+    assertEquals(TRACEPARENT, headers.get(TraceContextInterceptor.TRACEPARENT));
+    assertEquals("vendor=value", headers.get(TraceContextInterceptor.TRACESTATE));
+  }
+
+  @Test
+  void testOmitsMissingHeaders() {
+    Metadata headers = startCall(new TraceContextInterceptor(() -> null, () -> ""));
+    assertFalse(headers.containsKey(TraceContextInterceptor.TRACEPARENT));
+    assertFalse(headers.containsKey(TraceContextInterceptor.TRACESTATE));
+
+    headers = startCall(new TraceContextInterceptor(() -> TRACEPARENT));
+    assertEquals(TRACEPARENT, headers.get(TraceContextInterceptor.TRACEPARENT));
+    assertNull(headers.get(TraceContextInterceptor.TRACESTATE));
+  }
+
+  @Test
+  void testReadsSuppliersPerCall() {
+    AtomicReference<String> current = new AtomicReference<>("00-a-b-01");
+    TraceContextInterceptor interceptor = new TraceContextInterceptor(current::get);
+    assertEquals("00-a-b-01", startCall(interceptor).get(TraceContextInterceptor.TRACEPARENT));
+    current.set("00-c-d-01");
+    assertEquals("00-c-d-01", startCall(interceptor).get(TraceContextInterceptor.TRACEPARENT));
+  }
+}
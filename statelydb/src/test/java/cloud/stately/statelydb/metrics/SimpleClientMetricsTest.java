@@ -0,0 +1,93 @@
+package cloud.stately.statelydb.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.grpc.Status;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for SimpleClientMetrics. */
+class SimpleClientMetricsTest {
+
+  @Test
+  @DisplayName("Tracks calls in flight")
+  void testInFlight() {
+    SimpleClientMetrics metrics = new SimpleClientMetrics();
+    metrics.callStarted(Operation.GET);
+    metrics.callStarted(Operation.GET);
+    assertEquals(2, metrics.getInFlight(Operation.GET));
+    metrics.callFinished(Operation.GET, Status.Code.OK, 1000, 1, 10);
+    assertEquals(1, metrics.getInFlight(Operation.GET));
+    assertEquals(0, metrics.getInFlight(Operation.PUT));
+  }
+
+  @Test
+  @DisplayName("Counts calls, items and bytes per operation and status code")
+  void testCounters() {
+    SimpleClientMetrics metrics = new SimpleClientMetrics();
+    metrics.callStarted(Operation.BEGIN_LIST);
+    metrics.callFinished(Operation.BEGIN_LIST, Status.Code.OK, 1000, 5, 500);
+    metrics.callStarted(Operation.BEGIN_LIST);
+    metrics.callFinished(Operation.BEGIN_LIST, Status.Code.NOT_FOUND, 1000, 0, 0);
+    metrics.partialResult(Operation.BEGIN_LIST, 3, 300);
+    metrics.partialResult(Operation.BEGIN_LIST, 2, 200);
+    metrics.retry(Operation.GET_AUTH_TOKEN, 1);
+
+    assertEquals(1, metrics.getCallCount(Operation.BEGIN_LIST, Status.Code.OK));
+    assertEquals(1, metrics.getCallCount(Operation.BEGIN_LIST, Status.Code.NOT_FOUND));
+    assertEquals(0, metrics.getCallCount(Operation.GET, Status.Code.OK));
+    assertEquals(5, metrics.getItems(Operation.BEGIN_LIST));
+    assertEquals(500, metrics.getBytes(Operation.BEGIN_LIST));
+    assertEquals(2, metrics.getPartialResults(Operation.BEGIN_LIST));
+    assertEquals(1, metrics.getRetries(Operation.GET_AUTH_TOKEN));
+  }
+
+  @Test
+  @DisplayName("Adds up wire and uncompressed response sizes")
+  void testBytesTransferred() {
+    SimpleClientMetrics metrics = new SimpleClientMetrics();
+    metrics.bytesTransferred(Operation.BEGIN_SCAN, "gzip", 10, 20, 100, 400);
+    metrics.bytesTransferred(Operation.BEGIN_SCAN, "gzip", 10, 20, 50, 200);
+    assertEquals(150, metrics.getWireBytesReceived(Operation.BEGIN_SCAN));
+    assertEquals(600, metrics.getUncompressedBytesReceived(Operation.BEGIN_SCAN));
+    assertEquals(0, metrics.getWireBytesReceived(Operation.GET));
+  }
+
+  @Test
+  @DisplayName("Buckets latencies by power of two")
+  void testBuckets() {
+    assertEquals(0, SimpleClientMetrics.bucketFor(0));
+    assertEquals(1, SimpleClientMetrics.bucketFor(1));
+    assertEquals(2, SimpleClientMetrics.bucketFor(2));
+    assertEquals(2, SimpleClientMetrics.bucketFor(3));
+    assertEquals(11, SimpleClientMetrics.bucketFor(1024));
+    assertEquals(
+        SimpleClientMetrics.LATENCY_BUCKETS - 1, SimpleClientMetrics.bucketFor(Long.MAX_VALUE));
+  }
+
+  @Test
+  @DisplayName("Estimates latency quantiles from the histogram")
+  void testQuantiles() {
+    SimpleClientMetrics metrics = new SimpleClientMetrics();
+    assertEquals(0, metrics.getLatencyQuantileNanos(Operation.GET, Status.Code.OK, 0.5));
+    for (int i = 0; i < 99; i++) {
+      metrics.callFinished(Operation.GET, Status.Code.OK, 1000, 1, 10);
+    }
+    metrics.callFinished(Operation.GET, Status.Code.OK, 1_000_000, 1, 10);
+
+    assertEquals(1024, metrics.getLatencyQuantileNanos(Operation.GET, Status.Code.OK, 0.5));
+    assertEquals(1024, metrics.getLatencyQuantileNanos(Operation.GET, Status.Code.OK, 0.99));
+    assertEquals(1 << 20, metrics.getLatencyQuantileNanos(Operation.GET, Status.Code.OK, 1.0));
+  }
+
+  @Test
+  @DisplayName("Records token refreshes by outcome")
+  void testTokenRefresh() {
+    SimpleClientMetrics metrics = new SimpleClientMetrics();
+    metrics.tokenRefresh(1000, true);
+    metrics.tokenRefresh(1000, false);
+    metrics.tokenRefresh(1000, false);
+    assertEquals(1, metrics.getTokenRefreshHistogram(true)[SimpleClientMetrics.bucketFor(1000)]);
+    assertEquals(2, metrics.getTokenRefreshHistogram(false)[SimpleClientMetrics.bucketFor(1000)]);
+  }
+}
@@ -1,7 +1,11 @@
 package cloud.stately.statelydb.schema;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
+import java.util.Base64;
+import java.util.Random;
 import java.util.UUID;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -70,4 +74,91 @@ class KeyPathBuilderTest {
   void testIntegerInPath() {
     assertEquals(new KeyPathBuilder().with("number", 1234).build(), "/number-1234");
   }
+
+  @Test
+  @DisplayName("Escapes every slash in string IDs")
+  void testEscapesAllSlashes() {
+    assertEquals("/foo-%/a%/%/b%/", new KeyPathBuilder().with("foo", "/a//b/").build());
+    assertEquals("/foo-", new KeyPathBuilder().with("foo", "").build());
+  }
+
+  @Test
+  @DisplayName("Formats UUIDs like UUID.toString")
+  void testUuidMatchesToString() {
+    for (int i = 0; i < 100; i++) {
+      UUID uuid = UUID.randomUUID();
+      assertEquals("/foo-" + uuid, new KeyPathBuilder().with("foo", uuid).build());
+    }
+    UUID max = new UUID(-1L, -1L);
+    assertEquals("/foo-" + max, new KeyPathBuilder().with("foo", max).build());
+  }
+
+  @Test
+  @DisplayName("Encodes byte arrays like the unpadded URL-safe base64 encoder")
+  void testByteArrayMatchesBase64() {
+    Random random = new Random(42);
+    for (int length = 0; length < 20; length++) {
+      byte[] bytes = new byte[length];
+      random.nextBytes(bytes);
+      assertEquals(
+          "/data-" + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes),
+          new KeyPathBuilder().with("data", bytes).build());
+    }
+  }
+
+  @Test
+  @DisplayName("Supports longs")
+  void testLongInPath() {
+    assertEquals(
+        "/number-" + Long.MIN_VALUE, new KeyPathBuilder().with("number", Long.MIN_VALUE).build());
+  }
+
+  @Test
+  @DisplayName("Can be reset and reused")
+  void testReset() {
+    KeyPathBuilder builder = new KeyPathBuilder(16);
+    assertEquals("/foo-bar", builder.with("foo", "bar").build());
+    assertEquals("/baz-1", builder.reset().with("baz", 1).build());
+    assertEquals("/", builder.reset().build());
+  }
+
+  @Test
+  @DisplayName("Reuses a reset builder per thread")
+  void testLocal() {
+    KeyPathBuilder builder = KeyPathBuilder.local();
+    assertEquals("/foo-bar", builder.with("foo", "bar").build());
+    KeyPathBuilder again = KeyPathBuilder.local();
+    assertSame(builder, again);
+    assertEquals("/", again.build());
+  }
+
+  @Test
+  @DisplayName("Nested use of the per-thread builder does not corrupt the outer key path")
+  void testLocalNested() {
+    KeyPathBuilder outer = KeyPathBuilder.local();
+    String keyPath =
+        outer
+            .with("cust", 1)
+            .with("parent", KeyPathBuilder.local().with("order", 2).build())
+            .with("item", 3)
+            .build();
+    assertEquals("/cust-1/parent-%/order-2/item-3", keyPath);
+    // the nested builder became the thread's builder, and is reused once it has been built
+    KeyPathBuilder again = KeyPathBuilder.local();
+    assertNotSame(outer, again);
+    assertEquals("/", again.build());
+    assertSame(again, KeyPathBuilder.local());
+    assertEquals("/", again.build());
+  }
+
+  @Test
+  @DisplayName("An abandoned per-thread builder is replaced once instead of disabling reuse")
+  void testLocalAbandoned() {
+    KeyPathBuilder abandoned = KeyPathBuilder.local().with("cust", 1);
+    KeyPathBuilder replacement = KeyPathBuilder.local();
+    assertNotSame(abandoned, replacement);
+    assertEquals("/order-2", replacement.with("order", 2).build());
+    assertSame(replacement, KeyPathBuilder.local());
+    assertEquals("/", replacement.build());
+  }
 }
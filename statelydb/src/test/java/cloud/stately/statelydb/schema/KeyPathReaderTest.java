@@ -0,0 +1,83 @@
+package cloud.stately.statelydb.schema;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.statelydb.common.StatelyException;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for KeyPathReader. */
+class KeyPathReaderTest {
+
+  @Test
+  @DisplayName("Reads back every ID type written by KeyPathBuilder")
+  void testRoundTrip() {
+    UUID uuid = UUID.randomUUID();
+    byte[] bytes = new byte[] {(byte) 0xfb, 0, 1, 2};
+    String keyPath =
+        new KeyPathBuilder()
+            .with("cust", uuid)
+            .with("name", "a/b-c")
+            .with("data", bytes)
+            .with("order", -42L)
+            .with("items")
+            .build();
+
+    KeyPathReader reader = new KeyPathReader(keyPath);
+    assertTrue(reader.next());
+    assertEquals("cust", reader.namespace().toString());
+    assertEquals(uuid, reader.getUuidId());
+    assertTrue(reader.next());
+    assertTrue(reader.isNamespace("name"));
+    assertEquals("a%/b-c", reader.rawId().toString());
+    assertEquals("a/b-c", reader.getStringId());
+    assertTrue(reader.next());
+    assertArrayEquals(bytes, reader.getBytesId());
+    assertTrue(reader.next());
+    assertEquals(-42L, reader.getLongId());
+    assertEquals(-42, reader.getIntId());
+    assertTrue(reader.next());
+    assertTrue(reader.isNamespace("items"));
+    assertFalse(reader.hasId());
+    assertEquals(4, reader.getSegmentIndex());
+    assertFalse(reader.hasNext());
+    assertFalse(reader.next());
+  }
+
+  @Test
+  @DisplayName("Can be reused across key paths")
+  void testReset() {
+    KeyPathReader reader = new KeyPathReader();
+    reader.reset("/jedi-luke");
+    assertTrue(reader.next());
+    assertEquals("luke", reader.getStringId());
+    reader.reset("/");
+    assertFalse(reader.next());
+    assertThrows(IllegalStateException.class, reader::namespace);
+  }
+
+  @Test
+  @DisplayName("Returns the namespace of the last segment")
+  void testLastNamespace() {
+    assertEquals("order", KeyPathReader.lastNamespace("/cust-1/order-2"));
+    assertEquals("", KeyPathReader.lastNamespace("/"));
+  }
+
+  @Test
+  @DisplayName("Rejects invalid key paths and IDs")
+  void testInvalid() {
+    assertThrows(StatelyException.class, () -> new KeyPathReader("cust-1"));
+
+    KeyPathReader reader = new KeyPathReader("/cust-abc/items");
+    assertTrue(reader.next());
+    assertThrows(StatelyException.class, reader::getLongId);
+    assertThrows(StatelyException.class, reader::getUuidId);
+    assertTrue(reader.next());
+    assertThrows(StatelyException.class, reader::getStringId);
+  }
+}
@@ -0,0 +1,118 @@
+package cloud.stately.statelydb.schema;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.statelydb.common.StatelyException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for KeyPathTemplate. */
+class KeyPathTemplateTest {
+
+  private static final KeyPathTemplate ORDER =
+      KeyPathTemplate.compile("/cust-{id:uuid}/order-{oid:long}");
+
+  @Test
+  @DisplayName("Formats key paths the same way as KeyPathBuilder")
+  void testFormatMatchesBuilder() {
+    UUID customer = UUID.randomUUID();
+    assertEquals(
+        new KeyPathBuilder().with("cust", customer).with("order", 42L).build(),
+        ORDER.format(customer, 42L));
+
+    KeyPathTemplate mixed = KeyPathTemplate.compile("/name-{name}/data-{data:bytes}/items");
+    byte[] data = new byte[] {0, 1, 2, 3};
+    assertEquals(
+        new KeyPathBuilder().with("name", "a/b").with("data", data).with("items").build(),
+        mixed.format("a/b", data));
+  }
+
+  @Test
+  @DisplayName("Computes the exact key path length")
+  void testLength() {
+    UUID customer = UUID.randomUUID();
+    assertEquals(ORDER.format(customer, -123L).length(), ORDER.length(customer, -123L));
+    assertEquals(
+        ORDER.format(customer, Long.MIN_VALUE).length(), ORDER.length(customer, Long.MIN_VALUE));
+  }
+
+  @Test
+  @DisplayName("Writes into a caller-supplied array")
+  void testWriteTo() {
+    KeyPathTemplate template = KeyPathTemplate.compile("/jedi-{name}");
+    char[] out = new char[20];
+    int end = template.writeTo(out, 2, "luke");
+    assertEquals(12, end);
+    assertEquals("/jedi-luke", new String(out, 2, end - 2));
+  }
+
+  @Test
+  @DisplayName("Formats UTF-8 bytes")
+  void testFormatUtf8() {
+    KeyPathTemplate template = KeyPathTemplate.compile("/jedi-{name}");
+    assertArrayEquals("/jedi-luke".getBytes(StandardCharsets.UTF_8), template.formatUtf8("luke"));
+    assertArrayEquals(
+        "/jedi-l\u00fcke%/\u2603".getBytes(StandardCharsets.UTF_8),
+        template.formatUtf8("l\u00fcke/\u2603"));
+  }
+
+  @Test
+  @DisplayName("Accepts ints and enums for numeric slots")
+  void testNumericIds() {
+    KeyPathTemplate template = KeyPathTemplate.compile("/n-{n:int}");
+    assertEquals("/n-7", template.format(7));
+    assertEquals("/n-1", template.format(Status.B));
+  }
+
+  @Test
+  @DisplayName("Parses key paths back into typed IDs")
+  void testMatch() {
+    UUID customer = UUID.randomUUID();
+    KeyPathTemplate.Match match = ORDER.match(ORDER.format(customer, -42L));
+    assertEquals(customer, match.getUuid(0));
+    assertEquals(-42L, match.getLong(1));
+    assertEquals(customer, match.get("id"));
+
+    KeyPathTemplate mixed = KeyPathTemplate.compile("/name-{name}/data-{data:bytes}");
+    byte[] data = new byte[] {(byte) 0xff, 1, 2, 3, 4};
+    KeyPathTemplate.Match mixedMatch = mixed.match(mixed.format("a/b%c", data));
+    assertEquals("a/b%c", mixedMatch.getString(0));
+    assertArrayEquals(data, mixedMatch.getBytes(1));
+  }
+
+  @Test
+  @DisplayName("Rejects key paths of a different shape")
+  void testNoMatch() {
+    assertNull(ORDER.match("/cust-" + UUID.randomUUID()));
+    assertNull(ORDER.match("/cust-" + UUID.randomUUID() + "/order-1/extra-2"));
+    assertNull(ORDER.match("/cust-not-a-uuid/order-1"));
+    assertNull(ORDER.match("/cust-" + UUID.randomUUID() + "/order-abc"));
+    assertNull(ORDER.match("/cust-" + UUID.randomUUID() + "/order-99999999999999999999"));
+    assertFalse(ORDER.matches("/other-1"));
+    assertTrue(ORDER.matches("/cust-" + UUID.randomUUID() + "/order-1"));
+  }
+
+  @Test
+  @DisplayName("Rejects invalid patterns and IDs")
+  void testInvalid() {
+    assertThrows(StatelyException.class, () -> KeyPathTemplate.compile("cust-{id}"));
+    assertThrows(StatelyException.class, () -> KeyPathTemplate.compile("/cust-{id"));
+    assertThrows(StatelyException.class, () -> KeyPathTemplate.compile("/cust-{id}x"));
+    assertThrows(StatelyException.class, () -> KeyPathTemplate.compile("/cust-{id:float}"));
+    assertThrows(StatelyException.class, () -> KeyPathTemplate.compile("/a-{id}/b-{id}"));
+    assertThrows(StatelyException.class, () -> ORDER.format(UUID.randomUUID()));
+    assertThrows(StatelyException.class, () -> ORDER.format("not a uuid", 1L));
+  }
+
+  private enum Status {
+    A,
+    B
+  }
+}
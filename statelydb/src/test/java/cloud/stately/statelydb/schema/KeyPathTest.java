@@ -0,0 +1,74 @@
+package cloud.stately.statelydb.schema;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.statelydb.common.StatelyException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for KeyPath. */
+class KeyPathTest {
+
+  @Test
+  @DisplayName("Converts to and from strings and UTF-8")
+  void testRoundTrip() {
+    for (String keyPath :
+        new String[] {"/", "/cust-1", "/cust-1/order-2/items", "/name-a%/b/j\u00fcrg-\u2603"}) {
+      KeyPath parsed = KeyPath.of(keyPath);
+      assertEquals(keyPath, parsed.toString());
+      byte[] utf8 = keyPath.getBytes(StandardCharsets.UTF_8);
+      assertArrayEquals(utf8, parsed.toUtf8());
+      assertEquals(utf8.length, parsed.utf8Length());
+      assertEquals(parsed, KeyPath.fromUtf8(utf8));
+    }
+  }
+
+  @Test
+  @DisplayName("Works as a map key")
+  void testEquality() {
+    Map<KeyPath, String> map = new HashMap<>();
+    map.put(KeyPath.of("/cust-1/order-2"), "order");
+    assertEquals("order", map.get(KeyPath.of("/cust-1/order-2")));
+    assertNotEquals(KeyPath.of("/cust-1/order-2"), KeyPath.of("/cust-2/order-2"));
+    assertNotEquals(KeyPath.of("/cust-1/order-2"), KeyPath.of("/cust-1"));
+  }
+
+  @Test
+  @DisplayName("Shares parent key paths")
+  void testSharedPrefixes() {
+    KeyPath first = KeyPath.of("/cust-1/order-2");
+    KeyPath second = KeyPath.of("/cust-1/order-3");
+    assertSame(first.getParent(), second.getParent());
+    assertEquals(KeyPath.of("/cust-1"), first.getParent());
+    assertSame(KeyPath.ROOT, first.getParent().getParent());
+  }
+
+  @Test
+  @DisplayName("Navigates segments and prefixes")
+  void testStructure() {
+    KeyPath keyPath = KeyPath.of("/cust-1/order-2/items");
+    assertEquals(3, keyPath.getSegmentCount());
+    assertEquals(0, KeyPath.ROOT.getSegmentCount());
+    assertTrue(KeyPath.of("/cust-1").isPrefixOf(keyPath));
+    assertTrue(keyPath.isPrefixOf(keyPath));
+    assertTrue(KeyPath.ROOT.isPrefixOf(keyPath));
+    assertFalse(KeyPath.of("/cust-2").isPrefixOf(keyPath));
+    assertFalse(keyPath.isPrefixOf(KeyPath.of("/cust-1")));
+  }
+
+  @Test
+  @DisplayName("Rejects key paths without a leading slash")
+  void testInvalid() {
+    assertThrows(StatelyException.class, () -> KeyPath.of("cust-1"));
+    assertThrows(StatelyException.class, () -> KeyPath.of(""));
+  }
+}
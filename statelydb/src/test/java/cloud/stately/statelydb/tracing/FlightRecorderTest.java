@@ -0,0 +1,119 @@
+package cloud.stately.statelydb.tracing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.statelydb.common.StatelyException;
+import cloud.stately.statelydb.metrics.Operation;
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for FlightRecorder. */
+class FlightRecorderTest {
+
+  @Test
+  @DisplayName("Records the details of each call")
+  void testRecordsCall() {
+    FlightRecorder recorder = FlightRecorder.builder().build();
+    Span span = recorder.startSpan(Operation.GET_AUTH_TOKEN);
+    assertTrue(span.isRecording());
+    span.setAttribute(SpanAttributes.KEY_PATH, "/jedi-luke");
+    span.event(TraceEvent.RETRY, 1, 0, 0);
+    span.event(TraceEvent.RETRY, 2, 0, 0);
+    span.end(Status.Code.OK, 3, 100);
+
+    List<CallRecord> calls = recorder.getRecentCalls();
+    assertEquals(1, calls.size());
+    CallRecord call = calls.get(0);
+    assertEquals(Operation.GET_AUTH_TOKEN, call.getOperation());
+    assertEquals("/jedi-luke", call.getKeyPath());
+    assertEquals(Status.Code.OK, call.getCode());
+    assertEquals(3, call.getItems());
+    assertEquals(100, call.getBytes());
+    assertEquals(2, call.getRetries());
+    assertTrue(call.getDurationNanos() >= 0);
+  }
+
+  @Test
+  @DisplayName("Keeps only the most recent calls, oldest first")
+  void testRingOverwrites() {
+    FlightRecorder recorder = FlightRecorder.builder().capacity(4).build();
+    for (int i = 0; i < 10; i++) {
+      recorder.startSpan(Operation.GET).end(Status.Code.OK, i, 0);
+    }
+
+    List<CallRecord> calls = recorder.getRecentCalls();
+    assertEquals(4, calls.size());
+    for (int i = 0; i < 4; i++) {
+      assertEquals(6 + i, calls.get(i).getItems());
+      assertEquals(6 + i, calls.get(i).getSequence());
+    }
+    assertEquals(10, recorder.getRecordedCount());
+  }
+
+  @Test
+  @DisplayName("Rounds capacity up to a power of two")
+  void testCapacityRounding() {
+    FlightRecorder recorder = FlightRecorder.builder().capacity(3).build();
+    for (int i = 0; i < 10; i++) {
+      recorder.startSpan(Operation.GET).end(Status.Code.OK, 0, 0);
+    }
+    assertEquals(4, recorder.getRecentCalls().size());
+  }
+
+  @Test
+  @DisplayName("Logs calls at or above the slow-call threshold")
+  void testSlowCalls() throws Exception {
+    List<CallRecord> reported = new ArrayList<>();
+    FlightRecorder recorder =
+        FlightRecorder.builder()
+            .slowCallThreshold(Duration.ofMillis(20))
+            .slowCallListener(reported::add)
+            .build();
+
+    recorder.startSpan(Operation.PUT).end(Status.Code.OK, 1, 0);
+    Span slow = recorder.startSpan(Operation.BEGIN_LIST);
+    Thread.sleep(30);
+    slow.end(Status.Code.OK, 1, 0);
+
+    assertEquals(2, recorder.getRecentCalls().size());
+    assertEquals(1, recorder.getSlowCalls().size());
+    assertEquals(Operation.BEGIN_LIST, recorder.getSlowCalls().get(0).getOperation());
+    assertEquals(1, reported.size());
+    assertNull(reported.get(0).getKeyPath());
+  }
+
+  @Test
+  @DisplayName("Disables the slow-call log with a zero threshold")
+  void testSlowCallsDisabled() {
+    FlightRecorder recorder = FlightRecorder.builder().slowCallThreshold(Duration.ZERO).build();
+    recorder.startSpan(Operation.PUT).end(Status.Code.OK, 1, 0);
+    assertEquals(0, recorder.getSlowCalls().size());
+  }
+
+  @Test
+  @DisplayName("Dumps recent and slow calls as text")
+  void testDump() {
+    FlightRecorder recorder = FlightRecorder.builder().build();
+    Span span = recorder.startSpan(Operation.DELETE);
+    span.setAttribute(SpanAttributes.KEY_PATH, "/jedi-luke/equipment-lightsaber");
+    span.end(Status.Code.NOT_FOUND, 0, 0);
+
+    String dump = recorder.dump();
+    assertTrue(dump.startsWith("Recent calls (1 of 1):\n"));
+    assertTrue(dump.contains("DELETE /jedi-luke/equipment-lightsaber NOT_FOUND"));
+    assertTrue(dump.contains("Slow calls (>= 1000ms, 0):\n"));
+  }
+
+  @Test
+  @DisplayName("Rejects a capacity that is not positive")
+  void testInvalidCapacity() {
+    assertThrows(StatelyException.class, () -> FlightRecorder.builder().capacity(0).build());
+  }
+}
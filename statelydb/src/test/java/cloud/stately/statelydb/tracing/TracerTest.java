@@ -0,0 +1,75 @@
+package cloud.stately.statelydb.tracing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cloud.stately.statelydb.metrics.Operation;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for Tracer. */
+class TracerTest {
+
+  /** A tracer that logs what its spans are told. */
+  private static class LoggingTracer implements Tracer {
+    final List<String> log = new ArrayList<>();
+
+    @Override
+    public Span startSpan(Operation operation) {
+      log.add("start " + operation);
+      return new Span() {
+        @Override
+        public boolean isRecording() {
+          return true;
+        }
+
+        @Override
+        public void setAttribute(String key, String value) {
+          log.add(key + "=" + value);
+        }
+
+        @Override
+        public void end(Status.Code code, int items, long bytes) {
+          log.add("end " + code + " " + items);
+        }
+      };
+    }
+  }
+
+  @Test
+  @DisplayName("Composed tracers all see every call")
+  void testComposeForwardsToAll() {
+    LoggingTracer tracer = new LoggingTracer();
+    FlightRecorder recorder = FlightRecorder.builder().build();
+    Tracer composed = Tracer.compose(tracer, recorder);
+
+    Span span = composed.startSpan(Operation.GET);
+    assertTrue(span.isRecording());
+    span.setAttribute(SpanAttributes.KEY_PATH, "/jedi-luke");
+    span.end(Status.Code.OK, 1, 10);
+
+    assertEquals(
+        List.of("start GET", SpanAttributes.KEY_PATH + "=/jedi-luke", "end OK 1"), tracer.log);
+    assertEquals(1, recorder.getRecentCalls().size());
+    assertEquals("/jedi-luke", recorder.getRecentCalls().get(0).getKeyPath());
+  }
+
+  @Test
+  @DisplayName("Composing skips tracers and spans that trace nothing")
+  void testComposeSkipsNoop() {
+    LoggingTracer tracer = new LoggingTracer();
+    assertSame(Tracer.NOOP, Tracer.compose());
+    assertSame(Tracer.NOOP, Tracer.compose(Tracer.NOOP, Tracer.NOOP));
+    assertSame(tracer, Tracer.compose(Tracer.NOOP, tracer));
+
+    Tracer quiet = operation -> Span.NOOP;
+    assertSame(Span.NOOP, Tracer.compose(quiet, quiet).startSpan(Operation.GET));
+    Span span = Tracer.compose(quiet, tracer).startSpan(Operation.GET);
+    span.end(Status.Code.OK, 0, 0);
+    assertEquals(List.of("start GET", "end OK 0"), tracer.log);
+  }
+}